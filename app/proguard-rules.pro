@@ -37,6 +37,9 @@
 # 保留数据模型（Gson 序列化需要）
 -keep class com.inputassistant.universal.model.** { *; }
 
+# 保留使用轨迹事件的字段名（导出的JSON Lines需与回放工具一致）
+-keep class com.inputassistant.universal.core.trace.SessionEvent { *; }
+
 # 保留 SettingsRepository 相关（加密存储）
 -keep class com.inputassistant.universal.repository.** {
     public <methods>;
@@ -57,6 +60,9 @@
 -dontwarn okhttp3.**
 -dontwarn okio.**
 
+# Conscrypt（持久化TLS会话）：本地代码按名称回调Java方法
+-keep class org.conscrypt.** { *; }
+
 # AndroidX 安全库
 -keep class androidx.security.crypto.** { *; }
 
@@ -76,6 +82,7 @@
 -assumenosideeffects class com.inputassistant.universal.BuildConfig {
     public static final boolean DEBUG return false;
     public static final boolean DEBUG_LOGGING return false;
+    public static final boolean PERFORMANCE_MONITORING return false;
 }
 
 # ========== 警告忽略 ==========
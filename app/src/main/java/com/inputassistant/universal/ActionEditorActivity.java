@@ -1,16 +1,25 @@
 package com.inputassistant.universal;
 
 import android.os.Bundle;
+import android.text.TextUtils;
+import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.RadioGroup;
+import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import com.inputassistant.universal.core.api.GenerationParams;
+import com.inputassistant.universal.core.local.LocalTransforms;
 import com.inputassistant.universal.model.Action;
 import com.inputassistant.universal.repository.SettingsRepository;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 动作编辑活动
@@ -19,11 +28,31 @@ import java.security.GeneralSecurityException;
 public class ActionEditorActivity extends AppCompatActivity {
     private EditText etActionName;
     private EditText etSystemPrompt;
+    private TextView tvAdvancedToggle;
+    private LinearLayout layoutAdvanced;
+    private EditText etModel;
+    private EditText etDraftModel;
+    private EditText etBaseUrl;
+    private EditText etMaxTokens;
+    private RadioGroup rgOutputType;
+    private EditText etTemperature;
+    private EditText etCandidateCount;
+    private EditText etStopSequences;
+    private TextView tvPipelineSteps;
+    private Button btnEditPipeline;
+    private TextView tvLocalTransform;
+    private Button btnEditLocalTransform;
+    private LinearLayout layoutRegexArgs;
+    private EditText etRegexPattern;
+    private EditText etRegexReplacement;
     private Button btnSave;
     private Button btnCancel;
     
     private SettingsRepository settingsRepository;
     private String editingActionId = null; // 如果是编辑模式，存储Action ID
+    private Action originalAction = null; // 编辑模式下的原始Action，用于回填生成参数
+    private final List<String> pipelineStepIds = new ArrayList<>(); // 流水线步骤，按执行顺序
+    private String localTransformId = null; // 本地转换，null 表示请求模型
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,6 +70,23 @@ public class ActionEditorActivity extends AppCompatActivity {
         etSystemPrompt = findViewById(R.id.et_system_prompt);
         btnSave = findViewById(R.id.btn_save_action);
         btnCancel = findViewById(R.id.btn_cancel);
+        tvAdvancedToggle = findViewById(R.id.tv_advanced_toggle);
+        layoutAdvanced = findViewById(R.id.layout_advanced);
+        etModel = findViewById(R.id.et_action_model);
+        etDraftModel = findViewById(R.id.et_action_draft_model);
+        etBaseUrl = findViewById(R.id.et_action_base_url);
+        etMaxTokens = findViewById(R.id.et_action_max_tokens);
+        rgOutputType = findViewById(R.id.rg_action_output_type);
+        etTemperature = findViewById(R.id.et_action_temperature);
+        etCandidateCount = findViewById(R.id.et_action_candidate_count);
+        etStopSequences = findViewById(R.id.et_action_stop_sequences);
+        tvPipelineSteps = findViewById(R.id.tv_pipeline_steps);
+        btnEditPipeline = findViewById(R.id.btn_edit_pipeline);
+        tvLocalTransform = findViewById(R.id.tv_local_transform);
+        btnEditLocalTransform = findViewById(R.id.btn_edit_local_transform);
+        layoutRegexArgs = findViewById(R.id.layout_regex_args);
+        etRegexPattern = findViewById(R.id.et_regex_pattern);
+        etRegexReplacement = findViewById(R.id.et_regex_replacement);
     }
 
     private void initRepository() {
@@ -63,6 +109,7 @@ public class ActionEditorActivity extends AppCompatActivity {
             setTitle("编辑动作");
             etActionName.setText(actionName);
             etSystemPrompt.setText(systemPrompt);
+            loadGenerationParams();
         } else {
             // 创建模式
             setTitle("创建动作");
@@ -71,9 +118,185 @@ public class ActionEditorActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * 从已保存的Action回填生成参数，有任何设置时展开高级设置
+     */
+    private void loadGenerationParams() {
+        if (settingsRepository == null) {
+            return;
+        }
+        for (Action action : settingsRepository.getActions()) {
+            if (action.getId().equals(editingActionId)) {
+                originalAction = action;
+                break;
+            }
+        }
+        if (originalAction == null) {
+            return;
+        }
+        if (originalAction.isPipeline()) {
+            pipelineStepIds.addAll(originalAction.getPipelineStepIds());
+            updatePipelineSummary();
+        }
+        if (originalAction.isLocal()) {
+            localTransformId = originalAction.getLocalTransformId();
+            List<String> args = originalAction.getLocalTransformArgs();
+            if (args != null && args.size() >= 2) {
+                etRegexPattern.setText(args.get(0));
+                etRegexReplacement.setText(args.get(1));
+            }
+            updateLocalTransformSummary();
+        }
+        etModel.setText(originalAction.getModelName());
+        etDraftModel.setText(originalAction.getDraftModelName());
+        etBaseUrl.setText(originalAction.getBaseUrl());
+        etMaxTokens.setText(originalAction.getMaxTokens() != null ? String.valueOf(originalAction.getMaxTokens()) : "");
+        rgOutputType.check(outputTypeButton(originalAction.getOutputType()));
+        etTemperature.setText(originalAction.getTemperature() != null ? String.valueOf(originalAction.getTemperature()) : "");
+        etCandidateCount.setText(originalAction.getCandidateCount() != null
+                ? String.valueOf(originalAction.getCandidateCount()) : "");
+        etStopSequences.setText(originalAction.getStopSequences() != null
+                ? TextUtils.join("\n", originalAction.getStopSequences()) : "");
+        if (!advancedFieldsEmpty()) {
+            setAdvancedVisible(true);
+        }
+    }
+
     private void setupClickListeners() {
         btnSave.setOnClickListener(v -> saveAction());
         btnCancel.setOnClickListener(v -> finish());
+        tvAdvancedToggle.setOnClickListener(v -> setAdvancedVisible(layoutAdvanced.getVisibility() != View.VISIBLE));
+        btnEditPipeline.setOnClickListener(v -> showPipelineStepPicker());
+        btnEditLocalTransform.setOnClickListener(v -> showLocalTransformPicker());
+    }
+
+    /**
+     * 选择本地转换；第一项为“不使用”，即请求模型处理
+     */
+    private void showLocalTransformPicker() {
+        List<String> ids = LocalTransforms.ids();
+        String[] labels = new String[ids.size() + 1];
+        labels[0] = "不使用（请求模型）";
+        int selected = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            labels[i + 1] = LocalTransforms.label(ids.get(i));
+            if (ids.get(i).equals(localTransformId)) {
+                selected = i + 1;
+            }
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("本地转换")
+                .setSingleChoiceItems(labels, selected, (dialog, which) -> {
+                    localTransformId = which == 0 ? null : ids.get(which - 1);
+                    updateLocalTransformSummary();
+                    dialog.dismiss();
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    private void updateLocalTransformSummary() {
+        String label = localTransformId != null ? LocalTransforms.label(localTransformId) : null;
+        if (localTransformId == null) {
+            tvLocalTransform.setText("未设置：请求模型处理");
+        } else {
+            tvLocalTransform.setText(label != null ? label + "（不请求模型）" : "不支持的转换：" + localTransformId);
+        }
+        layoutRegexArgs.setVisibility(LocalTransforms.REGEX_REPLACE.equals(localTransformId) ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * @return 当前选择的转换所需的参数，不需要参数时返回 null
+     */
+    private List<String> localTransformArgs() {
+        if (!LocalTransforms.REGEX_REPLACE.equals(localTransformId)) {
+            return null;
+        }
+        List<String> args = new ArrayList<>();
+        // 不去除空白，空格可能就是要匹配或替换的内容
+        args.add(etRegexPattern.getText().toString());
+        args.add(etRegexReplacement.getText().toString());
+        return args;
+    }
+
+    /**
+     * 选择流水线步骤：按勾选顺序执行；流水线不能嵌套，也不能包含自身
+     */
+    private void showPipelineStepPicker() {
+        if (settingsRepository == null) {
+            return;
+        }
+        List<Action> candidates = new ArrayList<>();
+        for (Action action : settingsRepository.getActions()) {
+            if (!action.getId().equals(editingActionId) && !action.isPipeline()) {
+                candidates.add(action);
+            }
+        }
+        if (candidates.isEmpty()) {
+            Toast.makeText(this, "请先创建其他动作作为流水线步骤", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String[] names = new String[candidates.size()];
+        boolean[] checked = new boolean[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            names[i] = candidates.get(i).getName();
+            checked[i] = pipelineStepIds.contains(candidates.get(i).getId());
+        }
+        // 保留已有步骤的顺序，新勾选的追加到末尾
+        List<String> order = new ArrayList<>(pipelineStepIds);
+        new AlertDialog.Builder(this)
+                .setTitle("按执行顺序勾选步骤")
+                .setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> {
+                    String id = candidates.get(which).getId();
+                    order.remove(id);
+                    if (isChecked) {
+                        order.add(id);
+                    }
+                })
+                .setPositiveButton("确定", (dialog, which) -> {
+                    pipelineStepIds.clear();
+                    for (String id : order) {
+                        for (Action candidate : candidates) {
+                            if (candidate.getId().equals(id)) {
+                                pipelineStepIds.add(id);
+                                break;
+                            }
+                        }
+                    }
+                    updatePipelineSummary();
+                })
+                .setNeutralButton("清除", (dialog, which) -> {
+                    pipelineStepIds.clear();
+                    updatePipelineSummary();
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    private void updatePipelineSummary() {
+        if (pipelineStepIds.isEmpty()) {
+            tvPipelineSteps.setText("未设置：直接使用上面的系统指令");
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        List<Action> actions = settingsRepository != null ? settingsRepository.getActions() : new ArrayList<>();
+        for (String id : pipelineStepIds) {
+            String name = "（已删除）";
+            for (Action action : actions) {
+                if (action.getId().equals(id)) {
+                    name = action.getName();
+                    break;
+                }
+            }
+            names.add(name);
+        }
+        tvPipelineSteps.setText(TextUtils.join(" → ", names));
+    }
+
+    private void setAdvancedVisible(boolean visible) {
+        layoutAdvanced.setVisibility(visible ? View.VISIBLE : View.GONE);
+        tvAdvancedToggle.setText(visible ? "▾ 高级设置（可选）" : "▸ 高级设置（可选）");
     }
 
     private void saveAction() {
@@ -87,22 +310,51 @@ public class ActionEditorActivity extends AppCompatActivity {
             return;
         }
 
-        if (systemPrompt.isEmpty()) {
+        if (pipelineStepIds.size() == 1) {
+            Toast.makeText(this, "流水线至少需要两个步骤", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        if (localTransformId != null && !pipelineStepIds.isEmpty()) {
+            Toast.makeText(this, "本地转换与流水线步骤只能设置一个", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        if (localTransformId != null) {
+            try {
+                LocalTransforms.create(localTransformId, localTransformArgs());
+            } catch (IllegalArgumentException e) {
+                etRegexPattern.setError(e.getMessage());
+                etRegexPattern.requestFocus();
+                return;
+            }
+        }
+
+        // 流水线动作使用各步骤自己的指令，本地动作不需要指令
+        if (systemPrompt.isEmpty() && pipelineStepIds.isEmpty() && localTransformId == null) {
             etSystemPrompt.setError("请输入系统指令");
             etSystemPrompt.requestFocus();
             return;
         }
 
+        Action action = editingActionId != null
+                ? new Action(editingActionId, name, systemPrompt)
+                : new Action(name, systemPrompt);
+        if (!applyGenerationParams(action)) {
+            return;
+        }
+        action.setPipelineStepIds(pipelineStepIds.isEmpty() ? null : new ArrayList<>(pipelineStepIds));
+        action.setLocalTransformId(localTransformId);
+        action.setLocalTransformArgs(localTransformArgs());
+
         try {
             if (editingActionId != null) {
                 // 编辑模式：更新现有Action
-                Action updatedAction = new Action(editingActionId, name, systemPrompt);
-                settingsRepository.updateAction(updatedAction);
+                settingsRepository.updateAction(action);
                 Toast.makeText(this, "动作已更新", Toast.LENGTH_SHORT).show();
             } else {
                 // 创建模式：添加新Action
-                Action newAction = new Action(name, systemPrompt);
-                settingsRepository.addAction(newAction);
+                settingsRepository.addAction(action);
                 Toast.makeText(this, "动作已创建", Toast.LENGTH_SHORT).show();
             }
 
@@ -113,6 +365,129 @@ public class ActionEditorActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * 校验并写入可选的生成参数，留空的项保持为 null（使用全局设置）
+     * @return 校验是否通过
+     */
+    private boolean applyGenerationParams(Action action) {
+        String model = etModel.getText().toString().trim();
+        String draftModel = etDraftModel.getText().toString().trim();
+        String baseUrl = etBaseUrl.getText().toString().trim();
+        String maxTokensText = etMaxTokens.getText().toString().trim();
+        String temperatureText = etTemperature.getText().toString().trim();
+
+        if (!baseUrl.isEmpty() && !baseUrl.startsWith("http://") && !baseUrl.startsWith("https://")) {
+            return rejectAdvanced(etBaseUrl, "API地址需以 http:// 或 https:// 开头");
+        }
+
+        Integer maxTokens = null;
+        if (!maxTokensText.isEmpty()) {
+            try {
+                maxTokens = Integer.parseInt(maxTokensText);
+            } catch (NumberFormatException e) {
+                maxTokens = 0;
+            }
+            if (maxTokens <= 0) {
+                return rejectAdvanced(etMaxTokens, "请输入大于0的整数");
+            }
+        }
+
+        Double temperature = null;
+        if (!temperatureText.isEmpty()) {
+            try {
+                temperature = Double.parseDouble(temperatureText);
+            } catch (NumberFormatException e) {
+                temperature = -1.0;
+            }
+            if (temperature < 0 || temperature > 2) {
+                return rejectAdvanced(etTemperature, "温度需在0到2之间");
+            }
+        }
+
+        Integer candidateCount = null;
+        String candidateCountText = etCandidateCount.getText().toString().trim();
+        if (!candidateCountText.isEmpty()) {
+            try {
+                candidateCount = Integer.parseInt(candidateCountText);
+            } catch (NumberFormatException e) {
+                candidateCount = 0;
+            }
+            if (candidateCount < 1 || candidateCount > GenerationParams.MAX_CANDIDATES) {
+                return rejectAdvanced(etCandidateCount, "候选数量需在1到" + GenerationParams.MAX_CANDIDATES + "之间");
+            }
+        }
+
+        List<String> stopSequences = parseStopSequences();
+        if (stopSequences.size() > GenerationParams.MAX_STOP_SEQUENCES) {
+            return rejectAdvanced(etStopSequences, "最多" + GenerationParams.MAX_STOP_SEQUENCES + "个停止序列");
+        }
+
+        action.setModelName(model.isEmpty() ? null : model);
+        action.setDraftModelName(draftModel.isEmpty() ? null : draftModel);
+        action.setBaseUrl(baseUrl.isEmpty() ? null : baseUrl);
+        action.setMaxTokens(maxTokens);
+        action.setOutputType(selectedOutputType());
+        action.setTemperature(temperature);
+        action.setCandidateCount(candidateCount != null && candidateCount > 1 ? candidateCount : null);
+        action.setStopSequences(stopSequences.isEmpty() ? null : stopSequences);
+        return true;
+    }
+
+    /**
+     * @return 选中的输出类型，自动判断时为 null
+     */
+    private String selectedOutputType() {
+        int checked = rgOutputType.getCheckedRadioButtonId();
+        if (checked == R.id.rb_output_transform) {
+            return Action.OUTPUT_TRANSFORM;
+        }
+        if (checked == R.id.rb_output_generate) {
+            return Action.OUTPUT_GENERATE;
+        }
+        return null;
+    }
+
+    private static int outputTypeButton(String outputType) {
+        if (Action.OUTPUT_TRANSFORM.equals(outputType)) {
+            return R.id.rb_output_transform;
+        }
+        if (Action.OUTPUT_GENERATE.equals(outputType)) {
+            return R.id.rb_output_generate;
+        }
+        return R.id.rb_output_auto;
+    }
+
+    private boolean rejectAdvanced(EditText field, String message) {
+        setAdvancedVisible(true);
+        field.setError(message);
+        field.requestFocus();
+        return false;
+    }
+
+    /**
+     * 每行一个停止序列，忽略空行；不去除行内空白，空格也可能是有意的停止条件
+     */
+    private List<String> parseStopSequences() {
+        List<String> sequences = new ArrayList<>();
+        for (String line : etStopSequences.getText().toString().split("\n")) {
+            if (!line.isEmpty()) {
+                sequences.add(line);
+            }
+        }
+        return sequences;
+    }
+
+    private boolean advancedFieldsEmpty() {
+        return etModel.getText().toString().trim().isEmpty()
+                && etDraftModel.getText().toString().trim().isEmpty()
+                && etBaseUrl.getText().toString().trim().isEmpty()
+                && etMaxTokens.getText().toString().trim().isEmpty()
+                && selectedOutputType() == null
+                && etTemperature.getText().toString().trim().isEmpty()
+                && etCandidateCount.getText().toString().trim().isEmpty()
+                && etStopSequences.getText().toString().isEmpty();
+    }
+
     private void showError(String message) {
         new AlertDialog.Builder(this)
                 .setTitle("错误")
@@ -145,10 +520,49 @@ public class ActionEditorActivity extends AppCompatActivity {
             String originalName = getIntent().getStringExtra("action_name");
             String originalPrompt = getIntent().getStringExtra("action_system_prompt");
             return !currentName.equals(originalName != null ? originalName : "") ||
-                   !currentPrompt.equals(originalPrompt != null ? originalPrompt : "");
+                   !currentPrompt.equals(originalPrompt != null ? originalPrompt : "") ||
+                   generationParamsChanged() ||
+                   !pipelineStepIds.equals(originalAction != null && originalAction.isPipeline()
+                           ? originalAction.getPipelineStepIds() : new ArrayList<>()) ||
+                   localTransformChanged();
         } else {
             // 创建模式：检查是否有任何输入
-            return !currentName.isEmpty() || !currentPrompt.isEmpty();
+            return !currentName.isEmpty() || !currentPrompt.isEmpty() || !advancedFieldsEmpty()
+                    || !pipelineStepIds.isEmpty() || localTransformId != null;
+        }
+    }
+
+    private boolean localTransformChanged() {
+        String originalId = originalAction != null ? originalAction.getLocalTransformId() : null;
+        List<String> originalArgs = originalAction != null ? originalAction.getLocalTransformArgs() : null;
+        List<String> args = localTransformArgs();
+        return !nullToEmpty(localTransformId).equals(nullToEmpty(originalId))
+                || (args != null ? !args.equals(originalArgs) : originalArgs != null);
+    }
+
+    private boolean generationParamsChanged() {
+        if (originalAction == null) {
+            return !advancedFieldsEmpty();
         }
+        String originalMaxTokens = originalAction.getMaxTokens() != null
+                ? String.valueOf(originalAction.getMaxTokens()) : "";
+        String originalTemperature = originalAction.getTemperature() != null
+                ? String.valueOf(originalAction.getTemperature()) : "";
+        String originalCandidateCount = originalAction.getCandidateCount() != null
+                ? String.valueOf(originalAction.getCandidateCount()) : "";
+        List<String> originalStops = originalAction.getStopSequences() != null
+                ? originalAction.getStopSequences() : new ArrayList<>();
+        return !etModel.getText().toString().trim().equals(nullToEmpty(originalAction.getModelName()))
+                || !etDraftModel.getText().toString().trim().equals(nullToEmpty(originalAction.getDraftModelName()))
+                || !etBaseUrl.getText().toString().trim().equals(nullToEmpty(originalAction.getBaseUrl()))
+                || !etMaxTokens.getText().toString().trim().equals(originalMaxTokens)
+                || !nullToEmpty(selectedOutputType()).equals(nullToEmpty(originalAction.getOutputType()))
+                || !etTemperature.getText().toString().trim().equals(originalTemperature)
+                || !etCandidateCount.getText().toString().trim().equals(originalCandidateCount)
+                || !parseStopSequences().equals(originalStops);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
     }
 }
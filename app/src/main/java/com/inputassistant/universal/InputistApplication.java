@@ -0,0 +1,36 @@
+package com.inputassistant.universal;
+
+import android.app.Application;
+import com.inputassistant.universal.api.NetworkRuntime;
+import com.inputassistant.universal.monitor.FlightRecorder;
+import com.inputassistant.universal.monitor.PerformanceMonitor;
+import com.inputassistant.universal.monitor.SessionRecorder;
+
+/**
+ * 应用入口
+ * 在任何组件创建前完成进程级的初始化
+ */
+public class InputistApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // 仅 debug 构建启用性能监控
+        if (BuildConfig.PERFORMANCE_MONITORING) {
+            PerformanceMonitor.install();
+        }
+
+        // 飞行记录器在所有构建中启用；打开文件涉及磁盘IO，放到后台线程
+        new Thread(() -> {
+            FlightRecorder.init(this);
+            SessionRecorder.init(this);
+        }, "InputistRecorderInit").start();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        NetworkRuntime.onTrimMemory(level);
+    }
+}
@@ -16,12 +16,22 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.inputassistant.universal.adapter.ActionAdapter;
 import com.inputassistant.universal.floating.FloatingBallService;
+import com.inputassistant.universal.history.HistoryStore;
 import com.inputassistant.universal.model.Action;
+import com.inputassistant.universal.monitor.FlightRecorder;
+import com.inputassistant.universal.monitor.PerformanceMonitor;
+import com.inputassistant.universal.monitor.PerformanceReport;
+import com.inputassistant.universal.monitor.SessionRecorder;
 import com.inputassistant.universal.repository.SettingsRepository;
+import okhttp3.HttpUrl;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * 主活动 - 配置中心
@@ -35,6 +45,7 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
     private EditText etApiBaseUrl;
     private EditText etApiKey;
     private EditText etModelName;
+    private EditText etDohUrl;
     private Button btnSaveApiSettings;
     private Button btnSetupIME;
     private RecyclerView rvActions;
@@ -43,8 +54,16 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
     private TextView tvTitle;  // 标题 TextView
     private Switch switchTextMode;  // 文本处理模式切换开关
     private TextView tvModeDescription;  // 模式描述文本
+    private Switch switchNearDuplicate;  // 相似输入复用开关
+    private Button btnNearDuplicateThreshold;  // 相似度阈值
+    private Switch switchHistory;  // 结果历史开关
+    private Button btnClearHistory;  // 清空历史按钮
     private Switch switchFloatingBall;  // 悬浮球开关
     private Button btnFloatingBallPermission;  // 悬浮球权限按钮
+    private Button btnPerformanceReport;  // 性能报告按钮（仅 debug 构建）
+    private Button btnExportFlightRecord;  // 导出性能记录按钮
+    private Switch switchSessionRecording;  // 匿名使用轨迹记录开关
+    private Button btnExportSessionTrace;  // 导出使用轨迹按钮
     
     private SettingsRepository settingsRepository;
     private ActionAdapter actionAdapter;
@@ -53,6 +72,7 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        PerformanceMonitor.trackFrames(getWindow(), "主界面");
         
         initViews();
         initRepository();
@@ -66,6 +86,7 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         etApiBaseUrl = findViewById(R.id.et_api_base_url);
         etApiKey = findViewById(R.id.et_api_key);
         etModelName = findViewById(R.id.et_model_name);
+        etDohUrl = findViewById(R.id.et_doh_url);
         btnSaveApiSettings = findViewById(R.id.btn_save_api_settings);
         btnSetupIME = findViewById(R.id.btn_setup_ime);
         rvActions = findViewById(R.id.rv_actions);
@@ -74,8 +95,21 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         tvTitle = findViewById(R.id.tv_title);
         switchTextMode = findViewById(R.id.switch_text_mode);
         tvModeDescription = findViewById(R.id.tv_mode_description);
+        switchNearDuplicate = findViewById(R.id.switch_near_duplicate);
+        btnNearDuplicateThreshold = findViewById(R.id.btn_near_duplicate_threshold);
+        switchHistory = findViewById(R.id.switch_history);
+        btnClearHistory = findViewById(R.id.btn_clear_history);
         switchFloatingBall = findViewById(R.id.switch_floating_ball);
         btnFloatingBallPermission = findViewById(R.id.btn_floating_ball_permission);
+        btnPerformanceReport = findViewById(R.id.btn_performance_report);
+        btnExportFlightRecord = findViewById(R.id.btn_export_flight_record);
+        switchSessionRecording = findViewById(R.id.switch_session_recording);
+        btnExportSessionTrace = findViewById(R.id.btn_export_session_trace);
+        
+        // 性能报告入口只在开启性能监控的构建中显示
+        if (PerformanceMonitor.isEnabled()) {
+            btnPerformanceReport.setVisibility(android.view.View.VISIBLE);
+        }
         
         // 动态设置标题，包含版本号
         setupTitle();
@@ -116,6 +150,7 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         etApiBaseUrl.setText(settingsRepository.getApiBaseUrl());
         etApiKey.setText(settingsRepository.getApiKey());
         etModelName.setText(settingsRepository.getModelName());
+        etDohUrl.setText(settingsRepository.getDohUrl());
         
         // 初始化文本处理模式设置
         initTextModeSettings();
@@ -129,6 +164,40 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         boolean isReplaceMode = settingsRepository.isReplaceMode();
         switchTextMode.setChecked(isReplaceMode);
         updateModeDescription();
+        
+        switchNearDuplicate.setChecked(settingsRepository.isNearDuplicateEnabled());
+        updateNearDuplicateThreshold();
+        
+        switchHistory.setChecked(settingsRepository.isHistoryEnabled());
+    }
+
+    private void updateNearDuplicateThreshold() {
+        btnNearDuplicateThreshold.setText("相似度阈值：" + settingsRepository.getNearDuplicateThresholdPercent() + "%");
+        btnNearDuplicateThreshold.setEnabled(switchNearDuplicate.isChecked());
+    }
+
+    /**
+     * 选择相似度阈值；阈值越低越容易复用，但结果可能与当前输入不完全对应
+     */
+    private void showNearDuplicateThresholdPicker() {
+        int[] percents = {90, 93, 95, 98, 100};
+        String[] labels = {"90%（宽松）", "93%", "95%（推荐）", "98%", "100%（仅标点和空白不同）"};
+        int current = settingsRepository.getNearDuplicateThresholdPercent();
+        int checked = 2;
+        for (int i = 0; i < percents.length; i++) {
+            if (percents[i] == current) {
+                checked = i;
+            }
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("相似度阈值")
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    settingsRepository.setNearDuplicateThresholdPercent(percents[which]);
+                    updateNearDuplicateThreshold();
+                    dialog.dismiss();
+                })
+                .setNegativeButton("取消", null)
+                .show();
     }
 
     private void initFloatingBallSettings() {
@@ -138,6 +207,8 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         
         // 更新权限按钮状态
         updateFloatingBallPermissionButton();
+        
+        switchSessionRecording.setChecked(settingsRepository.isSessionRecordingEnabled());
     }
 
     private void updateFloatingBallPermissionButton() {
@@ -195,18 +266,154 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         
         // 悬浮球权限按钮监听
         btnFloatingBallPermission.setOnClickListener(v -> requestFloatingBallPermission());
+        
+        btnPerformanceReport.setOnClickListener(v -> showPerformanceReport());
+        btnExportFlightRecord.setOnClickListener(v -> exportFlightRecord());
+        
+        // 使用轨迹记录开关监听，关闭时删除已记录的数据
+        switchSessionRecording.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            settingsRepository.setSessionRecordingEnabled(isChecked);
+            if (isChecked) {
+                showToast("已开启匿名使用轨迹记录");
+            } else {
+                new Thread(SessionRecorder::clear, "InputistSessionTraceClear").start();
+                showToast("已停止记录并清除使用轨迹");
+            }
+        });
+        btnExportSessionTrace.setOnClickListener(v -> exportSessionTrace());
+        
+        switchNearDuplicate.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            settingsRepository.setNearDuplicateEnabled(isChecked);
+            updateNearDuplicateThreshold();
+        });
+        btnNearDuplicateThreshold.setOnClickListener(v -> showNearDuplicateThresholdPicker());
+        
+        // 结果历史开关监听，关闭时删除已保存的历史
+        switchHistory.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            settingsRepository.setHistoryEnabled(isChecked);
+            if (!isChecked) {
+                clearHistory();
+            }
+        });
+        btnClearHistory.setOnClickListener(v -> new AlertDialog.Builder(this)
+                .setTitle("清空历史")
+                .setMessage("确定要删除全部结果历史吗？")
+                .setPositiveButton("清空", (dialog, which) -> clearHistory())
+                .setNegativeButton("取消", null)
+                .show());
+    }
+
+    private void clearHistory() {
+        HistoryStore history = HistoryStore.getInstance(this);
+        new Thread(history::clear, "InputistHistoryClear").start();
+        showToast("已清空结果历史");
+    }
+
+    /**
+     * 选择保存位置，导出匿名使用轨迹（JSON Lines）
+     */
+    private void exportSessionTrace() {
+        if (!SessionRecorder.hasRecords()) {
+            showToast("暂无使用轨迹");
+            return;
+        }
+        String fileName = "inputist-trace-" +
+                new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".jsonl";
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_TITLE, fileName);
+        try {
+            startActivityForResult(intent, REQUEST_EXPORT_SESSION_TRACE);
+        } catch (Exception e) {
+            showError("无法打开文件选择器");
+        }
+    }
+
+    private void writeSessionTrace(Uri uri) {
+        try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+            if (out == null) {
+                throw new IOException("无法打开输出文件");
+            }
+            SessionRecorder.exportTo(out);
+            showToast("使用轨迹已导出");
+        } catch (IOException e) {
+            showError("导出失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 选择保存位置，导出飞行记录器中的性能事件
+     */
+    private void exportFlightRecord() {
+        if (FlightRecorder.size() == 0) {
+            showToast("暂无性能记录");
+            return;
+        }
+        String fileName = "inputist-perf-" +
+                new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".bin";
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("application/octet-stream");
+        intent.putExtra(Intent.EXTRA_TITLE, fileName);
+        try {
+            startActivityForResult(intent, REQUEST_EXPORT_FLIGHT_RECORD);
+        } catch (Exception e) {
+            showError("无法打开文件选择器");
+        }
+    }
+
+    private void writeFlightRecord(Uri uri) {
+        try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+            if (out == null) {
+                throw new IOException("无法打开输出文件");
+            }
+            FlightRecorder.exportTo(out);
+            showToast("已导出 " + FlightRecorder.size() + " 条性能记录");
+        } catch (IOException e) {
+            showError("导出失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 显示性能报告（仅 debug 构建）
+     */
+    private void showPerformanceReport() {
+        TextView reportView = new TextView(this);
+        reportView.setText(PerformanceReport.getInstance().buildReport());
+        reportView.setTextSize(11);
+        reportView.setTextIsSelectable(true);
+        reportView.setPadding(32, 24, 32, 24);
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(reportView);
+        
+        new AlertDialog.Builder(this)
+                .setTitle("性能报告")
+                .setView(scrollView)
+                .setPositiveButton("关闭", null)
+                .setNeutralButton("清空", (dialog, which) -> {
+                    PerformanceReport.getInstance().clear();
+                    showToast("性能报告已清空");
+                })
+                .show();
     }
 
     private void saveApiSettings() {
         String baseUrl = etApiBaseUrl.getText().toString().trim();
         String apiKey = etApiKey.getText().toString().trim();
         String modelName = etModelName.getText().toString().trim();
+        String dohUrl = etDohUrl.getText().toString().trim();
 
         if (baseUrl.isEmpty() || apiKey.isEmpty()) {
             showError("请填写API基础URL和API密钥");
             return;
         }
 
+        if (!dohUrl.isEmpty() && HttpUrl.parse(dohUrl) == null) {
+            showError("DNS over HTTPS 地址格式不正确");
+            return;
+        }
+
         if (modelName.isEmpty()) {
             modelName = "gpt-3.5-turbo";
         }
@@ -214,6 +421,7 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         settingsRepository.saveApiBaseUrl(baseUrl);
         settingsRepository.saveApiKey(apiKey);
         settingsRepository.saveModelName(modelName);
+        settingsRepository.saveDohUrl(dohUrl);
 
         Toast.makeText(this, "API设置已保存", Toast.LENGTH_SHORT).show();
         updateStatus();
@@ -288,6 +496,10 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == REQUEST_ACTION_EDIT && resultCode == RESULT_OK) {
             loadActions(); // 刷新Action列表
+        } else if (requestCode == REQUEST_EXPORT_FLIGHT_RECORD && resultCode == RESULT_OK && data != null) {
+            writeFlightRecord(data.getData());
+        } else if (requestCode == REQUEST_EXPORT_SESSION_TRACE && resultCode == RESULT_OK && data != null) {
+            writeSessionTrace(data.getData());
         } else if (requestCode == REQUEST_FLOATING_BALL_PERMISSION) {
             // 悬浮球权限请求结果
             if (Settings.canDrawOverlays(this)) {
@@ -506,10 +718,13 @@ public class MainActivity extends AppCompatActivity implements ActionAdapter.OnA
     }
 
     private static final int REQUEST_FLOATING_BALL_PERMISSION = 4;
+    private static final int REQUEST_EXPORT_FLIGHT_RECORD = 5;
+    private static final int REQUEST_EXPORT_SESSION_TRACE = 6;
 
     @Override
     protected void onResume() {
         super.onResume();
+        PerformanceMonitor.setActiveComponent("MainActivity");
         updateStatus();
         // 更新悬浮球权限按钮状态
         updateFloatingBallPermissionButton();
@@ -8,6 +8,7 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.inputassistant.universal.R;
+import com.inputassistant.universal.core.local.LocalTransforms;
 import com.inputassistant.universal.model.Action;
 
 import java.util.ArrayList;
@@ -54,6 +55,27 @@ public class ActionAdapter extends RecyclerView.Adapter<ActionAdapter.ActionView
         return actions.size();
     }
 
+    /**
+     * 流水线步骤名称，以箭头连接
+     */
+    private String describePipeline(Action pipeline) {
+        StringBuilder description = new StringBuilder();
+        for (String stepId : pipeline.getPipelineStepIds()) {
+            if (description.length() > 0) {
+                description.append(" → ");
+            }
+            String name = "（已删除）";
+            for (Action action : actions) {
+                if (action.getId().equals(stepId)) {
+                    name = action.getName();
+                    break;
+                }
+            }
+            description.append(name);
+        }
+        return description.toString();
+    }
+
     class ActionViewHolder extends RecyclerView.ViewHolder {
         private TextView tvName;
         private TextView tvSystemPrompt;
@@ -71,12 +93,19 @@ public class ActionAdapter extends RecyclerView.Adapter<ActionAdapter.ActionView
         public void bind(Action action) {
             tvName.setText(action.getName());
             
-            // 显示系统指令的前100个字符
-            String systemPrompt = action.getSystemPrompt();
-            if (systemPrompt.length() > 100) {
-                systemPrompt = systemPrompt.substring(0, 97) + "...";
+            if (action.isPipeline()) {
+                tvSystemPrompt.setText("流水线：" + describePipeline(action));
+            } else if (action.isLocal()) {
+                String label = LocalTransforms.label(action.getLocalTransformId());
+                tvSystemPrompt.setText("本地：" + (label != null ? label : action.getLocalTransformId()));
+            } else {
+                // 显示系统指令的前100个字符
+                String systemPrompt = action.getSystemPrompt();
+                if (systemPrompt.length() > 100) {
+                    systemPrompt = systemPrompt.substring(0, 97) + "...";
+                }
+                tvSystemPrompt.setText(systemPrompt);
             }
-            tvSystemPrompt.setText(systemPrompt);
 
             btnEdit.setOnClickListener(v -> {
                 if (listener != null) {
@@ -1,36 +1,56 @@
 package com.inputassistant.universal.api;
 
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonArray;
-import okhttp3.*;
-
-import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import com.inputassistant.universal.BuildConfig;
+import com.inputassistant.universal.core.api.ChatClient;
+import com.inputassistant.universal.core.api.GenerationParams;
+import com.inputassistant.universal.core.api.RequestScheduler;
+import com.inputassistant.universal.monitor.FlightRecorder;
+import com.inputassistant.universal.monitor.Tracer;
+import okhttp3.Call;
 
 /**
  * 通用LLM API客户端
  * 支持任何兼容OpenAI标准的API端点
+ * 请求执行由core模块的 {@link ChatClient} 完成，这里负责回调线程以及耗时追踪、飞行记录和日志
  */
 public class GenericLLMApiClient {
     private static final String TAG = "GenericLLMApiClient";
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
-    
-    private final OkHttpClient httpClient;
-    private final Gson gson;
-    private final Handler mainHandler;
-
-    public GenericLLMApiClient() {
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
-        this.gson = new Gson();
-        this.mainHandler = new Handler(Looper.getMainLooper());
+    private final ChatClient chatClient;
+
+    public GenericLLMApiClient(Context context) {
+        this(context, new Handler(Looper.getMainLooper()));
+    }
+
+    /**
+     * 连接、线程以及限速、熔断和超时的状态取自进程内共享的 {@link NetworkRuntime}，创建本身很轻
+     * @param callbackHandler 回调执行所在的Handler，默认为主线程
+     */
+    public GenericLLMApiClient(Context context, Handler callbackHandler) {
+        NetworkRuntime runtime = NetworkRuntime.getInstance(context);
+        this.chatClient = new ChatClient(
+                runtime.httpClient(),
+                callbackHandler::post,
+                new MonitoringListener(),
+                runtime.scheduler(),
+                runtime.circuitBreaker(),
+                runtime.timeouts());
+    }
+
+    private GenericLLMApiClient(ChatClient chatClient) {
+        this.chatClient = chatClient;
+    }
+
+    /**
+     * 以指定优先级排队的客户端，同一端点上交互请求优先于改进和后台请求发出
+     * @param priority {@link RequestScheduler} 中的 PRIORITY_* 常量
+     */
+    public GenericLLMApiClient withPriority(int priority) {
+        ChatClient prioritized = chatClient.withPriority(priority);
+        return prioritized == chatClient ? this : new GenericLLMApiClient(prioritized);
     }
 
     /**
@@ -41,128 +61,143 @@ public class GenericLLMApiClient {
      * @param systemPrompt 系统指令
      * @param userPrompt 用户输入
      * @param callback 回调接口
+     * @return 可用于取消请求的Call
      */
-    public void executeRequest(String baseUrl, String apiKey, String modelName, 
-                              String systemPrompt, String userPrompt, 
-                              ApiCallback callback) {
-        // 构建请求体
-        JsonObject requestBody = buildRequestBody(modelName, systemPrompt, userPrompt);
-        
-        // 构建请求
-        String url = baseUrl.endsWith("/") ? baseUrl + "chat/completions" : baseUrl + "/chat/completions";
-        RequestBody body = RequestBody.create(requestBody.toString(), JSON);
-        
-        Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .addHeader("Content-Type", "application/json")
-                .build();
-
-        // 异步执行请求
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "API request failed", e);
-                mainHandler.post(() -> callback.onError("网络请求失败: " + e.getMessage()));
-            }
+    public Call executeRequest(String baseUrl, String apiKey, String modelName,
+                               String systemPrompt, String userPrompt,
+                               ApiCallback callback) {
+        return chatClient.execute(baseUrl, apiKey, modelName, systemPrompt, userPrompt, callback);
+    }
 
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try (ResponseBody responseBody = response.body()) {
-                    if (!response.isSuccessful()) {
-                        String errorMsg = responseBody != null ? responseBody.string() : "Unknown error";
-                        Log.e(TAG, "API request unsuccessful: " + response.code() + " - " + errorMsg);
-                        mainHandler.post(() -> callback.onError("API请求失败: HTTP " + response.code()));
-                        return;
-                    }
-
-                    if (responseBody == null) {
-                        mainHandler.post(() -> callback.onError("响应体为空"));
-                        return;
-                    }
-
-                    String responseString = responseBody.string();
-                    Log.d(TAG, "API response: " + responseString);
-                    
-                    // 解析响应
-                    String result = parseResponse(responseString);
-                    if (result != null) {
-                        mainHandler.post(() -> callback.onSuccess(result));
-                    } else {
-                        mainHandler.post(() -> callback.onError("解析响应失败"));
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing response", e);
-                    mainHandler.post(() -> callback.onError("处理响应时出错: " + e.getMessage()));
-                }
-            }
-        });
+    /**
+     * 执行LLM请求，指定生成参数
+     * @param params 动作的生成参数，max_tokens 通常由 {@link com.inputassistant.universal.core.token.TokenBudget} 计算
+     * @return 可用于取消请求的Call
+     */
+    public Call executeRequest(String baseUrl, String apiKey, String modelName,
+                               String systemPrompt, String userPrompt, GenerationParams params,
+                               ApiCallback callback) {
+        return chatClient.execute(baseUrl, apiKey, modelName, systemPrompt, userPrompt, params, callback);
+    }
+
+    /**
+     * 执行LLM请求并返回多个候选（OpenAI 的 n 参数），一次往返代替多次重试
+     * @param params 候选数取自 {@link GenerationParams#getCandidateCount()}
+     * @return 可用于取消请求的Call
+     */
+    public Call executeCandidatesRequest(String baseUrl, String apiKey, String modelName,
+                                         String systemPrompt, String userPrompt, GenerationParams params,
+                                         CandidatesCallback callback) {
+        return chatClient.executeCandidates(baseUrl, apiKey, modelName, systemPrompt, userPrompt, params, callback);
+    }
+
+    /**
+     * 执行流式LLM请求（SSE）
+     * 每收到一段增量内容都会回调onProgress，参数为目前为止累积的完整文本；
+     * 回调线程处理不及时时，中间的进度会被合并，只投递最新的一次
+     * @return 可用于取消请求的Call
+     */
+    public Call executeStreamingRequest(String baseUrl, String apiKey, String modelName,
+                                        String systemPrompt, String userPrompt,
+                                        StreamCallback callback) {
+        return chatClient.executeStreaming(baseUrl, apiKey, modelName, systemPrompt, userPrompt, callback);
     }
 
     /**
-     * 构建OpenAI格式的请求体
+     * 执行流式LLM请求（SSE），指定生成参数
+     * @return 可用于取消请求的Call
      */
-    private JsonObject buildRequestBody(String modelName, String systemPrompt, String userPrompt) {
-        JsonObject requestBody = new JsonObject();
-        requestBody.addProperty("model", modelName);
-        requestBody.addProperty("max_tokens", 1000);
-        requestBody.addProperty("temperature", 0.7);
-        
-        // 构建messages数组
-        JsonArray messages = new JsonArray();
-        
-        // 系统消息
-        JsonObject systemMessage = new JsonObject();
-        systemMessage.addProperty("role", "system");
-        systemMessage.addProperty("content", systemPrompt);
-        messages.add(systemMessage);
-        
-        // 用户消息
-        JsonObject userMessage = new JsonObject();
-        userMessage.addProperty("role", "user");
-        userMessage.addProperty("content", userPrompt);
-        messages.add(userMessage);
-        
-        requestBody.add("messages", messages);
-        
-        Log.d(TAG, "Request body: " + requestBody.toString());
-        return requestBody;
+    public Call executeStreamingRequest(String baseUrl, String apiKey, String modelName,
+                                        String systemPrompt, String userPrompt, GenerationParams params,
+                                        StreamCallback callback) {
+        return chatClient.executeStreaming(baseUrl, apiKey, modelName, systemPrompt, userPrompt, params, callback);
     }
 
     /**
-     * 解析OpenAI格式的响应
+     * 将请求事件接入 Tracer 与 FlightRecorder
      */
-    private String parseResponse(String responseString) {
-        try {
-            JsonObject responseJson = gson.fromJson(responseString, JsonObject.class);
-            
-            if (responseJson.has("choices") && responseJson.get("choices").isJsonArray()) {
-                JsonArray choices = responseJson.getAsJsonArray("choices");
-                if (choices.size() > 0) {
-                    JsonObject firstChoice = choices.get(0).getAsJsonObject();
-                    if (firstChoice.has("message")) {
-                        JsonObject message = firstChoice.getAsJsonObject("message");
-                        if (message.has("content")) {
-                            return message.get("content").getAsString().trim();
-                        }
-                    }
-                }
+    private static class MonitoringListener implements ChatClient.EventListener {
+        @Override
+        public long onStageStart(int stage) {
+            switch (stage) {
+                case ChatClient.STAGE_BUILD:
+                    return Tracer.begin(Tracer.STAGE_BUILD);
+                case ChatClient.STAGE_REQUEST:
+                    return Tracer.beginAsync(Tracer.STAGE_REQUEST);
+                case ChatClient.STAGE_PARSE:
+                    return Tracer.begin(Tracer.STAGE_PARSE);
+                default:
+                    return 0;
+            }
+        }
+
+        @Override
+        public void onStageEnd(int stage, long token) {
+            switch (stage) {
+                case ChatClient.STAGE_BUILD:
+                    Tracer.end(Tracer.STAGE_BUILD, token);
+                    break;
+                case ChatClient.STAGE_REQUEST:
+                    Tracer.endAsync(Tracer.STAGE_REQUEST, token);
+                    break;
+                case ChatClient.STAGE_PARSE:
+                    Tracer.end(Tracer.STAGE_PARSE, token);
+                    break;
+            }
+        }
+
+        @Override
+        public void onRequestCompleted(int httpCode, long elapsedMs, int responseChars) {
+            FlightRecorder.record(FlightRecorder.EVENT_REQUEST, httpCode, elapsedMs, responseChars);
+            if (BuildConfig.DEBUG_LOGGING) {
+                Log.d(TAG, "API response: HTTP " + httpCode + ", " + responseChars + " chars in " + elapsedMs + "ms");
+            }
+        }
+
+        @Override
+        public void onRequestFailed(int error, int httpCode, Throwable cause) {
+            FlightRecorder.record(FlightRecorder.EVENT_ERROR, toFlightRecorderError(error), httpCode, 0);
+            Log.e(TAG, "API request failed: error " + error + ", HTTP " + httpCode, cause);
+        }
+
+        @Override
+        public void onMalformedChunk(Throwable cause) {
+            Log.w(TAG, "Skipping malformed stream chunk", cause);
+        }
+
+        private static int toFlightRecorderError(int error) {
+            switch (error) {
+                case ChatClient.ERROR_HTTP:
+                    return FlightRecorder.ERROR_HTTP;
+                case ChatClient.ERROR_EMPTY_BODY:
+                    return FlightRecorder.ERROR_EMPTY_BODY;
+                case ChatClient.ERROR_PARSE:
+                    return FlightRecorder.ERROR_PARSE;
+                case ChatClient.ERROR_CIRCUIT_OPEN:
+                    return FlightRecorder.ERROR_CIRCUIT_OPEN;
+                case ChatClient.ERROR_TRUNCATED:
+                    return FlightRecorder.ERROR_TRUNCATED;
+                default:
+                    return FlightRecorder.ERROR_NETWORK;
             }
-            
-            Log.e(TAG, "Invalid response format: " + responseString);
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing response", e);
-            return null;
         }
     }
 
     /**
      * API回调接口
      */
-    public interface ApiCallback {
-        void onSuccess(String result);
-        void onError(String error);
+    public interface ApiCallback extends ChatClient.Callback {
+    }
+
+    /**
+     * 多候选API回调接口
+     */
+    public interface CandidatesCallback extends ChatClient.CandidatesCallback {
+    }
+
+    /**
+     * 流式API回调接口
+     */
+    public interface StreamCallback extends ApiCallback, ChatClient.StreamCallback {
     }
 }
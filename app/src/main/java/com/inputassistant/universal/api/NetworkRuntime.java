@@ -0,0 +1,227 @@
+package com.inputassistant.universal.api;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.util.Log;
+import com.inputassistant.universal.core.api.AdaptiveTimeouts;
+import com.inputassistant.universal.core.api.CachingDns;
+import com.inputassistant.universal.core.api.ChatClient;
+import com.inputassistant.universal.core.api.CircuitBreaker;
+import com.inputassistant.universal.core.api.DohDns;
+import com.inputassistant.universal.core.api.RequestCompression;
+import com.inputassistant.universal.core.api.RequestScheduler;
+import com.inputassistant.universal.core.api.TlsSessionStore;
+import com.inputassistant.universal.queue.KeystoreJournalCipher;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.brotli.BrotliInterceptor;
+import org.conscrypt.Conscrypt;
+import org.conscrypt.SSLClientSessionCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * 进程内共享的网络运行时：一个 OkHttpClient（连接池、调度线程、HTTP/2 复用、DNS缓存、持久化的TLS会话、
+ * 请求与响应压缩）以及限速、熔断和自适应超时的状态
+ *
+ * 输入法每次重建、悬浮球每次执行都复用同一组连接和线程，不再各自新建；
+ * 内存紧张时由 {@link com.inputassistant.universal.InputistApplication} 调用 {@link #onTrimMemory} 释放空闲连接
+ */
+public final class NetworkRuntime {
+    private static final String TAG = "NetworkRuntime";
+
+    // 空闲连接：输入法通常只连一两个服务，保留少量连接并延长保活，下次点击不必重新握手
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final int LOW_RAM_MAX_IDLE_CONNECTIONS = 2;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    // 调度线程空闲后的存活时间
+    private static final long DISPATCHER_THREAD_KEEP_ALIVE_SECONDS = 30;
+    // 不进入云备份：会话只对本机有意义
+    private static final String TLS_SESSIONS_FILE = "tls_sessions";
+
+    private static volatile NetworkRuntime instance;
+
+    private final ConnectionPool connectionPool;
+    private final OkHttpClient httpClient;
+    // 查询DoH解析服务用的客户端，使用系统解析，与 httpClient 共用连接池和线程
+    private final OkHttpClient bootstrapClient;
+    // 地址族竞速只连向 prepare 登记的API服务端口
+    private final CachingDns dns = new CachingDns(Dns.SYSTEM, 0);
+    private String dohUrl = "";
+    private final RequestScheduler scheduler = new RequestScheduler();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+    private final RequestCompression requestCompression = new RequestCompression();
+    private final TlsSessionStore tlsSessions;
+
+    private NetworkRuntime(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager != null && activityManager.isLowRamDevice();
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        // 同时进行的请求：多动作对比3个、分段与流水线各1个，再加离线队列和探测；低内存设备减半
+        int maxRequests = Math.max(8, Math.min(32, cores * 4)) / (lowRam ? 2 : 1);
+        int maxRequestsPerHost = Math.min(maxRequests, 8);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = new ThreadPoolExecutor(0, maxRequests,
+                DISPATCHER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "InputistHttp-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        connectionPool = new ConnectionPool(lowRam ? LOW_RAM_MAX_IDLE_CONNECTIONS : MAX_IDLE_CONNECTIONS,
+                KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+        OkHttpClient.Builder builder = ChatClient.defaultHttpClientBuilder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                // 同一服务的并发请求在一个HTTP/2连接上多路复用
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        tlsSessions = new TlsSessionStore(new File(context.getNoBackupFilesDir(), TLS_SESSIONS_FILE));
+        installTlsSessionCache(builder, tlsSessions);
+        bootstrapClient = builder.build();
+        OkHttpClient resolvingClient = bootstrapClient.newBuilder()
+                .dns(dns)
+                .build();
+        httpClient = resolvingClient.newBuilder()
+                // 服务端声明支持时压缩较长的请求体；响应接受 br 与 gzip
+                .addInterceptor(requestCompression.interceptor(resolvingClient))
+                .addInterceptor(BrotliInterceptor.INSTANCE)
+                .build();
+        Log.d(TAG, "Created: maxRequests=" + maxRequests + ", perHost=" + maxRequestsPerHost + ", lowRam=" + lowRam);
+
+        // Keystore 与文件读取较慢，放到后台；加载完成前握手得到的会话先保存在内存中
+        new Thread(() -> {
+            try {
+                tlsSessions.load(new KeystoreJournalCipher(KeystoreJournalCipher.ALIAS_TLS_SESSIONS));
+                Log.d(TAG, "Loaded " + tlsSessions.size() + " TLS sessions");
+            } catch (GeneralSecurityException | IOException e) {
+                Log.w(TAG, "TLS sessions will not be persisted", e);
+            }
+        }, "InputistTlsSessions").start();
+    }
+
+    /**
+     * 使用应用内置的 Conscrypt 建立TLS连接，并把会话保存到 {@link TlsSessionStore}：
+     * 进程被杀后第一次连接也能恢复会话（TLS 1.2；TLS 1.3 的票据只能使用一次，Conscrypt 不会保存）。
+     * 系统自带的TLS实现没有可供应用使用的会话持久化接口。
+     * 失败时保持系统默认的TLS实现
+     */
+    private static void installTlsSessionCache(OkHttpClient.Builder builder, TlsSessionStore store) {
+        try {
+            TrustManagerFactory trustManagerFactory =
+                    TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init((KeyStore) null);
+            TrustManager[] trustManagers = trustManagerFactory.getTrustManagers();
+            if (trustManagers.length != 1 || !(trustManagers[0] instanceof X509TrustManager)) {
+                Log.w(TAG, "Unexpected trust managers: " + Arrays.toString(trustManagers));
+                return;
+            }
+            X509TrustManager trustManager = (X509TrustManager) trustManagers[0];
+            SSLContext sslContext = SSLContext.getInstance("TLS", Conscrypt.newProvider());
+            sslContext.init(null, trustManagers, null);
+            Conscrypt.setClientSessionCache(sslContext, new SSLClientSessionCache() {
+                @Override
+                public byte[] getSessionData(String host, int port) {
+                    return store.get(host, port);
+                }
+
+                @Override
+                public void putSessionData(SSLSession session, byte[] sessionData) {
+                    store.put(session.getPeerHost(), session.getPeerPort(), sessionData);
+                }
+            });
+            builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager);
+        } catch (GeneralSecurityException | RuntimeException | UnsatisfiedLinkError e) {
+            Log.w(TAG, "Persistent TLS sessions unavailable", e);
+        }
+    }
+
+    public static NetworkRuntime getInstance(Context context) {
+        if (instance == null) {
+            synchronized (NetworkRuntime.class) {
+                if (instance == null) {
+                    instance = new NetworkRuntime(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 进程内存紧张或已退到后台时释放空闲连接；正在进行的请求不受影响。尚未创建时不做任何事
+     */
+    public static void onTrimMemory(int level) {
+        NetworkRuntime runtime = instance;
+        if (runtime == null) {
+            return;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            Log.d(TAG, "Evicting " + runtime.connectionPool.idleConnectionCount() + " idle connections, level="
+                    + level);
+            runtime.connectionPool.evictAll();
+        }
+    }
+
+    /**
+     * 请求前调用：按设置切换DNS解析方式，并在后台提前解析API服务的域名，
+     * 键盘弹出后的第一次请求不必等待DNS。可在任意线程调用，不会阻塞
+     * @param dohUrl DNS over HTTPS 解析服务地址，为空时使用系统解析
+     */
+    public void prepare(String baseUrl, String dohUrl) {
+        String url = dohUrl != null ? dohUrl.trim() : "";
+        synchronized (this) {
+            if (!url.equals(this.dohUrl)) {
+                this.dohUrl = url;
+                dns.setUpstream(url.isEmpty() || HttpUrl.parse(url) == null
+                        ? Dns.SYSTEM : new DohDns(bootstrapClient, url, Dns.SYSTEM));
+                Log.d(TAG, url.isEmpty() ? "Using system DNS" : "Using DoH resolver " + url);
+            }
+        }
+        HttpUrl parsed = baseUrl != null ? HttpUrl.parse(baseUrl) : null;
+        if (parsed != null) {
+            dns.prefetch(parsed.host(), parsed.port());
+        }
+    }
+
+    public OkHttpClient httpClient() {
+        return httpClient;
+    }
+
+    public RequestScheduler scheduler() {
+        return scheduler;
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public AdaptiveTimeouts timeouts() {
+        return timeouts;
+    }
+}
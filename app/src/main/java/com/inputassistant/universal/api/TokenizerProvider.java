@@ -0,0 +1,67 @@
+package com.inputassistant.universal.api;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+import androidx.annotation.WorkerThread;
+import com.inputassistant.universal.core.token.BpeTokenizer;
+import com.inputassistant.universal.core.token.BpeVocabulary;
+import com.inputassistant.universal.core.token.HeuristicTokenCounter;
+import com.inputassistant.universal.core.token.ModelLimits;
+import com.inputassistant.universal.core.token.TokenCounter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按模型提供token计数器
+ * OpenAI 模型的词表（cl100k_base、o200k_base，由 tiktoken 转换，见 assets/tokenizers/NOTICE）
+ * 位于 assets/tokenizers/<词表名>.bpe（构建时不压缩），直接从APK内存映射，不复制、不解析；
+ * 其他模型的分词方式未知，或词表无法映射时，按字符估算
+ */
+public final class TokenizerProvider {
+    private static final String TAG = "TokenizerProvider";
+    private static final String ASSET_DIR = "tokenizers/";
+
+    private static final Map<String, TokenCounter> counters = new HashMap<>();
+
+    private TokenizerProvider() {
+    }
+
+    /**
+     * 首次调用某个词表时会打开并映射资源文件，应在后台线程调用
+     */
+    @WorkerThread
+    public static synchronized TokenCounter forModel(Context context, String modelName) {
+        String vocabulary = ModelLimits.forModel(modelName).getVocabulary();
+        if (vocabulary == null) {
+            return HeuristicTokenCounter.INSTANCE;
+        }
+        TokenCounter counter = counters.get(vocabulary);
+        if (counter == null) {
+            counter = load(context.getApplicationContext(), vocabulary);
+            counters.put(vocabulary, counter);
+        }
+        return counter;
+    }
+
+    private static TokenCounter load(Context context, String vocabulary) {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(ASSET_DIR + vocabulary + ".bpe");
+             FileInputStream in = fd.createInputStream()) {
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer mapped = in.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
+            BpeVocabulary bpe = BpeVocabulary.fromBuffer(mapped);
+            Log.d(TAG, "Mapped vocabulary " + vocabulary + " (" + bpe.size() + " tokens)");
+            return new BpeTokenizer(bpe);
+        } catch (IOException e) {
+            // 词表未打包或被压缩时无法映射
+            Log.w(TAG, "Vocabulary " + vocabulary + " unavailable, using estimation");
+            return HeuristicTokenCounter.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.inputassistant.universal.floating;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import com.inputassistant.universal.api.GenericLLMApiClient;
+import com.inputassistant.universal.api.NetworkRuntime;
+import com.inputassistant.universal.core.api.ChatRequestFactory;
+import com.inputassistant.universal.core.api.GenerationParams;
+import com.inputassistant.universal.core.local.LocalTransforms;
+import com.inputassistant.universal.model.Action;
+import com.inputassistant.universal.repository.SettingsRepository;
+import okhttp3.Call;
+
+/**
+ * 剪贴板动作执行器
+ * 在不切换输入法的情况下，对剪贴板文本执行Action，并将结果写回剪贴板
+ * 所有回调都在主线程执行
+ */
+public class ClipboardActionRunner {
+    private static final String CLIP_LABEL = "Inputist";
+
+    private final Context context;
+    private final SettingsRepository settingsRepository;
+    private final GenericLLMApiClient apiClient;
+    private final ProgressListener listener;
+    private Call currentCall;
+
+    public interface ProgressListener {
+        void onStarted(Action action);
+        void onProgress(int receivedChars);
+        void onCompleted(Action action);
+        void onFailed(String error);
+    }
+
+    public ClipboardActionRunner(Context context, SettingsRepository settingsRepository, ProgressListener listener) {
+        this.context = context;
+        this.settingsRepository = settingsRepository;
+        this.apiClient = new GenericLLMApiClient(context);
+        this.listener = listener;
+    }
+
+    public boolean isRunning() {
+        return currentCall != null;
+    }
+
+    /**
+     * 执行动作；如果已有动作在执行，会先取消它
+     */
+    public void run(Action action, String inputText) {
+        if (inputText == null || inputText.trim().isEmpty()) {
+            listener.onFailed("剪贴板为空，请先复制要处理的文本");
+            return;
+        }
+        if (action.isLocal()) {
+            runLocal(action, inputText);
+            return;
+        }
+        if (!settingsRepository.isConfigured()) {
+            listener.onFailed("请先在主应用中配置API设置");
+            return;
+        }
+
+        cancel();
+        listener.onStarted(action);
+
+        String baseUrl = action.resolveBaseUrl(settingsRepository.getApiBaseUrl());
+        NetworkRuntime.getInstance(context).prepare(baseUrl, settingsRepository.getDohUrl());
+        final Call[] holder = new Call[1];
+        holder[0] = apiClient.executeStreamingRequest(
+                baseUrl,
+                settingsRepository.getApiKey(),
+                action.resolveModelName(settingsRepository.getModelName()),
+                action.getSystemPrompt(),
+                inputText,
+                GenerationParams.forAction(action, action.getMaxTokens() != null
+                        ? action.getMaxTokens() : ChatRequestFactory.DEFAULT_MAX_TOKENS),
+                new GenericLLMApiClient.StreamCallback() {
+                    @Override
+                    public void onProgress(String partialResult) {
+                        if (currentCall != holder[0]) return;
+                        listener.onProgress(partialResult.length());
+                    }
+
+                    @Override
+                    public void onSuccess(String result) {
+                        if (currentCall != holder[0]) return;
+                        currentCall = null;
+                        writeClipboard(result);
+                        listener.onCompleted(action);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        if (currentCall != holder[0]) return;
+                        currentCall = null;
+                        listener.onFailed(error);
+                    }
+                });
+        currentCall = holder[0];
+    }
+
+    /**
+     * 本地动作不需要API设置，直接在主线程转换后写回剪贴板
+     */
+    private void runLocal(Action action, String inputText) {
+        cancel();
+        listener.onStarted(action);
+        try {
+            writeClipboard(LocalTransforms.create(action.getLocalTransformId(), action.getLocalTransformArgs())
+                    .apply(inputText));
+            listener.onCompleted(action);
+        } catch (IllegalArgumentException e) {
+            listener.onFailed("本地转换无效: " + e.getMessage());
+        }
+    }
+
+    public void cancel() {
+        if (currentCall != null) {
+            currentCall.cancel();
+            currentCall = null;
+        }
+    }
+
+    private void writeClipboard(String text) {
+        ClipboardManager clipboard = (ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
+        if (clipboard != null) {
+            clipboard.setPrimaryClip(ClipData.newPlainText(CLIP_LABEL, text));
+        }
+    }
+}
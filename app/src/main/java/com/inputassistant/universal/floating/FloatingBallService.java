@@ -15,22 +15,29 @@ import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.WindowManager;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.ImageView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import com.inputassistant.universal.BuildConfig;
 import com.inputassistant.universal.MainActivity;
 import com.inputassistant.universal.R;
+import com.inputassistant.universal.model.Action;
+import com.inputassistant.universal.monitor.PerformanceMonitor;
 import com.inputassistant.universal.repository.SettingsRepository;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.List;
 
 /**
  * 悬浮球前台服务
  * 提供快速输入法切换功能，通过前台服务确保稳定运行
+ * 长按悬浮球可展开快捷动作菜单，直接处理剪贴板文本
  */
 public class FloatingBallService extends Service {
     private static final String TAG = "FloatingBallService";
@@ -40,16 +47,26 @@ public class FloatingBallService extends Service {
     private static final String CHANNEL_ID = "floating_ball_service";
     public static final String ACTION_CLOSE_FLOATING_BALL = "com.inputassistant.universal.CLOSE_FLOATING_BALL";
     
+    // 结果状态颜色的展示时长
+    private static final long RESULT_TINT_DURATION_MS = 1500;
+    
     private WindowManager windowManager;
     private View floatingView;
     private ImageView floatingBall;
+    private ProgressBar floatingBallProgress;
+    private TextView floatingBallBadge;
     private WindowManager.LayoutParams params;
     private SettingsRepository settingsRepository;
     private InputMethodManager inputMethodManager;
     private InputMethodHelper inputMethodHelper;
+    private QuickActionMenu quickActionMenu;
+    private ClipboardActionRunner clipboardActionRunner;
     
     // 悬浮球状态
     private boolean isDragging = false;
+    private boolean isLongPressTriggered = false;
+    private final Runnable longPressRunnable = this::onFloatingBallLongPress;
+    private final Runnable restoreStyleRunnable = this::setupSimpleFloatingBallStyle;
     
     @Override
     public void onCreate() {
@@ -81,6 +98,8 @@ public class FloatingBallService extends Service {
             return;
         }
         
+        PerformanceMonitor.setActiveComponent("FloatingBall");
+        
         // 初始化其他组件
         try {
             initializeComponents();
@@ -100,6 +119,8 @@ public class FloatingBallService extends Service {
         inputMethodManager = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
         inputMethodHelper = new InputMethodHelper(this);
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+        quickActionMenu = new QuickActionMenu(this, windowManager, this::runQuickAction);
+        clipboardActionRunner = new ClipboardActionRunner(this, settingsRepository, new QuickActionProgressListener());
     }
     
     /**
@@ -120,6 +141,8 @@ public class FloatingBallService extends Service {
         LayoutInflater inflater = LayoutInflater.from(this);
         floatingView = inflater.inflate(R.layout.layout_floating_ball, null);
         floatingBall = floatingView.findViewById(R.id.floating_ball);
+        floatingBallProgress = floatingView.findViewById(R.id.floating_ball_progress);
+        floatingBallBadge = floatingView.findViewById(R.id.floating_ball_badge);
         
         // 设置简化的悬浮球样式（资源优化版本）
         setupSimpleFloatingBallStyle();
@@ -287,12 +310,15 @@ public class FloatingBallService extends Service {
             public boolean onTouch(View v, MotionEvent event) {
                 switch (event.getAction()) {
                     case MotionEvent.ACTION_DOWN:
+                        PerformanceMonitor.setActiveComponent("FloatingBall");
                         downTime = System.currentTimeMillis();
                         lastX = event.getRawX();
                         lastY = event.getRawY();
                         initialX = params.x;
                         initialY = params.y;
                         isDragging = false;
+                        isLongPressTriggered = false;
+                        v.postDelayed(longPressRunnable, ViewConfiguration.getLongPressTimeout());
                         // 添加触觉反馈
                         v.performHapticFeedback(android.view.HapticFeedbackConstants.VIRTUAL_KEY);
                         return true;
@@ -303,7 +329,11 @@ public class FloatingBallService extends Service {
                         
                         // 拖拽判断条件
                         if (Math.abs(deltaX) > 10 || Math.abs(deltaY) > 10) {
+                            if (isLongPressTriggered) {
+                                return true;
+                            }
                             isDragging = true;
+                            v.removeCallbacks(longPressRunnable);
                             params.x += (int)deltaX;
                             params.y += (int)deltaY;
                             windowManager.updateViewLayout(floatingView, params);
@@ -313,6 +343,11 @@ public class FloatingBallService extends Service {
                         return true;
                         
                     case MotionEvent.ACTION_UP:
+                        v.removeCallbacks(longPressRunnable);
+                        if (isLongPressTriggered) {
+                            // 长按已展开快捷菜单，不再当作点击处理
+                            return true;
+                        }
                         long upTime = System.currentTimeMillis();
                         if (!isDragging && (upTime - downTime) < 500) {
                             // 短点击 - 切换输入法
@@ -324,12 +359,94 @@ public class FloatingBallService extends Service {
                             savePosition();
                         }
                         return true;
+                        
+                    case MotionEvent.ACTION_CANCEL:
+                        v.removeCallbacks(longPressRunnable);
+                        return true;
                 }
                 return false;
             }
         });
     }
     
+    /**
+     * 长按悬浮球 - 展开快捷动作菜单
+     */
+    private void onFloatingBallLongPress() {
+        if (isDragging) {
+            return;
+        }
+        isLongPressTriggered = true;
+        floatingView.performHapticFeedback(android.view.HapticFeedbackConstants.LONG_PRESS);
+        
+        List<Action> actions = settingsRepository.getActions();
+        if (actions.isEmpty()) {
+            showToast("暂无可用动作，请在主应用中添加动作");
+            return;
+        }
+        
+        int centerX = params.x + floatingView.getWidth() / 2;
+        int centerY = params.y + floatingView.getHeight() / 2;
+        try {
+            quickActionMenu.show(actions, centerX, centerY);
+        } catch (Exception e) {
+            if (BuildConfig.DEBUG_LOGGING) {
+                e.printStackTrace();
+            }
+            showToast("无法显示快捷菜单");
+        }
+    }
+    
+    /**
+     * 对剪贴板文本执行快捷动作
+     */
+    private void runQuickAction(Action action, String clipboardText) {
+        clipboardActionRunner.run(action, clipboardText);
+    }
+    
+    /**
+     * 在悬浮球上展示快捷动作的执行进度
+     */
+    private class QuickActionProgressListener implements ClipboardActionRunner.ProgressListener {
+        @Override
+        public void onStarted(Action action) {
+            floatingView.removeCallbacks(restoreStyleRunnable);
+            floatingBall.setAlpha(1.0f);
+            floatingBallProgress.setVisibility(View.VISIBLE);
+            floatingBallBadge.setText("…");
+            floatingBallBadge.setVisibility(View.VISIBLE);
+        }
+        
+        @Override
+        public void onProgress(int receivedChars) {
+            floatingBallBadge.setText(receivedChars > 999 ? "999+" : String.valueOf(receivedChars));
+        }
+        
+        @Override
+        public void onCompleted(Action action) {
+            showResultTint(R.color.floating_ball_green);
+            showToast("「" + action.getName() + "」结果已复制到剪贴板");
+        }
+        
+        @Override
+        public void onFailed(String error) {
+            showResultTint(R.color.floating_ball_red);
+            showToast("处理失败: " + error);
+        }
+    }
+    
+    /**
+     * 短暂显示结果颜色，随后恢复默认样式
+     */
+    private void showResultTint(int colorRes) {
+        floatingBallProgress.setVisibility(View.GONE);
+        floatingBallBadge.setVisibility(View.GONE);
+        floatingBall.setColorFilter(getResources().getColor(colorRes));
+        floatingBall.setAlpha(1.0f);
+        floatingView.removeCallbacks(restoreStyleRunnable);
+        floatingView.postDelayed(restoreStyleRunnable, RESULT_TINT_DURATION_MS);
+    }
+    
     /**
      * 点击动画效果 - 参考项目简洁风格
      */
@@ -463,6 +580,18 @@ public class FloatingBallService extends Service {
         // 停止前台服务并移除通知
         stopForeground(true);
         
+        // 取消进行中的快捷动作并关闭菜单
+        if (clipboardActionRunner != null) {
+            clipboardActionRunner.cancel();
+        }
+        if (quickActionMenu != null) {
+            quickActionMenu.dismiss();
+        }
+        if (floatingView != null) {
+            floatingView.removeCallbacks(longPressRunnable);
+            floatingView.removeCallbacks(restoreStyleRunnable);
+        }
+        
         // 清理悬浮窗
         if (floatingView != null && windowManager != null) {
             try {
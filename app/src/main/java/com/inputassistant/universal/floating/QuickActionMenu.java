@@ -0,0 +1,195 @@
+package com.inputassistant.universal.floating;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.GradientDrawable;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.TextView;
+import com.inputassistant.universal.R;
+import com.inputassistant.universal.model.Action;
+
+import java.util.List;
+
+/**
+ * 悬浮球快捷动作菜单
+ * 长按悬浮球后以环形方式展开用户的Action，选择后读取剪贴板文本交给监听器处理
+ *
+ * 注意：Android 10+ 只有获得焦点的窗口才能读取剪贴板，因此菜单窗口是可获取焦点的，
+ * 剪贴板必须在菜单显示期间（点击菜单项时）读取
+ */
+public class QuickActionMenu {
+    private static final int MAX_ITEMS = 8;
+    private static final int ITEM_MAX_CHARS = 6;
+
+    private final Context context;
+    private final WindowManager windowManager;
+    private final OnActionSelectedListener listener;
+    private RadialMenuLayout menuView;
+
+    public interface OnActionSelectedListener {
+        /**
+         * @param action 被选中的动作
+         * @param clipboardText 当前剪贴板文本，可能为空
+         */
+        void onActionSelected(Action action, String clipboardText);
+    }
+
+    public QuickActionMenu(Context context, WindowManager windowManager, OnActionSelectedListener listener) {
+        this.context = context;
+        this.windowManager = windowManager;
+        this.listener = listener;
+    }
+
+    public boolean isShowing() {
+        return menuView != null;
+    }
+
+    /**
+     * 以悬浮球中心为圆心显示菜单
+     */
+    public void show(List<Action> actions, int anchorCenterX, int anchorCenterY) {
+        dismiss();
+
+        int itemCount = Math.min(actions.size(), MAX_ITEMS);
+        // 动作越多半径越大，避免菜单项相互重叠
+        int radius = dp(64 + Math.max(0, itemCount - 4) * 10);
+        menuView = new RadialMenuLayout(context, radius);
+        menuView.setFocusableInTouchMode(true);
+
+        TextView closeItem = createItem("✕", R.color.floating_ball_blue);
+        closeItem.setOnClickListener(v -> dismiss());
+        menuView.addView(closeItem);
+
+        for (int i = 0; i < itemCount; i++) {
+            Action action = actions.get(i);
+            TextView item = createItem(abbreviate(action.getName()), R.color.primary_color);
+            item.setOnClickListener(v -> {
+                String clipboardText = readClipboardText();
+                dismiss();
+                listener.onActionSelected(action, clipboardText);
+            });
+            menuView.addView(item);
+        }
+
+        // 点击菜单外部或按返回键时关闭
+        menuView.setOnTouchListener((v, event) -> {
+            if (event.getAction() == MotionEvent.ACTION_OUTSIDE) {
+                dismiss();
+                return true;
+            }
+            return false;
+        });
+        menuView.setOnKeyListener((v, keyCode, event) -> {
+            if (keyCode == KeyEvent.KEYCODE_BACK && event.getAction() == KeyEvent.ACTION_UP) {
+                dismiss();
+                return true;
+            }
+            return false;
+        });
+
+        int unspecified = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        menuView.measure(unspecified, unspecified);
+        int menuWidth = menuView.getMeasuredWidth();
+        int menuHeight = menuView.getMeasuredHeight();
+
+        int layoutFlag;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            layoutFlag = WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY;
+        } else {
+            layoutFlag = WindowManager.LayoutParams.TYPE_SYSTEM_ALERT;
+        }
+
+        // 不设置FLAG_NOT_FOCUSABLE：菜单需要焦点才能读取剪贴板
+        WindowManager.LayoutParams menuParams = new WindowManager.LayoutParams(
+                menuWidth,
+                menuHeight,
+                layoutFlag,
+                WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL |
+                WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH,
+                PixelFormat.TRANSLUCENT
+        );
+        menuParams.gravity = Gravity.TOP | Gravity.START;
+
+        int screenWidth = context.getResources().getDisplayMetrics().widthPixels;
+        int screenHeight = context.getResources().getDisplayMetrics().heightPixels;
+        menuParams.x = Math.max(0, Math.min(anchorCenterX - menuWidth / 2, screenWidth - menuWidth));
+        menuParams.y = Math.max(0, Math.min(anchorCenterY - menuHeight / 2, screenHeight - menuHeight));
+
+        try {
+            windowManager.addView(menuView, menuParams);
+            menuView.requestFocus();
+        } catch (RuntimeException e) {
+            menuView = null;
+            throw e;
+        }
+    }
+
+    public void dismiss() {
+        if (menuView != null) {
+            try {
+                windowManager.removeView(menuView);
+            } catch (Exception ignored) {
+                // 窗口可能已被系统移除
+            }
+            menuView = null;
+        }
+    }
+
+    private String readClipboardText() {
+        try {
+            ClipboardManager clipboard = (ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
+            if (clipboard == null || !clipboard.hasPrimaryClip()) {
+                return "";
+            }
+            ClipData clip = clipboard.getPrimaryClip();
+            if (clip == null || clip.getItemCount() == 0) {
+                return "";
+            }
+            CharSequence text = clip.getItemAt(0).coerceToText(context);
+            return text != null ? text.toString() : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private TextView createItem(String text, int colorRes) {
+        TextView item = new TextView(context);
+        item.setText(text);
+        item.setTextColor(context.getResources().getColor(R.color.white));
+        item.setTextSize(TypedValue.COMPLEX_UNIT_SP, 12);
+        item.setGravity(Gravity.CENTER);
+        item.setMaxLines(2);
+
+        int size = dp(52);
+        item.setMinWidth(size);
+        item.setMinHeight(size);
+        item.setMaxWidth(size);
+        item.setPadding(dp(4), dp(4), dp(4), dp(4));
+
+        GradientDrawable background = new GradientDrawable();
+        background.setShape(GradientDrawable.OVAL);
+        background.setColor(context.getResources().getColor(colorRes));
+        item.setBackground(background);
+        item.setElevation(dp(4));
+        return item;
+    }
+
+    private String abbreviate(String name) {
+        if (TextUtils.isEmpty(name)) return "?";
+        return name.length() > ITEM_MAX_CHARS ? name.substring(0, ITEM_MAX_CHARS) : name;
+    }
+
+    private int dp(int value) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value,
+                context.getResources().getDisplayMetrics());
+    }
+}
@@ -0,0 +1,67 @@
+package com.inputassistant.universal.floating;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * 环形菜单布局
+ * 第一个子View放在圆心，其余子View按顺时针均匀分布在圆周上（从正上方开始）
+ */
+public class RadialMenuLayout extends ViewGroup {
+    private int radius;
+
+    public RadialMenuLayout(Context context, int radius) {
+        super(context);
+        this.radius = radius;
+    }
+
+    public void setRadius(int radius) {
+        this.radius = radius;
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int childSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        int maxChildWidth = 0;
+        int maxChildHeight = 0;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) continue;
+            child.measure(childSpec, childSpec);
+            maxChildWidth = Math.max(maxChildWidth, child.getMeasuredWidth());
+            maxChildHeight = Math.max(maxChildHeight, child.getMeasuredHeight());
+        }
+
+        // 圆周上的子View以自身中心对齐圆周，两侧各需要半个子View的空间
+        int width = 2 * radius + maxChildWidth + getPaddingLeft() + getPaddingRight();
+        int height = 2 * radius + maxChildHeight + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int centerX = (r - l) / 2;
+        int centerY = (b - t) / 2;
+        int count = getChildCount();
+        if (count == 0) return;
+
+        layoutCentered(getChildAt(0), centerX, centerY);
+
+        int ringCount = count - 1;
+        for (int i = 0; i < ringCount; i++) {
+            double angle = Math.toRadians(-90 + 360.0 * i / ringCount);
+            int x = centerX + (int) Math.round(radius * Math.cos(angle));
+            int y = centerY + (int) Math.round(radius * Math.sin(angle));
+            layoutCentered(getChildAt(i + 1), x, y);
+        }
+    }
+
+    private void layoutCentered(View child, int x, int y) {
+        if (child.getVisibility() == GONE) return;
+        int w = child.getMeasuredWidth();
+        int h = child.getMeasuredHeight();
+        child.layout(x - w / 2, y - h / 2, x - w / 2 + w, y - h / 2 + h);
+    }
+}
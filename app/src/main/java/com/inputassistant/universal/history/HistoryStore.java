@@ -0,0 +1,150 @@
+package com.inputassistant.universal.history;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.security.crypto.EncryptedFile;
+import androidx.security.crypto.MasterKeys;
+import com.inputassistant.universal.core.history.HistoryCodec;
+import com.inputassistant.universal.core.history.HistoryEntry;
+import com.inputassistant.universal.core.history.HistoryIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 结果历史：最近成功处理的 (动作, 输入, 结果, 耗时)，加密保存在应用私有目录的不备份部分：
+ * 文件含用户的原始输入与结果，且密钥在密钥库中，恢复到其他设备也无法解密
+ * 内存中由 {@link HistoryIndex} 建立倒排索引，输入法与主应用共用同一个实例
+ *
+ * 读写文件涉及密钥库与磁盘IO，{@link #load} 和 {@link #save} 只应在后台线程调用
+ */
+public final class HistoryStore {
+    private static final String TAG = "HistoryStore";
+    private static final String FILE_NAME = "result_history.enc";
+    // 条目较长时以总字符数为准；索引常驻输入法进程，字符上限决定内存占用
+    private static final int MAX_ENTRIES = 30_000;
+    private static final int MAX_CHARS = 4 * 1024 * 1024;
+
+    private static volatile HistoryStore instance;
+
+    private final File file;
+    // 旧版本保存在会被备份的 getFilesDir 中，加载时移过来
+    private final File legacyFile;
+    private final Context context;
+    private final HistoryCodec codec = new HistoryCodec();
+    private final HistoryIndex index = new HistoryIndex(MAX_ENTRIES, MAX_CHARS);
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    private HistoryStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.file = new File(this.context.getNoBackupFilesDir(), FILE_NAME);
+        this.legacyFile = new File(this.context.getFilesDir(), FILE_NAME);
+    }
+
+    public static HistoryStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (HistoryStore.class) {
+                if (instance == null) {
+                    instance = new HistoryStore(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 首次调用时从文件加载，之后直接返回；文件损坏时丢弃
+     */
+    public synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        // EncryptedFile 只以文件名作为关联数据，换目录后仍可解密
+        if (!file.exists() && legacyFile.exists() && !legacyFile.renameTo(file)) {
+            Log.w(TAG, "Failed to move history out of backed-up storage");
+            legacyFile.delete();
+        }
+        if (!file.exists()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(openEncrypted().openFileInput(), StandardCharsets.UTF_8)) {
+            for (HistoryEntry entry : codec.decodeAll(reader)) {
+                index.add(entry);
+            }
+        } catch (GeneralSecurityException | IOException e) {
+            Log.w(TAG, "Failed to load history, discarding", e);
+            index.clear();
+            if (!file.delete()) {
+                Log.w(TAG, "Failed to delete history file");
+            }
+        }
+    }
+
+    /**
+     * 有新记录时写回文件
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        // EncryptedFile 把文件名作为关联数据，不能先写临时文件再重命名，也不能覆盖已有文件
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete old history file");
+            return;
+        }
+        if (index.size() == 0) {
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(openEncrypted().openFileOutput(), StandardCharsets.UTF_8)) {
+            codec.encodeAll(index.entries(), writer);
+        } catch (GeneralSecurityException | IOException e) {
+            Log.w(TAG, "Failed to save history", e);
+        }
+    }
+
+    public synchronized void record(HistoryEntry entry) {
+        load();
+        if (index.add(entry)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * @param query 为空时返回最近的记录
+     * @return 从新到旧
+     */
+    public synchronized List<HistoryEntry> search(String query, int limit) {
+        load();
+        return index.size() > 0 ? index.search(query, limit) : Collections.<HistoryEntry>emptyList();
+    }
+
+    /**
+     * 清空内存中的记录并删除文件，关闭历史或用户手动清空时调用
+     */
+    public synchronized void clear() {
+        loaded = true;
+        dirty = false;
+        index.clear();
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete history file");
+        }
+        legacyFile.delete();
+    }
+
+    private EncryptedFile openEncrypted() throws GeneralSecurityException, IOException {
+        String masterKeyAlias = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
+        return new EncryptedFile.Builder(file, context, masterKeyAlias,
+                EncryptedFile.FileEncryptionScheme.AES256_GCM_HKDF_4KB).build();
+    }
+}
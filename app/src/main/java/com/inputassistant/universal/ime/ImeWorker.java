@@ -0,0 +1,61 @@
+package com.inputassistant.universal.ime;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import com.inputassistant.universal.BuildConfig;
+
+/**
+ * 输入法后台工作线程
+ *
+ * 线程约定：
+ * - 主线程：只负责生命周期回调、View的创建与更新
+ * - 工作线程（本类）：设置读取/解密、Action解析、InputConnection的读写（文本捕获与回写）、
+ *   最终文本拼接，以及API回调的处理
+ * - 工作线程向界面回传状态时，统一经由 {@link UiUpdateCoalescer} 合并到下一帧
+ *
+ * 工作线程是串行的，因此提交顺序即执行顺序，在工作线程上访问的状态无需额外加锁
+ */
+public class ImeWorker {
+    private static final String THREAD_NAME = "InputistImeWorker";
+
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    public ImeWorker() {
+        // 交互相关的后台任务，使用默认优先级而不是后台优先级，避免被降级调度
+        thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public Handler getHandler() {
+        return handler;
+    }
+
+    public void post(Runnable task) {
+        handler.post(task);
+    }
+
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == thread.getLooper();
+    }
+
+    /**
+     * 仅用于在开发阶段尽早发现线程误用，release 构建中为空操作
+     */
+    public void assertCurrentThread() {
+        if (BuildConfig.DEBUG && !isCurrentThread()) {
+            throw new IllegalStateException("Must be called on " + THREAD_NAME);
+        }
+    }
+
+    /**
+     * 丢弃未执行的任务并在当前任务结束后退出
+     */
+    public void quit() {
+        handler.removeCallbacksAndMessages(null);
+        thread.quitSafely();
+    }
+}
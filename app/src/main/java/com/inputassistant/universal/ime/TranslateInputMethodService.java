@@ -1,10 +1,15 @@
 package com.inputassistant.universal.ime;
 
+import android.content.ClipData;
+import android.content.ClipboardManager;
 import android.content.Context;
+import android.graphics.Typeface;
 import android.inputmethodservice.InputMethodService;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
@@ -13,40 +18,178 @@ import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.annotation.MainThread;
+import androidx.annotation.WorkerThread;
+import com.inputassistant.universal.BuildConfig;
 import com.inputassistant.universal.R;
 import com.inputassistant.universal.api.GenericLLMApiClient;
+import com.inputassistant.universal.api.NetworkRuntime;
+import com.inputassistant.universal.api.TokenizerProvider;
+import com.inputassistant.universal.core.api.ApiError;
+import com.inputassistant.universal.core.api.CircuitBreaker;
+import com.inputassistant.universal.core.api.GenerationParams;
+import com.inputassistant.universal.core.api.RequestLimiter;
+import com.inputassistant.universal.core.api.RequestScheduler;
+import com.inputassistant.universal.core.cache.NearDuplicateIndex;
+import com.inputassistant.universal.core.history.HistoryEntry;
+import com.inputassistant.universal.core.local.LocalTransforms;
+import com.inputassistant.universal.core.pipeline.PipelineCache;
+import com.inputassistant.universal.core.queue.PendingRequest;
+import com.inputassistant.universal.core.text.TextAssembler;
+import com.inputassistant.universal.core.text.TextDiff;
+import com.inputassistant.universal.core.token.ModelLimits;
+import com.inputassistant.universal.core.token.TokenBudget;
+import com.inputassistant.universal.core.trace.SessionEvent;
+import com.inputassistant.universal.history.HistoryStore;
 import com.inputassistant.universal.model.Action;
+import com.inputassistant.universal.monitor.FlightRecorder;
+import com.inputassistant.universal.monitor.PerformanceMonitor;
+import com.inputassistant.universal.monitor.SessionRecorder;
+import com.inputassistant.universal.monitor.Tracer;
+import com.inputassistant.universal.queue.OfflineRequestQueue;
 import com.inputassistant.universal.repository.SettingsRepository;
+import okhttp3.Call;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 输入法服务 - 核心实现
  * 提供动态Action按钮界面，执行LLM处理
+ *
+ * 线程模型见 {@link ImeWorker}：设置读取、文本捕获与回写、API回调都在工作线程执行，
+ * 界面更新经 {@link UiUpdateCoalescer} 合并后在主线程执行
  */
 public class TranslateInputMethodService extends InputMethodService {
     private static final String TAG = "TranslateInputMethodService";
     
+    // 合并界面更新所用的key
+    private static final String UI_STATUS = "status";
+    private static final String UI_ACTIONS = "actions";
+    private static final String UI_TOAST = "toast";
+    private static final String UI_CANDIDATES = "candidates";
+    private static final String UI_COMPARE = "compare";
+    private static final String UI_HISTORY = "history";
+    private static final String UI_ENDPOINT = "endpoint";
+    
+    // 同时运行多个动作时的并发请求上限，请求共用同一个连接池
+    private static final int FAN_OUT_CONCURRENCY = 3;
+    
+    // 流水线中间结果缓存的容量
+    private static final int PIPELINE_CACHE_ENTRIES = 32;
+    private static final int PIPELINE_CACHE_CHARS = 256 * 1024;
+    
+    // 相似输入索引的容量
+    private static final int NEAR_DUPLICATE_ENTRIES = 128;
+    private static final int NEAR_DUPLICATE_CHARS = 256 * 1024;
+    
+    // 历史面板：最多显示的条数；输入框文本不超过该长度时作为搜索词，否则显示最近的记录
+    private static final int HISTORY_RESULTS = 20;
+    private static final int HISTORY_QUERY_CHARS = 32;
+    // 新记录写回文件前的等待时间，连续处理时合并为一次写入
+    private static final long HISTORY_SAVE_DELAY_MS = 5000;
+    
+    // 离线队列送回的结果暂存条数，回到原输入框时写入
+    private static final int PARKED_RESULTS = 8;
+    private static final String CLIP_LABEL = "Inputist";
+    // 放弃的请求以原文记入历史时，动作名前加的标记
+    private static final String UNFINISHED_PREFIX = "未完成·";
+    
+    // 候选栏中每个候选最多显示的字符数
+    private static final int CANDIDATE_PREVIEW_CHARS = 40;
+    
+    // 回写文本时读取光标前后各多少字符
+    private static final int FIELD_READ_LIMIT = 10000;
+    
+    private ImeWorker worker;
+    private UiUpdateCoalescer uiUpdates;
+    private CircuitBreaker circuitBreaker; // 进程内共享，见 NetworkRuntime
+    
+    // 仅在工作线程访问
     private SettingsRepository settingsRepository;
     private GenericLLMApiClient apiClient;
-    private LinearLayout keyboardView;
-    private TextView tvStatus;
     private String currentInputText = "";
     private String previousInputMethod = null; // 记录上一个输入法
+    private CandidateSet candidateSet; // 最近一次多候选动作的结果
+    private FanOut fanOut; // 最近一次同时运行多个动作的结果
+    // 流水线各步骤的中间结果，修改后面的步骤时前面的步骤不必重新请求
+    private final PipelineCache pipelineCache = new PipelineCache(PIPELINE_CACHE_ENTRIES, PIPELINE_CACHE_CHARS);
+    // 最近处理过的输入与结果，用于小改后重新运行时先显示之前的结果，仅在工作线程访问
+    private final NearDuplicateIndex nearDuplicates =
+            new NearDuplicateIndex(NEAR_DUPLICATE_ENTRIES, NEAR_DUPLICATE_CHARS);
+    private HistoryStore historyStore;
+    private boolean historyVisible = false;
+    private final Runnable saveHistory = () -> historyStore.save();
+    private volatile OfflineRequestQueue offlineQueue;
+    private String currentFieldKey = ""; // 当前输入框的标识，用于把离线队列的结果送回原输入框
+    // 熔断过的端点，全部恢复后清空；熔断期间每秒刷新一次剩余时间
+    private final Set<String> trippedEndpoints = new HashSet<>();
+    private final Runnable refreshEndpointState = this::updateEndpointState;
+    private final CircuitBreaker.Listener endpointStateListener =
+            (key, state) -> worker.post(() -> {
+                trippedEndpoints.add(key);
+                updateEndpointState();
+            });
+    private boolean inputViewShown = false;
+    private final List<ParkedResult> parkedResults = new ArrayList<>(); // 未能写回原输入框的离线结果
+    
+    // 仅在主线程访问
+    private LinearLayout keyboardView;
+    private TextView tvStatus;
+    private TextView tvEndpointState;
+    private View candidateStrip;
+    private LinearLayout candidateContainer;
+    private Button btnRunSelected;
+    private LinearLayout compareContainer;
+    private View historyPanel;
+    private LinearLayout historyContainer;
+    private final List<Action> selectedActions = new ArrayList<>(); // 长按多选的动作，按选择顺序
 
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "InputMethod Service Created");
         
-        try {
-            settingsRepository = new SettingsRepository(this);
-            apiClient = new GenericLLMApiClient();
-        } catch (GeneralSecurityException | IOException e) {
-            Log.e(TAG, "Failed to initialize SettingsRepository", e);
+        worker = new ImeWorker();
+        uiUpdates = new UiUpdateCoalescer();
+        
+        // debug 构建：标注主线程组件并统计输入法窗口的帧耗时
+        PerformanceMonitor.setActiveComponent("IME");
+        PerformanceMonitor.trackFrames(getWindow().getWindow(), "输入法");
+        circuitBreaker = NetworkRuntime.getInstance(this).circuitBreaker();
+        circuitBreaker.addListener(endpointStateListener);
+        
+        // 加密存储的初始化涉及密钥库操作，放到工作线程；之后的任务都排在它后面，保证可见性
+        worker.post(() -> {
+            try {
+                settingsRepository = new SettingsRepository(this);
+                apiClient = new GenericLLMApiClient(this, worker.getHandler());
+                historyStore = HistoryStore.getInstance(this);
+                offlineQueue = new OfflineRequestQueue(this, worker.getHandler(),
+                        apiClient.withPriority(RequestScheduler.PRIORITY_BACKGROUND), settingsRepository,
+                        new OfflineQueueListener());
+                offlineQueue.start();
+            } catch (GeneralSecurityException | IOException e) {
+                Log.e(TAG, "Failed to initialize SettingsRepository", e);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        circuitBreaker.removeListener(endpointStateListener);
+        OfflineRequestQueue queue = offlineQueue;
+        if (queue != null) {
+            queue.stop();
         }
+        uiUpdates.cancelAll();
+        worker.quit();
+        super.onDestroy();
     }
 
     @Override
@@ -56,19 +199,21 @@ public class TranslateInputMethodService extends InputMethodService {
         // 加载输入法界面布局
         keyboardView = (LinearLayout) getLayoutInflater().inflate(R.layout.layout_translate_ime, null);
         tvStatus = keyboardView.findViewById(R.id.tv_ime_status);
-        
-        // 检查配置状态
-        if (settingsRepository == null || !settingsRepository.isConfigured()) {
-            showConfigurationError();
-            return keyboardView;
-        }
-        
-        // 动态创建Action按钮
-        createActionButtons();
+        tvEndpointState = keyboardView.findViewById(R.id.tv_endpoint_state);
+        candidateStrip = keyboardView.findViewById(R.id.hsv_candidates);
+        candidateContainer = keyboardView.findViewById(R.id.ll_candidates);
+        btnRunSelected = keyboardView.findViewById(R.id.btn_run_selected);
+        compareContainer = keyboardView.findViewById(R.id.ll_compare_results);
+        historyPanel = keyboardView.findViewById(R.id.sv_history);
+        historyContainer = keyboardView.findViewById(R.id.ll_history_results);
+        btnRunSelected.setOnClickListener(v -> runSelectedActions());
         
         // 设置快捷操作按钮
         setupQuickActionButtons();
         
+        // 在工作线程读取配置和Action列表，完成后再创建按钮
+        worker.post(this::loadActionsInBackground);
+        
         return keyboardView;
     }
 
@@ -78,25 +223,79 @@ public class TranslateInputMethodService extends InputMethodService {
         Log.d(TAG, "Starting input, restarting=" + restarting);
         
         // 获取当前输入框的文本
-        captureCurrentText();
+        String fieldKey = attribute != null
+                ? attribute.packageName + "/" + attribute.fieldId + "/" + attribute.inputType
+                : "";
+        worker.post(() -> {
+            currentFieldKey = fieldKey;
+            captureCurrentText();
+        });
     }
 
     @Override
     public void onStartInputView(EditorInfo info, boolean restarting) {
         super.onStartInputView(info, restarting);
         Log.d(TAG, "Starting input view");
+        PerformanceMonitor.setActiveComponent("IME");
         
-        // 记录当前的默认输入法（在切换到我们的输入法之前）
-        recordPreviousInputMethod();
+        // 记录从开始显示到下一帧绘制的耗时
+        long showStart = SystemClock.uptimeMillis();
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos ->
+                FlightRecorder.record(FlightRecorder.EVENT_IME_SHOW, 0, SystemClock.uptimeMillis() - showStart, 0));
         
-        // 每次显示时刷新文本
-        captureCurrentText();
-        updateStatusDisplay();
+        worker.post(() -> {
+            // 记录当前的默认输入法（在切换到我们的输入法之前）
+            recordPreviousInputMethod();
+            
+            // 每次显示时刷新文本；候选属于上一个输入框，不再显示
+            clearCandidates();
+            clearComparison();
+            hideHistory();
+            captureCurrentText();
+            inputViewShown = true;
+            applyParkedResults();
+            updateStatusDisplay();
+            updateEndpointState();
+            // 用户开始输入时提前解析API服务的域名
+            if (settingsRepository != null && settingsRepository.isConfigured()) {
+                NetworkRuntime.getInstance(this).prepare(settingsRepository.getApiBaseUrl(),
+                        settingsRepository.getDohUrl());
+            }
+        });
+    }
+
+    @Override
+    public void onFinishInputView(boolean finishingInput) {
+        super.onFinishInputView(finishingInput);
+        
+        // 键盘收起时立即写回未保存的历史，不等延迟写入
+        worker.post(() -> {
+            inputViewShown = false;
+            if (historyStore != null) {
+                worker.getHandler().removeCallbacks(saveHistory);
+                historyStore.save();
+            }
+        });
+    }
+
+    /**
+     * 读取配置状态与Action列表，并合并到下一帧更新按钮区域
+     */
+    @WorkerThread
+    private void loadActionsInBackground() {
+        if (settingsRepository == null || !settingsRepository.isConfigured()) {
+            uiUpdates.post(UI_ACTIONS, this::showConfigurationError);
+            return;
+        }
+        
+        List<Action> actions = settingsRepository.getActions();
+        uiUpdates.post(UI_ACTIONS, () -> createActionButtons(actions));
     }
 
     /**
      * 记录上一个输入法
      */
+    @WorkerThread
     private void recordPreviousInputMethod() {
         try {
             String defaultIme = Settings.Secure.getString(
@@ -122,6 +321,7 @@ public class TranslateInputMethodService extends InputMethodService {
     /**
      * 切换回上一个输入法
      */
+    @MainThread
     private void switchBackToPreviousInputMethod() {
         if (previousInputMethod != null) {
             try {
@@ -154,7 +354,9 @@ public class TranslateInputMethodService extends InputMethodService {
     /**
      * 捕获当前输入框的文本
      */
+    @WorkerThread
     private void captureCurrentText() {
+        worker.assertCurrentThread();
         InputConnection ic = getCurrentInputConnection();
         if (ic != null) {
             try {
@@ -163,12 +365,10 @@ public class TranslateInputMethodService extends InputMethodService {
                 // 获取光标后的文本（最多1000字符）
                 CharSequence textAfter = ic.getTextAfterCursor(1000, 0);
                 
-                StringBuilder fullText = new StringBuilder();
-                if (textBefore != null) fullText.append(textBefore);
-                if (textAfter != null) fullText.append(textAfter);
-                
-                currentInputText = fullText.toString();
-                Log.d(TAG, "Captured text: " + currentInputText);
+                currentInputText = TextAssembler.joinAroundCursor(textBefore, textAfter);
+                if (BuildConfig.DEBUG_LOGGING) {
+                    Log.d(TAG, "Captured text: " + currentInputText.length() + " chars");
+                }
             } catch (Exception e) {
                 Log.e(TAG, "Error capturing text", e);
                 currentInputText = "";
@@ -178,11 +378,13 @@ public class TranslateInputMethodService extends InputMethodService {
 
     /**
      * 设置快捷操作按钮
+     * 按键产生的InputConnection调用都在工作线程按点击顺序执行
      */
+    @MainThread
     private void setupQuickActionButtons() {
         // 删除按钮
         Button btnDelete = keyboardView.findViewById(R.id.btn_delete);
-        btnDelete.setOnClickListener(v -> {
+        btnDelete.setOnClickListener(v -> worker.post(() -> {
             InputConnection ic = getCurrentInputConnection();
             if (ic != null) {
                 // 删除光标前的一个字符
@@ -198,29 +400,33 @@ public class TranslateInputMethodService extends InputMethodService {
                 captureCurrentText();
                 updateStatusDisplay();
             }
-        });
+        }));
 
         // 空格按钮
         Button btnSpace = keyboardView.findViewById(R.id.btn_space);
-        btnSpace.setOnClickListener(v -> {
+        btnSpace.setOnClickListener(v -> worker.post(() -> {
             InputConnection ic = getCurrentInputConnection();
             if (ic != null) {
                 ic.commitText(" ", 1);
                 captureCurrentText();
                 updateStatusDisplay();
             }
-        });
+        }));
 
         // 换行按钮
         Button btnEnter = keyboardView.findViewById(R.id.btn_enter);
-        btnEnter.setOnClickListener(v -> {
+        btnEnter.setOnClickListener(v -> worker.post(() -> {
             InputConnection ic = getCurrentInputConnection();
             if (ic != null) {
                 ic.commitText("\n", 1);
                 captureCurrentText();
                 updateStatusDisplay();
             }
-        });
+        }));
+
+        // 历史按钮：显示或收起历史面板
+        Button btnHistory = keyboardView.findViewById(R.id.btn_history);
+        btnHistory.setOnClickListener(v -> worker.post(this::toggleHistory));
 
         // 输入法切换按钮
         Button btnSwitchIme = keyboardView.findViewById(R.id.btn_switch_ime);
@@ -230,6 +436,7 @@ public class TranslateInputMethodService extends InputMethodService {
     /**
      * 显示输入法选择器
      */
+    @MainThread
     private void showInputMethodPicker() {
         try {
             InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
@@ -246,11 +453,14 @@ public class TranslateInputMethodService extends InputMethodService {
     /**
      * 动态创建Action按钮
      */
-    private void createActionButtons() {
+    @MainThread
+    private void createActionButtons(List<Action> actions) {
         LinearLayout buttonsContainer = keyboardView.findViewById(R.id.ll_action_buttons);
         buttonsContainer.removeAllViews(); // 清除现有按钮
         
-        List<Action> actions = settingsRepository.getActions();
+        // 动作列表可能已变化，清空多选
+        selectedActions.clear();
+        updateRunSelectedButton();
         
         if (actions.isEmpty()) {
             // 没有可用的Action
@@ -272,10 +482,25 @@ public class TranslateInputMethodService extends InputMethodService {
     /**
      * 创建单个Action按钮
      */
+    @MainThread
     private Button createActionButton(Action action) {
         Button button = new Button(this);
         button.setText(action.getName());
-        button.setOnClickListener(v -> executeAction(action));
+        button.setOnClickListener(v -> {
+            long actionStart = Tracer.beginAsync(Tracer.STAGE_ACTION);
+            worker.post(() -> executeAction(action, actionStart));
+        });
+        // 长按切换多选
+        button.setOnLongClickListener(v -> {
+            if (selectedActions.remove(action)) {
+                button.setText(action.getName());
+            } else {
+                selectedActions.add(action);
+                button.setText("✓ " + action.getName());
+            }
+            updateRunSelectedButton();
+            return true;
+        });
         
         // 设置按钮样式
         LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
@@ -288,72 +513,1227 @@ public class TranslateInputMethodService extends InputMethodService {
         return button;
     }
 
+    @MainThread
+    private void updateRunSelectedButton() {
+        if (selectedActions.size() >= 2) {
+            btnRunSelected.setText("同时运行 " + selectedActions.size() + " 个动作并对比");
+            btnRunSelected.setVisibility(View.VISIBLE);
+        } else {
+            btnRunSelected.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * 同时运行多选的动作，运行后清除选择
+     */
+    @MainThread
+    private void runSelectedActions() {
+        List<Action> actions = new ArrayList<>(selectedActions);
+        selectedActions.clear();
+        LinearLayout buttonsContainer = keyboardView.findViewById(R.id.ll_action_buttons);
+        for (int i = 0; i < buttonsContainer.getChildCount(); i++) {
+            View child = buttonsContainer.getChildAt(i);
+            if (child instanceof Button) {
+                Button button = (Button) child;
+                CharSequence text = button.getText();
+                if (text != null && text.toString().startsWith("✓ ")) {
+                    button.setText(text.subSequence(2, text.length()));
+                }
+            }
+        }
+        updateRunSelectedButton();
+        worker.post(() -> executeFanOut(actions));
+    }
+
+    /**
+     * 对同一段文本同时运行多个动作，结果按完成顺序显示在对比面板中，不自动写入
+     * 请求共用同一个OkHttpClient（连接池与HTTP/2复用），并发数受 {@link #FAN_OUT_CONCURRENCY} 限制，
+     * 总耗时约等于最慢的动作
+     */
+    @WorkerThread
+    private void executeFanOut(List<Action> actions) {
+        worker.assertCurrentThread();
+        if (settingsRepository == null || apiClient == null) {
+            return;
+        }
+        clearCandidates();
+        clearComparison();
+        captureCurrentText();
+        if (TextUtils.isEmpty(currentInputText)) {
+            showToast("输入框为空，无法处理");
+            return;
+        }
+        
+        long startMs = SystemClock.elapsedRealtime();
+        String baseUrlDefault = settingsRepository.getApiBaseUrl();
+        String apiKey = settingsRepository.getApiKey();
+        String modelDefault = settingsRepository.getModelName();
+        boolean recordSession = settingsRepository.isSessionRecordingEnabled();
+        long tapGapMs = recordSession ? SessionRecorder.gapSinceLastTap(startMs) : 0;
+        
+        FanOut run = new FanOut(currentInputText, settingsRepository.isReplaceMode(), actions);
+        fanOut = run;
+        showComparison(run);
+        setStatus("正在同时运行 " + actions.size() + " 个动作...");
+        
+        RequestLimiter limiter = new RequestLimiter(FAN_OUT_CONCURRENCY);
+        for (int i = 0; i < actions.size(); i++) {
+            int index = i;
+            Action action = actions.get(i);
+            if (action.isPipeline()) {
+                onFanOutResult(run, index, null, "流水线动作请单独运行", startMs, tapGapMs, recordSession);
+                continue;
+            }
+            if (action.isLocal()) {
+                String result = null;
+                String error = null;
+                try {
+                    result = applyLocalTransform(action, run.originalText);
+                } catch (IllegalArgumentException e) {
+                    error = "本地转换无效: " + e.getMessage();
+                }
+                onFanOutResult(run, index, result, error, startMs, tapGapMs, recordSession);
+                continue;
+            }
+            String baseUrl = action.resolveBaseUrl(baseUrlDefault);
+            String modelName = action.resolveModelName(modelDefault);
+            TokenBudget.Plan plan = TokenBudget.plan(
+                    TokenizerProvider.forModel(this, modelName),
+                    ModelLimits.forModel(modelName),
+                    action.getSystemPrompt(),
+                    run.originalText,
+                    TokenBudget.profileFor(action),
+                    action.getMaxTokens() != null ? action.getMaxTokens() : 0);
+            if (plan.promptTooLong || plan.chunks.size() > 1) {
+                // 需要分段的长文本只在单独运行时处理
+                onFanOutResult(run, index, null, "输入过长，请单独运行此动作", startMs, tapGapMs, recordSession);
+                continue;
+            }
+            limiter.submit(() -> apiClient.executeRequest(baseUrl, apiKey, modelName, action.getSystemPrompt(),
+                    plan.chunks.get(0), GenerationParams.forAction(action, plan.maxTokens),
+                    new GenericLLMApiClient.ApiCallback() {
+                        @Override
+                        public void onSuccess(String result) {
+                            limiter.release();
+                            onFanOutResult(run, index, result, null, startMs, tapGapMs, recordSession);
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            limiter.release();
+                            onFanOutResult(run, index, null, error, startMs, tapGapMs, recordSession);
+                        }
+                    }));
+        }
+    }
+
+    @WorkerThread
+    private void onFanOutResult(FanOut run, int index, String result, String error,
+                                long startMs, long tapGapMs, boolean recordSession) {
+        long elapsedMs = SystemClock.elapsedRealtime() - startMs;
+        run.results[index] = result;
+        run.errors[index] = error;
+        run.remaining--;
+        Action action = run.actions.get(index);
+        if (recordSession) {
+            recordSessionEvent(action, index == 0 ? tapGapMs : 0, startMs, run.originalText.length(),
+                    result != null ? result.length() : 0, result != null);
+        }
+        if (fanOut != run) {
+            // 已开始新的操作，结果不再显示
+            return;
+        }
+        showComparison(run);
+        if (run.remaining == 0) {
+            FlightRecorder.record(FlightRecorder.EVENT_ACTION, 0, elapsedMs, run.originalText.length());
+            setStatus("全部完成，用时 " + elapsedMs + "ms，点击结果应用");
+        }
+    }
+
+    /**
+     * 应用对比面板中的某个结果；再次选择其他结果时以最小替换切换
+     */
+    @WorkerThread
+    private void applyFanOutResult(int index) {
+        worker.assertCurrentThread();
+        FanOut run = fanOut;
+        if (run == null || run.results[index] == null || index == run.applied) {
+            return;
+        }
+        String fieldText = run.appliedFieldText != null
+                ? replaceAppliedText(run.appliedFieldText, run.originalText, run.replaceMode, run.results[index])
+                : null;
+        if (fieldText == null) {
+            fieldText = updateInputText(run.originalText, run.results[index], run.replaceMode);
+        }
+        run.appliedFieldText = fieldText;
+        run.applied = index;
+        showComparison(run);
+    }
+
+    @WorkerThread
+    private void clearComparison() {
+        if (fanOut != null) {
+            fanOut = null;
+            uiUpdates.post(UI_COMPARE, () -> {
+                if (compareContainer != null) {
+                    compareContainer.setVisibility(View.GONE);
+                    compareContainer.removeAllViews();
+                }
+            });
+        }
+    }
+
+    /**
+     * 刷新对比面板，同一帧内多个结果到达时只重建一次
+     */
+    @WorkerThread
+    private void showComparison(FanOut run) {
+        List<String> names = new ArrayList<>();
+        for (Action action : run.actions) {
+            names.add(action.getName());
+        }
+        String[] results = run.results.clone();
+        String[] errors = run.errors.clone();
+        int applied = run.applied;
+        uiUpdates.post(UI_COMPARE, () -> {
+            if (compareContainer == null) {
+                return;
+            }
+            compareContainer.removeAllViews();
+            for (int i = 0; i < names.size(); i++) {
+                compareContainer.addView(createComparisonRow(names.get(i), results[i], errors[i], i, i == applied));
+            }
+            compareContainer.setVisibility(View.VISIBLE);
+        });
+    }
+
+    @MainThread
+    private TextView createComparisonRow(String name, String result, String error, int index, boolean applied) {
+        TextView row = new TextView(this);
+        String body;
+        if (result != null) {
+            body = result.replace('\n', ' ');
+        } else if (error != null) {
+            body = "❌ " + error;
+        } else {
+            body = "处理中...";
+        }
+        row.setText((applied ? "✓ " : "") + name + "：" + body);
+        row.setMaxLines(3);
+        row.setEllipsize(TextUtils.TruncateAt.END);
+        row.setTextSize(13);
+        row.setPadding(24, 12, 24, 12);
+        row.setBackgroundResource(R.drawable.status_background);
+        row.setTextColor(getResources().getColor(applied ? R.color.primary_color : R.color.ime_text_color, null));
+        if (result != null) {
+            row.setOnClickListener(v -> worker.post(() -> applyFanOutResult(index)));
+        }
+        
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
+        );
+        params.setMargins(0, 0, 0, 8);
+        row.setLayoutParams(params);
+        return row;
+    }
+
     /**
      * 执行Action
+     * @param actionStart 点击时刻，由 {@link Tracer#beginAsync} 返回
      */
-    private void executeAction(Action action) {
+    @WorkerThread
+    private void executeAction(Action action, long actionStart) {
+        worker.assertCurrentThread();
         Log.d(TAG, "Executing action: " + action.getName());
+        long actionStartMs = SystemClock.elapsedRealtime();
+        
+        // 新的动作开始，之前的候选、对比结果和历史面板不再适用
+        clearCandidates();
+        clearComparison();
+        hideHistory();
         
         // 重新捕获当前文本
+        long captureStart = Tracer.begin(Tracer.STAGE_CAPTURE);
         captureCurrentText();
+        Tracer.end(Tracer.STAGE_CAPTURE, captureStart);
         
         if (TextUtils.isEmpty(currentInputText)) {
             showToast("输入框为空，无法处理");
+            Tracer.endAsync(Tracer.STAGE_ACTION, actionStart);
             return;
         }
         
         // 更新状态显示
-        tvStatus.setText("正在处理: " + action.getName() + "...");
+        setStatus("正在处理: " + action.getName() + "...");
         
         // 调用API
-        String baseUrl = settingsRepository.getApiBaseUrl();
+        long settingsStart = Tracer.begin(Tracer.STAGE_SETTINGS);
+        // 动作可以指定自己的模型和端点，未指定时使用全局设置
+        String globalBaseUrl = settingsRepository.getApiBaseUrl();
+        String globalModelName = settingsRepository.getModelName();
+        String baseUrl = action.resolveBaseUrl(globalBaseUrl);
         String apiKey = settingsRepository.getApiKey();
-        String modelName = settingsRepository.getModelName();
+        String modelName = action.resolveModelName(globalModelName);
+        boolean recordSession = settingsRepository.isSessionRecordingEnabled();
+        Tracer.end(Tracer.STAGE_SETTINGS, settingsStart);
+        
+        // 在发出请求时取值：完成时 currentInputText 可能已是之后点击或同时运行的其他动作的输入
+        int inputChars = currentInputText.length();
+        String inputText = currentInputText;
+        boolean recordHistory = settingsRepository.isHistoryEnabled();
+        long tapGapMs = recordSession ? SessionRecorder.gapSinceLastTap(actionStartMs) : 0;
+        
+        // 动作结束时的统一收尾（状态、耗时、轨迹），文本由各执行路径自行写入
+        GenericLLMApiClient.ApiCallback completion = new GenericLLMApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String result) {
+                if (BuildConfig.DEBUG_LOGGING) {
+                    Log.d(TAG, "API call successful: " + result.length() + " chars");
+                }
+                setStatus("处理完成");
+                Tracer.endAsync(Tracer.STAGE_ACTION, actionStart);
+                FlightRecorder.record(FlightRecorder.EVENT_ACTION, 0,
+                        SystemClock.elapsedRealtime() - actionStartMs, inputChars);
+                if (recordSession) {
+                    recordSessionEvent(action, tapGapMs, actionStartMs, inputChars, result.length(), true);
+                }
+                if (recordHistory) {
+                    recordHistory(action.getName(), inputText, result, SystemClock.elapsedRealtime() - actionStartMs);
+                }
+                
+                // 移除成功提示，让处理过程更简洁
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "API call failed: " + error);
+                showToast("处理失败: " + error);
+                setStatus("处理失败");
+                Tracer.endAsync(Tracer.STAGE_ACTION, actionStart);
+                FlightRecorder.record(FlightRecorder.EVENT_ACTION, 1,
+                        SystemClock.elapsedRealtime() - actionStartMs, inputChars);
+                if (recordSession) {
+                    recordSessionEvent(action, tapGapMs, actionStartMs, inputChars, 0, false);
+                }
+            }
+        };
+        
+        // 流水线动作：各步骤在内存中依次传递结果，只把最后的结果写回输入框
+        if (action.isPipeline()) {
+            List<Action> steps = resolvePipelineSteps(action);
+            if (steps == null) {
+                completion.onError("流水线中的动作已被删除或无效，请重新编辑");
+                return;
+            }
+            PipelineRun run = new PipelineRun(steps, apiKey, globalBaseUrl, globalModelName, currentInputText);
+            runPipelineStage(run, 0, currentInputText, completion);
+            return;
+        }
+        
+        // 本地动作：直接在工作线程上转换，不经过网络；转换是对原文的改写，总是替换原文
+        if (action.isLocal()) {
+            String result;
+            try {
+                result = applyLocalTransform(action, currentInputText);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Local transform failed", e);
+                completion.onError("本地转换无效: " + e.getMessage());
+                return;
+            }
+            updateInputText(currentInputText, result, true);
+            completion.onSuccess(result);
+            return;
+        }
         
-        apiClient.executeRequest(
+        // 发送前按模型的上下文窗口检查输入，并根据输入长度和动作类型确定回答的token上限
+        long budgetStart = Tracer.begin(Tracer.STAGE_BUDGET);
+        TokenBudget.Plan plan = TokenBudget.plan(
+                TokenizerProvider.forModel(this, modelName),
+                ModelLimits.forModel(modelName),
+                action.getSystemPrompt(),
+                currentInputText,
+                TokenBudget.profileFor(action),
+                action.getMaxTokens() != null ? action.getMaxTokens() : 0);
+        Tracer.end(Tracer.STAGE_BUDGET, budgetStart);
+        
+        if (plan.promptTooLong) {
+            showToast("动作指令过长，超出模型的上下文窗口");
+            setStatus("处理失败");
+            Tracer.endAsync(Tracer.STAGE_ACTION, actionStart);
+            return;
+        }
+        if (plan.trimmed) {
+            showToast("输入过长，已截断到模型的上下文窗口内");
+        } else if (plan.chunks.size() > 1) {
+            setStatus("正在处理: " + action.getName() + "（分" + plan.chunks.size() + "段）...");
+        }
+        
+        GenerationParams params = GenerationParams.forAction(action, plan.maxTokens);
+        // 离线时单段请求直接加入离线队列，联网后自动发送
+        OfflineRequestQueue queue = offlineQueue;
+        if (plan.chunks.size() == 1 && queue != null && queue.isAvailable() && !queue.isOnline()) {
+            if (enqueueOffline(action, baseUrl, modelName, params, plan.chunks.get(0), currentInputText,
+                    settingsRepository.isReplaceMode(), null)) {
+                finishQueued(actionStart, null);
+                return;
+            }
+        }
+        // 分段处理时每段都要等完整结果，草稿模式只用于单段输入
+        if (action.hasDraftModel() && plan.chunks.size() == 1) {
+            executeDraftAndRefine(baseUrl, apiKey, action.getDraftModelName().trim(), modelName,
+                    action.getSystemPrompt(), params, plan.chunks.get(0), completion);
+            return;
+        }
+        if (params.getCandidateCount() > 1 && plan.chunks.size() == 1) {
+            executeCandidates(baseUrl, apiKey, modelName, action.getSystemPrompt(), params,
+                    plan.chunks.get(0), completion);
+            return;
+        }
+        
+        // 与最近处理过的相似输入复用结果：先写入之前的结果，新结果到达后以最小替换更新
+        // 键只包含动作配置，max_tokens 随输入长度变化，不计入
+        String originalText = currentInputText;
+        boolean replaceMode = settingsRepository.isReplaceMode();
+        String nearDuplicateKey = PipelineCache.key(baseUrl, modelName, action.getSystemPrompt(),
+                params.withMaxTokens(0), "");
+        NearDuplicateIndex.Match nearDuplicate = settingsRepository.isNearDuplicateEnabled()
+                ? nearDuplicates.find(nearDuplicateKey, originalText,
+                        settingsRepository.getNearDuplicateThresholdPercent() / 100.0)
+                : null;
+        String nearDuplicateFieldText = nearDuplicate != null
+                ? updateInputText(originalText, nearDuplicate.result, replaceMode)
+                : null;
+        if (nearDuplicateFieldText != null) {
+            setStatus("已显示相似输入的结果（" + Math.round(nearDuplicate.similarity() * 100) + "%），正在更新...");
+        }
+        long previewShownMs = SystemClock.elapsedRealtime();
+        
+        // 已先显示相似输入的结果时，新请求只是改进，让位于其他点击
+        executeChunks(
+                nearDuplicateFieldText != null
+                        ? apiClient.withPriority(RequestScheduler.PRIORITY_REFINEMENT) : apiClient,
                 baseUrl,
                 apiKey,
                 modelName,
                 action.getSystemPrompt(),
-                currentInputText,
+                params,
+                plan,
+                new ArrayList<>(),
+                // 回调在工作线程执行
                 new GenericLLMApiClient.ApiCallback() {
                     @Override
                     public void onSuccess(String result) {
-                        Log.d(TAG, "API call successful: " + result);
-                        updateInputText(result);
-                        tvStatus.setText("处理完成");
-                        
-                        // 移除成功提示，让处理过程更简洁
+                        nearDuplicates.put(nearDuplicateKey, originalText, result);
+                        if (nearDuplicateFieldText == null) {
+                            updateInputText(originalText, result, replaceMode);
+                        } else {
+                            // 用户从显示之前的结果起就可以继续，省下的是等待新结果的时间
+                            FlightRecorder.record(FlightRecorder.EVENT_CACHE_HIT, FlightRecorder.CACHE_NEAR_DUPLICATE,
+                                    SystemClock.elapsedRealtime() - previewShownMs, nearDuplicate.result.length());
+                            if (replaceAppliedText(nearDuplicateFieldText, originalText, replaceMode,
+                                    result) == null) {
+                                showToast("输入框已被修改，保留当前内容");
+                            }
+                        }
+                        completion.onSuccess(result);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        if (nearDuplicateFieldText != null) {
+                            // 输入框中保留相似输入的结果，但它不是这次输入的结果：按失败收尾，
+                            // 不记入历史，也不作为成功写入会话轨迹
+                            Log.w(TAG, "Refresh failed, keeping near-duplicate result: " + error);
+                            FlightRecorder.record(FlightRecorder.EVENT_CACHE_HIT, FlightRecorder.CACHE_NEAR_DUPLICATE,
+                                    SystemClock.elapsedRealtime() - previewShownMs, nearDuplicate.result.length());
+                            completion.onError("更新失败，已保留相似输入的结果（" + error + "）");
+                        } else {
+                            completion.onError(error);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(ApiError error) {
+                        // 网络错误或限流：单段请求转入离线队列稍后重试，不丢失这次处理
+                        if (nearDuplicateFieldText == null && plan.chunks.size() == 1 && error.isRetryable()
+                                && enqueueOffline(action, baseUrl, modelName, params, plan.chunks.get(0),
+                                        originalText, replaceMode, error)) {
+                            finishQueued(actionStart, error);
+                        } else {
+                            onError(error.message);
+                        }
+                    }
+                }
+        );
+    }
+
+    /**
+     * 同时请求草稿模型和正式模型（先草稿后优化）
+     * - 草稿先到：立即写入输入框；正式结果到达后，若输入框未被改动，以最小替换改成正式结果
+     * - 正式结果先到：取消草稿请求，直接写入正式结果
+     * - 草稿失败时继续等待正式结果；正式结果失败但草稿已写入时保留草稿
+     * 两个请求的回调都在工作线程执行，状态无需同步
+     */
+    @WorkerThread
+    private void executeDraftAndRefine(String baseUrl, String apiKey, String draftModel, String qualityModel,
+                                       String systemPrompt, GenerationParams params, String input,
+                                       GenericLLMApiClient.ApiCallback completion) {
+        DraftRace race = new DraftRace(currentInputText, settingsRepository.isReplaceMode());
+        
+        race.draftCall = apiClient.executeRequest(baseUrl, apiKey, draftModel, systemPrompt, input, params,
+                new GenericLLMApiClient.ApiCallback() {
+                    @Override
+                    public void onSuccess(String result) {
+                        if (race.qualityDone && race.qualityError == null) {
+                            return;
+                        }
+                        race.draftText = result;
+                        race.expectedFieldText = updateInputText(race.originalText, result, race.replaceMode);
+                        if (race.qualityError != null) {
+                            // 正式模型已失败，草稿就是最终结果
+                            completion.onSuccess(result);
+                        } else {
+                            setStatus("已显示草稿，正在优化...");
+                        }
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.w(TAG, "Draft request failed: " + error);
+                        race.draftFailed = true;
+                        if (race.qualityError != null) {
+                            completion.onError(race.qualityError);
+                        }
+                    }
+                });
+        
+        // 草稿先进入限速队列并以交互优先级发出；正式结果只是改进，让位于其他点击
+        apiClient.withPriority(RequestScheduler.PRIORITY_REFINEMENT).executeRequest(
+                baseUrl, apiKey, qualityModel, systemPrompt, input, params,
+                new GenericLLMApiClient.ApiCallback() {
+                    @Override
+                    public void onSuccess(String result) {
+                        race.qualityDone = true;
+                        if (race.draftText == null) {
+                            if (race.draftCall != null) {
+                                race.draftCall.cancel();
+                            }
+                            updateInputText(race.originalText, result, race.replaceMode);
+                        } else if (race.expectedFieldText == null) {
+                            // 草稿没能写入，按普通方式整段写入
+                            updateInputText(race.originalText, result, race.replaceMode);
+                        } else if (replaceAppliedText(race.expectedFieldText, race.originalText,
+                                race.replaceMode, result) == null) {
+                            showToast("输入框已被修改，保留当前内容");
+                        }
+                        completion.onSuccess(result);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        race.qualityDone = true;
+                        if (race.draftText != null) {
+                            // 草稿已经可用，只提示优化失败
+                            Log.w(TAG, "Refinement failed, keeping draft: " + error);
+                            showToast("优化失败，已保留草稿");
+                            completion.onSuccess(race.draftText);
+                        } else if (race.draftFailed) {
+                            completion.onError(error);
+                        } else {
+                            // 草稿请求仍在进行，交给它收尾
+                            race.qualityError = error;
+                        }
+                    }
+                });
+        
+    }
+
+    /**
+     * 把输入框中之前写入的结果以最小替换改为新结果（草稿→正式结果、切换候选）
+     * @param expectedFieldText 之前写入后输入框的完整文本
+     * @return 新的输入框文本；输入框自上次写入后被改动过或写入失败时返回 null，此时不做任何修改
+     */
+    @WorkerThread
+    private String replaceAppliedText(String expectedFieldText, String originalText, boolean replaceMode,
+                                      String newResult) {
+        InputConnection ic = getCurrentInputConnection();
+        if (ic == null) {
+            return null;
+        }
+        long applyStart = Tracer.begin(Tracer.STAGE_APPLY);
+        try {
+            ic.beginBatchEdit();
+            try {
+                String fieldText = readFieldText(ic);
+                if (!expectedFieldText.equals(fieldText)) {
+                    return null;
+                }
+                String finalText = TextAssembler.assemble(originalText, newResult, replaceMode);
+                TextDiff.Edit edit = TextDiff.between(fieldText, finalText);
+                if (!edit.isEmpty()) {
+                    ic.setSelection(edit.start, edit.end);
+                    ic.commitText(edit.replacement, 1);
+                    // 与整段写入时一致，光标放在末尾
+                    ic.setSelection(finalText.length(), finalText.length());
+                }
+                if (BuildConfig.DEBUG_LOGGING) {
+                    Log.d(TAG, "Replaced " + (edit.end - edit.start) + " chars with " + edit.replacement.length());
+                }
+                return finalText;
+            } finally {
+                ic.endBatchEdit();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error replacing applied text", e);
+            FlightRecorder.record(FlightRecorder.EVENT_ERROR, FlightRecorder.ERROR_APPLY, 0, 0);
+            return null;
+        } finally {
+            Tracer.end(Tracer.STAGE_APPLY, applyStart);
+        }
+    }
+
+    /**
+     * 读取输入框的完整文本（与写入时使用相同的读取范围）
+     */
+    @WorkerThread
+    private static String readFieldText(InputConnection ic) {
+        return TextAssembler.joinAroundCursor(
+                ic.getTextBeforeCursor(FIELD_READ_LIMIT, 0), ic.getTextAfterCursor(FIELD_READ_LIMIT, 0));
+    }
+
+    /**
+     * 一次“先草稿后优化”执行的状态，仅在工作线程访问
+     */
+    private static final class DraftRace {
+        final String originalText;
+        final boolean replaceMode;
+        Call draftCall;
+        String draftText;
+        // 写入草稿后输入框的完整文本，用于判断用户是否改动过
+        String expectedFieldText;
+        boolean draftFailed;
+        boolean qualityDone;
+        String qualityError;
+
+        DraftRace(String originalText, boolean replaceMode) {
+            this.originalText = originalText;
+            this.replaceMode = replaceMode;
+        }
+    }
+
+    /**
+     * 一次流水线执行的参数，仅在工作线程访问
+     */
+    private static final class PipelineRun {
+        final List<Action> steps;
+        final String apiKey;
+        final String globalBaseUrl;
+        final String globalModelName;
+        final String originalText;
+
+        PipelineRun(List<Action> steps, String apiKey, String globalBaseUrl, String globalModelName,
+                    String originalText) {
+            this.steps = steps;
+            this.apiKey = apiKey;
+            this.globalBaseUrl = globalBaseUrl;
+            this.globalModelName = globalModelName;
+            this.originalText = originalText;
+        }
+    }
+
+    /**
+     * 一次同时运行多个动作的状态，仅在工作线程访问
+     */
+    private static final class FanOut {
+        final String originalText;
+        final boolean replaceMode;
+        final List<Action> actions;
+        final String[] results;
+        final String[] errors;
+        int remaining;
+        int applied = -1;
+        // 写入所选结果后输入框的完整文本
+        String appliedFieldText;
+
+        FanOut(String originalText, boolean replaceMode, List<Action> actions) {
+            this.originalText = originalText;
+            this.replaceMode = replaceMode;
+            this.actions = actions;
+            this.results = new String[actions.size()];
+            this.errors = new String[actions.size()];
+            this.remaining = actions.size();
+        }
+    }
+
+    /**
+     * 多候选动作的结果，仅在工作线程访问
+     */
+    private static final class CandidateSet {
+        final String originalText;
+        final boolean replaceMode;
+        final List<String> candidates;
+        int selected;
+        // 写入当前候选后输入框的完整文本，写入失败时为 null
+        String appliedFieldText;
+
+        CandidateSet(String originalText, boolean replaceMode, List<String> candidates) {
+            this.originalText = originalText;
+            this.replaceMode = replaceMode;
+            this.candidates = candidates;
+        }
+    }
+
+    /**
+     * 离线队列送回、但没能写入原输入框的结果，仅在工作线程访问
+     */
+    private static final class ParkedResult {
+        final PendingRequest request;
+        final String result;
+
+        ParkedResult(PendingRequest request, String result) {
+            this.request = request;
+            this.result = result;
+        }
+    }
+
+    /**
+     * 一次请求多个候选：先写入第一个，其余在候选栏中展示，点击后替换
+     */
+    @WorkerThread
+    private void executeCandidates(String baseUrl, String apiKey, String modelName, String systemPrompt,
+                                   GenerationParams params, String input,
+                                   GenericLLMApiClient.ApiCallback completion) {
+        String originalText = currentInputText;
+        boolean replaceMode = settingsRepository.isReplaceMode();
+        apiClient.executeCandidatesRequest(baseUrl, apiKey, modelName, systemPrompt, input, params,
+                new GenericLLMApiClient.CandidatesCallback() {
+                    @Override
+                    public void onCandidates(List<String> candidates) {
+                        CandidateSet set = new CandidateSet(originalText, replaceMode, candidates);
+                        set.appliedFieldText = updateInputText(originalText, candidates.get(0), replaceMode);
+                        candidateSet = set;
+                        if (candidates.size() > 1) {
+                            showCandidates(candidates, 0);
+                        }
+                        completion.onSuccess(candidates.get(0));
                     }
 
                     @Override
                     public void onError(String error) {
-                        Log.e(TAG, "API call failed: " + error);
-                        showToast("处理失败: " + error);
-                        tvStatus.setText("处理失败");
+                        completion.onError(error);
                     }
+                });
+    }
+
+    /**
+     * 应用候选栏中选中的候选；输入框未改动时只替换差异部分
+     */
+    @WorkerThread
+    private void selectCandidate(int index) {
+        CandidateSet set = candidateSet;
+        if (set == null || index < 0 || index >= set.candidates.size() || index == set.selected) {
+            return;
+        }
+        String candidate = set.candidates.get(index);
+        String fieldText = set.appliedFieldText != null
+                ? replaceAppliedText(set.appliedFieldText, set.originalText, set.replaceMode, candidate)
+                : null;
+        if (fieldText == null) {
+            // 输入框已被改动，选择候选是明确的操作，按普通方式整段写入
+            fieldText = updateInputText(set.originalText, candidate, set.replaceMode);
+        }
+        set.appliedFieldText = fieldText;
+        set.selected = index;
+        showCandidates(set.candidates, index);
+    }
+
+    @WorkerThread
+    private void clearCandidates() {
+        if (candidateSet != null) {
+            candidateSet = null;
+            uiUpdates.post(UI_CANDIDATES, () -> {
+                if (candidateStrip != null) {
+                    candidateStrip.setVisibility(View.GONE);
+                    candidateContainer.removeAllViews();
                 }
+            });
+        }
+    }
+
+    /**
+     * 在候选栏中显示候选，选中的一项高亮
+     */
+    @WorkerThread
+    private void showCandidates(List<String> candidates, int selected) {
+        uiUpdates.post(UI_CANDIDATES, () -> {
+            if (candidateStrip == null) {
+                return;
+            }
+            candidateContainer.removeAllViews();
+            for (int i = 0; i < candidates.size(); i++) {
+                candidateContainer.addView(createCandidateView(candidates.get(i), i, i == selected));
+            }
+            candidateStrip.setVisibility(View.VISIBLE);
+        });
+    }
+
+    @MainThread
+    private TextView createCandidateView(String candidate, int index, boolean selected) {
+        TextView view = new TextView(this);
+        String preview = candidate.replace('\n', ' ');
+        if (preview.length() > CANDIDATE_PREVIEW_CHARS) {
+            preview = preview.substring(0, CANDIDATE_PREVIEW_CHARS) + "…";
+        }
+        view.setText((index + 1) + ". " + preview);
+        view.setMaxLines(2);
+        view.setTextSize(13);
+        view.setPadding(24, 12, 24, 12);
+        view.setBackgroundResource(R.drawable.status_background);
+        view.setTextColor(getResources().getColor(selected ? R.color.primary_color : R.color.ime_text_color, null));
+        view.setTypeface(null, selected ? Typeface.BOLD : Typeface.NORMAL);
+        view.setOnClickListener(v -> worker.post(() -> selectCandidate(index)));
+        
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.WRAP_CONTENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
         );
+        params.setMargins(0, 0, 8, 0);
+        view.setLayoutParams(params);
+        return view;
+    }
+
+    /**
+     * 记录一次成功的结果，延迟合并写回文件
+     */
+    @WorkerThread
+    private void recordHistory(String actionName, String input, String output, long latencyMs) {
+        if (historyStore == null) {
+            return;
+        }
+        historyStore.record(new HistoryEntry(actionName, input, output, System.currentTimeMillis(), latencyMs));
+        worker.getHandler().removeCallbacks(saveHistory);
+        worker.getHandler().postDelayed(saveHistory, HISTORY_SAVE_DELAY_MS);
+    }
+
+    @WorkerThread
+    private void toggleHistory() {
+        if (historyVisible) {
+            hideHistory();
+        } else {
+            showHistory();
+        }
+    }
+
+    /**
+     * 显示历史面板：输入框中是短文本时按它搜索，否则显示最近的记录
+     */
+    @WorkerThread
+    private void showHistory() {
+        if (settingsRepository == null || historyStore == null) {
+            return;
+        }
+        if (!settingsRepository.isHistoryEnabled()) {
+            showToast("结果历史已关闭，可在主应用中开启");
+            return;
+        }
+        captureCurrentText();
+        String trimmed = currentInputText.trim();
+        String query = trimmed.length() <= HISTORY_QUERY_CHARS ? trimmed : "";
+        List<HistoryEntry> entries = historyStore.search(query, HISTORY_RESULTS);
+        if (entries.isEmpty()) {
+            showToast(query.isEmpty() ? "暂无历史" : "没有包含“" + query + "”的历史");
+            return;
+        }
+        // 按搜索词找到的结果替换输入框中的搜索词，否则插入到光标处
+        boolean replaceQuery = !query.isEmpty();
+        historyVisible = true;
+        setStatus(replaceQuery
+                ? "历史：" + entries.size() + " 条包含“" + query + "”"
+                : "历史：最近 " + entries.size() + " 条");
+        uiUpdates.post(UI_HISTORY, () -> {
+            if (historyPanel == null) {
+                return;
+            }
+            historyContainer.removeAllViews();
+            for (HistoryEntry entry : entries) {
+                historyContainer.addView(createHistoryRow(entry, replaceQuery));
+            }
+            historyPanel.scrollTo(0, 0);
+            historyPanel.setVisibility(View.VISIBLE);
+        });
+    }
+
+    @WorkerThread
+    private void hideHistory() {
+        if (historyVisible) {
+            historyVisible = false;
+            uiUpdates.post(UI_HISTORY, () -> {
+                if (historyPanel != null) {
+                    historyPanel.setVisibility(View.GONE);
+                    historyContainer.removeAllViews();
+                }
+            });
+        }
+    }
+
+    @WorkerThread
+    private void insertHistoryResult(String output, boolean replaceQuery) {
+        hideHistory();
+        if (replaceQuery) {
+            updateInputText("", output, true);
+        } else {
+            InputConnection ic = getCurrentInputConnection();
+            if (ic == null) {
+                return;
+            }
+            try {
+                ic.commitText(output, 1);
+            } catch (Exception e) {
+                Log.e(TAG, "Error inserting history result", e);
+                showToast("插入失败");
+            }
+        }
+        captureCurrentText();
+        updateStatusDisplay();
+    }
+
+    @MainThread
+    private TextView createHistoryRow(HistoryEntry entry, boolean replaceQuery) {
+        TextView row = new TextView(this);
+        row.setText(entry.actionName + "：" + entry.output.replace('\n', ' '));
+        row.setMaxLines(2);
+        row.setEllipsize(TextUtils.TruncateAt.END);
+        row.setTextSize(13);
+        row.setPadding(24, 12, 24, 12);
+        row.setBackgroundResource(R.drawable.status_background);
+        row.setTextColor(getResources().getColor(R.color.ime_text_color, null));
+        String output = entry.output;
+        row.setOnClickListener(v -> worker.post(() -> insertHistoryResult(output, replaceQuery)));
+        
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
+        );
+        params.setMargins(0, 0, 0, 8);
+        row.setLayoutParams(params);
+        return row;
+    }
+
+    /**
+     * 按id查找流水线的各个步骤
+     * @return 有步骤已被删除或本身也是流水线时返回 null
+     */
+    @WorkerThread
+    private List<Action> resolvePipelineSteps(Action pipeline) {
+        List<Action> allActions = settingsRepository.getActions();
+        List<Action> steps = new ArrayList<>();
+        for (String stepId : pipeline.getPipelineStepIds()) {
+            Action step = null;
+            for (Action candidate : allActions) {
+                if (candidate.getId().equals(stepId)) {
+                    step = candidate;
+                    break;
+                }
+            }
+            if (step == null || step.isPipeline()) {
+                return null;
+            }
+            steps.add(step);
+        }
+        return steps;
+    }
+
+    /**
+     * 执行流水线的第 index 步；结果命中缓存时直接进入下一步，全部完成后写回输入框
+     * 每一步以流式请求执行，进度显示在状态栏；需要分段的长输入按分段方式执行；本地步骤直接转换，不经过缓存
+     */
+    @WorkerThread
+    private void runPipelineStage(PipelineRun run, int index, String input,
+                                  GenericLLMApiClient.ApiCallback completion) {
+        if (index == run.steps.size()) {
+            updateInputText(run.originalText, input, settingsRepository.isReplaceMode());
+            completion.onSuccess(input);
+            return;
+        }
+        
+        Action step = run.steps.get(index);
+        String stageLabel = "第" + (index + 1) + "/" + run.steps.size() + "步 " + step.getName();
+        if (step.isLocal()) {
+            String result;
+            try {
+                result = applyLocalTransform(step, input);
+            } catch (IllegalArgumentException e) {
+                completion.onError(stageLabel + "失败: 本地转换无效: " + e.getMessage());
+                return;
+            }
+            runPipelineStage(run, index + 1, result, completion);
+            return;
+        }
+        String baseUrl = step.resolveBaseUrl(run.globalBaseUrl);
+        String modelName = step.resolveModelName(run.globalModelName);
+        TokenBudget.Plan plan = TokenBudget.plan(
+                TokenizerProvider.forModel(this, modelName),
+                ModelLimits.forModel(modelName),
+                step.getSystemPrompt(),
+                input,
+                TokenBudget.profileFor(step),
+                step.getMaxTokens() != null ? step.getMaxTokens() : 0);
+        if (plan.promptTooLong) {
+            completion.onError(stageLabel + "：指令过长，超出模型的上下文窗口");
+            return;
+        }
+        GenerationParams params = GenerationParams.forAction(step, plan.maxTokens).singleCandidate();
+        
+        // 缓存键基于该步的完整输入，截断或分段不影响命中
+        String cacheKey = PipelineCache.key(baseUrl, modelName, step.getSystemPrompt(), params, input);
+        String cached = pipelineCache.get(cacheKey);
+        if (cached != null) {
+            if (BuildConfig.DEBUG_LOGGING) {
+                Log.d(TAG, "Pipeline stage " + (index + 1) + " served from cache");
+            }
+            FlightRecorder.record(FlightRecorder.EVENT_CACHE_HIT, FlightRecorder.CACHE_PIPELINE,
+                    pipelineCache.costMs(cacheKey), cached.length());
+            runPipelineStage(run, index + 1, cached, completion);
+            return;
+        }
+        
+        long stageStartMs = SystemClock.elapsedRealtime();
+        GenericLLMApiClient.ApiCallback stageCallback = new GenericLLMApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String result) {
+                pipelineCache.put(cacheKey, result, SystemClock.elapsedRealtime() - stageStartMs);
+                runPipelineStage(run, index + 1, result, completion);
+            }
+
+            @Override
+            public void onError(String error) {
+                completion.onError(stageLabel + "失败: " + error);
+            }
+        };
+        
+        setStatus("正在处理: " + stageLabel + "...");
+        if (plan.chunks.size() > 1) {
+            executeChunks(apiClient, baseUrl, run.apiKey, modelName, step.getSystemPrompt(), params, plan,
+                    new ArrayList<>(), stageCallback);
+            return;
+        }
+        apiClient.executeStreamingRequest(baseUrl, run.apiKey, modelName, step.getSystemPrompt(),
+                plan.chunks.get(0), params, new GenericLLMApiClient.StreamCallback() {
+                    @Override
+                    public void onProgress(String partialResult) {
+                        setStatus("正在处理: " + stageLabel + "（" + partialResult.length() + " 字）");
+                    }
+
+                    @Override
+                    public void onSuccess(String result) {
+                        stageCallback.onSuccess(result);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        stageCallback.onError(error);
+                    }
+                });
+    }
+
+    /**
+     * 执行本地动作的转换，耗时计入 {@link Tracer#STAGE_LOCAL}
+     * @throws IllegalArgumentException 转换未注册或参数无效
+     */
+    @WorkerThread
+    private static String applyLocalTransform(Action action, String input) {
+        long start = Tracer.begin(Tracer.STAGE_LOCAL);
+        try {
+            return LocalTransforms.create(action.getLocalTransformId(), action.getLocalTransformArgs()).apply(input);
+        } finally {
+            Tracer.end(Tracer.STAGE_LOCAL, start);
+        }
+    }
+
+    /**
+     * 依次处理各输入片段，全部完成后合并结果；任一片段失败则整体失败
+     * @param results 已完成片段的结果，其长度即下一个要处理的片段下标
+     */
+    @WorkerThread
+    private void executeChunks(GenericLLMApiClient client, String baseUrl, String apiKey, String modelName,
+                               String systemPrompt, GenerationParams params, TokenBudget.Plan plan,
+                               List<String> results, GenericLLMApiClient.ApiCallback callback) {
+        int index = results.size();
+        client.executeRequest(baseUrl, apiKey, modelName, systemPrompt, plan.chunks.get(index), params,
+                new GenericLLMApiClient.ApiCallback() {
+                    @Override
+                    public void onSuccess(String result) {
+                        results.add(result);
+                        if (results.size() == plan.chunks.size()) {
+                            callback.onSuccess(TokenBudget.joinChunkResults(plan.chunks, results));
+                        } else {
+                            executeChunks(client, baseUrl, apiKey, modelName, systemPrompt, params, plan,
+                                    results, callback);
+                        }
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(plan.chunks.size() > 1 ? "第" + (index + 1) + "段" + error : error);
+                    }
+
+                    @Override
+                    public void onFailure(ApiError error) {
+                        callback.onFailure(plan.chunks.size() > 1
+                                ? error.withMessage("第" + (index + 1) + "段" + error.message)
+                                : error);
+                    }
+                });
+    }
+
+    /**
+     * 把请求加入离线队列
+     * @param error 首次请求的失败原因，离线未发送时为 null
+     * @return 队列不可用或写入日志失败时返回 false
+     */
+    @WorkerThread
+    private boolean enqueueOffline(Action action, String baseUrl, String modelName, GenerationParams params,
+                                   String input, String originalText, boolean replaceMode, ApiError error) {
+        OfflineRequestQueue queue = offlineQueue;
+        if (queue == null || !queue.isAvailable()) {
+            return false;
+        }
+        PendingRequest request = new PendingRequest();
+        request.actionName = action.getName();
+        request.baseUrl = baseUrl;
+        request.modelName = modelName;
+        request.systemPrompt = action.getSystemPrompt();
+        request.input = input;
+        request.maxTokens = params.getMaxTokens();
+        request.temperature = params.getTemperature();
+        request.stopSequences = params.getStopSequences();
+        request.fieldKey = currentFieldKey;
+        request.originalText = originalText;
+        request.replaceMode = replaceMode;
+        return queue.enqueue(request, error);
+    }
+
+    /**
+     * 动作已转入离线队列：结束本次动作的追踪，提示用户结果稍后送回
+     */
+    @WorkerThread
+    private void finishQueued(long actionStart, ApiError error) {
+        Log.w(TAG, "Action queued for retry: " + (error != null ? error.message : "offline"));
+        showToast(error == null ? "当前离线，已加入队列，联网后自动处理" : "请求失败，已加入队列，稍后自动重试");
+        setStatus("已加入队列（" + offlineQueue.size() + " 条等待中）");
+        Tracer.endAsync(Tracer.STAGE_ACTION, actionStart);
+    }
+
+    /**
+     * 离线队列送回结果：仍在原输入框且内容未变时直接写入；否则复制到剪贴板、记入历史，
+     * 并暂存到回到原输入框时再写入
+     */
+    private class OfflineQueueListener implements OfflineRequestQueue.Listener {
+        @Override
+        public void onDelivered(PendingRequest request, String result) {
+            if (settingsRepository.isHistoryEnabled()) {
+                recordHistory(request.actionName, request.originalText, result,
+                        System.currentTimeMillis() - request.createdMs);
+            }
+            if (inputViewShown && request.fieldKey.equals(currentFieldKey) && applyQueuedResult(request, result)) {
+                showToast("已写入「" + request.actionName + "」的结果");
+                return;
+            }
+            parkedResults.add(new ParkedResult(request, result));
+            if (parkedResults.size() > PARKED_RESULTS) {
+                parkedResults.remove(0);
+            }
+            writeClipboard(result);
+            showToast("「" + request.actionName + "」的结果已复制到剪贴板");
+        }
+
+        @Override
+        public void onAbandoned(PendingRequest request, String error) {
+            Log.w(TAG, "Queued request abandoned: " + error);
+            // 原文不能丢：复制到剪贴板，并以原文作为结果记入历史，可从历史面板重新插入
+            if (settingsRepository.isHistoryEnabled()) {
+                recordHistory(UNFINISHED_PREFIX + request.actionName, request.input, request.input,
+                        System.currentTimeMillis() - request.createdMs);
+            }
+            writeClipboard(request.input);
+            showToast("「" + request.actionName + "」处理失败，原文已复制到剪贴板: " + error);
+        }
+    }
+
+    /**
+     * 回到发起请求的输入框时，写入在此期间送回的结果
+     */
+    @WorkerThread
+    private void applyParkedResults() {
+        for (int i = parkedResults.size() - 1; i >= 0; i--) {
+            ParkedResult parked = parkedResults.get(i);
+            if (parked.request.fieldKey.equals(currentFieldKey) && applyQueuedResult(parked.request, parked.result)) {
+                parkedResults.remove(i);
+                showToast("已写入「" + parked.request.actionName + "」的结果");
+                return;
+            }
+        }
+    }
+
+    /**
+     * 输入框内容与发起请求时一致才写入，避免覆盖用户之后的输入
+     */
+    @WorkerThread
+    private boolean applyQueuedResult(PendingRequest request, String result) {
+        InputConnection ic = getCurrentInputConnection();
+        if (ic == null || !request.originalText.equals(readFieldText(ic))) {
+            return false;
+        }
+        if (updateInputText(request.originalText, result, request.replaceMode) == null) {
+            return false;
+        }
+        captureCurrentText();
+        updateStatusDisplay();
+        return true;
+    }
+
+    @WorkerThread
+    private void writeClipboard(String text) {
+        ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+        if (clipboard != null) {
+            clipboard.setPrimaryClip(ClipData.newPlainText(CLIP_LABEL, text));
+        }
+    }
+
+    /**
+     * 记录一次动作执行的匿名轨迹（仅长度与耗时）
+     */
+    @WorkerThread
+    private void recordSessionEvent(Action action, long tapGapMs, long actionStartMs,
+                                    int inputChars, int responseChars, boolean success) {
+        SessionEvent event = new SessionEvent();
+        event.gapMs = tapGapMs;
+        event.actionKey = SessionEvent.anonymizeActionId(action.getId());
+        event.systemPromptChars = action.getSystemPrompt() != null ? action.getSystemPrompt().length() : 0;
+        event.inputChars = inputChars;
+        event.replaceMode = settingsRepository.isReplaceMode();
+        event.latencyMs = SystemClock.elapsedRealtime() - actionStartMs;
+        event.responseChars = responseChars;
+        event.success = success;
+        SessionRecorder.record(event);
     }
 
     /**
      * 更新输入框文本
+     * @param originalText 拼接模式下保留的原文
+     * @return 写入输入框的完整文本，写入失败时返回 null
      */
-    private void updateInputText(String processedText) {
+    @WorkerThread
+    private String updateInputText(String originalText, String processedText, boolean isReplaceMode) {
+        worker.assertCurrentThread();
         InputConnection ic = getCurrentInputConnection();
         if (ic != null) {
+            long applyStart = Tracer.begin(Tracer.STAGE_APPLY);
             try {
-                // 根据设置决定文本处理模式
-                boolean isReplaceMode = settingsRepository.isReplaceMode();
-                String finalText;
-                
-                if (isReplaceMode) {
-                    // 替换模式：仅保留AI回答
-                    finalText = processedText;
-                } else {
-                    // 拼接模式：原文 + 分隔符 + AI回答
-                    finalText = currentInputText + "\n======\n" + processedText;
-                }
+                // 替换模式仅保留AI回答；拼接模式为 原文 + 分隔符 + AI回答
+                String finalText = TextAssembler.assemble(originalText, processedText, isReplaceMode);
                 
                 // 开始批量编辑以提高性能
                 ic.beginBatchEdit();
@@ -361,8 +1741,8 @@ public class TranslateInputMethodService extends InputMethodService {
                 // 方法1：尝试删除所有文本并重新插入
                 try {
                     // 获取光标前后的文本长度
-                    CharSequence textBefore = ic.getTextBeforeCursor(10000, 0);
-                    CharSequence textAfter = ic.getTextAfterCursor(10000, 0);
+                    CharSequence textBefore = ic.getTextBeforeCursor(FIELD_READ_LIMIT, 0);
+                    CharSequence textAfter = ic.getTextAfterCursor(FIELD_READ_LIMIT, 0);
                     
                     int beforeLength = textBefore != null ? textBefore.length() : 0;
                     int afterLength = textAfter != null ? textAfter.length() : 0;
@@ -401,16 +1781,22 @@ public class TranslateInputMethodService extends InputMethodService {
                 Log.d(TAG, "Text updated successfully");
                 
                 // 移除成功提示，保持处理过程简洁
+                return finalText;
             } catch (Exception e) {
                 Log.e(TAG, "Error updating text", e);
+                FlightRecorder.record(FlightRecorder.EVENT_ERROR, FlightRecorder.ERROR_APPLY, 0, 0);
                 showToast("更新文本失败");
+            } finally {
+                Tracer.end(Tracer.STAGE_APPLY, applyStart);
             }
         }
+        return null;
     }
 
     /**
      * 显示配置错误
      */
+    @MainThread
     private void showConfigurationError() {
         LinearLayout buttonsContainer = keyboardView.findViewById(R.id.ll_action_buttons);
         buttonsContainer.removeAllViews();
@@ -427,17 +1813,75 @@ public class TranslateInputMethodService extends InputMethodService {
     /**
      * 更新状态显示
      */
+    @WorkerThread
     private void updateStatusDisplay() {
-        if (tvStatus != null) {
-            int textLength = currentInputText.length();
-            tvStatus.setText(String.format("已捕获 %d 字符", textLength));
+        int textLength = currentInputText.length();
+        int queued = offlineQueue != null ? offlineQueue.size() : 0;
+        setStatus(queued > 0
+                ? String.format("已捕获 %d 字符 · 队列中 %d 条", textLength, queued)
+                : String.format("已捕获 %d 字符", textLength));
+    }
+
+    /**
+     * 更新状态栏右侧的服务连接状态：任一端点熔断时显示不可用及剩余时间，探测中时显示重试
+     */
+    @WorkerThread
+    private void updateEndpointState() {
+        worker.getHandler().removeCallbacks(refreshEndpointState);
+        int worst = CircuitBreaker.STATE_CLOSED;
+        long retryInMs = Long.MAX_VALUE;
+        Iterator<String> keys = trippedEndpoints.iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            int state = circuitBreaker.state(key);
+            if (state == CircuitBreaker.STATE_CLOSED) {
+                keys.remove();
+            } else if (state == CircuitBreaker.STATE_OPEN) {
+                worst = CircuitBreaker.STATE_OPEN;
+                retryInMs = Math.min(retryInMs, circuitBreaker.remainingOpenMs(key));
+            } else if (worst == CircuitBreaker.STATE_CLOSED) {
+                worst = CircuitBreaker.STATE_HALF_OPEN;
+            }
         }
+
+        String text;
+        int color;
+        if (worst == CircuitBreaker.STATE_OPEN) {
+            text = retryInMs > 0 ? "● 不可用 " + ((retryInMs + 999) / 1000) + "s" : "● 不可用";
+            color = R.color.status_error;
+            if (inputViewShown) {
+                worker.getHandler().postDelayed(refreshEndpointState, 1000);
+            }
+        } else if (worst == CircuitBreaker.STATE_HALF_OPEN) {
+            text = "● 重连中";
+            color = R.color.status_warning;
+        } else {
+            text = "● 已连接";
+            color = R.color.status_success;
+        }
+        uiUpdates.post(UI_ENDPOINT, () -> {
+            if (tvEndpointState != null) {
+                tvEndpointState.setText(text);
+                tvEndpointState.setTextColor(getResources().getColor(color, null));
+            }
+        });
+    }
+
+    /**
+     * 更新状态栏文本，同一帧内只保留最后一次
+     */
+    private void setStatus(String status) {
+        uiUpdates.post(UI_STATUS, () -> {
+            if (tvStatus != null) {
+                tvStatus.setText(status);
+            }
+        });
     }
 
     /**
-     * 显示Toast消息
+     * 显示Toast消息，可在任意线程调用
      */
     private void showToast(String message) {
-        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+        uiUpdates.post(UI_TOAST, () -> Toast.makeText(this, message, Toast.LENGTH_SHORT).show());
     }
 }
@@ -0,0 +1,66 @@
+package com.inputassistant.universal.ime;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 界面更新合并器
+ * 任意线程都可以提交界面更新，同一个key在一帧内只保留最后一次提交，
+ * 所有待执行的更新在下一帧开始时通过一次主线程回调统一执行
+ *
+ * 例如流式响应过程中频繁刷新的状态文本，每帧最多只会触发一次setText
+ */
+public class UiUpdateCoalescer {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LinkedHashMap<String, Runnable> pendingUpdates = new LinkedHashMap<>();
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> flush();
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+    private boolean frameScheduled = false;
+
+    /**
+     * 提交一次界面更新
+     * @param key 更新类别，同类更新在同一帧内只执行最后一次
+     * @param update 在主线程执行的更新
+     */
+    public void post(String key, Runnable update) {
+        synchronized (pendingUpdates) {
+            pendingUpdates.put(key, update);
+            if (frameScheduled) {
+                return;
+            }
+            frameScheduled = true;
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            scheduleFrame.run();
+        } else {
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    /**
+     * 丢弃所有尚未执行的更新
+     */
+    public void cancelAll() {
+        synchronized (pendingUpdates) {
+            pendingUpdates.clear();
+        }
+    }
+
+    private void flush() {
+        List<Runnable> updates;
+        synchronized (pendingUpdates) {
+            updates = new ArrayList<>(pendingUpdates.values());
+            pendingUpdates.clear();
+            frameScheduled = false;
+        }
+        for (Runnable update : updates) {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.inputassistant.universal.monitor;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 性能事件飞行记录器
+ * 将紧凑的定长事件写入一个内存映射的环形文件，进程被杀后数据仍保留在文件中，磁盘占用固定
+ *
+ * 文件格式（大端序）：
+ * - 头部 32 字节：magic(int) version(int) recordSize(int) capacity(int) 已写入总数(long) 保留(long)
+ * - 记录 32 字节 × capacity：时间戳ms(long) 类型(int) 代码(int) 数值(long) 附加值(long)
+ *
+ * 导出文件使用相同的头部与记录格式，但只包含有效记录，并按时间从旧到新排列
+ *
+ * {@link #record} 只做绝对位置写入，不分配对象，可在热路径直接调用；未初始化时调用会被忽略
+ */
+public final class FlightRecorder {
+    private static final String TAG = "FlightRecorder";
+    private static final String FILE_NAME = "flight_recorder.bin";
+
+    // 事件类型
+    public static final int EVENT_REQUEST = 1;     // code=HTTP状态码, value=耗时ms, extra=响应字符数
+    public static final int EVENT_ERROR = 2;       // code=错误码, value=HTTP状态码（如有）
+    public static final int EVENT_IME_SHOW = 3;    // value=输入法界面显示耗时ms
+    public static final int EVENT_ACTION = 4;      // code=0成功/1失败, value=点击到完成耗时ms, extra=输入字符数
+    public static final int EVENT_CACHE_HIT = 5;   // code=缓存类型, value=节省的耗时估计ms, extra=结果字符数
+
+    // 错误码
+    public static final int ERROR_NETWORK = 1;
+    public static final int ERROR_HTTP = 2;
+    public static final int ERROR_EMPTY_BODY = 3;
+    public static final int ERROR_PARSE = 4;
+    public static final int ERROR_APPLY = 5;
+    public static final int ERROR_CIRCUIT_OPEN = 6;  // 熔断中立即失败，没有发出请求
+    public static final int ERROR_TRUNCATED = 7;     // 回答达到 max_tokens 被截断
+
+    // 缓存类型
+    public static final int CACHE_PIPELINE = 1;        // 流水线步骤结果，value=当初请求该步的耗时
+    public static final int CACHE_NEAR_DUPLICATE = 2;  // 相似输入的结果先显示，value=到新结果送达（或失败）的耗时
+
+    private static final int MAGIC = 0x49465231; // "IFR1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+    private static final int CAPACITY = 8192;    // 固定占用 256KB
+    private static final int OFFSET_COUNT = 16;
+
+    private static final Object LOCK = new Object();
+    private static volatile MappedByteBuffer buffer;
+
+    private FlightRecorder() {
+    }
+
+    /**
+     * 打开（必要时创建）记录文件，涉及磁盘IO，应在后台线程调用
+     */
+    public static void init(Context context) {
+        if (buffer != null) {
+            return;
+        }
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        long size = HEADER_SIZE + (long) RECORD_SIZE * CAPACITY;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean fresh = raf.length() != size;
+            if (fresh) {
+                raf.setLength(size);
+            }
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (fresh || !isValidHeader(mapped)) {
+                resetHeader(mapped);
+            }
+            buffer = mapped;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open flight recorder", e);
+        }
+    }
+
+    /**
+     * 记录一条事件
+     */
+    public static void record(int type, int code, long value, long extra) {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            long count = b.getLong(OFFSET_COUNT);
+            int offset = HEADER_SIZE + (int) (count % CAPACITY) * RECORD_SIZE;
+            b.putLong(offset, System.currentTimeMillis());
+            b.putInt(offset + 8, type);
+            b.putInt(offset + 12, code);
+            b.putLong(offset + 16, value);
+            b.putLong(offset + 24, extra);
+            // 记录写完后才推进计数，进程中途被杀时不完整的记录不会被视为有效
+            b.putLong(OFFSET_COUNT, count + 1);
+        }
+    }
+
+    /**
+     * 当前保存的有效事件数
+     */
+    public static int size() {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            return 0;
+        }
+        synchronized (LOCK) {
+            return (int) Math.min(b.getLong(OFFSET_COUNT), CAPACITY);
+        }
+    }
+
+    /**
+     * 导出有效事件（从旧到新）
+     */
+    public static void exportTo(OutputStream out) throws IOException {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            throw new IOException("Flight recorder not initialized");
+        }
+
+        byte[] records;
+        int valid;
+        synchronized (LOCK) {
+            long count = b.getLong(OFFSET_COUNT);
+            valid = (int) Math.min(count, CAPACITY);
+            records = new byte[valid * RECORD_SIZE];
+            int first = (int) ((count - valid) % CAPACITY);
+            for (int i = 0; i < valid; i++) {
+                int offset = HEADER_SIZE + ((first + i) % CAPACITY) * RECORD_SIZE;
+                for (int j = 0; j < RECORD_SIZE; j++) {
+                    records[i * RECORD_SIZE + j] = b.get(offset + j);
+                }
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(RECORD_SIZE);
+        data.writeInt(valid);
+        data.writeLong(valid);
+        data.writeLong(0);
+        data.write(records);
+        data.flush();
+    }
+
+    public static void clear() {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            b.putLong(OFFSET_COUNT, 0);
+        }
+    }
+
+    private static boolean isValidHeader(MappedByteBuffer b) {
+        return b.getInt(0) == MAGIC
+                && b.getInt(4) == VERSION
+                && b.getInt(8) == RECORD_SIZE
+                && b.getInt(12) == CAPACITY
+                && b.getLong(OFFSET_COUNT) >= 0;
+    }
+
+    private static void resetHeader(MappedByteBuffer b) {
+        b.putInt(0, MAGIC);
+        b.putInt(4, VERSION);
+        b.putInt(8, RECORD_SIZE);
+        b.putInt(12, CAPACITY);
+        b.putLong(OFFSET_COUNT, 0);
+        b.putLong(24, 0);
+    }
+}
@@ -0,0 +1,90 @@
+package com.inputassistant.universal.monitor;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Printer;
+
+/**
+ * 主线程消息耗时看门狗
+ * 通过Looper的消息日志钩子得知每条消息的开始与结束；后台线程周期性检查，
+ * 当某条消息执行超过阈值时，在它仍在执行期间抓取主线程堆栈，从而定位到真正耗时的位置
+ */
+class LooperWatchdog implements Printer {
+    private static final long CHECK_INTERVAL_MS = 50;
+
+    private final long thresholdMs;
+    private final Thread mainThread = Looper.getMainLooper().getThread();
+
+    // 由主线程写入、看门狗线程读取
+    private volatile long dispatchStartUptime = 0;
+    private volatile String dispatchMessage = null;
+    private volatile int dispatchSequence = 0;
+    private volatile String component = "app";
+
+    // 看门狗线程已为哪次分发抓过堆栈
+    private int capturedSequence = -1;
+    private StackTraceElement[] capturedStack;
+
+    LooperWatchdog(long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+    }
+
+    void start() {
+        Looper.getMainLooper().setMessageLogging(this);
+
+        Thread watchdogThread = new Thread(this::watchLoop, "InputistLooperWatchdog");
+        watchdogThread.setDaemon(true);
+        watchdogThread.start();
+    }
+
+    /**
+     * 记录当前在主线程活跃的组件，用于标注慢消息来源
+     */
+    void setComponent(String component) {
+        this.component = component;
+    }
+
+    @Override
+    public void println(String x) {
+        // Looper在分发前后各输出一行，分别以">>>>> Dispatching"和"<<<<< Finished"开头
+        if (x.startsWith(">")) {
+            dispatchMessage = x;
+            dispatchSequence++;
+            dispatchStartUptime = SystemClock.uptimeMillis();
+        } else if (x.startsWith("<")) {
+            long start = dispatchStartUptime;
+            dispatchStartUptime = 0;
+            if (start > 0) {
+                long duration = SystemClock.uptimeMillis() - start;
+                if (duration >= thresholdMs) {
+                    onSlowDispatchFinished(dispatchSequence, duration, dispatchMessage);
+                }
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            SystemClock.sleep(CHECK_INTERVAL_MS);
+            long start = dispatchStartUptime;
+            int sequence = dispatchSequence;
+            if (start > 0 && SystemClock.uptimeMillis() - start >= thresholdMs) {
+                synchronized (this) {
+                    if (capturedSequence != sequence) {
+                        capturedSequence = sequence;
+                        capturedStack = mainThread.getStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    private void onSlowDispatchFinished(int sequence, long durationMs, String message) {
+        StackTraceElement[] stack;
+        synchronized (this) {
+            stack = capturedSequence == sequence ? capturedStack : null;
+            capturedStack = null;
+        }
+        PerformanceReport.getInstance().recordSlowDispatch(component, durationMs, message, stack);
+    }
+}
@@ -0,0 +1,112 @@
+package com.inputassistant.universal.monitor;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.StrictMode;
+import android.view.FrameMetrics;
+import android.view.Window;
+import com.inputassistant.universal.BuildConfig;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 性能监控入口
+ * 仅在 BuildConfig.PERFORMANCE_MONITORING 为 true 时（debug 构建）生效：
+ * - StrictMode 线程与VM策略，违规写入性能报告
+ * - 主线程消息耗时看门狗，慢消息附带主线程堆栈
+ * - 基于 FrameMetrics 的窗口帧耗时统计
+ *
+ * release 构建中该开关为编译期常量 false，所有方法在入口处直接返回，调用会被优化掉
+ */
+public final class PerformanceMonitor {
+    // 超过该耗时的主线程消息视为慢消息
+    private static final long SLOW_DISPATCH_THRESHOLD_MS = 100;
+    private static final long FRAME_BUDGET_NANOS = 16_666_667L;
+
+    private static LooperWatchdog watchdog;
+    private static Handler frameMetricsHandler;
+
+    private PerformanceMonitor() {
+    }
+
+    public static boolean isEnabled() {
+        return BuildConfig.PERFORMANCE_MONITORING;
+    }
+
+    /**
+     * 在 Application.onCreate 中调用（必须在主线程），启用 StrictMode 与主线程看门狗
+     */
+    public static synchronized void install() {
+        if (!BuildConfig.PERFORMANCE_MONITORING || watchdog != null) {
+            return;
+        }
+
+        StrictMode.ThreadPolicy.Builder threadPolicy = new StrictMode.ThreadPolicy.Builder()
+                .detectAll()
+                .penaltyLog();
+        StrictMode.VmPolicy.Builder vmPolicy = new StrictMode.VmPolicy.Builder()
+                .detectAll()
+                .penaltyLog();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            Executor executor = Executors.newSingleThreadExecutor();
+            threadPolicy.penaltyListener(executor, violation ->
+                    PerformanceReport.getInstance().recordViolation("[线程] " + describe(violation)));
+            vmPolicy.penaltyListener(executor, violation ->
+                    PerformanceReport.getInstance().recordViolation("[VM] " + describe(violation)));
+        }
+        StrictMode.setThreadPolicy(threadPolicy.build());
+        StrictMode.setVmPolicy(vmPolicy.build());
+
+        watchdog = new LooperWatchdog(SLOW_DISPATCH_THRESHOLD_MS);
+        watchdog.start();
+    }
+
+    /**
+     * 标注当前在主线程上活跃的组件（如输入法、悬浮球服务），用于区分慢消息来源
+     */
+    public static void setActiveComponent(String component) {
+        if (!BuildConfig.PERFORMANCE_MONITORING) {
+            return;
+        }
+        install();
+        watchdog.setComponent(component);
+    }
+
+    /**
+     * 统计指定窗口的帧耗时
+     * 悬浮窗等直接添加到WindowManager的View没有Window对象，只能依赖看门狗
+     */
+    public static void trackFrames(Window window, String name) {
+        if (!BuildConfig.PERFORMANCE_MONITORING || window == null) {
+            return;
+        }
+        window.addOnFrameMetricsAvailableListener((w, frameMetrics, dropCount) -> {
+            long total = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            PerformanceReport.getInstance().recordFrame(name, total, FRAME_BUDGET_NANOS);
+        }, getFrameMetricsHandler());
+    }
+
+    private static synchronized Handler getFrameMetricsHandler() {
+        if (frameMetricsHandler == null) {
+            HandlerThread thread = new HandlerThread("InputistFrameMetrics");
+            thread.start();
+            frameMetricsHandler = new Handler(thread.getLooper());
+        }
+        return frameMetricsHandler;
+    }
+
+    private static String describe(Throwable violation) {
+        StringBuilder description = new StringBuilder(violation.getClass().getSimpleName());
+        StackTraceElement[] stack = violation.getStackTrace();
+        // 跳过StrictMode自身的堆栈帧，定位到触发违规的应用代码
+        for (StackTraceElement element : stack) {
+            if (element.getClassName().startsWith("com.inputassistant")) {
+                description.append(" at ").append(element);
+                break;
+            }
+        }
+        return description.toString();
+    }
+}
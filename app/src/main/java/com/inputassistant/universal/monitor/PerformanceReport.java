@@ -0,0 +1,139 @@
+package com.inputassistant.universal.monitor;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 性能报告
+ * 进程内收集慢消息、StrictMode违规、帧耗时和动作链路耗时，供主界面展示
+ * 所有方法线程安全；每类记录只保留最近的若干条，内存占用有上限
+ */
+public class PerformanceReport {
+    private static final int MAX_ENTRIES = 20;
+    private static final int MAX_STACK_FRAMES = 12;
+
+    private static final PerformanceReport INSTANCE = new PerformanceReport();
+
+    private final ArrayDeque<String> slowDispatches = new ArrayDeque<>();
+    private final ArrayDeque<String> violations = new ArrayDeque<>();
+    private final Map<String, FrameStats> frameStats = new LinkedHashMap<>();
+    private int slowDispatchCount = 0;
+    private int violationCount = 0;
+
+    public static PerformanceReport getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 帧耗时统计
+     */
+    static class FrameStats {
+        long totalFrames;
+        long jankyFrames;   // 超过一帧预算
+        long frozenFrames;  // 超过700ms
+        long maxFrameNanos;
+    }
+
+    public synchronized void recordSlowDispatch(String component, long durationMs,
+                                                String message, StackTraceElement[] stack) {
+        slowDispatchCount++;
+        StringBuilder entry = new StringBuilder();
+        entry.append(timestamp()).append(" [").append(component).append("] ")
+                .append(durationMs).append("ms\n  ").append(message);
+        if (stack != null) {
+            int frames = Math.min(stack.length, MAX_STACK_FRAMES);
+            for (int i = 0; i < frames; i++) {
+                entry.append("\n    at ").append(stack[i]);
+            }
+        }
+        append(slowDispatches, entry.toString());
+    }
+
+    public synchronized void recordViolation(String description) {
+        violationCount++;
+        append(violations, timestamp() + " " + description);
+    }
+
+    public synchronized void recordFrame(String window, long totalDurationNanos, long frameBudgetNanos) {
+        FrameStats stats = frameStats.get(window);
+        if (stats == null) {
+            stats = new FrameStats();
+            frameStats.put(window, stats);
+        }
+        stats.totalFrames++;
+        if (totalDurationNanos > frameBudgetNanos) {
+            stats.jankyFrames++;
+        }
+        if (totalDurationNanos > 700_000_000L) {
+            stats.frozenFrames++;
+        }
+        stats.maxFrameNanos = Math.max(stats.maxFrameNanos, totalDurationNanos);
+    }
+
+    public synchronized void clear() {
+        slowDispatches.clear();
+        violations.clear();
+        frameStats.clear();
+        slowDispatchCount = 0;
+        violationCount = 0;
+        Tracer.clear();
+    }
+
+    /**
+     * 生成可读的报告文本
+     */
+    public synchronized String buildReport() {
+        StringBuilder report = new StringBuilder();
+
+        report.append("📊 帧统计\n");
+        if (frameStats.isEmpty()) {
+            report.append("  暂无数据\n");
+        }
+        for (Map.Entry<String, FrameStats> entry : frameStats.entrySet()) {
+            FrameStats stats = entry.getValue();
+            double jankRate = stats.totalFrames > 0 ? 100.0 * stats.jankyFrames / stats.totalFrames : 0;
+            report.append(String.format(Locale.US, "  %s: %d帧, 卡顿 %d (%.1f%%), 冻结 %d, 最长 %.1fms\n",
+                    entry.getKey(), stats.totalFrames, stats.jankyFrames, jankRate,
+                    stats.frozenFrames, stats.maxFrameNanos / 1_000_000.0));
+        }
+
+        report.append("\n⏱ 动作链路耗时\n");
+        report.append(Tracer.buildSummary());
+
+        report.append("\n🐢 主线程慢消息 (共").append(slowDispatchCount).append("次)\n");
+        appendEntries(report, slowDispatches);
+
+        report.append("\n⚠️ StrictMode违规 (共").append(violationCount).append("次)\n");
+        appendEntries(report, violations);
+
+        return report.toString();
+    }
+
+    private void appendEntries(StringBuilder report, ArrayDeque<String> entries) {
+        if (entries.isEmpty()) {
+            report.append("  暂无记录\n");
+            return;
+        }
+        // 最新的记录在前
+        Iterator<String> it = entries.descendingIterator();
+        while (it.hasNext()) {
+            report.append(it.next()).append('\n');
+        }
+    }
+
+    private void append(ArrayDeque<String> entries, String entry) {
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.pollFirst();
+        }
+        entries.addLast(entry);
+    }
+
+    private static String timestamp() {
+        return new SimpleDateFormat("HH:mm:ss.SSS", Locale.US).format(new Date());
+    }
+}
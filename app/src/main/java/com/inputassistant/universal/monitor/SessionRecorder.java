@@ -0,0 +1,134 @@
+package com.inputassistant.universal.monitor;
+
+import android.content.Context;
+import android.util.Log;
+import com.inputassistant.universal.core.trace.SessionEvent;
+import com.inputassistant.universal.core.trace.SessionTraceCodec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 匿名使用轨迹记录器（需用户在设置中主动开启）
+ * 每次动作执行追加一行 {@link SessionEvent}，只包含长度与耗时，用于在JVM上回放真实负载做回归对比
+ *
+ * 文件超过上限时轮转为一个旧文件，总占用不超过 2 × MAX_BYTES；写入涉及磁盘IO，只应在后台线程调用
+ */
+public final class SessionRecorder {
+    private static final String TAG = "SessionRecorder";
+    private static final String FILE_NAME = "session_trace.jsonl";
+    private static final String ROTATED_FILE_NAME = "session_trace.1.jsonl";
+    private static final long MAX_BYTES = 256 * 1024;
+
+    private static final Object LOCK = new Object();
+    private static final SessionTraceCodec codec = new SessionTraceCodec();
+    private static volatile File directory;
+    private static long lastTapMs = 0;
+
+    private SessionRecorder() {
+    }
+
+    public static void init(Context context) {
+        directory = context.getFilesDir();
+    }
+
+    /**
+     * 计算与上一次点击的间隔，并把本次点击记为最近一次
+     * @param tapMs SystemClock.elapsedRealtime() 时间
+     */
+    public static long gapSinceLastTap(long tapMs) {
+        synchronized (LOCK) {
+            long gap = lastTapMs > 0 ? tapMs - lastTapMs : 0;
+            lastTapMs = tapMs;
+            return gap;
+        }
+    }
+
+    /**
+     * 追加一条记录，未初始化时忽略
+     */
+    public static void record(SessionEvent event) {
+        File dir = directory;
+        if (dir == null) {
+            return;
+        }
+        String line = codec.encode(event) + "\n";
+        synchronized (LOCK) {
+            File file = new File(dir, FILE_NAME);
+            if (file.length() >= MAX_BYTES) {
+                File rotated = new File(dir, ROTATED_FILE_NAME);
+                if (rotated.exists() && !rotated.delete()) {
+                    Log.w(TAG, "Failed to delete rotated trace");
+                }
+                if (!file.renameTo(rotated)) {
+                    Log.w(TAG, "Failed to rotate trace");
+                }
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                writer.write(line);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write session trace", e);
+            }
+        }
+    }
+
+    public static boolean hasRecords() {
+        File dir = directory;
+        if (dir == null) {
+            return false;
+        }
+        synchronized (LOCK) {
+            return new File(dir, FILE_NAME).length() > 0 || new File(dir, ROTATED_FILE_NAME).length() > 0;
+        }
+    }
+
+    /**
+     * 导出全部记录（旧文件在前）
+     */
+    public static void exportTo(OutputStream out) throws IOException {
+        File dir = directory;
+        if (dir == null) {
+            throw new IOException("Session recorder not initialized");
+        }
+        synchronized (LOCK) {
+            copy(new File(dir, ROTATED_FILE_NAME), out);
+            copy(new File(dir, FILE_NAME), out);
+        }
+        out.flush();
+    }
+
+    /**
+     * 删除全部记录，关闭记录时调用
+     */
+    public static void clear() {
+        File dir = directory;
+        if (dir == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            new File(dir, FILE_NAME).delete();
+            new File(dir, ROTATED_FILE_NAME).delete();
+            lastTapMs = 0;
+        }
+    }
+
+    private static void copy(File file, OutputStream out) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.inputassistant.universal.monitor;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import com.inputassistant.universal.BuildConfig;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 动作链路的轻量级耗时追踪
+ *
+ * 同步阶段使用 begin/end（同一线程内配对，对应 Trace.beginSection/endSection，可在 systrace/Perfetto 中查看）；
+ * 跨线程的阶段（如网络请求、整个动作）使用 beginAsync/endAsync。
+ * 每个结束的span写入一个无锁环形缓冲区，供主界面计算各阶段 p50/p95。
+ *
+ * release 构建中 PERFORMANCE_MONITORING 为编译期常量 false，所有方法体被编译器消除，调用等同于空操作
+ */
+public final class Tracer {
+    public static final int STAGE_ACTION = 0;     // 点击 → 文本回写完成
+    public static final int STAGE_SETTINGS = 1;   // 读取设置
+    public static final int STAGE_CAPTURE = 2;    // 捕获输入框文本
+    public static final int STAGE_BUILD = 3;      // 构建请求体
+    public static final int STAGE_REQUEST = 4;    // 网络请求（发出 → 响应读取完毕）
+    public static final int STAGE_PARSE = 5;      // 解析响应
+    public static final int STAGE_APPLY = 6;      // 回写输入框
+    public static final int STAGE_BUDGET = 7;     // token计数与预算
+    public static final int STAGE_LOCAL = 8;      // 本地动作的转换
+
+    private static final String[] STAGE_NAMES = {
+            "action", "settings", "capture", "build", "request", "parse", "apply", "budget", "local"
+    };
+    private static final String[] STAGE_LABELS = {
+            "完整动作", "读取设置", "捕获文本", "构建请求", "网络请求", "解析响应", "回写文本", "token预算", "本地转换"
+    };
+
+    // 环形缓冲区容量，必须是2的幂
+    private static final int CAPACITY = 512;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final AtomicLong cursor = new AtomicLong();
+    // 每个槽位的提交序号；写入过程中为 -1，读者据此跳过未完成或已被覆盖的槽位
+    private static final AtomicLongArray committed = new AtomicLongArray(CAPACITY);
+    // 槽位内容也用原子数组：普通数组的读写在 ARM 上可能越过前后的序号读写被重排，
+    // 读者会把写了一半的槽位当作有效；minSdk 24 没有 VarHandle 的内存屏障可用
+    private static final AtomicIntegerArray stages = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicLongArray durations = new AtomicLongArray(CAPACITY);
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            committed.set(i, -1);
+        }
+    }
+
+    private Tracer() {
+    }
+
+    /**
+     * 开始一个同步阶段，必须在同一线程调用 {@link #end}
+     * @return 开始时间，传给 end
+     */
+    public static long begin(int stage) {
+        if (!BuildConfig.PERFORMANCE_MONITORING) {
+            return 0;
+        }
+        Trace.beginSection("Inputist:" + STAGE_NAMES[stage]);
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public static void end(int stage, long startNanos) {
+        if (!BuildConfig.PERFORMANCE_MONITORING) {
+            return;
+        }
+        Trace.endSection();
+        record(stage, SystemClock.elapsedRealtimeNanos() - startNanos);
+    }
+
+    /**
+     * 开始一个可能跨线程结束的阶段
+     * @return 开始时间，传给 endAsync
+     */
+    public static long beginAsync(int stage) {
+        if (!BuildConfig.PERFORMANCE_MONITORING) {
+            return 0;
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection("Inputist:" + STAGE_NAMES[stage], (int) start);
+        }
+        return start;
+    }
+
+    public static void endAsync(int stage, long startNanos) {
+        if (!BuildConfig.PERFORMANCE_MONITORING || startNanos == 0) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection("Inputist:" + STAGE_NAMES[stage], (int) startNanos);
+        }
+        record(stage, SystemClock.elapsedRealtimeNanos() - startNanos);
+    }
+
+    private static void record(int stage, long durationNanos) {
+        long sequence = cursor.getAndIncrement();
+        int slot = (int) (sequence & MASK);
+        committed.set(slot, -1);
+        stages.set(slot, stage);
+        durations.set(slot, durationNanos);
+        committed.set(slot, sequence);
+    }
+
+    /**
+     * 生成各阶段耗时分布的摘要
+     */
+    public static String buildSummary() {
+        if (!BuildConfig.PERFORMANCE_MONITORING) {
+            return "";
+        }
+
+        long[][] perStage = new long[STAGE_NAMES.length][CAPACITY];
+        int[] counts = new int[STAGE_NAMES.length];
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            long before = committed.get(slot);
+            if (before < 0) continue;
+            int stage = stages.get(slot);
+            long duration = durations.get(slot);
+            // 读取期间槽位被覆盖则丢弃该样本
+            if (committed.get(slot) != before) continue;
+            perStage[stage][counts[stage]++] = duration;
+        }
+
+        StringBuilder summary = new StringBuilder();
+        for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+            int count = counts[stage];
+            if (count == 0) {
+                summary.append(String.format(Locale.US, "  %s: 暂无数据\n", STAGE_LABELS[stage]));
+                continue;
+            }
+            long[] samples = Arrays.copyOf(perStage[stage], count);
+            Arrays.sort(samples);
+            summary.append(String.format(Locale.US, "  %s: p50 %.1fms, p95 %.1fms (n=%d)\n",
+                    STAGE_LABELS[stage],
+                    percentile(samples, 50) / 1_000_000.0,
+                    percentile(samples, 95) / 1_000_000.0,
+                    count));
+        }
+        return summary.toString();
+    }
+
+    public static void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            committed.set(i, -1);
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,81 @@
+package com.inputassistant.universal.queue;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import com.inputassistant.universal.core.queue.JournalCipher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * 使用 Android Keystore 中的 AES-GCM 密钥逐行加密请求日志
+ * 每行为 Base64(IV + 密文)，密钥不可导出；不同用途的数据使用不同别名的密钥
+ */
+public final class KeystoreJournalCipher implements JournalCipher {
+    public static final String ALIAS_REQUEST_JOURNAL = "request_journal_key";
+    public static final String ALIAS_TLS_SESSIONS = "tls_sessions_key";
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKey key;
+
+    public KeystoreJournalCipher(String keyAlias) throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        if (keyStore.containsAlias(keyAlias)) {
+            key = ((KeyStore.SecretKeyEntry) keyStore.getEntry(keyAlias, null)).getSecretKey();
+        } else {
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(keyAlias,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            key = generator.generateKey();
+        }
+    }
+
+    @Override
+    public String seal(String line) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            // Keystore 密钥由系统生成随机IV
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            byte[] iv = cipher.getIV();
+            byte[] encrypted = cipher.doFinal(line.getBytes(StandardCharsets.UTF_8));
+            byte[] sealed = Arrays.copyOf(iv, iv.length + encrypted.length);
+            System.arraycopy(encrypted, 0, sealed, iv.length, encrypted.length);
+            return Base64.encodeToString(sealed, Base64.NO_WRAP);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt journal line", e);
+        }
+    }
+
+    @Override
+    public String open(String sealed) throws IOException {
+        try {
+            byte[] bytes = Base64.decode(sealed, Base64.NO_WRAP);
+            if (bytes.length <= IV_BYTES) {
+                throw new IOException("Journal line too short");
+            }
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, 0, IV_BYTES));
+            byte[] plain = cipher.doFinal(bytes, IV_BYTES, bytes.length - IV_BYTES);
+            return new String(plain, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Failed to decrypt journal line", e);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.inputassistant.universal.queue;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.util.Log;
+import androidx.annotation.WorkerThread;
+import com.inputassistant.universal.api.GenericLLMApiClient;
+import com.inputassistant.universal.core.api.ApiError;
+import com.inputassistant.universal.core.api.ChatClient;
+import com.inputassistant.universal.core.queue.Backoff;
+import com.inputassistant.universal.core.queue.PendingRequest;
+import com.inputassistant.universal.core.queue.RequestJournal;
+import com.inputassistant.universal.repository.SettingsRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * 离线请求队列：离线或遇到可重试的错误（限流、服务端临时故障）时，请求写入加密的只追加日志，
+ * 之后按指数退避加抖动逐个重试，网络恢复时提前重试；结果通过 {@link Listener} 交给输入法
+ *
+ * 离线期间请求挂起，等网络恢复回调后再发送，不计入重试次数，只受 {@link #MAX_AGE_MS} 限制；
+ * 无法监听网络时按固定间隔检查
+ * 同一时刻最多只有一个重试中的请求，避免恢复联网时集中重试；
+ * 除 {@link #isOnline()} 和 {@link #stop()} 外的方法都只在传入的 Handler 所在线程（输入法工作线程）调用
+ *
+ * 日志含用户原始输入，且由密钥库中的密钥加密，放在不备份的目录中
+ */
+public final class OfflineRequestQueue {
+    private static final String TAG = "OfflineRequestQueue";
+    private static final String FILE_NAME = "request_journal.log";
+    // 联网后重试超过次数，或加入队列超过时间仍未成功的请求放弃
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+    // 没有网络回调时检查网络的间隔
+    private static final long OFFLINE_POLL_MS = 60 * 1000L;
+    // 网络恢复后在该时间内随机错开重试
+    private static final long RECONNECT_JITTER_MS = 3000;
+
+    /**
+     * 队列事件，在工作线程回调
+     */
+    public interface Listener {
+        void onDelivered(PendingRequest request, String result);
+
+        void onAbandoned(PendingRequest request, String error);
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final GenericLLMApiClient apiClient;
+    private final SettingsRepository settingsRepository;
+    private final Listener listener;
+    private final Random random = new Random();
+    private final List<PendingRequest> requests = new ArrayList<>();
+    private final Runnable runDue = this::runDue;
+    private RequestJournal journal;
+    private volatile ConnectivityManager.NetworkCallback networkCallback;
+    private boolean inFlight = false;
+    // stop() 之后仍可能收到进行中请求的回调，此时不再处理，请求留在日志中
+    private volatile boolean stopped = false;
+    // 离线挂起中，等网络恢复回调
+    private boolean waitingForNetwork = false;
+
+    public OfflineRequestQueue(Context context, Handler handler, GenericLLMApiClient apiClient,
+                               SettingsRepository settingsRepository, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.handler = handler;
+        this.apiClient = apiClient;
+        this.settingsRepository = settingsRepository;
+        this.listener = listener;
+    }
+
+    /**
+     * 加载日志中未完成的请求并开始监听网络；日志不可用时队列停用，失败的请求按原方式报错
+     */
+    @WorkerThread
+    public void start() {
+        File file = new File(context.getNoBackupFilesDir(), FILE_NAME);
+        // 旧版本放在会被备份的 getFilesDir 中；日志内容与路径无关，直接移过来
+        File legacyFile = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists() && legacyFile.exists() && !legacyFile.renameTo(file)) {
+            Log.w(TAG, "Failed to move request journal out of backed-up storage");
+        }
+        legacyFile.delete();
+        try {
+            journal = new RequestJournal(file, new KeystoreJournalCipher(
+                    KeystoreJournalCipher.ALIAS_REQUEST_JOURNAL));
+            requests.addAll(journal.load());
+        } catch (GeneralSecurityException | IOException e) {
+            Log.e(TAG, "Request journal unavailable", e);
+            journal = null;
+            return;
+        }
+        ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+        if (connectivity != null) {
+            networkCallback = new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    handler.post(OfflineRequestQueue.this::onNetworkAvailable);
+                }
+            };
+            try {
+                connectivity.registerDefaultNetworkCallback(networkCallback);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to watch connectivity", e);
+                networkCallback = null;
+            }
+        }
+        if (!requests.isEmpty()) {
+            Log.d(TAG, "Restored " + requests.size() + " pending requests");
+        }
+        scheduleNext();
+    }
+
+    /**
+     * 停止重试与网络监听，未完成的请求留在日志中，下次启动时恢复；可在任意线程调用
+     */
+    public void stop() {
+        stopped = true;
+        handler.removeCallbacks(runDue);
+        if (networkCallback != null) {
+            ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+            try {
+                connectivity.unregisterNetworkCallback(networkCallback);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to unregister network callback", e);
+            }
+            networkCallback = null;
+        }
+    }
+
+    /**
+     * @return 日志可用（已启动）时才能加入请求
+     */
+    public boolean isAvailable() {
+        return journal != null;
+    }
+
+    /**
+     * 当前默认网络是否可以访问互联网，可在任意线程调用
+     */
+    public boolean isOnline() {
+        ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+        if (connectivity == null) {
+            return true;
+        }
+        Network network = connectivity.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+        return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+    }
+
+    /**
+     * 加入队列并写入日志
+     * @param error 首次请求的失败原因，离线时未发送为 null
+     * @return 日志写入失败时返回 false，调用方应按失败处理
+     */
+    @WorkerThread
+    public boolean enqueue(PendingRequest request, ApiError error) {
+        if (journal == null || stopped) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        request.id = UUID.randomUUID().toString();
+        request.createdMs = now;
+        if (error != null) {
+            request.attempts = 1;
+            request.lastError = error.message;
+            request.lastHttpCode = error.httpCode;
+            request.nextAttemptMs = now + Backoff.delayMs(1, error.retryAfterMs, random);
+        } else {
+            request.nextAttemptMs = now;
+        }
+        try {
+            journal.add(request);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to journal request", e);
+            return false;
+        }
+        requests.add(request);
+        scheduleNext();
+        return true;
+    }
+
+    @WorkerThread
+    public int size() {
+        return requests.size();
+    }
+
+    /**
+     * 网络恢复：因网络错误等待的请求提前到几秒内随机错开重试，限流等待的请求不受影响
+     */
+    @WorkerThread
+    private void onNetworkAvailable() {
+        if (stopped) {
+            return;
+        }
+        waitingForNetwork = false;
+        long now = System.currentTimeMillis();
+        for (PendingRequest request : requests) {
+            if (request.lastHttpCode == 0) {
+                request.nextAttemptMs = Math.min(request.nextAttemptMs,
+                        now + (long) (random.nextDouble() * RECONNECT_JITTER_MS));
+            }
+        }
+        scheduleNext();
+    }
+
+    @WorkerThread
+    private void scheduleNext() {
+        handler.removeCallbacks(runDue);
+        if (stopped || inFlight || requests.isEmpty()) {
+            return;
+        }
+        if (waitingForNetwork) {
+            if (networkCallback == null) {
+                handler.postDelayed(runDue, OFFLINE_POLL_MS);
+            }
+            return;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (PendingRequest request : requests) {
+            earliest = Math.min(earliest, request.nextAttemptMs);
+        }
+        handler.postDelayed(runDue, Math.max(0, earliest - System.currentTimeMillis()));
+    }
+
+    @WorkerThread
+    private void runDue() {
+        if (stopped || inFlight) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        PendingRequest due = null;
+        for (PendingRequest request : requests) {
+            if (request.nextAttemptMs <= now && (due == null || request.nextAttemptMs < due.nextAttemptMs)) {
+                due = request;
+            }
+        }
+        if (due == null) {
+            scheduleNext();
+            return;
+        }
+        if (now - due.createdMs > MAX_AGE_MS) {
+            abandon(due, "等待时间过长: " + due.lastError);
+            return;
+        }
+        if (!isOnline()) {
+            waitForNetwork();
+            return;
+        }
+        waitingForNetwork = false;
+        PendingRequest request = due;
+        inFlight = true;
+        apiClient.executeRequest(request.baseUrl, settingsRepository.getApiKey(), request.modelName,
+                request.systemPrompt, request.input, request.params(),
+                new GenericLLMApiClient.ApiCallback() {
+                    @Override
+                    public void onSuccess(String result) {
+                        inFlight = false;
+                        if (stopped) {
+                            return;
+                        }
+                        finish(request);
+                        listener.onDelivered(request, result);
+                        scheduleNext();
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        onFailure(ApiError.of(error));
+                    }
+
+                    @Override
+                    public void onFailure(ApiError error) {
+                        inFlight = false;
+                        if (stopped) {
+                            return;
+                        }
+                        if (error.type == ChatClient.ERROR_NETWORK && !isOnline()) {
+                            // 发送途中断网：不算一次失败
+                            waitForNetwork();
+                        } else if (error.isRetryable()) {
+                            retryLater(request, error);
+                        } else {
+                            abandon(request, error.message);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 挂起所有请求直到网络恢复，attempts 与 nextAttemptMs 不变
+     */
+    @WorkerThread
+    private void waitForNetwork() {
+        if (!waitingForNetwork) {
+            Log.d(TAG, "Offline, " + requests.size() + " requests waiting for network");
+        }
+        waitingForNetwork = true;
+        scheduleNext();
+    }
+
+    @WorkerThread
+    private void retryLater(PendingRequest request, ApiError error) {
+        request.attempts++;
+        if (request.attempts >= MAX_ATTEMPTS) {
+            abandon(request, "多次重试仍失败: " + error.message);
+            return;
+        }
+        request.lastError = error.message;
+        request.lastHttpCode = error.httpCode;
+        request.nextAttemptMs = System.currentTimeMillis()
+                + Backoff.delayMs(request.attempts, error.retryAfterMs, random);
+        try {
+            journal.markAttempt(request);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to journal attempt", e);
+        }
+        Log.d(TAG, "Request " + request.id + " attempt " + request.attempts + " failed, retrying in "
+                + (request.nextAttemptMs - System.currentTimeMillis()) + "ms");
+        scheduleNext();
+    }
+
+    @WorkerThread
+    private void abandon(PendingRequest request, String error) {
+        finish(request);
+        listener.onAbandoned(request, error);
+        scheduleNext();
+    }
+
+    private void finish(PendingRequest request) {
+        requests.remove(request);
+        try {
+            journal.remove(request.id);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to journal completion", e);
+        }
+    }
+}
@@ -4,14 +4,11 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import androidx.security.crypto.EncryptedSharedPreferences;
 import androidx.security.crypto.MasterKeys;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.inputassistant.universal.core.action.ActionCodec;
 import com.inputassistant.universal.model.Action;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.security.GeneralSecurityException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -29,9 +26,14 @@ public class SettingsRepository {
     private static final String KEY_FLOATING_BALL_ENABLED = "floating_ball_enabled"; // 悬浮球开关
     private static final String KEY_FLOATING_BALL_POSITION_X = "floating_ball_x"; // 悬浮球X位置
     private static final String KEY_FLOATING_BALL_POSITION_Y = "floating_ball_y"; // 悬浮球Y位置
+    private static final String KEY_SESSION_RECORDING = "session_recording_enabled"; // 匿名使用轨迹记录
+    private static final String KEY_NEAR_DUPLICATE = "near_duplicate_enabled"; // 相似输入先显示之前的结果
+    private static final String KEY_NEAR_DUPLICATE_THRESHOLD = "near_duplicate_threshold"; // 相似度阈值（百分比）
+    private static final String KEY_HISTORY = "history_enabled"; // 保存结果历史
+    private static final String KEY_DOH_URL = "doh_url"; // DNS over HTTPS 解析服务，为空时使用系统解析
 
     private final SharedPreferences sharedPreferences;
-    private final Gson gson;
+    private final ActionCodec actionCodec;
 
     public SettingsRepository(Context context) throws GeneralSecurityException, IOException {
         String masterKeyAlias = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
@@ -44,7 +46,7 @@ public class SettingsRepository {
                 EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
         );
         
-        this.gson = new Gson();
+        this.actionCodec = new ActionCodec();
     }
 
     // API 配置相关方法
@@ -72,17 +74,23 @@ public class SettingsRepository {
         return sharedPreferences.getString(KEY_MODEL_NAME, "gpt-3.5-turbo");
     }
 
+    public void saveDohUrl(String url) {
+        sharedPreferences.edit().putString(KEY_DOH_URL, url).apply();
+    }
+
+    public String getDohUrl() {
+        return sharedPreferences.getString(KEY_DOH_URL, "");
+    }
+
     // Action 管理相关方法
     public void saveActions(List<Action> actions) {
-        String json = gson.toJson(actions);
+        String json = actionCodec.encode(actions);
         sharedPreferences.edit().putString(KEY_ACTIONS_JSON, json).apply();
     }
 
     public List<Action> getActions() {
         String json = sharedPreferences.getString(KEY_ACTIONS_JSON, "[]");
-        Type listType = new TypeToken<List<Action>>(){}.getType();
-        List<Action> actions = gson.fromJson(json, listType);
-        return actions != null ? actions : new ArrayList<>();
+        return actionCodec.decode(json);
     }
 
     public void addAction(Action action) {
@@ -158,6 +166,41 @@ public class SettingsRepository {
         return sharedPreferences.getInt(KEY_FLOATING_BALL_POSITION_Y, 100);
     }
 
+    // 匿名使用轨迹记录（默认关闭，需用户主动开启）
+    public void setSessionRecordingEnabled(boolean enabled) {
+        sharedPreferences.edit().putBoolean(KEY_SESSION_RECORDING, enabled).apply();
+    }
+
+    public boolean isSessionRecordingEnabled() {
+        return sharedPreferences.getBoolean(KEY_SESSION_RECORDING, false);
+    }
+
+    // 相似输入复用：再次处理与最近输入相似的文本时先显示之前的结果，同时在后台重新请求
+    public void setNearDuplicateEnabled(boolean enabled) {
+        sharedPreferences.edit().putBoolean(KEY_NEAR_DUPLICATE, enabled).apply();
+    }
+
+    public boolean isNearDuplicateEnabled() {
+        return sharedPreferences.getBoolean(KEY_NEAR_DUPLICATE, true);
+    }
+
+    public void setNearDuplicateThresholdPercent(int percent) {
+        sharedPreferences.edit().putInt(KEY_NEAR_DUPLICATE_THRESHOLD, percent).apply();
+    }
+
+    public int getNearDuplicateThresholdPercent() {
+        return sharedPreferences.getInt(KEY_NEAR_DUPLICATE_THRESHOLD, 95);
+    }
+
+    // 结果历史：成功处理的输入与结果加密保存在本机，可在输入法中搜索并重新插入
+    public void setHistoryEnabled(boolean enabled) {
+        sharedPreferences.edit().putBoolean(KEY_HISTORY, enabled).apply();
+    }
+
+    public boolean isHistoryEnabled() {
+        return sharedPreferences.getBoolean(KEY_HISTORY, true);
+    }
+
     // 清除所有数据（用于重置或调试）
     public void clearAll() {
         sharedPreferences.edit().clear().apply();
@@ -0,0 +1,43 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.core.action.ActionCodec;
+import com.inputassistant.universal.model.Action;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Action列表的序列化与反序列化
+ * 输入法每次显示都会读取一次Action列表
+ */
+@State(Scope.Benchmark)
+public class ActionCodecBenchmark {
+    private static final int ACTION_COUNT = 20;
+
+    private final ActionCodec codec = new ActionCodec();
+    private List<Action> actions;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        actions = new ArrayList<>();
+        for (int i = 0; i < ACTION_COUNT; i++) {
+            actions.add(new Action("action-" + i, "动作 " + i, BenchmarkData.SYSTEM_PROMPT + BenchmarkData.text(200)));
+        }
+        json = codec.encode(actions);
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(actions);
+    }
+
+    @Benchmark
+    public List<Action> decode() {
+        return codec.decode(json);
+    }
+}
@@ -0,0 +1,62 @@
+package com.inputassistant.universal.benchmark;
+
+/**
+ * 基准测试共用的输入数据
+ */
+final class BenchmarkData {
+    static final String BASE_URL = "https://api.example.com/v1";
+    static final String API_KEY = "sk-benchmark";
+    static final String MODEL = "gpt-3.5-turbo";
+    static final String SYSTEM_PROMPT = "你是一个专业的翻译助手，请将用户输入翻译成英文，只输出译文。";
+
+    private static final String SAMPLE = "今天天气很好，我们一起去公园散步吧。The quick brown fox jumps over the lazy dog. ";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成指定长度的中英混合文本
+     */
+    static String text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(SAMPLE);
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    /**
+     * 生成非流式响应JSON
+     */
+    static String completionJson(String content) {
+        return "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1700000000,"
+                + "\"model\":\"" + MODEL + "\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"" + content + "\"},\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":42,\"completion_tokens\":128,\"total_tokens\":170}}";
+    }
+
+    /**
+     * 生成包含多个候选（n > 1）的非流式响应JSON
+     */
+    static String multiChoiceCompletionJson(String... contents) {
+        StringBuilder choices = new StringBuilder();
+        for (int i = 0; i < contents.length; i++) {
+            if (i > 0) choices.append(',');
+            choices.append("{\"index\":").append(i).append(",\"message\":{\"role\":\"assistant\",")
+                    .append("\"content\":\"").append(contents[i]).append("\"},\"finish_reason\":\"stop\"}");
+        }
+        return "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1700000000,"
+                + "\"model\":\"" + MODEL + "\",\"choices\":[" + choices + "],"
+                + "\"usage\":{\"prompt_tokens\":42,\"completion_tokens\":384,\"total_tokens\":426}}";
+    }
+
+    /**
+     * 生成一行SSE数据块
+     */
+    static String streamChunkLine(String delta) {
+        return "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,"
+                + "\"model\":\"" + MODEL + "\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + delta + "\"},"
+                + "\"finish_reason\":null}]}";
+    }
+}
@@ -0,0 +1,46 @@
+package com.inputassistant.universal.benchmark;
+
+import com.google.gson.JsonObject;
+import com.inputassistant.universal.core.api.ChatRequestFactory;
+import okhttp3.Request;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * 请求体构建与序列化
+ * 覆盖从构建JSON到写出请求字节的完整过程，与实际发送前的开销一致
+ */
+@State(Scope.Benchmark)
+public class ChatRequestBenchmark {
+    @Param({"50", "2000"})
+    public int inputLength;
+
+    private String userPrompt;
+
+    @Setup
+    public void setUp() {
+        userPrompt = BenchmarkData.text(inputLength);
+    }
+
+    @Benchmark
+    public String buildBodyJson() {
+        return ChatRequestFactory.buildBody(BenchmarkData.MODEL, BenchmarkData.SYSTEM_PROMPT, userPrompt, false)
+                .toString();
+    }
+
+    @Benchmark
+    public long buildRequestBytes() throws IOException {
+        JsonObject body = ChatRequestFactory.buildBody(
+                BenchmarkData.MODEL, BenchmarkData.SYSTEM_PROMPT, userPrompt, true);
+        Request request = ChatRequestFactory.buildRequest(BenchmarkData.BASE_URL, BenchmarkData.API_KEY, body, true);
+        Buffer sink = new Buffer();
+        request.body().writeTo(sink);
+        return sink.size();
+    }
+}
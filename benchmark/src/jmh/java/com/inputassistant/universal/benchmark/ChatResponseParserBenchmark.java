@@ -0,0 +1,47 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.core.api.ChatResponseParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * 响应解析：完整响应与单个SSE数据块
+ * 流式响应中每个token都会解析一次数据块，其开销会乘以输出长度
+ */
+@State(Scope.Benchmark)
+public class ChatResponseParserBenchmark {
+    @Param({"100", "4000"})
+    public int contentLength;
+
+    private String completion;
+    private String chunkLine;
+    private String threeChoices;
+
+    @Setup
+    public void setUp() {
+        completion = BenchmarkData.completionJson(BenchmarkData.text(contentLength));
+        chunkLine = BenchmarkData.streamChunkLine("你好");
+        threeChoices = BenchmarkData.multiChoiceCompletionJson(BenchmarkData.text(contentLength),
+                BenchmarkData.text(contentLength + 1), BenchmarkData.text(contentLength + 2));
+    }
+
+    @Benchmark
+    public String parseCompletion() {
+        return ChatResponseParser.parseContent(completion);
+    }
+
+    @Benchmark
+    public List<String> parseThreeCandidates() {
+        return ChatResponseParser.parseAllContents(threeChoices);
+    }
+
+    @Benchmark
+    public String parseStreamChunk() {
+        return ChatResponseParser.parseStreamDelta(ChatResponseParser.sseData(chunkLine));
+    }
+}
@@ -0,0 +1,48 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.core.api.ChatRequestFactory;
+import com.inputassistant.universal.core.api.RequestCompression;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * 请求体gzip压缩的CPU开销
+ * 与不压缩时写出请求体的耗时对比；压缩后的字节数见 CompressionScenario
+ */
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+    @Param({"200", "2000", "8000"})
+    public int inputLength;
+
+    private RequestBody body;
+
+    @Setup
+    public void setUp() {
+        Request request = ChatRequestFactory.buildRequest(BenchmarkData.BASE_URL, BenchmarkData.API_KEY,
+                ChatRequestFactory.buildBody(BenchmarkData.MODEL, BenchmarkData.SYSTEM_PROMPT,
+                        BenchmarkData.text(inputLength), false), false);
+        body = request.body();
+    }
+
+    @Benchmark
+    public long writeIdentity() throws IOException {
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+        return sink.size();
+    }
+
+    @Benchmark
+    public long writeGzip() throws IOException {
+        Buffer sink = new Buffer();
+        RequestCompression.gzip(body).writeTo(sink);
+        return sink.size();
+    }
+}
@@ -0,0 +1,78 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.core.history.HistoryEntry;
+import com.inputassistant.universal.core.history.HistoryIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 结果历史检索：数万条记录上中文词、英文词、单字与未命中查询的耗时，目标为10毫秒以内
+ */
+@State(Scope.Benchmark)
+public class HistorySearchBenchmark {
+    private static final int LIMIT = 20;
+    private static final String[] WORDS = {
+            "meeting", "schedule", "report", "translate", "summary", "deadline", "review", "budget"
+    };
+
+    @Param({"30000"})
+    public int entries;
+
+    private HistoryIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new HistoryIndex(entries, Integer.MAX_VALUE);
+        for (int i = 0; i < entries; i++) {
+            index.add(new HistoryEntry("动作" + (i % 8), randomText(random, 120), randomText(random, 160),
+                    i, 1000));
+        }
+        // 少量记录包含查询词，模拟真实的低命中率
+        for (int i = 0; i < 50; i++) {
+            index.add(new HistoryEntry("润色", "请帮我整理会议纪要 " + randomText(random, 40),
+                    "Meeting notes: " + randomText(random, 60), entries + i, 1000));
+        }
+    }
+
+    @Benchmark
+    public List<HistoryEntry> chineseWord() {
+        return index.search("会议纪要", LIMIT);
+    }
+
+    @Benchmark
+    public List<HistoryEntry> englishWord() {
+        return index.search("meeting notes", LIMIT);
+    }
+
+    @Benchmark
+    public List<HistoryEntry> singleChar() {
+        return index.search("纪", LIMIT);
+    }
+
+    @Benchmark
+    public List<HistoryEntry> miss() {
+        return index.search("不存在的词", LIMIT);
+    }
+
+    /**
+     * 常用汉字与英文单词混合的随机文本
+     */
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            if (random.nextInt(6) == 0) {
+                text.append(' ').append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            } else {
+                text.append((char) (0x4E00 + random.nextInt(3000)));
+            }
+        }
+        return text.toString();
+    }
+}
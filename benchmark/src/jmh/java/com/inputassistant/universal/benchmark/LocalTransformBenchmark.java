@@ -0,0 +1,66 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.core.local.LocalTransform;
+import com.inputassistant.universal.core.local.LocalTransforms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+/**
+ * 本地动作：100K字符输入上各个转换的耗时，对照模型动作1–5秒的往返
+ */
+@State(Scope.Benchmark)
+public class LocalTransformBenchmark {
+    // 同时包含多余空白、全角字符、简体与繁体，每个转换都有实际要改的内容
+    private static final String SAMPLE = "  今天天气很好，我们一起去公园散步吧。\t\n"
+            + "The quick brown fox jumps over the lazy dog.   \n\n\n"
+            + "ＡＢＣ　１２３：全角字母与数字。\n"
+            + "這個軟體的設定說明請參閱網頁。  \n";
+
+    @Param({"100000"})
+    public int textLength;
+
+    @Param({
+            LocalTransforms.TRIM,
+            LocalTransforms.COLLAPSE_WHITESPACE,
+            LocalTransforms.UPPER_CASE,
+            LocalTransforms.TO_HALF_WIDTH,
+            LocalTransforms.TO_FULL_WIDTH,
+            LocalTransforms.TO_SIMPLIFIED,
+            LocalTransforms.TO_TRADITIONAL,
+            LocalTransforms.REGEX_REPLACE
+    })
+    public String transformId;
+
+    private String input;
+    private LocalTransform transform;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder(textLength);
+        while (text.length() < textLength) {
+            text.append(SAMPLE);
+        }
+        text.setLength(textLength);
+        input = text.toString();
+        // 正则替换：把连续的空格和制表符换成一个空格
+        transform = LocalTransforms.create(transformId, Arrays.asList("[ \\t]+", " "));
+    }
+
+    @Benchmark
+    public String apply() {
+        return transform.apply(input);
+    }
+
+    /**
+     * 包含按id创建转换（正则替换时含编译），与输入法中每次点击的开销一致
+     */
+    @Benchmark
+    public String createAndApply() {
+        return LocalTransforms.create(transformId, Arrays.asList("[ \\t]+", " ")).apply(input);
+    }
+}
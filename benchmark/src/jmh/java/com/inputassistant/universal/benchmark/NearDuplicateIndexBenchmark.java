@@ -0,0 +1,80 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.core.cache.NearDuplicateIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * 近似重复输入索引：在已有大量条目时查找（命中、未命中）与计算指纹的耗时
+ */
+@State(Scope.Benchmark)
+public class NearDuplicateIndexBenchmark {
+    private static final int ACTIONS = 8;
+    private static final int INPUT_CHARS = 200;
+    private static final double THRESHOLD = 0.9;
+
+    @Param({"100000"})
+    public int entries;
+
+    private NearDuplicateIndex index;
+    private String[] actionKeys;
+    private String nearDuplicate;
+    private String nearDuplicateAction;
+    private String miss;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        actionKeys = new String[ACTIONS];
+        for (int i = 0; i < ACTIONS; i++) {
+            actionKeys[i] = "action-" + i + "-" + Long.toHexString(random.nextLong());
+        }
+        index = new NearDuplicateIndex(entries, Integer.MAX_VALUE);
+        String stored = null;
+        for (int i = 0; i < entries; i++) {
+            String input = randomText(random, INPUT_CHARS);
+            index.put(actionKeys[i % ACTIONS], input, "result-" + i);
+            if (i == entries / 2) {
+                stored = input;
+                nearDuplicateAction = actionKeys[i % ACTIONS];
+            }
+        }
+        // 改动标点和空白，模拟用户小改后重新运行
+        nearDuplicate = " " + stored.replace('，', ',') + "！";
+        miss = randomText(random, INPUT_CHARS);
+        if (index.find(nearDuplicateAction, nearDuplicate, THRESHOLD) == null) {
+            throw new IllegalStateException("near duplicate not found");
+        }
+    }
+
+    @Benchmark
+    public NearDuplicateIndex.Match findNearDuplicate() {
+        return index.find(nearDuplicateAction, nearDuplicate, THRESHOLD);
+    }
+
+    @Benchmark
+    public NearDuplicateIndex.Match findMiss() {
+        return index.find(actionKeys[0], miss, THRESHOLD);
+    }
+
+    @Benchmark
+    public long simHash() {
+        return NearDuplicateIndex.simHash(nearDuplicate);
+    }
+
+    /**
+     * 常用汉字范围内的随机文本，每隔若干字插入逗号
+     */
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(text.length() % 12 == 11 ? '，' : (char) (0x4E00 + random.nextInt(3000)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.core.text.TextAssembler;
+import com.inputassistant.universal.core.text.TextDiff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 输入框文本拼装
+ */
+@State(Scope.Benchmark)
+public class TextAssemblerBenchmark {
+    @Param({"1000", "10000"})
+    public int textLength;
+
+    private String before;
+    private String after;
+    private String original;
+    private String processed;
+    private String refined;
+
+    @Setup
+    public void setUp() {
+        String text = BenchmarkData.text(textLength);
+        before = text.substring(0, textLength / 2);
+        after = text.substring(textLength / 2);
+        original = text;
+        processed = BenchmarkData.text(textLength / 2);
+        // 草稿与优化结果只在中间一小段不同
+        int middle = processed.length() / 2;
+        refined = processed.substring(0, middle) + "更好的说法" + processed.substring(middle + 5);
+    }
+
+    @Benchmark
+    public String joinAroundCursor() {
+        return TextAssembler.joinAroundCursor(before, after);
+    }
+
+    @Benchmark
+    public String assembleAppend() {
+        return TextAssembler.assemble(original, processed, false);
+    }
+
+    @Benchmark
+    public TextDiff.Edit draftToRefinedDiff() {
+        return TextDiff.between(processed, refined);
+    }
+}
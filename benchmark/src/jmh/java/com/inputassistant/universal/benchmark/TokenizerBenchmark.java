@@ -0,0 +1,64 @@
+package com.inputassistant.universal.benchmark;
+
+import com.inputassistant.universal.benchmark.tools.SyntheticVocabulary;
+import com.inputassistant.universal.core.token.BpeTokenizer;
+import com.inputassistant.universal.core.token.BpeVocabulary;
+import com.inputassistant.universal.core.token.HeuristicTokenCounter;
+import com.inputassistant.universal.core.token.ModelLimits;
+import com.inputassistant.universal.core.token.TokenBudget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * token计数吞吐
+ * 默认使用在样本文本上训练的小词表；用 -Dtokenizer.vocab=<.bpe文件> 可测真实词表
+ */
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+    private static final int SYNTHETIC_MERGES = 2000;
+
+    @Param({"1000", "10000"})
+    public int textLength;
+
+    private String text;
+    private BpeTokenizer tokenizer;
+    private ModelLimits limits;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = BenchmarkData.text(textLength);
+        String vocabPath = System.getProperty("tokenizer.vocab");
+        BpeVocabulary vocabulary = vocabPath != null
+                ? BpeVocabulary.map(new File(vocabPath))
+                : SyntheticVocabulary.train(BenchmarkData.text(50000), SYNTHETIC_MERGES);
+        tokenizer = new BpeTokenizer(vocabulary);
+        limits = ModelLimits.forModel(BenchmarkData.MODEL);
+    }
+
+    @Benchmark
+    public int bpeCount() {
+        return tokenizer.count(text);
+    }
+
+    @Benchmark
+    public int[] bpeEncode() {
+        return tokenizer.encode(text);
+    }
+
+    @Benchmark
+    public int heuristicCount() {
+        return HeuristicTokenCounter.INSTANCE.count(text);
+    }
+
+    @Benchmark
+    public TokenBudget.Plan budgetPlan() {
+        return TokenBudget.plan(tokenizer, limits, BenchmarkData.SYSTEM_PROMPT, text,
+                TokenBudget.OutputProfile.TRANSFORM);
+    }
+}
@@ -0,0 +1,209 @@
+package com.inputassistant.universal.benchmark.load;
+
+import com.inputassistant.universal.benchmark.mock.MockLlmServer;
+import com.inputassistant.universal.core.api.ChatClient;
+import com.inputassistant.universal.core.api.RequestCompression;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.brotli.BrotliInterceptor;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 请求与响应压缩的验证场景，使用接受 gzip 的模拟服务
+ *
+ * 1. 线路字节数：不同长度的输入分别以不压缩（Accept-Encoding: identity）和应用的配置
+ *    （{@link RequestCompression} 加 brotli/gzip 响应解压）发送，统计服务端收到和发出的字节数
+ * 2. 能力探测：声明支持的服务第一次请求后即开始压缩；不声明的服务经 OPTIONS 探测后不再尝试；
+ *    已学到支持但服务端改为拒绝（415）时，原请求不压缩重发一次并成功
+ * 探测结果不符合预期时以非零状态退出。压缩的CPU耗时见 CompressionBenchmark
+ *
+ * ./gradlew :benchmark:compressionTest -PloadArgs="--runs=20"
+ */
+public class CompressionScenario {
+    private static final String API_KEY = "sk-compression-test";
+    private static final String MODEL = "mock-model";
+    private static final int[] INPUT_LENGTHS = {200, 2000, 8000};
+    // 较长的系统提示词，与带示例和格式要求的自定义动作相当
+    private static final int SYSTEM_PROMPT_LENGTH = 800;
+    private static final String[] WORDS = {
+            "今天", "我们", "需要", "讨论", "项目", "进度", "以及", "下周", "的", "安排", "，", "。", "请", "确认",
+            "会议", "时间", "文档", "已经", "更新", "问题", "客户", "反馈", "修改", "方案", "测试", "结果",
+            " the", " meeting", " schedule", " is", " updated", " please", " review", " draft", " and",
+            " send", " feedback", " before", " Friday", " report", " numbers", " look", " good", ",", "."
+    };
+    private static final long REQUEST_TIMEOUT_SECONDS = 30;
+
+    private int runs = 20;
+
+    public static void main(String[] args) throws Exception {
+        CompressionScenario scenario = new CompressionScenario();
+        scenario.parseArgs(args);
+        System.exit(scenario.run() ? 0 : 1);
+    }
+
+    private void parseArgs(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "runs": runs = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+    }
+
+    private boolean run() throws Exception {
+        Random random = new Random(42);
+        String systemPrompt = text(random, SYSTEM_PROMPT_LENGTH);
+        MockLlmServer.Behavior behavior = new MockLlmServer.Behavior()
+                .gzipRequests(true).gzipResponses(true).responseTokens(MockLlmServer.tokensForChars(400));
+        MockLlmServer server = new MockLlmServer(behavior);
+        server.start(0);
+        boolean passed;
+        try {
+            System.out.println("Bytes on the wire per request (request body / response body), " + runs + " runs");
+            for (int inputLength : INPUT_LENGTHS) {
+                String input = text(random, inputLength);
+                long[] plain = measure(server, identityClient(), systemPrompt, input);
+                long[] compressed = measure(server, compressingClient(new RequestCompression()), systemPrompt, input);
+                System.out.println(String.format(Locale.US,
+                        "  input %5d chars: identity %6d / %5d B, gzip %6d / %5d B (request %.0f%%, response %.0f%%)",
+                        inputLength, plain[0], plain[1], compressed[0], compressed[1],
+                        100.0 * compressed[0] / plain[0], 100.0 * compressed[1] / plain[1]));
+            }
+            System.out.println();
+            passed = checkNegotiation(server, behavior, systemPrompt, text(random, 2000));
+        } finally {
+            server.close();
+        }
+        System.out.println(passed ? "PASS" : "FAIL");
+        return passed;
+    }
+
+    /**
+     * @return 每个请求的平均请求体与响应体字节数（不含第一次学习能力的请求）
+     */
+    private long[] measure(MockLlmServer server, OkHttpClient httpClient, String systemPrompt, String input)
+            throws InterruptedException {
+        ChatClient client = new ChatClient(httpClient, Runnable::run, ChatClient.EventListener.NONE);
+        send(client, server, systemPrompt, input);
+        long requestBytes = server.getRequestBodyBytes();
+        long responseBytes = server.getResponseBodyBytes();
+        for (int i = 0; i < runs; i++) {
+            send(client, server, systemPrompt, input);
+        }
+        return new long[]{(server.getRequestBodyBytes() - requestBytes) / runs,
+                (server.getResponseBodyBytes() - responseBytes) / runs};
+    }
+
+    private boolean checkNegotiation(MockLlmServer server, MockLlmServer.Behavior behavior, String systemPrompt,
+                                     String input) throws Exception {
+        boolean passed = true;
+        HttpUrl url = HttpUrl.get(server.baseUrl());
+
+        // 声明支持：第一次请求后学到
+        RequestCompression compression = new RequestCompression();
+        ChatClient client = new ChatClient(compressingClient(compression), Runnable::run,
+                ChatClient.EventListener.NONE);
+        send(client, server, systemPrompt, input);
+        passed &= expect("Advertised support learned from response", compression.state(url),
+                RequestCompression.STATE_SUPPORTED);
+
+        // 服务端改为拒绝：415 后不压缩重发
+        behavior.gzipRequests(false);
+        long rejected = server.getRejectedEncodingCount();
+        String result = send(client, server, systemPrompt, input);
+        passed &= expect("Rejected request retried uncompressed", result != null ? 1 : 0, 1);
+        passed &= expect("415 responses", (int) (server.getRejectedEncodingCount() - rejected), 1);
+        passed &= expect("Support withdrawn after 415", compression.state(url),
+                RequestCompression.STATE_UNSUPPORTED);
+
+        // 不声明：OPTIONS 探测后认为不支持，之后不再发送压缩的请求
+        compression = new RequestCompression();
+        client = new ChatClient(compressingClient(compression), Runnable::run, ChatClient.EventListener.NONE);
+        send(client, server, systemPrompt, input);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (compression.state(url) == RequestCompression.STATE_UNKNOWN && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        passed &= expect("Probe without advertisement", compression.state(url),
+                RequestCompression.STATE_UNSUPPORTED);
+        rejected = server.getRejectedEncodingCount();
+        send(client, server, systemPrompt, input);
+        passed &= expect("No compressed requests after probe",
+                (int) (server.getRejectedEncodingCount() - rejected), 0);
+        return passed;
+    }
+
+    private static boolean expect(String name, int actual, int expected) {
+        boolean ok = actual == expected;
+        System.out.println(String.format(Locale.US, "  %-44s %s", name, ok ? "ok" : "expected " + expected
+                + ", got " + actual));
+        return ok;
+    }
+
+    private static OkHttpClient identityClient() {
+        return ChatClient.defaultHttpClientBuilder()
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("Accept-Encoding", "identity").build()))
+                .build();
+    }
+
+    /**
+     * 与应用相同的配置
+     */
+    private static OkHttpClient compressingClient(RequestCompression compression) {
+        OkHttpClient base = ChatClient.defaultHttpClientBuilder().build();
+        return base.newBuilder()
+                .addInterceptor(compression.interceptor(base))
+                .addInterceptor(BrotliInterceptor.INSTANCE)
+                .build();
+    }
+
+    /**
+     * @return 回答，失败时为null
+     */
+    private static String send(ChatClient client, MockLlmServer server, String systemPrompt, String input)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<String> result = new AtomicReference<>();
+        client.execute(server.baseUrl(), API_KEY, MODEL, systemPrompt, input, new ChatClient.Callback() {
+            @Override
+            public void onSuccess(String text) {
+                result.set(text);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                System.out.println("  Request failed: " + error);
+                done.countDown();
+            }
+        });
+        if (!done.await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Request timed out");
+        }
+        return result.get();
+    }
+
+    /**
+     * 从常用词中随机取词拼成的文本，压缩率接近真实输入（重复同一句话会显著高估压缩效果）
+     */
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
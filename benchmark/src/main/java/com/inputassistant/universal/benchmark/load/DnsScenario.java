@@ -0,0 +1,295 @@
+package com.inputassistant.universal.benchmark.load;
+
+import com.inputassistant.universal.benchmark.mock.MockLlmServer;
+import com.inputassistant.universal.core.api.CachingDns;
+import com.inputassistant.universal.core.api.DohDns;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * DNS 缓存与 DoH 解析的验证场景，全部在本机完成
+ *
+ * - {@link CachingDns}：用可控的时钟和可编排的上游解析器验证新鲜期内不再解析、过期后先返回旧地址并只在后台刷新一次
+ *   （上游按 --upstream-delay 变慢时旧地址仍立即返回）、上游失败时沿用旧地址并允许再次刷新、超过可用期后报错
+ * - {@link DohDns}：以模拟服务的 /dns-query 作为解析服务，验证 A 与 AAAA 两个查询的结果合并、
+ *   只有一个地址族时的结果，以及没有结果时交给备用解析器
+ * - 地址族排序：默认 IPv6 在前并与 IPv4 交替；登记端口后竞速连接，只有 IPv4 可连时改为 IPv4 在前；
+ *   没有登记端口的域名不竞速
+ * 任一项不满足时以非零状态退出
+ *
+ * ./gradlew :benchmark:dnsTest -PloadArgs="--upstream-delay=300"
+ */
+public class DnsScenario {
+    private static final String HOST = "api.example.test";
+    private static final long FRESH_MS = 1000;
+    private static final long MAX_STALE_MS = 10_000;
+    private static final long WAIT_MS = 3000;
+
+    private long upstreamDelayMs = 300;
+    private boolean passed = true;
+
+    /**
+     * 可编排的上游解析器：返回指定地址、按需变慢或失败，并统计调用次数
+     */
+    private static final class ScriptedDns implements Dns {
+        final AtomicInteger lookups = new AtomicInteger();
+        volatile List<InetAddress> answer = Collections.emptyList();
+        volatile long delayMs;
+        volatile boolean failing;
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            try {
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lookups.incrementAndGet();
+            }
+            if (failing) {
+                throw new UnknownHostException("scripted failure for " + hostname);
+            }
+            return answer;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        DnsScenario scenario = new DnsScenario();
+        scenario.parseArgs(args);
+        System.exit(scenario.run() ? 0 : 1);
+    }
+
+    private void parseArgs(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "upstream-delay": upstreamDelayMs = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+    }
+
+    private boolean run() throws Exception {
+        System.out.println("CachingDns stale-while-revalidate:");
+        staleWhileRevalidate();
+        System.out.println();
+        System.out.println("CachingDns resolver failure:");
+        resolverFailure();
+        System.out.println();
+        System.out.println("DohDns against mock /dns-query:");
+        doh();
+        System.out.println();
+        System.out.println("Address family ordering:");
+        ordering();
+        System.out.println();
+        System.out.println(passed ? "PASS" : "FAIL");
+        return passed;
+    }
+
+    private void staleWhileRevalidate() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        ScriptedDns upstream = new ScriptedDns();
+        upstream.answer = addresses("10.0.0.1");
+        CachingDns dns = new CachingDns(upstream, FRESH_MS, MAX_STALE_MS, 0, clock::get);
+
+        check("first lookup resolves", addresses("10.0.0.1").equals(dns.lookup(HOST)) && upstream.lookups.get() == 1,
+                upstream.lookups.get() + " upstream lookups");
+        dns.lookup(HOST);
+        check("fresh lookup served from cache", upstream.lookups.get() == 1, upstream.lookups.get() + " upstream lookups");
+
+        // 过期：上游地址已变且变慢，旧地址仍应立即返回
+        advance(clock, FRESH_MS * 2);
+        upstream.answer = addresses("10.0.0.2");
+        upstream.delayMs = upstreamDelayMs;
+        long start = System.nanoTime();
+        List<InetAddress> stale = dns.lookup(HOST);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        check("stale lookup returns old address immediately",
+                addresses("10.0.0.1").equals(stale) && elapsedMs < upstreamDelayMs / 2,
+                String.format(Locale.US, "%dms with upstream taking %dms", elapsedMs, upstreamDelayMs));
+        check("background refresh stores new address", await(() -> {
+            try {
+                return addresses("10.0.0.2").equals(dns.lookup(HOST));
+            } catch (UnknownHostException e) {
+                return false;
+            }
+        }) && upstream.lookups.get() == 2, upstream.lookups.get() + " upstream lookups");
+
+        // 过期后的并发请求只触发一次后台刷新
+        advance(clock, FRESH_MS * 2);
+        for (int i = 0; i < 5; i++) {
+            dns.lookup(HOST);
+        }
+        await(() -> upstream.lookups.get() >= 3);
+        Thread.sleep(upstreamDelayMs + 100);
+        check("concurrent stale lookups refresh once", upstream.lookups.get() == 3,
+                upstream.lookups.get() + " upstream lookups");
+    }
+
+    private void resolverFailure() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        ScriptedDns upstream = new ScriptedDns();
+        upstream.answer = addresses("10.0.0.1");
+        CachingDns dns = new CachingDns(upstream, FRESH_MS, MAX_STALE_MS, 0, clock::get);
+        dns.lookup(HOST);
+
+        advance(clock, FRESH_MS * 2);
+        upstream.failing = true;
+        check("failing resolver still returns last known address", addresses("10.0.0.1").equals(dns.lookup(HOST)), null);
+        // 上游计数先于刷新标记复位，反复查询直到再次触发刷新
+        check("failed refresh is retried on later lookups", await(() -> {
+            try {
+                return addresses("10.0.0.1").equals(dns.lookup(HOST)) && upstream.lookups.get() >= 3;
+            } catch (UnknownHostException e) {
+                return false;
+            }
+        }), upstream.lookups.get() + " upstream lookups");
+
+        // 超过可用期后不再使用旧地址
+        advance(clock, MAX_STALE_MS * 2);
+        boolean failed = false;
+        try {
+            dns.lookup(HOST);
+        } catch (UnknownHostException e) {
+            failed = true;
+        }
+        check("lookup fails once address is past max stale", failed, null);
+    }
+
+    private void doh() throws Exception {
+        MockLlmServer.Behavior behavior = new MockLlmServer.Behavior();
+        MockLlmServer server = new MockLlmServer(behavior);
+        server.start(0);
+        try {
+            OkHttpClient client = new OkHttpClient();
+            DohDns doh = new DohDns(client, server.dohUrl(), null);
+
+            behavior.dnsAnswers("127.0.0.1", "::1");
+            long before = server.getDnsQueryCount();
+            List<InetAddress> both = doh.lookup(HOST);
+            check("A and AAAA answers are merged", both.size() == 2 && families(both) == 2
+                    && server.getDnsQueryCount() - before == 2, both + ", "
+                    + (server.getDnsQueryCount() - before) + " queries");
+
+            behavior.dnsAnswers("127.0.0.1", "");
+            check("IPv4-only answer", addresses("127.0.0.1").equals(doh.lookup(HOST)), null);
+            behavior.dnsAnswers("", "::1");
+            check("IPv6-only answer", addresses("::1").equals(doh.lookup(HOST)), null);
+
+            behavior.dnsAnswers("", "");
+            ScriptedDns fallback = new ScriptedDns();
+            fallback.answer = addresses("10.0.0.9");
+            check("empty answer goes to fallback",
+                    addresses("10.0.0.9").equals(new DohDns(client, server.dohUrl(), fallback).lookup(HOST)), null);
+            boolean failed = false;
+            try {
+                doh.lookup(HOST);
+            } catch (UnknownHostException e) {
+                failed = true;
+            }
+            check("empty answer without fallback fails", failed, null);
+
+            // 经 CachingDns 使用时默认 IPv6 在前
+            behavior.dnsAnswers("127.0.0.1", "::1");
+            List<InetAddress> cached = new CachingDns(doh, 0).lookup(HOST);
+            check("cached DoH answer puts IPv6 first", cached.size() == 2 && cached.get(0) instanceof Inet6Address,
+                    cached.toString());
+        } finally {
+            server.close();
+        }
+    }
+
+    private void ordering() throws Exception {
+        ScriptedDns upstream = new ScriptedDns();
+        upstream.answer = addresses("127.0.0.1", "127.0.0.2", "::1", "::2");
+        List<InetAddress> ordered = new CachingDns(upstream, 0).lookup(HOST);
+        check("families interleaved with IPv6 first",
+                addresses("::1", "127.0.0.1", "::2", "127.0.0.2").equals(ordered), ordered.toString());
+
+        // 只在 IPv4 回环上监听：IPv6 连接失败，竞速后 IPv4 排在前面
+        try (ServerSocket ipv4Only = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            int port = ipv4Only.getLocalPort();
+            upstream.answer = addresses("::1", "127.0.0.1");
+            CachingDns raced = new CachingDns(upstream, 0);
+            raced.prefetch(HOST, port);
+            List<InetAddress>[] last = new List[1];
+            boolean ipv4First = await(() -> {
+                try {
+                    last[0] = raced.lookup(HOST);
+                    return !(last[0].get(0) instanceof Inet6Address);
+                } catch (UnknownHostException e) {
+                    return false;
+                }
+            });
+            check("race on registered port moves reachable IPv4 first", ipv4First, String.valueOf(last[0]));
+
+            // 没有登记端口时不竞速，保持 IPv6 在前
+            CachingDns unregistered = new CachingDns(upstream, 0);
+            unregistered.prefetch(HOST);
+            Thread.sleep(1000);
+            List<InetAddress> unraced = unregistered.lookup(HOST);
+            check("no race without a registered port", unraced.get(0) instanceof Inet6Address, unraced.toString());
+        }
+    }
+
+    private void check(String name, boolean ok, String detail) {
+        System.out.println((ok ? "  ok    " : "  FAIL  ") + name + (detail != null ? " (" + detail + ")" : ""));
+        passed &= ok;
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static void advance(AtomicLong clock, long ms) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    private static int families(List<InetAddress> addresses) {
+        boolean ipv6 = false;
+        boolean ipv4 = false;
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet6Address) {
+                ipv6 = true;
+            } else {
+                ipv4 = true;
+            }
+        }
+        return (ipv6 ? 1 : 0) + (ipv4 ? 1 : 0);
+    }
+
+    private static List<InetAddress> addresses(String... literals) throws UnknownHostException {
+        InetAddress[] addresses = new InetAddress[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            addresses[i] = InetAddress.getByName(literals[i]);
+        }
+        return Arrays.asList(addresses);
+    }
+}
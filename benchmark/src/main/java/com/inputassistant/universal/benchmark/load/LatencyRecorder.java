@@ -0,0 +1,54 @@
+package com.inputassistant.universal.benchmark.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 线程安全的耗时样本收集与分位数计算
+ */
+public class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count = 0;
+
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @return 指定分位数的耗时（纳秒），没有样本时为0
+     */
+    public synchronized long percentileNanos(int percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return percentile(sorted, percentile);
+    }
+
+    /**
+     * @return 形如 "p50 12.3ms, p90 ..., p99 ..., max ..." 的摘要
+     */
+    public synchronized String summary() {
+        if (count == 0) {
+            return "no samples";
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return String.format(Locale.US, "p50 %.1fms, p90 %.1fms, p99 %.1fms, max %.1fms",
+                percentile(sorted, 50) / 1e6, percentile(sorted, 90) / 1e6,
+                percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,200 @@
+package com.inputassistant.universal.benchmark.load;
+
+import com.inputassistant.universal.benchmark.mock.MockLlmServer;
+import com.inputassistant.universal.core.api.ChatClient;
+import com.inputassistant.universal.core.api.RequestScheduler;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 客户端压测：N个模拟用户并发循环发起请求，统计吞吐量、耗时分位数和错误分布
+ * 默认启动内置的 {@link MockLlmServer}，也可通过 --url 指向外部服务
+ *
+ * ./gradlew :benchmark:loadTest -PloadArgs="--users=16 --stream --ttfb=300 --tps=40 --error429=0.05"
+ */
+public class LoadDriver {
+    private static final String API_KEY = "sk-load-test";
+    private static final String MODEL = "mock-model";
+    private static final String SYSTEM_PROMPT = "请将用户输入翻译成英文。";
+    private static final long REQUEST_TIMEOUT_SECONDS = 120;
+
+    private final LoadOptions options;
+    private final String baseUrl;
+    private final ChatClient client;
+    private final String userPrompt;
+
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final LatencyRecorder firstProgress = new LatencyRecorder();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    // 按 ChatClient.ERROR_* 统计，下标0未使用
+    private final AtomicLongArray errorsByType = new AtomicLongArray(5);
+    private volatile boolean measuring;
+
+    public LoadDriver(LoadOptions options, String baseUrl) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+
+        // OkHttp默认每个host最多5个并发请求，压测时放开以免客户端自身成为瓶颈
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(64, options.users * 2));
+        dispatcher.setMaxRequestsPerHost(Math.max(5, options.users));
+        OkHttpClient httpClient = ChatClient.defaultHttpClientBuilder()
+                .dispatcher(dispatcher)
+                .build();
+        this.client = new ChatClient(httpClient, Runnable::run, new ChatClient.EventListener() {
+            @Override
+            public void onRequestFailed(int error, int httpCode, Throwable cause) {
+                if (measuring && error > 0 && error < errorsByType.length()) {
+                    errorsByType.incrementAndGet(error);
+                }
+            }
+        }, options.limit ? new RequestScheduler() : null);
+
+        StringBuilder input = new StringBuilder();
+        while (input.length() < options.inputChars) {
+            input.append("今天天气很好，我们一起去公园散步吧。");
+        }
+        input.setLength(options.inputChars);
+        this.userPrompt = input.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        MockLlmServer server = null;
+        String baseUrl = options.url;
+        if (baseUrl == null) {
+            server = new MockLlmServer(options.behavior());
+            server.start(options.port);
+            baseUrl = server.baseUrl();
+            System.out.println("Mock server: " + baseUrl + " (" + options.behavior() + ")");
+        }
+        try {
+            new LoadDriver(options, baseUrl).run();
+        } finally {
+            if (server != null) {
+                System.out.println("Server handled " + server.getRequestCount() + " requests, "
+                        + server.getInjectedErrorCount() + " injected errors, "
+                        + server.getThrottledCount() + " throttled");
+                server.close();
+            }
+        }
+        // OkHttp的连接池与调度线程会延迟退出，直接结束进程
+        System.exit(0);
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println(String.format(Locale.US,
+                "Load: %d users, %s, input %d chars, warmup %ds, duration %ds, client limit %s",
+                options.users, options.stream ? "streaming" : "blocking", options.inputChars,
+                options.warmupSeconds, options.durationSeconds, options.limit ? "on" : "off"));
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        Thread[] users = new Thread[options.users];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new Thread(() -> userLoop(end), "LoadUser-" + i);
+            users[i].start();
+        }
+
+        sleepUntil(warmupEnd);
+        measuring = true;
+        long measureStart = System.nanoTime();
+        for (Thread user : users) {
+            user.join();
+        }
+        measuring = false;
+        double seconds = (System.nanoTime() - measureStart) / 1e9;
+        printResults(seconds);
+    }
+
+    private void userLoop(long endNanos) {
+        while (System.nanoTime() < endNanos) {
+            try {
+                runOnce();
+                if (options.thinkMs > 0) {
+                    Thread.sleep(options.thinkMs);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 发起一次请求并等待其完成
+     */
+    private void runOnce() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        boolean[] succeeded = new boolean[1];
+        long[] firstProgressNanos = new long[1];
+        ChatClient.StreamCallback callback = new ChatClient.StreamCallback() {
+            @Override
+            public void onProgress(String partialResult) {
+                if (firstProgressNanos[0] == 0) {
+                    firstProgressNanos[0] = System.nanoTime() - start;
+                }
+            }
+
+            @Override
+            public void onSuccess(String result) {
+                succeeded[0] = true;
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                done.countDown();
+            }
+        };
+
+        if (options.stream) {
+            client.executeStreaming(baseUrl, API_KEY, MODEL, SYSTEM_PROMPT, userPrompt, callback);
+        } else {
+            client.execute(baseUrl, API_KEY, MODEL, SYSTEM_PROMPT, userPrompt, callback);
+        }
+        boolean completed = done.await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        if (!measuring) {
+            return;
+        }
+        if (completed && succeeded[0]) {
+            successes.incrementAndGet();
+            latencies.record(elapsed);
+            if (firstProgressNanos[0] > 0) {
+                firstProgress.record(firstProgressNanos[0]);
+            }
+        } else {
+            failures.incrementAndGet();
+        }
+    }
+
+    private void printResults(double seconds) {
+        long ok = successes.get();
+        long failed = failures.get();
+        System.out.println();
+        System.out.println(String.format(Locale.US, "Requests:   %d ok, %d failed in %.1fs", ok, failed, seconds));
+        System.out.println(String.format(Locale.US, "Throughput: %.1f req/s", (ok + failed) / seconds));
+        System.out.println("Latency:    " + latencies.summary());
+        if (options.stream) {
+            System.out.println("First token: " + firstProgress.summary());
+        }
+        System.out.println(String.format(Locale.US, "Errors:     network %d, http %d, empty body %d, parse %d",
+                errorsByType.get(ChatClient.ERROR_NETWORK), errorsByType.get(ChatClient.ERROR_HTTP),
+                errorsByType.get(ChatClient.ERROR_EMPTY_BODY), errorsByType.get(ChatClient.ERROR_PARSE)));
+    }
+
+    private static void sleepUntil(long deadlineNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.inputassistant.universal.benchmark.load;
+
+import com.inputassistant.universal.benchmark.mock.MockLlmServer;
+
+/**
+ * 压测与模拟服务的命令行参数，格式为 --name=value
+ *
+ * 负载：--users 并发用户数，--duration 测量时长(秒)，--warmup 预热时长(秒)，--think 每个用户两次请求间隔(ms)，
+ *       --stream 使用流式请求，--input 用户输入字符数，--url 使用外部服务而非内置模拟服务，
+ *       --limit 客户端按端点限速排队（RequestScheduler）
+ * 服务：--port，--ttfb 首字节延迟(ms)，--tps 每秒token数，--tokens 回答token数，
+ *       --error429 / --error5xx / --truncate 错误比例(0~1)，--slowloris 响应体发送速率(字节/秒)，
+ *       --ratelimit 每分钟请求数上限，超出返回429，
+ *       --gzip-requests 接受gzip压缩的请求体，--gzip-responses 压缩非流式响应
+ */
+public class LoadOptions {
+    public int users = 8;
+    public int durationSeconds = 20;
+    public int warmupSeconds = 3;
+    public long thinkMs = 0;
+    public boolean stream = false;
+    public int inputChars = 200;
+    public String url = null;
+    public boolean limit = false;
+    public int port = 0;
+
+    private final MockLlmServer.Behavior behavior = new MockLlmServer.Behavior();
+
+    public MockLlmServer.Behavior behavior() {
+        return behavior;
+    }
+
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String name = eq > 0 ? arg.substring(2, eq) : arg.substring(2);
+            String value = eq > 0 ? arg.substring(eq + 1) : "true";
+            switch (name) {
+                case "users": options.users = Integer.parseInt(value); break;
+                case "duration": options.durationSeconds = Integer.parseInt(value); break;
+                case "warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                case "think": options.thinkMs = Long.parseLong(value); break;
+                case "stream": options.stream = Boolean.parseBoolean(value); break;
+                case "input": options.inputChars = Integer.parseInt(value); break;
+                case "url": options.url = value; break;
+                case "limit": options.limit = Boolean.parseBoolean(value); break;
+                case "port": options.port = Integer.parseInt(value); break;
+                case "ttfb": options.behavior.timeToFirstByteMs(Long.parseLong(value)); break;
+                case "tps": options.behavior.tokensPerSecond(Double.parseDouble(value)); break;
+                case "tokens": options.behavior.responseTokens(Integer.parseInt(value)); break;
+                case "error429": options.behavior.rate429(Double.parseDouble(value)); break;
+                case "error5xx": options.behavior.rate5xx(Double.parseDouble(value)); break;
+                case "truncate": options.behavior.truncateRate(Double.parseDouble(value)); break;
+                case "slowloris": options.behavior.slowLorisBytesPerSecond(Integer.parseInt(value)); break;
+                case "ratelimit": options.behavior.rateLimitPerMinute(Integer.parseInt(value)); break;
+                case "gzip-requests": options.behavior.gzipRequests(Boolean.parseBoolean(value)); break;
+                case "gzip-responses": options.behavior.gzipResponses(Boolean.parseBoolean(value)); break;
+                default: throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,123 @@
+package com.inputassistant.universal.benchmark.load;
+
+import com.inputassistant.universal.benchmark.mock.MockLlmServer;
+import com.inputassistant.universal.core.api.ChatClient;
+import com.inputassistant.universal.core.api.RequestScheduler;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 客户端限速与优先级的验证场景：对限流的模拟服务发起突发请求，分别在不限速与使用
+ * {@link RequestScheduler} 时统计429次数，以及交互请求与后台请求的耗时
+ *
+ * 每轮先提交一批后台请求（模拟离线队列重放），紧接着提交一批交互请求（模拟分段或多动作点击），
+ * 等全部完成后进入下一轮。使用调度器时要求：429明显少于不限速，且交互请求整体先于后台请求完成；
+ * 不满足时以非零状态退出
+ *
+ * ./gradlew :benchmark:throttleTest -PloadArgs="--ratelimit=120"
+ */
+public class ThrottleScenario {
+    private static final String API_KEY = "sk-throttle-test";
+    private static final String MODEL = "mock-model";
+    private static final String SYSTEM_PROMPT = "请将用户输入翻译成英文。";
+    private static final String USER_PROMPT = "今天天气很好，我们一起去公园散步吧。";
+    private static final int ROUNDS = 4;
+    private static final int BACKGROUND_PER_ROUND = 6;
+    private static final int INTERACTIVE_PER_ROUND = 3;
+    private static final long ROUND_TIMEOUT_SECONDS = 60;
+
+    /**
+     * 一种客户端配置的运行结果
+     */
+    private static final class Result {
+        final LatencyRecorder interactive = new LatencyRecorder();
+        final LatencyRecorder background = new LatencyRecorder();
+        final AtomicInteger failures = new AtomicInteger();
+        long throttled;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 未指定 --ratelimit 时按每分钟120次限流
+        String[] withDefaults = new String[args.length + 1];
+        withDefaults[0] = "--ratelimit=120";
+        System.arraycopy(args, 0, withDefaults, 1, args.length);
+        LoadOptions options = LoadOptions.parse(withDefaults);
+        MockLlmServer server = new MockLlmServer(options.behavior());
+        server.start(options.port);
+        System.out.println("Mock server: " + server.baseUrl() + " (" + options.behavior() + ")");
+        boolean passed;
+        try {
+            Result direct = run(server, null);
+            print("No client limit", direct);
+            // 服务端令牌桶回满后再运行第二种配置
+            Thread.sleep(2000);
+            Result limited = run(server, new RequestScheduler());
+            print("RequestScheduler", limited);
+
+            passed = limited.throttled * 2 < direct.throttled
+                    && limited.interactive.percentileNanos(50) < limited.background.percentileNanos(50);
+            System.out.println(passed ? "PASS" : "FAIL: expected fewer 429s and interactive requests ahead of background");
+        } finally {
+            server.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static Result run(MockLlmServer server, RequestScheduler scheduler) throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(BACKGROUND_PER_ROUND + INTERACTIVE_PER_ROUND);
+        OkHttpClient httpClient = ChatClient.defaultHttpClientBuilder().dispatcher(dispatcher).build();
+        ChatClient interactive = new ChatClient(httpClient, Runnable::run, new ChatClient.EventListener() { },
+                scheduler);
+        ChatClient background = interactive.withPriority(RequestScheduler.PRIORITY_BACKGROUND);
+
+        Result result = new Result();
+        long throttledBefore = server.getThrottledCount();
+        for (int round = 0; round < ROUNDS; round++) {
+            CountDownLatch done = new CountDownLatch(BACKGROUND_PER_ROUND + INTERACTIVE_PER_ROUND);
+            for (int i = 0; i < BACKGROUND_PER_ROUND; i++) {
+                send(background, server.baseUrl(), result.background, result, done);
+            }
+            for (int i = 0; i < INTERACTIVE_PER_ROUND; i++) {
+                send(interactive, server.baseUrl(), result.interactive, result, done);
+            }
+            if (!done.await(ROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Round " + round + " timed out");
+            }
+        }
+        result.throttled = server.getThrottledCount() - throttledBefore;
+        httpClient.dispatcher().executorService().shutdown();
+        return result;
+    }
+
+    private static void send(ChatClient client, String baseUrl, LatencyRecorder latencies, Result result,
+                             CountDownLatch done) {
+        long start = System.nanoTime();
+        client.execute(baseUrl, API_KEY, MODEL, SYSTEM_PROMPT, USER_PROMPT, new ChatClient.Callback() {
+            @Override
+            public void onSuccess(String text) {
+                latencies.record(System.nanoTime() - start);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                result.failures.incrementAndGet();
+                done.countDown();
+            }
+        });
+    }
+
+    private static void print(String name, Result result) {
+        System.out.println();
+        System.out.println(String.format(Locale.US, "%s: %d throttled (429), %d failed", name,
+                result.throttled, result.failures.get()));
+        System.out.println("  Interactive: " + result.interactive.summary());
+        System.out.println("  Background:  " + result.background.summary());
+    }
+}
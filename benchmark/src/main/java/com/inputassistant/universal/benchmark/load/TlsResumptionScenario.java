@@ -0,0 +1,330 @@
+package com.inputassistant.universal.benchmark.load;
+
+import com.inputassistant.universal.core.api.TlsSessionStore;
+import com.inputassistant.universal.core.queue.JournalCipher;
+import org.conscrypt.Conscrypt;
+import org.conscrypt.SSLClientSessionCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * 持久化TLS会话的验证场景：本机启动一个TLS服务（JDK实现，自签名证书）代替API服务，
+ * 前面加一个按 --rtt 延迟转发的中继模拟移动网络
+ *
+ * 客户端与应用相同：Conscrypt 加 {@link TlsSessionStore}。每次连接都新建 SSLContext 和
+ * TlsSessionStore 模拟进程重启，分别测量没有保存会话（完整握手）与从文件恢复会话时的握手耗时。
+ * 是否恢复成功以证书校验次数判断：恢复会话时不再校验服务端证书。
+ * TLS 1.2 的冷启动连接必须恢复成功，否则以非零状态退出；TLS 1.3 的票据只能使用一次，
+ * Conscrypt 不交给持久化缓存，只作对照（TLS 1.3 的完整握手本来就只需一次往返）
+ *
+ * ./gradlew :benchmark:tlsResumptionTest -PloadArgs="--rtt=100 --runs=10"
+ */
+public class TlsResumptionScenario {
+    private static final String HOST = "localhost";
+    private static final char[] PASSWORD = "standin".toCharArray();
+    private static final String[] PROTOCOLS = {"TLSv1.2", "TLSv1.3"};
+    // 需要验证恢复的协议版本
+    private static final String PERSISTED_PROTOCOL = "TLSv1.2";
+
+    private long rttMs = 100;
+    private int runs = 10;
+
+    /**
+     * 校验服务端证书时计数；恢复会话的握手不会调用
+     */
+    private static final class CountingTrustManager implements X509TrustManager {
+        final X509TrustManager delegate;
+        final AtomicInteger checks = new AtomicInteger();
+
+        CountingTrustManager(X509TrustManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            checks.incrementAndGet();
+            delegate.checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return delegate.getAcceptedIssuers();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        TlsResumptionScenario scenario = new TlsResumptionScenario();
+        scenario.parseArgs(args);
+        System.exit(scenario.run() ? 0 : 1);
+    }
+
+    private void parseArgs(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "rtt": rttMs = Long.parseLong(value); break;
+                case "runs": runs = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+    }
+
+    private boolean run() throws Exception {
+        File dir = Files.createTempDirectory("tls-standin").toFile();
+        File keyStoreFile = new File(dir, "standin.p12");
+        generateKeyStore(keyStoreFile);
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (FileInputStream in = new FileInputStream(keyStoreFile)) {
+            keyStore.load(in, PASSWORD);
+        }
+
+        boolean passed = true;
+        System.out.println(String.format(Locale.US, "TLS stand-in server, simulated RTT %dms, %d runs", rttMs, runs));
+        for (String protocol : PROTOCOLS) {
+            try (ServerSocket server = startServer(keyStore, protocol);
+                 ServerSocket relay = startRelay(server.getLocalPort())) {
+                File storeFile = new File(dir, "tls_sessions_" + protocol);
+                LatencyRecorder full = new LatencyRecorder();
+                LatencyRecorder resumed = new LatencyRecorder();
+                int fullChecks = 0;
+                int resumedChecks = 0;
+                for (int i = 0; i < runs; i++) {
+                    // 没有保存的会话：完整握手
+                    storeFile.delete();
+                    fullChecks += connect(keyStore, protocol, relay.getLocalPort(), storeFile, full);
+                    // 上一次连接保存了会话，“重启”后从文件恢复
+                    resumedChecks += connect(keyStore, protocol, relay.getLocalPort(), storeFile, resumed);
+                }
+                long saved = full.percentileNanos(50) - resumed.percentileNanos(50);
+                System.out.println();
+                System.out.println(protocol + ":");
+                System.out.println("  Full handshake:    " + full.summary()
+                        + String.format(Locale.US, " (%d certificate checks)", fullChecks));
+                System.out.println("  Resumed from disk: " + resumed.summary()
+                        + String.format(Locale.US, " (%d certificate checks)", resumedChecks));
+                System.out.println(String.format(Locale.US, "  Saved: %.1fms at p50", saved / 1e6));
+                if (!PERSISTED_PROTOCOL.equals(protocol)) {
+                    System.out.println("  (single-use tickets are not persisted; reference only)");
+                } else if (fullChecks != runs || resumedChecks != 0) {
+                    System.out.println("  FAIL: sessions were not resumed after restart");
+                    passed = false;
+                }
+            }
+        }
+        System.out.println();
+        System.out.println(passed ? "PASS" : "FAIL");
+        return passed;
+    }
+
+    /**
+     * 模拟一次进程启动：新的 SSLContext 与 TlsSessionStore，握手后把新会话写回文件
+     * @return 证书校验次数
+     */
+    private static int connect(KeyStore keyStore, String protocol, int port, File storeFile,
+                               LatencyRecorder handshakes) throws IOException, GeneralSecurityException {
+        TlsSessionStore store = new TlsSessionStore(storeFile);
+        // JVM上不加密；应用中使用 Keystore 密钥
+        store.load(JournalCipher.NONE);
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        CountingTrustManager trustManager =
+                new CountingTrustManager((X509TrustManager) trustManagerFactory.getTrustManagers()[0]);
+        SSLContext context = SSLContext.getInstance("TLS", Conscrypt.newProvider());
+        context.init(null, new X509TrustManager[]{trustManager}, null);
+        Conscrypt.setClientSessionCache(context, new SSLClientSessionCache() {
+            @Override
+            public byte[] getSessionData(String host, int port) {
+                return store.get(host, port);
+            }
+
+            @Override
+            public void putSessionData(SSLSession session, byte[] sessionData) {
+                store.put(session.getPeerHost(), session.getPeerPort(), sessionData);
+            }
+        });
+
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(HOST, port)) {
+            socket.setEnabledProtocols(new String[]{protocol});
+            long start = System.nanoTime();
+            socket.startHandshake();
+            handshakes.record(System.nanoTime() - start);
+            // 读到服务端的一个字节，TLS 1.3 握手后下发的会话票据也就处理完了
+            if (socket.getInputStream().read() < 0) {
+                throw new IOException("Stand-in server closed the connection");
+            }
+        }
+        store.flush();
+        return trustManager.checks.get();
+    }
+
+    /**
+     * 用 keytool 生成 localhost 的自签名证书，不必在仓库里保存密钥
+     */
+    private static void generateKeyStore(File file) throws IOException, InterruptedException {
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", HOST, "-keyalg", "EC",
+                "-groupname", "secp256r1", "-dname", "CN=" + HOST, "-ext", "SAN=dns:" + HOST + ",ip:127.0.0.1",
+                "-validity", "1", "-storetype", "PKCS12", "-keystore", file.getPath(),
+                "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        byte[] output = readAll(process.getInputStream());
+        if (process.waitFor() != 0) {
+            throw new IOException("keytool failed: " + new String(output));
+        }
+    }
+
+    /**
+     * JDK 实现的TLS服务：握手后写一个字节并关闭
+     */
+    private static ServerSocket startServer(KeyStore keyStore, String protocol) throws Exception {
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagerFactory.getKeyManagers(), null, null);
+        SSLServerSocket server = (SSLServerSocket) context.getServerSocketFactory()
+                .createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        server.setEnabledProtocols(new String[]{protocol});
+        startDaemon("TlsStandIn", () -> {
+            while (!server.isClosed()) {
+                Socket accepted;
+                try {
+                    accepted = server.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                startDaemon("TlsStandIn-conn", () -> {
+                    try (SSLSocket socket = (SSLSocket) accepted) {
+                        socket.startHandshake();
+                        OutputStream out = socket.getOutputStream();
+                        out.write('.');
+                        out.flush();
+                        // 等客户端关闭，避免票据还没送达连接就断开
+                        socket.getInputStream().read();
+                    } catch (IOException e) {
+                        // 客户端握手失败时由客户端报告
+                    }
+                });
+            }
+        });
+        return server;
+    }
+
+    /**
+     * 每个方向延迟 RTT/2 转发的TCP中继
+     */
+    private ServerSocket startRelay(int targetPort) throws IOException {
+        ServerSocket relay = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        startDaemon("TlsRelay", () -> {
+            while (!relay.isClosed()) {
+                try {
+                    Socket client = relay.accept();
+                    Socket target = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                    client.setTcpNoDelay(true);
+                    target.setTcpNoDelay(true);
+                    pipe(client, target);
+                    pipe(target, client);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        return relay;
+    }
+
+    /**
+     * 读取线程把数据块连同到期时刻放入队列，写入线程按时刻写出，顺序不变
+     */
+    private void pipe(Socket from, Socket to) {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(rttMs) / 2;
+        BlockingQueue<Object[]> queue = new LinkedBlockingQueue<>();
+        startDaemon("TlsRelay-read", () -> {
+            byte[] buffer = new byte[16 * 1024];
+            try {
+                InputStream in = from.getInputStream();
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    queue.add(new Object[]{System.nanoTime() + delayNanos, Arrays.copyOf(buffer, read)});
+                }
+            } catch (IOException e) {
+                // 对端关闭
+            }
+            queue.add(new Object[]{System.nanoTime() + delayNanos, null});
+        });
+        startDaemon("TlsRelay-write", () -> {
+            try {
+                OutputStream out = to.getOutputStream();
+                while (true) {
+                    Object[] chunk = queue.take();
+                    long wait = (Long) chunk[0] - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    if (chunk[1] == null) {
+                        to.shutdownOutput();
+                        return;
+                    }
+                    out.write((byte[]) chunk[1]);
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // 对端关闭
+            }
+        });
+    }
+
+    private static void startDaemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        int total = 0;
+        int read;
+        while ((read = in.read(buffer, total, buffer.length - total)) > 0) {
+            total += read;
+            if (total == buffer.length) {
+                buffer = Arrays.copyOf(buffer, total * 2);
+            }
+        }
+        return Arrays.copyOf(buffer, total);
+    }
+}
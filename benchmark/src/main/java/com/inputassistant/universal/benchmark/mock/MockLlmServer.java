@@ -0,0 +1,698 @@
+package com.inputassistant.universal.benchmark.mock;
+
+import com.inputassistant.universal.benchmark.load.LoadOptions;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 本地模拟的OpenAI兼容服务
+ * 实现 POST /chat/completions（普通与SSE流式）和 GET /models，用于压测和手动联调；
+ * 另有 GET /dns-query（DNS over HTTPS 的 JSON 格式），作为本地的假解析服务。
+ * 可选接受 gzip 压缩的请求体（在响应中以 Accept-Encoding 声明，RFC 7694），并对客户端接受 gzip 的非流式响应压缩
+ *
+ * 直接基于 ServerSocket 实现HTTP/1.1（支持keep-alive），以便精确控制每个字节的发送时机：
+ * 首字节延迟、逐token输出速率、429/5xx错误注入、流式响应中途断开、慢速逐字节发送（slow-loris）
+ * 行为通过 {@link Behavior} 配置，运行期间修改立即对后续请求生效
+ */
+public class MockLlmServer implements Closeable {
+    private static final String[] TOKENS = {
+            "你好", "，", "这是", "一段", "模拟", "的", "回答", "。", " The", " quick", " brown", " fox", "."
+    };
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final Pattern CANDIDATE_COUNT = Pattern.compile("\"n\"\\s*:\\s*(\\d+)");
+
+    private final Behavior behavior;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "MockLlmServer-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong dnsQueryCount = new AtomicLong();
+    // 线路上的请求体与响应体字节数（压缩后）
+    private final AtomicLong requestBodyBytes = new AtomicLong();
+    private final AtomicLong responseBodyBytes = new AtomicLong();
+    private final AtomicLong rejectedEncodingCount = new AtomicLong();
+    // 服务端限流的令牌桶，容量为一秒的请求数
+    private double rateLimitTokens = -1;
+    private long rateLimitRefillNanos;
+
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public MockLlmServer(Behavior behavior) {
+        this.behavior = behavior;
+    }
+
+    /**
+     * 服务行为配置，字段均为volatile，可在运行中调整
+     */
+    public static class Behavior {
+        volatile long timeToFirstByteMs = 0;
+        volatile double tokensPerSecond = 0;        // 0表示不限速
+        volatile int responseTokens = 20;
+        volatile double rate429 = 0;
+        volatile double rate5xx = 0;
+        volatile double truncateRate = 0;           // 流式响应在中途断开的比例
+        volatile int slowLorisBytesPerSecond = 0;   // 大于0时响应体按该速率逐字节发送
+        volatile int retryAfterSeconds = 1;
+        volatile int rateLimitPerMinute = 0;        // 大于0时按该速率限流，超出返回429和x-ratelimit-*
+        volatile String dnsIpv4 = "127.0.0.1";      // /dns-query 的 A 记录，为空时没有记录
+        volatile String dnsIpv6 = "::1";            // /dns-query 的 AAAA 记录，为空时没有记录
+        volatile boolean gzipRequests = false;      // 接受gzip请求体；否则返回415
+        volatile boolean gzipResponses = false;     // 客户端接受时压缩非流式响应
+
+        public Behavior timeToFirstByteMs(long value) {
+            timeToFirstByteMs = value;
+            return this;
+        }
+
+        public Behavior tokensPerSecond(double value) {
+            tokensPerSecond = value;
+            return this;
+        }
+
+        public Behavior responseTokens(int value) {
+            responseTokens = value;
+            return this;
+        }
+
+        public Behavior rate429(double value) {
+            rate429 = value;
+            return this;
+        }
+
+        public Behavior rate5xx(double value) {
+            rate5xx = value;
+            return this;
+        }
+
+        public Behavior truncateRate(double value) {
+            truncateRate = value;
+            return this;
+        }
+
+        public Behavior slowLorisBytesPerSecond(int value) {
+            slowLorisBytesPerSecond = value;
+            return this;
+        }
+
+        public Behavior retryAfterSeconds(int value) {
+            retryAfterSeconds = value;
+            return this;
+        }
+
+        public Behavior rateLimitPerMinute(int value) {
+            rateLimitPerMinute = value;
+            return this;
+        }
+
+        public Behavior dnsAnswers(String ipv4, String ipv6) {
+            dnsIpv4 = ipv4;
+            dnsIpv6 = ipv6;
+            return this;
+        }
+
+        public Behavior gzipRequests(boolean value) {
+            gzipRequests = value;
+            return this;
+        }
+
+        public Behavior gzipResponses(boolean value) {
+            gzipResponses = value;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "ttfb=%dms tps=%s tokens=%d 429=%.2f 5xx=%.2f truncate=%.2f slowLoris=%sB/s rateLimit=%s/min"
+                            + " gzip=%s/%s",
+                    timeToFirstByteMs, tokensPerSecond > 0 ? String.valueOf(tokensPerSecond) : "unlimited",
+                    responseTokens, rate429, rate5xx, truncateRate,
+                    slowLorisBytesPerSecond > 0 ? String.valueOf(slowLorisBytesPerSecond) : "off",
+                    rateLimitPerMinute > 0 ? String.valueOf(rateLimitPerMinute) : "off",
+                    gzipRequests ? "requests" : "-", gzipResponses ? "responses" : "-");
+        }
+    }
+
+    /**
+     * 生成约指定字符数的回答所需的token数
+     */
+    public static int tokensForChars(int chars) {
+        int totalChars = 0;
+        for (String token : TOKENS) {
+            totalChars += token.length();
+        }
+        return Math.max(1, Math.round((float) chars * TOKENS.length / totalChars));
+    }
+
+    /**
+     * 启动服务
+     * @param port 0表示随机端口
+     */
+    public synchronized void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 128, InetAddress.getByName("0.0.0.0"));
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "MockLlmServer-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 供客户端使用的基础URL
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + getPort() + "/v1";
+    }
+
+    /**
+     * @return 本地假解析服务的地址，可作为 DohDns 的解析服务
+     */
+    public String dohUrl() {
+        return "http://127.0.0.1:" + getPort() + "/dns-query";
+    }
+
+    public long getDnsQueryCount() {
+        return dnsQueryCount.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    /**
+     * @return 收到的请求体字节数，压缩的请求按压缩后计
+     */
+    public long getRequestBodyBytes() {
+        return requestBodyBytes.get();
+    }
+
+    /**
+     * @return 发出的响应体字节数，压缩的响应按压缩后计
+     */
+    public long getResponseBodyBytes() {
+        return responseBodyBytes.get();
+    }
+
+    /**
+     * @return 因不接受压缩的请求体而返回415的次数
+     */
+    public long getRejectedEncodingCount() {
+        return rejectedEncodingCount.get();
+    }
+
+    /**
+     * @return 因超出限流而返回429的请求数（不含随机注入的429）
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        connectionExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connectionExecutor.execute(() -> handleConnection(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("MockLlmServer accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            // HTTP/1.1 keep-alive：同一连接上依次处理多个请求，直到客户端关闭
+            while (running) {
+                HttpRequest request = HttpRequest.read(in);
+                if (request == null) {
+                    return;
+                }
+                requestCount.incrementAndGet();
+                if (!handleRequest(request, out) || request.closeConnection) {
+                    return;
+                }
+            }
+        } catch (SocketException e) {
+            // 客户端取消请求或断开连接
+        } catch (IOException | InterruptedException e) {
+            if (running) {
+                System.err.println("MockLlmServer connection error: " + e);
+            }
+        }
+    }
+
+    /**
+     * @return 连接是否可以继续复用
+     */
+    private boolean handleRequest(HttpRequest request, OutputStream out) throws IOException, InterruptedException {
+        requestBodyBytes.addAndGet(request.rawBodyBytes);
+        if ("OPTIONS".equals(request.method)) {
+            writeResponse(out, 204, "text/plain", "", "Allow: GET, POST, OPTIONS\r\n", request);
+            return true;
+        }
+        if (request.contentEncoding != null) {
+            if (!behavior.gzipRequests || !"gzip".equalsIgnoreCase(request.contentEncoding)) {
+                rejectedEncodingCount.incrementAndGet();
+                writeResponse(out, 415, "application/json",
+                        errorJson("unsupported_encoding", "Unsupported Content-Encoding"), "", request);
+                return true;
+            }
+            request.decodeGzipBody();
+        }
+        if ("GET".equals(request.method) && request.path.startsWith("/dns-query")) {
+            dnsQueryCount.incrementAndGet();
+            writeResponse(out, 200, "application/dns-json", dnsJson(request.path), "", request);
+            return true;
+        }
+        if ("GET".equals(request.method) && request.path.endsWith("/models")) {
+            writeResponse(out, 200, "application/json", modelsJson(), "", request);
+            return true;
+        }
+        if (!"POST".equals(request.method) || !request.path.endsWith("/chat/completions")) {
+            writeResponse(out, 404, "application/json", errorJson("not_found", "Unknown path " + request.path), "",
+                    request);
+            return true;
+        }
+
+        String rateLimitHeaders = "";
+        int limit = behavior.rateLimitPerMinute;
+        if (limit > 0) {
+            long waitNanos;
+            int remaining;
+            long resetMs;
+            synchronized (this) {
+                waitNanos = takeRateLimitToken(limit);
+                remaining = (int) Math.floor(rateLimitTokens);
+                // 下一个令牌到来的时间
+                resetMs = Math.max(1, (long) Math.ceil((1 - (rateLimitTokens - remaining)) * 60000.0 / limit));
+            }
+            rateLimitHeaders = "x-ratelimit-limit-requests: " + limit + "\r\n"
+                    + "x-ratelimit-remaining-requests: " + remaining + "\r\n"
+                    + "x-ratelimit-reset-requests: " + resetMs + "ms\r\n";
+            if (waitNanos > 0) {
+                throttledCount.incrementAndGet();
+                writeResponse(out, 429, "application/json",
+                        errorJson("rate_limit_exceeded", "Rate limit reached for requests"),
+                        rateLimitHeaders + "Retry-After: " + (long) Math.ceil(waitNanos / 1e9) + "\r\n", request);
+                return true;
+            }
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        if (roll < behavior.rate429) {
+            injectedErrorCount.incrementAndGet();
+            writeResponse(out, 429, "application/json",
+                    errorJson("rate_limit_exceeded", "Rate limit reached"),
+                    "Retry-After: " + behavior.retryAfterSeconds + "\r\n", request);
+            return true;
+        }
+        if (roll < behavior.rate429 + behavior.rate5xx) {
+            injectedErrorCount.incrementAndGet();
+            int[] codes = {500, 502, 503};
+            writeResponse(out, codes[random.nextInt(codes.length)], "application/json",
+                    errorJson("server_error", "Injected server error"), "", request);
+            return true;
+        }
+
+        sleep(behavior.timeToFirstByteMs);
+        if (request.body.contains("\"stream\":true")) {
+            return writeStream(out, random.nextDouble() < behavior.truncateRate,
+                    rateLimitHeaders + acceptEncodingHeader());
+        }
+
+        // 非流式端点在生成完全部token后才返回；n > 1 时各候选并行生成，耗时与单个候选相同
+        int tokens = behavior.responseTokens;
+        String[] contents = new String[candidateCount(request.body)];
+        for (int c = 0; c < contents.length; c++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < tokens; i++) {
+                // 每个候选从不同的位置开始取词，保证内容互不相同
+                content.append(TOKENS[(i + c) % TOKENS.length]);
+            }
+            contents[c] = content.toString();
+        }
+        sleep(generationDelayMs(tokens));
+        writeResponse(out, 200, "application/json", completionJson(contents, tokens), rateLimitHeaders, request);
+        return true;
+    }
+
+    /**
+     * 从服务端令牌桶中取一个令牌，调用方持有锁
+     * @return 0 表示取得；否则为下一个令牌到来前的纳秒数
+     */
+    private long takeRateLimitToken(int perMinute) {
+        double capacity = Math.max(1, perMinute / 60.0);
+        long now = System.nanoTime();
+        if (rateLimitTokens < 0) {
+            rateLimitTokens = capacity;
+        } else {
+            rateLimitTokens = Math.min(capacity, rateLimitTokens + (now - rateLimitRefillNanos) / 60e9 * perMinute);
+        }
+        rateLimitRefillNanos = now;
+        if (rateLimitTokens >= 1) {
+            rateLimitTokens -= 1;
+            return 0;
+        }
+        return (long) ((1 - rateLimitTokens) * 60e9 / perMinute);
+    }
+
+    private static int candidateCount(String body) {
+        Matcher matcher = CANDIDATE_COUNT.matcher(body);
+        return matcher.find() ? Math.max(1, Integer.parseInt(matcher.group(1))) : 1;
+    }
+
+    /**
+     * 以chunked编码逐token发送SSE
+     * @param truncate 为true时发送一半token后直接断开连接，不发送结束块
+     * @return 连接是否可以继续复用
+     */
+    private boolean writeStream(OutputStream out, boolean truncate, String extraHeaders)
+            throws IOException, InterruptedException {
+        String headers = "HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/event-stream; charset=utf-8\r\n"
+                + "Cache-Control: no-cache\r\n"
+                + "Transfer-Encoding: chunked\r\n"
+                + extraHeaders
+                + "\r\n";
+        out.write(headers.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        int tokens = behavior.responseTokens;
+        long perTokenMs = generationDelayMs(1);
+        for (int i = 0; i < tokens; i++) {
+            if (truncate && i == tokens / 2) {
+                injectedErrorCount.incrementAndGet();
+                return false;
+            }
+            sleep(perTokenMs);
+            writeChunk(out, "data: " + chunkJson(TOKENS[i % TOKENS.length]) + "\n\n");
+        }
+        writeChunk(out, "data: [DONE]\n\n");
+        out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return true;
+    }
+
+    private void writeChunk(OutputStream out, String data) throws IOException, InterruptedException {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        out.write((Integer.toHexString(bytes.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        writeBody(out, bytes);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private void writeResponse(OutputStream out, int code, String contentType, String body, String extraHeaders,
+                               HttpRequest request) throws IOException, InterruptedException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String encodingHeader = "";
+        if (behavior.gzipResponses && request.acceptsGzip && bytes.length > 0) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            encodingHeader = "Content-Encoding: gzip\r\n";
+        }
+        String headers = "HTTP/1.1 " + code + " " + reason(code) + "\r\n"
+                + "Content-Type: " + contentType + "; charset=utf-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + encodingHeader
+                + acceptEncodingHeader()
+                + extraHeaders
+                + "\r\n";
+        out.write(headers.getBytes(StandardCharsets.US_ASCII));
+        writeBody(out, bytes);
+        out.flush();
+    }
+
+    /**
+     * 接受压缩的请求体时在每个响应中声明（RFC 7694）
+     */
+    private String acceptEncodingHeader() {
+        return behavior.gzipRequests ? "Accept-Encoding: gzip\r\n" : "";
+    }
+
+    /**
+     * 写出响应体；开启slow-loris时每50ms只发送一小段
+     */
+    private void writeBody(OutputStream out, byte[] bytes) throws IOException, InterruptedException {
+        responseBodyBytes.addAndGet(bytes.length);
+        int bytesPerSecond = behavior.slowLorisBytesPerSecond;
+        if (bytesPerSecond <= 0) {
+            out.write(bytes);
+            return;
+        }
+        int slice = Math.max(1, bytesPerSecond / 20);
+        for (int offset = 0; offset < bytes.length; offset += slice) {
+            out.write(bytes, offset, Math.min(slice, bytes.length - offset));
+            out.flush();
+            Thread.sleep(50);
+        }
+    }
+
+    private long generationDelayMs(int tokens) {
+        double tokensPerSecond = behavior.tokensPerSecond;
+        return tokensPerSecond > 0 ? (long) (tokens * 1000 / tokensPerSecond) : 0;
+    }
+
+    private static void sleep(long ms) throws InterruptedException {
+        if (ms > 0) {
+            Thread.sleep(ms);
+        }
+    }
+
+    private static String completionJson(String[] contents, int completionTokens) {
+        StringBuilder choices = new StringBuilder();
+        for (int i = 0; i < contents.length; i++) {
+            if (i > 0) choices.append(',');
+            choices.append("{\"index\":").append(i).append(",\"message\":{\"role\":\"assistant\",")
+                    .append("\"content\":\"").append(contents[i]).append("\"},\"finish_reason\":\"stop\"}");
+        }
+        int totalTokens = completionTokens * contents.length;
+        return "{\"id\":\"chatcmpl-mock\",\"object\":\"chat.completion\",\"created\":" + nowSeconds()
+                + ",\"model\":\"mock-model\",\"choices\":[" + choices + "],"
+                + "\"usage\":{\"prompt_tokens\":0,\"completion_tokens\":" + totalTokens
+                + ",\"total_tokens\":" + totalTokens + "}}";
+    }
+
+    private static String chunkJson(String delta) {
+        return "{\"id\":\"chatcmpl-mock\",\"object\":\"chat.completion.chunk\",\"created\":" + nowSeconds()
+                + ",\"model\":\"mock-model\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + delta
+                + "\"},\"finish_reason\":null}]}";
+    }
+
+    /**
+     * 按 name 与 type 参数返回 DoH JSON 应答，地址取自 {@link Behavior} 的 dnsIpv4 / dnsIpv6
+     */
+    private String dnsJson(String path) {
+        String name = "";
+        String type = "A";
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            for (String pair : path.substring(query + 1).split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0 && "name".equals(pair.substring(0, eq))) {
+                    name = pair.substring(eq + 1);
+                } else if (eq > 0 && "type".equals(pair.substring(0, eq))) {
+                    type = pair.substring(eq + 1);
+                }
+            }
+        }
+        boolean ipv6 = "AAAA".equals(type) || "28".equals(type);
+        String address = ipv6 ? behavior.dnsIpv6 : behavior.dnsIpv4;
+        String answer = address == null || address.isEmpty() ? ""
+                : ",\"Answer\":[{\"name\":\"" + name + ".\",\"type\":" + (ipv6 ? 28 : 1)
+                        + ",\"TTL\":300,\"data\":\"" + address + "\"}]";
+        return "{\"Status\":0" + answer + "}";
+    }
+
+    private static String modelsJson() {
+        return "{\"object\":\"list\",\"data\":[{\"id\":\"mock-model\",\"object\":\"model\",\"created\":0,"
+                + "\"owned_by\":\"mock\"}]}";
+    }
+
+    private static String errorJson(String type, String message) {
+        return "{\"error\":{\"message\":\"" + message + "\",\"type\":\"" + type + "\"}}";
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String reason(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 204: return "No Content";
+            case 404: return "Not Found";
+            case 415: return "Unsupported Media Type";
+            case 429: return "Too Many Requests";
+            case 500: return "Internal Server Error";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            default: return "Unknown";
+        }
+    }
+
+    /**
+     * 解析后的HTTP请求，只保留模拟服务需要的部分
+     */
+    private static class HttpRequest {
+        String method;
+        String path;
+        String body = "";
+        boolean closeConnection;
+        String contentEncoding;
+        boolean acceptsGzip;
+        int rawBodyBytes;
+        private byte[] rawBody;
+
+        /**
+         * @return 连接已关闭时返回 null
+         */
+        static HttpRequest read(InputStream in) throws IOException {
+            String requestLine = readLine(in);
+            if (requestLine == null || requestLine.isEmpty()) {
+                return null;
+            }
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 2) {
+                throw new IOException("Malformed request line: " + requestLine);
+            }
+            HttpRequest request = new HttpRequest();
+            request.method = parts[0];
+            request.path = parts[1];
+
+            int contentLength = 0;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) continue;
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.US);
+                String value = line.substring(colon + 1).trim();
+                if ("content-length".equals(name)) {
+                    contentLength = Integer.parseInt(value);
+                } else if ("connection".equals(name) && "close".equalsIgnoreCase(value)) {
+                    request.closeConnection = true;
+                } else if ("content-encoding".equals(name)) {
+                    request.contentEncoding = value;
+                } else if ("accept-encoding".equals(name)) {
+                    request.acceptsGzip = value.toLowerCase(Locale.US).contains("gzip");
+                }
+            }
+
+            if (contentLength > 0) {
+                byte[] body = new byte[contentLength];
+                int read = 0;
+                while (read < contentLength) {
+                    int n = in.read(body, read, contentLength - read);
+                    if (n < 0) throw new IOException("Unexpected end of request body");
+                    read += n;
+                }
+                request.rawBodyBytes = contentLength;
+                request.rawBody = body;
+                if (request.contentEncoding == null) {
+                    request.setBody(body);
+                }
+            }
+            return request;
+        }
+
+        void decodeGzipBody() throws IOException {
+            if (rawBody == null) {
+                return;
+            }
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(rawBody))) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    decoded.write(buffer, 0, n);
+                }
+            }
+            setBody(decoded.toByteArray());
+        }
+
+        private void setBody(byte[] bytes) {
+            // 只用于判断是否流式请求，去掉空白以兼容不同的JSON格式
+            body = new String(bytes, StandardCharsets.UTF_8).replace(" ", "");
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    break;
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+                if (line.size() > MAX_HEADER_BYTES) {
+                    throw new IOException("Header line too long");
+                }
+            }
+            if (b == -1 && line.size() == 0) {
+                return null;
+            }
+            return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * 单独运行模拟服务，便于让真机或模拟器上的应用连接（模拟器中使用 http://10.0.2.2:端口/v1）
+     * 参数同 {@link LoadOptions}
+     */
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        MockLlmServer server = new MockLlmServer(options.behavior());
+        server.start(options.port);
+        System.out.println("Mock server listening on " + server.baseUrl() + " (" + options.behavior() + ")");
+        Thread.currentThread().join();
+    }
+}
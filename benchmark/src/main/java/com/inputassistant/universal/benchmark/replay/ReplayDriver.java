@@ -0,0 +1,261 @@
+package com.inputassistant.universal.benchmark.replay;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.inputassistant.universal.benchmark.load.LatencyRecorder;
+import com.inputassistant.universal.benchmark.mock.MockLlmServer;
+import com.inputassistant.universal.core.api.ChatClient;
+import com.inputassistant.universal.core.text.TextAssembler;
+import com.inputassistant.universal.core.trace.SessionEvent;
+import com.inputassistant.universal.core.trace.SessionTraceCodec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放应用导出的匿名使用轨迹，用真实的请求大小、点击间隔和服务端耗时驱动客户端与文本处理
+ *
+ * 每条事件按记录的输入/指令长度构造请求，模拟服务按记录的耗时和回答长度响应（失败的事件返回5xx），
+ * 统计“客户端开销”（端到端耗时减去模拟的服务端耗时）与文本拼装耗时。
+ * 结果可写入JSON，并与另一次构建的结果比较，超过阈值时以非0状态退出
+ *
+ * ./gradlew :benchmark:replay -PreplayArgs="--trace=traces/sample-session.jsonl --out=build/replay.json"
+ *
+ * 参数：--trace 轨迹文件（必需），--repeat 回放次数，--time-scale 点击间隔与服务端耗时的缩放比例，
+ *       --max-gap 点击间隔上限(ms)，--out 结果文件，--baseline 对比的基准结果，--threshold 允许的退化比例
+ */
+public class ReplayDriver {
+    private static final String API_KEY = "sk-replay";
+    private static final String MODEL = "mock-model";
+    private static final long REQUEST_TIMEOUT_SECONDS = 120;
+
+    private String tracePath;
+    private int repeat = 1;
+    private double timeScale = 1.0;
+    private long maxGapMs = 2000;
+    private String outPath;
+    private String baselinePath;
+    private double threshold = 0.15;
+
+    private final LatencyRecorder endToEnd = new LatencyRecorder();
+    private final LatencyRecorder clientOverhead = new LatencyRecorder();
+    private final LatencyRecorder textEngine = new LatencyRecorder();
+    private int outcomeMismatches = 0;
+    // 使用拼装结果，避免JIT把文本处理当作无用代码消除
+    private long assembledChars = 0;
+
+    /**
+     * 回放结果，也是 --out/--baseline 文件的格式
+     */
+    static class ReplayResult {
+        String trace;
+        int events;
+        int outcomeMismatches;
+        double endToEndP50Ms;
+        double endToEndP95Ms;
+        double clientOverheadP50Ms;
+        double clientOverheadP95Ms;
+        double textEngineP50Us;
+        double textEngineP95Us;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReplayDriver driver = new ReplayDriver();
+        driver.parseArgs(args);
+        boolean regressed = driver.run();
+        // OkHttp的连接池与调度线程会延迟退出，直接结束进程
+        System.exit(regressed ? 1 : 0);
+    }
+
+    private void parseArgs(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "trace": tracePath = value; break;
+                case "repeat": repeat = Integer.parseInt(value); break;
+                case "time-scale": timeScale = Double.parseDouble(value); break;
+                case "max-gap": maxGapMs = Long.parseLong(value); break;
+                case "out": outPath = value; break;
+                case "baseline": baselinePath = value; break;
+                case "threshold": threshold = Double.parseDouble(value); break;
+                default: throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        if (tracePath == null) {
+            throw new IllegalArgumentException("--trace is required");
+        }
+    }
+
+    /**
+     * @return 是否相对基准出现退化
+     */
+    private boolean run() throws IOException, InterruptedException {
+        List<SessionEvent> events;
+        try (Reader reader = new InputStreamReader(new FileInputStream(tracePath), StandardCharsets.UTF_8)) {
+            events = new SessionTraceCodec().decodeAll(reader);
+        }
+        if (events.isEmpty()) {
+            throw new IOException("No events in " + tracePath);
+        }
+        System.out.println(String.format(Locale.US, "Replaying %d events x %d from %s (time scale %.2f)",
+                events.size(), repeat, tracePath, timeScale));
+
+        MockLlmServer.Behavior behavior = new MockLlmServer.Behavior();
+        try (MockLlmServer server = new MockLlmServer(behavior)) {
+            server.start(0);
+            ChatClient client = new ChatClient(
+                    ChatClient.defaultHttpClientBuilder().build(), Runnable::run, ChatClient.EventListener.NONE);
+            for (int round = 0; round < repeat; round++) {
+                for (SessionEvent event : events) {
+                    replay(event, behavior, client, server.baseUrl());
+                }
+            }
+        }
+
+        ReplayResult result = buildResult(events.size() * repeat);
+        printResult(result);
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        if (outPath != null) {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(outPath), StandardCharsets.UTF_8)) {
+                gson.toJson(result, writer);
+            }
+            System.out.println("Result written to " + outPath);
+        }
+        if (baselinePath != null) {
+            ReplayResult baseline;
+            try (Reader reader = new InputStreamReader(new FileInputStream(baselinePath), StandardCharsets.UTF_8)) {
+                baseline = gson.fromJson(reader, ReplayResult.class);
+            }
+            return compare(baseline, result);
+        }
+        return false;
+    }
+
+    /**
+     * 回放单条事件：等待记录的点击间隔，让模拟服务复现记录的耗时与回答长度，然后同步执行请求和文本拼装
+     */
+    private void replay(SessionEvent event, MockLlmServer.Behavior behavior, ChatClient client, String baseUrl)
+            throws InterruptedException {
+        long gapMs = (long) (Math.min(event.gapMs, maxGapMs) * timeScale);
+        if (gapMs > 0) {
+            Thread.sleep(gapMs);
+        }
+
+        long serverDelayMs = (long) (event.latencyMs * timeScale);
+        behavior.timeToFirstByteMs(serverDelayMs)
+                .tokensPerSecond(0)
+                .responseTokens(MockLlmServer.tokensForChars(event.responseChars))
+                .rate5xx(event.success ? 0 : 1);
+
+        String systemPrompt = syntheticText(event.systemPromptChars);
+        String input = syntheticText(event.inputChars);
+        CountDownLatch done = new CountDownLatch(1);
+        String[] response = new String[1];
+        long start = System.nanoTime();
+        client.execute(baseUrl, API_KEY, MODEL, systemPrompt, input, new ChatClient.Callback() {
+            @Override
+            public void onSuccess(String result) {
+                response[0] = result;
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                done.countDown();
+            }
+        });
+        boolean completed = done.await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        endToEnd.record(elapsed);
+        // 注入的错误会立即返回，不包含服务端耗时，只统计成功事件的客户端开销
+        if (event.success) {
+            clientOverhead.record(Math.max(0, elapsed - TimeUnit.MILLISECONDS.toNanos(serverDelayMs)));
+        }
+        if (!completed || (response[0] != null) != event.success) {
+            outcomeMismatches++;
+        }
+
+        // 文本处理：与输入法中捕获文本和回写文本的步骤一致
+        if (response[0] != null) {
+            long textStart = System.nanoTime();
+            int half = input.length() / 2;
+            String captured = TextAssembler.joinAroundCursor(input.substring(0, half), input.substring(half));
+            String assembled = TextAssembler.assemble(captured, response[0], event.replaceMode);
+            textEngine.record(System.nanoTime() - textStart);
+            assembledChars += assembled.length();
+        }
+    }
+
+    private ReplayResult buildResult(int eventCount) {
+        ReplayResult result = new ReplayResult();
+        result.trace = new File(tracePath).getName();
+        result.events = eventCount;
+        result.outcomeMismatches = outcomeMismatches;
+        result.endToEndP50Ms = endToEnd.percentileNanos(50) / 1e6;
+        result.endToEndP95Ms = endToEnd.percentileNanos(95) / 1e6;
+        result.clientOverheadP50Ms = clientOverhead.percentileNanos(50) / 1e6;
+        result.clientOverheadP95Ms = clientOverhead.percentileNanos(95) / 1e6;
+        result.textEngineP50Us = textEngine.percentileNanos(50) / 1e3;
+        result.textEngineP95Us = textEngine.percentileNanos(95) / 1e3;
+        return result;
+    }
+
+    private void printResult(ReplayResult result) {
+        System.out.println();
+        System.out.println("End to end:      " + endToEnd.summary());
+        System.out.println("Client overhead: " + clientOverhead.summary());
+        System.out.println("Text engine:     " + textEngine.summary() + " (" + assembledChars + " chars assembled)");
+        if (result.outcomeMismatches > 0) {
+            System.out.println("Outcome mismatches: " + result.outcomeMismatches);
+        }
+    }
+
+    /**
+     * @return 是否有指标超过基准的 (1 + threshold) 倍
+     */
+    private boolean compare(ReplayResult baseline, ReplayResult current) {
+        System.out.println();
+        System.out.println(String.format(Locale.US, "Compared with %s (threshold %.0f%%):",
+                baselinePath, threshold * 100));
+        boolean regressed = false;
+        regressed |= compareMetric("client overhead p50 (ms)",
+                baseline.clientOverheadP50Ms, current.clientOverheadP50Ms);
+        regressed |= compareMetric("client overhead p95 (ms)",
+                baseline.clientOverheadP95Ms, current.clientOverheadP95Ms);
+        regressed |= compareMetric("text engine p95 (us)", baseline.textEngineP95Us, current.textEngineP95Us);
+        return regressed;
+    }
+
+    private boolean compareMetric(String name, double baseline, double current) {
+        double change = baseline > 0 ? (current - baseline) / baseline : 0;
+        boolean regressed = change > threshold;
+        System.out.println(String.format(Locale.US, "  %-26s %9.3f -> %9.3f (%+.1f%%)%s",
+                name, baseline, current, change * 100, regressed ? "  REGRESSION" : ""));
+        return regressed;
+    }
+
+    private static String syntheticText(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append("今天天气很好，我们一起去公园散步吧。The quick brown fox. ");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
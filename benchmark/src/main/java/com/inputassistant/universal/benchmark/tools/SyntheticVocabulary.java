@@ -0,0 +1,125 @@
+package com.inputassistant.universal.benchmark.tools;
+
+import com.inputassistant.universal.core.token.BpePatterns;
+import com.inputassistant.universal.core.token.BpeVocabulary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 在样本文本上训练一个小型BPE词表
+ * 仓库中不附带真实模型的词表，基准测试用它来覆盖完整的合并流程；结构与真实词表相同，只是规模更小
+ */
+public final class SyntheticVocabulary {
+
+    private SyntheticVocabulary() {
+    }
+
+    /**
+     * @param merges 合并次数，词表大小为 256 + merges
+     */
+    public static BpeVocabulary train(String corpus, int merges) throws IOException {
+        // 预分词后统计每个片段的出现次数，片段表示为token序列
+        Map<List<ByteString>, Integer> words = new HashMap<>();
+        Matcher matcher = Pattern.compile(BpePatterns.CL100K).matcher(corpus);
+        while (matcher.find()) {
+            byte[] bytes = matcher.group().getBytes(StandardCharsets.UTF_8);
+            List<ByteString> word = new ArrayList<>(bytes.length);
+            for (byte b : bytes) {
+                word.add(new ByteString(new byte[]{b}));
+            }
+            words.merge(word, 1, Integer::sum);
+        }
+
+        List<byte[]> tokens = new ArrayList<>();
+        for (int b = 0; b < 256; b++) {
+            tokens.add(new byte[]{(byte) b});
+        }
+        for (int m = 0; m < merges; m++) {
+            Map<List<ByteString>, Integer> pairCounts = new HashMap<>();
+            for (Map.Entry<List<ByteString>, Integer> entry : words.entrySet()) {
+                List<ByteString> word = entry.getKey();
+                for (int i = 0; i + 1 < word.size(); i++) {
+                    pairCounts.merge(Arrays.asList(word.get(i), word.get(i + 1)), entry.getValue(), Integer::sum);
+                }
+            }
+            List<ByteString> best = null;
+            int bestCount = 1;
+            for (Map.Entry<List<ByteString>, Integer> entry : pairCounts.entrySet()) {
+                if (entry.getValue() > bestCount) {
+                    best = entry.getKey();
+                    bestCount = entry.getValue();
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            ByteString merged = best.get(0).concat(best.get(1));
+            tokens.add(merged.bytes);
+
+            Map<List<ByteString>, Integer> next = new HashMap<>();
+            for (Map.Entry<List<ByteString>, Integer> entry : words.entrySet()) {
+                next.merge(applyMerge(entry.getKey(), best.get(0), best.get(1), merged),
+                        entry.getValue(), Integer::sum);
+            }
+            words = next;
+        }
+
+        int[] ranks = new int[tokens.size()];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = i;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BpeVocabulary.write(out, BpePatterns.CL100K, tokens, ranks);
+        return BpeVocabulary.fromBuffer(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static List<ByteString> applyMerge(List<ByteString> word, ByteString left, ByteString right,
+                                               ByteString merged) {
+        List<ByteString> result = new ArrayList<>(word.size());
+        for (int i = 0; i < word.size(); i++) {
+            if (i + 1 < word.size() && word.get(i).equals(left) && word.get(i + 1).equals(right)) {
+                result.add(merged);
+                i++;
+            } else {
+                result.add(word.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static final class ByteString {
+        final byte[] bytes;
+        private final int hash;
+
+        ByteString(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        ByteString concat(ByteString other) {
+            byte[] joined = Arrays.copyOf(bytes, bytes.length + other.bytes.length);
+            System.arraycopy(other.bytes, 0, joined, bytes.length, other.bytes.length);
+            return new ByteString(joined);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ByteString && Arrays.equals(bytes, ((ByteString) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.inputassistant.universal.benchmark.tools;
+
+import com.inputassistant.universal.core.token.BpePatterns;
+import com.inputassistant.universal.core.token.BpeVocabulary;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 把tiktoken格式的词表（每行 "base64编码的token 优先级"）转换为应用使用的内存映射格式
+ *
+ * ./gradlew :benchmark:convertVocabulary -PconvertArgs="cl100k_base.tiktoken ../app/src/main/assets/tokenizers/cl100k_base.bpe"
+ * 预分词正则根据输出文件名（cl100k_base / o200k_base）选择
+ */
+public class VocabularyConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: VocabularyConverter <input.tiktoken> <output.bpe>");
+            System.exit(2);
+        }
+        File output = new File(args[1]);
+        String vocabulary = output.getName().replaceFirst("\\.bpe$", "");
+
+        List<byte[]> tokens = new ArrayList<>();
+        List<Integer> ranks = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                int space = line.indexOf(' ');
+                tokens.add(Base64.getDecoder().decode(line.substring(0, space)));
+                ranks.add(Integer.parseInt(line.substring(space + 1)));
+            }
+        }
+
+        int[] rankArray = new int[ranks.size()];
+        for (int i = 0; i < rankArray.length; i++) {
+            rankArray[i] = ranks.get(i);
+        }
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            BpeVocabulary.write(out, BpePatterns.forVocabulary(vocabulary), tokens, rankArray);
+        }
+        System.out.println("Wrote " + tokens.size() + " tokens to " + output + " (" + output.length() + " bytes)");
+    }
+}
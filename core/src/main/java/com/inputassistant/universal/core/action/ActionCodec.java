@@ -0,0 +1,30 @@
+package com.inputassistant.universal.core.action;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.inputassistant.universal.model.Action;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Action列表的JSON序列化
+ */
+public final class ActionCodec {
+    private static final Type LIST_TYPE = new TypeToken<List<Action>>(){}.getType();
+
+    private final Gson gson = new Gson();
+
+    public String encode(List<Action> actions) {
+        return gson.toJson(actions, LIST_TYPE);
+    }
+
+    /**
+     * @return 解析结果，输入为空时返回空列表，不会返回 null
+     */
+    public List<Action> decode(String json) {
+        List<Action> actions = gson.fromJson(json, LIST_TYPE);
+        return actions != null ? actions : new ArrayList<>();
+    }
+}
@@ -0,0 +1,152 @@
+package com.inputassistant.universal.core.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 根据观测到的耗时分位数计算每个请求的超时
+ *
+ * - 连接：按端点统计 TCP+TLS 建连耗时，p99 的3倍
+ * - 首字节（仅流式）：按端点 + 模型 + 输入长度档位统计从请求发出到第一段内容的耗时，p99 的2倍再加余量；
+ *   长输入的预填充更慢，下限随输入长度提高
+ * - 流式空闲：按端点 + 模型统计每次请求中相邻两段内容的最大间隔，p99 的3倍再加余量；
+ *   收到第一段内容后改用该值作为读取超时，只要还在持续输出就不会超时，长回答不受影响
+ * 样本不足 {@link #MIN_SAMPLES} 时使用默认值；所有值都限制在上下界之间
+ * 超时本身也按已等待的时间记为样本，否则只从成功请求学习，p99 永远不会超过当前的超时
+ *
+ * HTTP/1.1 下连接级的读取超时同时是 socket 的超时，收到第一段内容后只放宽 Okio 的超时不够，
+ * 因此流式请求的连接级读取超时取首字节与空闲超时中较大的一个（{@link Deadlines#readTimeoutMs}），
+ * 各阶段的实际限制由读取响应体时设置的 Okio 超时负责
+ *
+ * 非流式请求的“首字节”就是整个生成，耗时取决于输出长度而不是端点状态，历史样本多为短输入，
+ * 据此推算会在长输入或大 max_tokens 的生成途中超时，并计入熔断与离线重试；因此读取超时固定为
+ * {@link #BLOCKING_READ_MS}，只有连接超时自适应
+ * 线程安全
+ */
+public final class AdaptiveTimeouts {
+    public static final int MIN_SAMPLES = 20;
+    private static final int WINDOW = 200;
+
+    private static final long DEFAULT_CONNECT_MS = 10_000;
+    private static final long MIN_CONNECT_MS = 1_500;
+    private static final long MAX_CONNECT_MS = 30_000;
+
+    private static final long DEFAULT_STREAM_FIRST_BYTE_MS = 30_000;
+    private static final long MIN_STREAM_FIRST_BYTE_MS = 5_000;
+    private static final long MAX_STREAM_FIRST_BYTE_MS = 90_000;
+    // 首字节下限每千字符输入增加的时间，大致对应较慢端点的预填充速度
+    private static final long PREFILL_MS_PER_KCHAR = 250;
+    // 输入长度档位的上界（字符），不同档位的首字节耗时分开统计
+    private static final int[] INPUT_SIZE_CLASSES = {2_000, 16_000};
+
+    static final long BLOCKING_READ_MS = 180_000;
+
+    private static final long DEFAULT_IDLE_MS = 20_000;
+    private static final long MIN_IDLE_MS = 3_000;
+    private static final long MAX_IDLE_MS = 60_000;
+
+    /**
+     * 一次请求使用的超时，作为 tag 附在 OkHttp 的 Request 上
+     */
+    public static final class Deadlines {
+        public final String endpointKey;
+        public final String modelKey;
+        /** 首字节样本的统计键，在 modelKey 上加输入长度档位 */
+        final String firstByteKey;
+        public final boolean stream;
+        public final long connectMs;
+        /** 流式请求收到第一段内容前的读取超时；非流式请求为固定的 {@link #BLOCKING_READ_MS} */
+        public final long firstByteMs;
+        /** 流式请求收到第一段内容后的读取超时；非流式请求不使用 */
+        public final long idleMs;
+
+        Deadlines(String endpointKey, String modelKey, String firstByteKey, boolean stream,
+                  long connectMs, long firstByteMs, long idleMs) {
+            this.endpointKey = endpointKey;
+            this.modelKey = modelKey;
+            this.firstByteKey = firstByteKey;
+            this.stream = stream;
+            this.connectMs = connectMs;
+            this.firstByteMs = firstByteMs;
+            this.idleMs = idleMs;
+        }
+
+        /**
+         * 连接级读取超时：流式请求不能小于空闲超时，否则 HTTP/1.1 的 socket 会在输出途中的停顿里先超时
+         */
+        public long readTimeoutMs() {
+            return Math.max(firstByteMs, idleMs);
+        }
+    }
+
+    private final Map<String, LatencyHistogram> connect = new HashMap<>();
+    private final Map<String, LatencyHistogram> firstByte = new HashMap<>();
+    private final Map<String, LatencyHistogram> idleGaps = new HashMap<>();
+
+    /**
+     * @param endpointKey {@link RequestScheduler#key} 生成的端点标识
+     * @param inputChars 系统提示词与用户输入的总字符数
+     */
+    public synchronized Deadlines deadlines(String endpointKey, String modelName, boolean stream, int inputChars) {
+        String modelKey = endpointKey + "|" + modelName + (stream ? "|stream" : "");
+        String firstByteKey = modelKey + "|" + sizeClass(inputChars);
+        long connectMs = derive(connect.get(endpointKey), 3, 0,
+                DEFAULT_CONNECT_MS, MIN_CONNECT_MS, MAX_CONNECT_MS);
+        long firstByteMs = BLOCKING_READ_MS;
+        long idleMs = 0;
+        if (stream) {
+            long prefillFloorMs = MIN_STREAM_FIRST_BYTE_MS + (long) inputChars * PREFILL_MS_PER_KCHAR / 1000;
+            firstByteMs = Math.min(MAX_STREAM_FIRST_BYTE_MS, Math.max(prefillFloorMs,
+                    derive(firstByte.get(firstByteKey), 2, 2_000,
+                            DEFAULT_STREAM_FIRST_BYTE_MS, MIN_STREAM_FIRST_BYTE_MS, MAX_STREAM_FIRST_BYTE_MS)));
+            idleMs = derive(idleGaps.get(modelKey), 3, 1_000, DEFAULT_IDLE_MS, MIN_IDLE_MS, MAX_IDLE_MS);
+        }
+        return new Deadlines(endpointKey, modelKey, firstByteKey, stream, connectMs, firstByteMs, idleMs);
+    }
+
+    public synchronized void recordConnect(String endpointKey, long ms) {
+        histogram(connect, endpointKey).record(ms);
+    }
+
+    /**
+     * @param ms 流式请求从发出到第一段内容的耗时；超时时为超时前已等待的时间
+     */
+    public synchronized void recordFirstByte(Deadlines deadlines, long ms) {
+        if (deadlines.stream) {
+            histogram(firstByte, deadlines.firstByteKey).record(ms);
+        }
+    }
+
+    /**
+     * @param maxGapMs 一次流式请求中相邻两段内容的最大间隔；空闲超时时为超时前已等待的时间
+     */
+    public synchronized void recordIdleGap(Deadlines deadlines, long maxGapMs) {
+        histogram(idleGaps, deadlines.modelKey).record(maxGapMs);
+    }
+
+    private static int sizeClass(int inputChars) {
+        int sizeClass = 0;
+        while (sizeClass < INPUT_SIZE_CLASSES.length && inputChars >= INPUT_SIZE_CLASSES[sizeClass]) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    private static long derive(LatencyHistogram histogram, int multiplier, long slackMs,
+                               long defaultMs, long minMs, long maxMs) {
+        if (histogram == null || histogram.count() < MIN_SAMPLES) {
+            return defaultMs;
+        }
+        long value = histogram.percentile(99) * multiplier + slackMs;
+        return Math.max(minMs, Math.min(maxMs, value));
+    }
+
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> map, String key) {
+        LatencyHistogram histogram = map.get(key);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(WINDOW);
+            map.put(key, histogram);
+        }
+        return histogram;
+    }
+}
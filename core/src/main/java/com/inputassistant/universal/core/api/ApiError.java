@@ -0,0 +1,80 @@
+package com.inputassistant.universal.core.api;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * 请求失败的详细信息：错误类型、HTTP状态码以及服务端要求的重试等待时间
+ */
+public final class ApiError {
+    /** {@link ChatClient} 中的 ERROR_* 常量 */
+    public final int type;
+    /** 没有响应时为0 */
+    public final int httpCode;
+    /** Retry-After 要求的等待时间，没有时为 -1 */
+    public final long retryAfterMs;
+    /** 显示给用户的错误信息 */
+    public final String message;
+
+    public ApiError(int type, int httpCode, long retryAfterMs, String message) {
+        this.type = type;
+        this.httpCode = httpCode;
+        this.retryAfterMs = retryAfterMs;
+        this.message = message;
+    }
+
+    /**
+     * 仅有错误信息的失败（如本地检查失败），不可重试
+     */
+    public static ApiError of(String message) {
+        return new ApiError(ChatClient.ERROR_PARSE, 0, -1, message);
+    }
+
+    public ApiError withMessage(String message) {
+        return new ApiError(type, httpCode, retryAfterMs, message);
+    }
+
+    /**
+     * 网络错误、超时、熔断、限流和服务端临时故障可以稍后重试；其余错误重试也不会成功
+     */
+    public boolean isRetryable() {
+        if (type == ChatClient.ERROR_NETWORK || type == ChatClient.ERROR_CIRCUIT_OPEN) {
+            return true;
+        }
+        if (type != ChatClient.ERROR_HTTP) {
+            return false;
+        }
+        return httpCode == 408 || httpCode == 429 || httpCode == 500 || httpCode == 502
+                || httpCode == 503 || httpCode == 504;
+    }
+
+    /**
+     * 解析 Retry-After 响应头：秒数或HTTP日期
+     * @param nowMs 当前时间（System.currentTimeMillis），用于换算HTTP日期
+     * @return 等待的毫秒数，没有或无法解析时返回 -1
+     */
+    public static long parseRetryAfter(String header, long nowMs) {
+        if (header == null) {
+            return -1;
+        }
+        String value = header.trim();
+        if (value.isEmpty()) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException e) {
+            // 不是秒数，按HTTP日期解析
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(value).getTime() - nowMs);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.inputassistant.universal.core.api;
+
+import okhttp3.Dns;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 带缓存的 OkHttp {@link Dns}
+ *
+ * - 新鲜期内直接返回缓存；过期但仍在可用期内时先返回旧结果，同时在后台刷新（stale-while-revalidate）
+ * - 上游解析失败时继续使用可用期内的旧结果
+ * - 同时有 IPv4 和 IPv6 地址时按 RFC 8305 交替排列，一个地址族不通时 OkHttp 下一次尝试就会换另一个；
+ *   解析后在后台对两个地址族各发起一次 TCP 连接（IPv6 先行 {@link #CONNECTION_ATTEMPT_DELAY_MS}），
+ *   先连上的地址族排在前面，之后的请求直接连向更快的一方；竞速连向 {@link #prefetch(String, int)} 登记的端口，
+ *   没有登记的域名使用构造时的默认端口
+ * 上游可以是系统解析、{@link DohDns} 或测试用的假解析器，运行中可以替换
+ */
+public final class CachingDns implements Dns {
+    public static final long DEFAULT_FRESH_MS = TimeUnit.MINUTES.toMillis(1);
+    public static final long DEFAULT_MAX_STALE_MS = TimeUnit.HOURS.toMillis(1);
+    // RFC 8305 建议的 IPv6 先行时间
+    static final long CONNECTION_ATTEMPT_DELAY_MS = 250;
+    private static final int RACE_CONNECT_TIMEOUT_MS = 3000;
+
+    private static final class Entry {
+        final List<InetAddress> addresses;
+        final long resolvedAtNanos;
+        boolean refreshing;
+        // 连接竞速的结果：null 表示未知，按 IPv6 优先
+        volatile Boolean ipv6Faster;
+
+        Entry(List<InetAddress> addresses, long resolvedAtNanos, Boolean ipv6Faster) {
+            this.addresses = addresses;
+            this.resolvedAtNanos = resolvedAtNanos;
+            this.ipv6Faster = ipv6Faster;
+        }
+    }
+
+    private volatile Dns upstream;
+    private final long freshNanos;
+    private final long maxStaleNanos;
+    private final int racePort;
+    private final LongSupplier clock;
+    private final ExecutorService executor;
+    private final Map<String, Entry> cache = new HashMap<>();
+    // 域名实际使用的端口，与 cache 共用锁
+    private final Map<String, Integer> racePorts = new HashMap<>();
+
+    /**
+     * @param racePort 没有登记端口的域名竞速使用的端口，0表示只对登记过的域名竞速
+     */
+    public CachingDns(Dns upstream, int racePort) {
+        this(upstream, DEFAULT_FRESH_MS, DEFAULT_MAX_STALE_MS, racePort, System::nanoTime);
+    }
+
+    public CachingDns(Dns upstream, long freshMs, long maxStaleMs, int racePort, LongSupplier clock) {
+        this.upstream = upstream;
+        this.freshNanos = TimeUnit.MILLISECONDS.toNanos(freshMs);
+        this.maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(maxStaleMs);
+        this.racePort = racePort;
+        this.clock = clock;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "CachingDns");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 替换上游解析器并清空缓存
+     */
+    public void setUpstream(Dns upstream) {
+        this.upstream = upstream;
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = clock.getAsLong();
+        Entry entry;
+        boolean stale = false;
+        boolean refresh = false;
+        synchronized (cache) {
+            entry = cache.get(hostname);
+            if (entry != null) {
+                long age = now - entry.resolvedAtNanos;
+                if (age < freshNanos) {
+                    return order(entry);
+                }
+                if (age < maxStaleNanos) {
+                    // 过期但仍在可用期内：先返回旧结果，同一时间只有一个后台刷新
+                    stale = true;
+                    refresh = !entry.refreshing;
+                    entry.refreshing = true;
+                }
+            }
+        }
+        if (stale) {
+            if (refresh) {
+                executor.execute(() -> refresh(hostname));
+            }
+            return order(entry);
+        }
+
+        try {
+            return order(resolve(hostname));
+        } catch (UnknownHostException e) {
+            // 上游失败时继续使用可用期内的旧结果
+            if (entry != null && now - entry.resolvedAtNanos < maxStaleNanos) {
+                return order(entry);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 在后台解析，用于键盘弹出时提前准备好地址，第一次请求不必等待DNS
+     */
+    public void prefetch(String hostname) {
+        prefetch(hostname, 0);
+    }
+
+    /**
+     * 同 {@link #prefetch(String)}，并登记该域名的服务端口，地址族竞速连向这个端口
+     * @param port 服务端口（如 API 地址的端口），0 表示不登记
+     */
+    public void prefetch(String hostname, int port) {
+        if (port > 0) {
+            synchronized (cache) {
+                racePorts.put(hostname, port);
+            }
+        }
+        executor.execute(() -> {
+            try {
+                lookup(hostname);
+            } catch (UnknownHostException e) {
+                // 真正请求时会再次解析并报告错误
+            }
+        });
+    }
+
+    private void refresh(String hostname) {
+        try {
+            resolve(hostname);
+        } catch (UnknownHostException e) {
+            synchronized (cache) {
+                Entry entry = cache.get(hostname);
+                if (entry != null) {
+                    entry.refreshing = false;
+                }
+            }
+        }
+    }
+
+    private Entry resolve(String hostname) throws UnknownHostException {
+        List<InetAddress> addresses = Collections.unmodifiableList(new ArrayList<>(upstream.lookup(hostname)));
+        if (addresses.isEmpty()) {
+            throw new UnknownHostException(hostname);
+        }
+        Entry entry;
+        int port;
+        synchronized (cache) {
+            Entry previous = cache.get(hostname);
+            // 地址不变时沿用之前的竞速结果
+            Boolean ipv6Faster = previous != null && previous.addresses.equals(addresses) ? previous.ipv6Faster : null;
+            entry = new Entry(addresses, clock.getAsLong(), ipv6Faster);
+            cache.put(hostname, entry);
+            Integer registered = racePorts.get(hostname);
+            port = ipv6Faster == null && hasBothFamilies(addresses)
+                    ? (registered != null ? registered : racePort) : 0;
+        }
+        if (port > 0) {
+            executor.execute(() -> race(entry, port));
+        }
+        return entry;
+    }
+
+    /**
+     * 对第一个 IPv6 和第一个 IPv4 地址各发起一次连接，IPv4 晚 {@link #CONNECTION_ATTEMPT_DELAY_MS} 出发
+     */
+    private void race(Entry entry, int port) {
+        InetAddress ipv6 = null;
+        InetAddress ipv4 = null;
+        for (InetAddress address : entry.addresses) {
+            if (address instanceof Inet6Address) {
+                ipv6 = ipv6 == null ? address : ipv6;
+            } else {
+                ipv4 = ipv4 == null ? address : ipv4;
+            }
+        }
+        AtomicBoolean decided = new AtomicBoolean();
+        AtomicBoolean ipv6Failed = new AtomicBoolean();
+        Object ipv6Done = new Object();
+        InetAddress v6 = ipv6;
+        executor.execute(() -> {
+            boolean connected = connect(v6, port);
+            if (connected && decided.compareAndSet(false, true)) {
+                entry.ipv6Faster = true;
+            }
+            synchronized (ipv6Done) {
+                ipv6Failed.set(!connected);
+                ipv6Done.notifyAll();
+            }
+        });
+        // IPv6 在先行时间内失败时 IPv4 立即出发
+        synchronized (ipv6Done) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECTION_ATTEMPT_DELAY_MS);
+            long remaining;
+            while (!ipv6Failed.get() && !decided.get()
+                    && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(ipv6Done, remaining);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+        if (decided.get()) {
+            return;
+        }
+        if (connect(ipv4, port) && decided.compareAndSet(false, true)) {
+            entry.ipv6Faster = false;
+        }
+    }
+
+    private static boolean connect(InetAddress address, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port), RACE_CONNECT_TIMEOUT_MS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasBothFamilies(List<InetAddress> addresses) {
+        boolean ipv6 = false;
+        boolean ipv4 = false;
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet6Address) {
+                ipv6 = true;
+            } else {
+                ipv4 = true;
+            }
+        }
+        return ipv6 && ipv4;
+    }
+
+    private static List<InetAddress> order(Entry entry) {
+        Boolean ipv6Faster = entry.ipv6Faster;
+        return interleave(entry.addresses, ipv6Faster == null || ipv6Faster);
+    }
+
+    /**
+     * 两个地址族交替排列，各自保持原有顺序
+     */
+    static List<InetAddress> interleave(List<InetAddress> addresses, boolean ipv6First) {
+        List<InetAddress> ipv6 = new ArrayList<>();
+        List<InetAddress> ipv4 = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            (address instanceof Inet6Address ? ipv6 : ipv4).add(address);
+        }
+        if (ipv6.isEmpty() || ipv4.isEmpty()) {
+            return addresses;
+        }
+        List<InetAddress> first = ipv6First ? ipv6 : ipv4;
+        List<InetAddress> second = ipv6First ? ipv4 : ipv6;
+        List<InetAddress> ordered = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) {
+                ordered.add(first.get(i));
+            }
+            if (i < second.size()) {
+                ordered.add(second.get(i));
+            }
+        }
+        return ordered;
+    }
+}
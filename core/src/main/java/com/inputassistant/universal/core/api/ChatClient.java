@@ -0,0 +1,769 @@
+package com.inputassistant.universal.core.api;
+
+import com.google.gson.JsonObject;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * OpenAI兼容端点的请求执行
+ * 不依赖Android：回调通过 {@link Executor} 投递，耗时与错误通过 {@link EventListener} 上报，
+ * 由调用方决定如何记录（应用内接入 Tracer/FlightRecorder，JVM 上的压测工具直接统计）
+ */
+public class ChatClient {
+    // 阶段
+    public static final int STAGE_BUILD = 0;     // 构建请求体
+    public static final int STAGE_REQUEST = 1;   // 网络请求（发出 → 响应读取完毕），可能跨线程结束
+    public static final int STAGE_PARSE = 2;     // 解析完整响应
+
+    // 错误类型
+    public static final int ERROR_NETWORK = 1;
+    public static final int ERROR_HTTP = 2;
+    public static final int ERROR_EMPTY_BODY = 3;
+    public static final int ERROR_PARSE = 4;
+    public static final int ERROR_CIRCUIT_OPEN = 5;  // 端点熔断中，请求未发出
+    public static final int ERROR_TRUNCATED = 6;     // finish_reason 为 length，回答不完整
+
+    // 探测请求的总超时，远短于正常请求
+    private static final long PROBE_TIMEOUT_SECONDS = 5;
+
+    private final OkHttpClient httpClient;
+    private final Executor callbackExecutor;
+    private final EventListener eventListener;
+    // 为空时请求直接发出
+    private final RequestScheduler scheduler;
+    // 为空时不熔断
+    private final CircuitBreaker circuitBreaker;
+    // 为空时使用 OkHttpClient 自身的固定超时
+    private final AdaptiveTimeouts timeouts;
+    private final int priority;
+
+    public ChatClient(OkHttpClient httpClient, Executor callbackExecutor, EventListener eventListener) {
+        this(httpClient, callbackExecutor, eventListener, null, null, null, RequestScheduler.PRIORITY_INTERACTIVE);
+    }
+
+    /**
+     * @param scheduler 按端点限速、按优先级排队；为空时不限速
+     */
+    public ChatClient(OkHttpClient httpClient, Executor callbackExecutor, EventListener eventListener,
+                      RequestScheduler scheduler) {
+        this(httpClient, callbackExecutor, eventListener, scheduler, null, null,
+                RequestScheduler.PRIORITY_INTERACTIVE);
+    }
+
+    /**
+     * @param scheduler 按端点限速、按优先级排队；为空时不限速
+     * @param circuitBreaker 端点不可用时立即失败并在后台探测；为空时不熔断
+     * @param timeouts 按观测耗时计算每个请求的连接、流式首字节和流式空闲超时；为空时使用固定超时。
+     *                 启用时会替换 httpClient 的 EventListener.Factory 以统计建连耗时
+     */
+    public ChatClient(OkHttpClient httpClient, Executor callbackExecutor, EventListener eventListener,
+                      RequestScheduler scheduler, CircuitBreaker circuitBreaker, AdaptiveTimeouts timeouts) {
+        this(withAdaptiveTimeouts(httpClient, timeouts), callbackExecutor, eventListener, scheduler, circuitBreaker,
+                timeouts, RequestScheduler.PRIORITY_INTERACTIVE);
+    }
+
+    private ChatClient(OkHttpClient httpClient, Executor callbackExecutor, EventListener eventListener,
+                       RequestScheduler scheduler, CircuitBreaker circuitBreaker, AdaptiveTimeouts timeouts,
+                       int priority) {
+        this.httpClient = httpClient;
+        this.callbackExecutor = callbackExecutor;
+        this.eventListener = eventListener;
+        this.scheduler = scheduler;
+        this.circuitBreaker = circuitBreaker;
+        this.timeouts = timeouts;
+        this.priority = priority;
+    }
+
+    /**
+     * 请求带有 {@link AdaptiveTimeouts.Deadlines} 时按它设置连接和读取超时，统计新建连接的耗时，
+     * 并把收到响应头之前的读取超时记为首字节样本
+     */
+    private static OkHttpClient withAdaptiveTimeouts(OkHttpClient httpClient, AdaptiveTimeouts timeouts) {
+        if (timeouts == null) {
+            return httpClient;
+        }
+        return httpClient.newBuilder()
+                .addInterceptor(chain -> {
+                    AdaptiveTimeouts.Deadlines deadlines = chain.request().tag(AdaptiveTimeouts.Deadlines.class);
+                    if (deadlines == null) {
+                        return chain.proceed(chain.request());
+                    }
+                    return chain.withConnectTimeout((int) deadlines.connectMs, TimeUnit.MILLISECONDS)
+                            .withReadTimeout((int) deadlines.readTimeoutMs(), TimeUnit.MILLISECONDS)
+                            .proceed(chain.request());
+                })
+                .eventListenerFactory(call -> new okhttp3.EventListener() {
+                    private long connectStartNanos;
+                    private long requestSentNanos;
+                    private boolean headersReceived;
+
+                    @Override
+                    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+                        connectStartNanos = System.nanoTime();
+                    }
+
+                    @Override
+                    public void requestBodyEnd(Call call, long byteCount) {
+                        requestSentNanos = System.nanoTime();
+                    }
+
+                    @Override
+                    public void responseHeadersEnd(Call call, Response response) {
+                        headersReceived = true;
+                    }
+
+                    @Override
+                    public void callFailed(Call call, IOException ioe) {
+                        // 响应头之后的超时由 readStream 记录
+                        AdaptiveTimeouts.Deadlines deadlines = call.request().tag(AdaptiveTimeouts.Deadlines.class);
+                        if (deadlines != null && ioe instanceof SocketTimeoutException
+                                && requestSentNanos != 0 && !headersReceived) {
+                            timeouts.recordFirstByte(deadlines, elapsedMs(requestSentNanos));
+                        }
+                    }
+
+                    @Override
+                    public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+                        AdaptiveTimeouts.Deadlines deadlines = call.request().tag(AdaptiveTimeouts.Deadlines.class);
+                        if (deadlines != null) {
+                            timeouts.recordConnect(deadlines.endpointKey, elapsedMs(connectStartNanos));
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 共享连接与限速状态、以指定优先级排队的客户端
+     * @param priority {@link RequestScheduler} 中的 PRIORITY_* 常量
+     */
+    public ChatClient withPriority(int priority) {
+        return priority == this.priority ? this
+                : new ChatClient(httpClient, callbackExecutor, eventListener, scheduler, circuitBreaker, timeouts,
+                        priority);
+    }
+
+    /**
+     * 默认超时配置的OkHttpClient
+     */
+    public static OkHttpClient.Builder defaultHttpClientBuilder() {
+        return new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 执行非流式请求，使用默认的生成参数
+     * @return 可用于取消请求的Call
+     */
+    public Call execute(String baseUrl, String apiKey, String modelName,
+                        String systemPrompt, String userPrompt, Callback callback) {
+        return execute(baseUrl, apiKey, modelName, systemPrompt, userPrompt, GenerationParams.DEFAULT, callback);
+    }
+
+    /**
+     * 执行非流式请求
+     * @return 可用于取消请求的Call
+     */
+    public Call execute(String baseUrl, String apiKey, String modelName,
+                        String systemPrompt, String userPrompt, GenerationParams params, Callback callback) {
+        return executeBlocking(baseUrl, apiKey, modelName, systemPrompt, userPrompt, params.singleCandidate(),
+                this::parseContent, new ResultCallback<String>() {
+                    @Override
+                    public void onResult(String result) {
+                        callback.onSuccess(result);
+                    }
+
+                    @Override
+                    public void onError(ApiError error) {
+                        callback.onFailure(error);
+                    }
+                });
+    }
+
+    /**
+     * 执行非流式请求并返回全部候选（请求体中的 n 取自 {@link GenerationParams#getCandidateCount()}）
+     * 不支持 n 的端点只返回一个候选，调用方应按实际数量展示
+     * @return 可用于取消请求的Call
+     */
+    public Call executeCandidates(String baseUrl, String apiKey, String modelName,
+                                  String systemPrompt, String userPrompt, GenerationParams params,
+                                  CandidatesCallback callback) {
+        return executeBlocking(baseUrl, apiKey, modelName, systemPrompt, userPrompt, params,
+                this::parseCandidates, new ResultCallback<List<String>>() {
+                    @Override
+                    public void onResult(List<String> result) {
+                        callback.onCandidates(result);
+                    }
+
+                    @Override
+                    public void onError(ApiError error) {
+                        callback.onFailure(error);
+                    }
+                });
+    }
+
+    private <T> Call executeBlocking(String baseUrl, String apiKey, String modelName,
+                                     String systemPrompt, String userPrompt, GenerationParams params,
+                                     ResultParser<T> parser, ResultCallback<T> callback) {
+        long buildToken = eventListener.onStageStart(STAGE_BUILD);
+        JsonObject requestBody = ChatRequestFactory.buildBody(modelName, systemPrompt, userPrompt, false, params);
+        String endpointKey = RequestScheduler.key(baseUrl, apiKey);
+        AdaptiveTimeouts.Deadlines deadlines = timeouts != null
+                ? timeouts.deadlines(endpointKey, modelName, false, inputChars(systemPrompt, userPrompt)) : null;
+        Request request = ChatRequestFactory.buildRequest(baseUrl, apiKey, requestBody, false)
+                .newBuilder().tag(AdaptiveTimeouts.Deadlines.class, deadlines).build();
+        eventListener.onStageEnd(STAGE_BUILD, buildToken);
+
+        long requestToken = eventListener.onStageStart(STAGE_REQUEST);
+        long startNanos = System.nanoTime();
+        Call call = httpClient.newCall(request);
+        ApiError rejected = checkCircuit(endpointKey);
+        if (rejected != null) {
+            eventListener.onStageEnd(STAGE_REQUEST, requestToken);
+            callbackExecutor.execute(() -> callback.onError(rejected));
+            return call;
+        }
+        dispatch(endpointKey, () -> call.enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                eventListener.onStageEnd(STAGE_REQUEST, requestToken);
+                if (call.isCanceled()) {
+                    releaseTrial(endpointKey);
+                    return;
+                }
+                recordOutcome(endpointKey, baseUrl, apiKey, 0);
+                eventListener.onRequestFailed(ERROR_NETWORK, 0, e);
+                ApiError error = new ApiError(ERROR_NETWORK, 0, -1, "网络请求失败: " + e.getMessage());
+                callbackExecutor.execute(() -> callback.onError(error));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (scheduler != null) {
+                    scheduler.onResponse(endpointKey, response.code(), response.headers());
+                }
+                recordOutcome(endpointKey, baseUrl, apiKey, response.code());
+                try (ResponseBody responseBody = response.body()) {
+                    if (!response.isSuccessful()) {
+                        eventListener.onStageEnd(STAGE_REQUEST, requestToken);
+                        eventListener.onRequestFailed(ERROR_HTTP, response.code(), null);
+                        ApiError error = httpError(response);
+                        callbackExecutor.execute(() -> callback.onError(error));
+                        return;
+                    }
+
+                    if (responseBody == null) {
+                        eventListener.onStageEnd(STAGE_REQUEST, requestToken);
+                        eventListener.onRequestFailed(ERROR_EMPTY_BODY, response.code(), null);
+                        ApiError error = new ApiError(ERROR_EMPTY_BODY, response.code(), -1, "响应体为空");
+                        callbackExecutor.execute(() -> callback.onError(error));
+                        return;
+                    }
+
+                    String responseString;
+                    try {
+                        responseString = responseBody.string();
+                    } finally {
+                        eventListener.onStageEnd(STAGE_REQUEST, requestToken);
+                    }
+                    eventListener.onRequestCompleted(response.code(), elapsedMs(startNanos), responseString.length());
+
+                    long parseToken = eventListener.onStageStart(STAGE_PARSE);
+                    T result = parser.parse(responseString, response.code());
+                    eventListener.onStageEnd(STAGE_PARSE, parseToken);
+                    if (result != null) {
+                        callbackExecutor.execute(() -> callback.onResult(result));
+                    } else {
+                        ApiError error = resultError(responseString, response.code());
+                        callbackExecutor.execute(() -> callback.onError(error));
+                    }
+                } catch (Exception e) {
+                    if (call.isCanceled()) {
+                        releaseTrial(endpointKey);
+                        return;
+                    }
+                    eventListener.onRequestFailed(ERROR_NETWORK, response.code(), e);
+                    ApiError error = new ApiError(ERROR_NETWORK, response.code(), -1,
+                            "处理响应时出错: " + e.getMessage());
+                    callbackExecutor.execute(() -> callback.onError(error));
+                }
+            }
+        }));
+        return call;
+    }
+
+    /**
+     * 执行流式请求（SSE）
+     * 每收到一段增量内容都会回调onProgress，参数为目前为止累积的完整文本；
+     * 回调线程处理不及时时，中间的进度会被合并，只投递最新的一次
+     * @return 可用于取消请求的Call
+     */
+    public Call executeStreaming(String baseUrl, String apiKey, String modelName,
+                                 String systemPrompt, String userPrompt, StreamCallback callback) {
+        return executeStreaming(baseUrl, apiKey, modelName, systemPrompt, userPrompt,
+                GenerationParams.DEFAULT, callback);
+    }
+
+    /**
+     * 执行流式请求（SSE），指定生成参数
+     * @return 可用于取消请求的Call
+     */
+    public Call executeStreaming(String baseUrl, String apiKey, String modelName,
+                                 String systemPrompt, String userPrompt, GenerationParams params,
+                                 StreamCallback callback) {
+        long buildToken = eventListener.onStageStart(STAGE_BUILD);
+        JsonObject requestBody = ChatRequestFactory.buildBody(
+                modelName, systemPrompt, userPrompt, true, params.singleCandidate());
+        String endpointKey = RequestScheduler.key(baseUrl, apiKey);
+        AdaptiveTimeouts.Deadlines deadlines = timeouts != null
+                ? timeouts.deadlines(endpointKey, modelName, true, inputChars(systemPrompt, userPrompt)) : null;
+        Request request = ChatRequestFactory.buildRequest(baseUrl, apiKey, requestBody, true)
+                .newBuilder().tag(AdaptiveTimeouts.Deadlines.class, deadlines).build();
+        eventListener.onStageEnd(STAGE_BUILD, buildToken);
+
+        long startNanos = System.nanoTime();
+        Call call = httpClient.newCall(request);
+        ApiError rejected = checkCircuit(endpointKey);
+        if (rejected != null) {
+            callbackExecutor.execute(() -> callback.onFailure(rejected));
+            return call;
+        }
+        dispatch(endpointKey, () -> call.enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (call.isCanceled()) {
+                    releaseTrial(endpointKey);
+                    return;
+                }
+                recordOutcome(endpointKey, baseUrl, apiKey, 0);
+                eventListener.onRequestFailed(ERROR_NETWORK, 0, e);
+                ApiError error = new ApiError(ERROR_NETWORK, 0, -1, "网络请求失败: " + e.getMessage());
+                callbackExecutor.execute(() -> callback.onFailure(error));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (scheduler != null) {
+                    scheduler.onResponse(endpointKey, response.code(), response.headers());
+                }
+                recordOutcome(endpointKey, baseUrl, apiKey, response.code());
+                try (ResponseBody responseBody = response.body()) {
+                    if (!response.isSuccessful()) {
+                        eventListener.onRequestFailed(ERROR_HTTP, response.code(), null);
+                        ApiError error = httpError(response);
+                        callbackExecutor.execute(() -> callback.onFailure(error));
+                        return;
+                    }
+
+                    if (responseBody == null) {
+                        eventListener.onRequestFailed(ERROR_EMPTY_BODY, response.code(), null);
+                        ApiError error = new ApiError(ERROR_EMPTY_BODY, response.code(), -1, "响应体为空");
+                        callbackExecutor.execute(() -> callback.onFailure(error));
+                        return;
+                    }
+
+                    // 部分兼容端点会忽略stream参数，直接返回完整JSON
+                    MediaType contentType = responseBody.contentType();
+                    if (contentType == null || !"event-stream".equals(contentType.subtype())) {
+                        String responseString = responseBody.string();
+                        eventListener.onRequestCompleted(response.code(), elapsedMs(startNanos), responseString.length());
+                        String content = parseContent(responseString, response.code());
+                        ApiError error = content == null ? resultError(responseString, response.code()) : null;
+                        deliverResult(content, error, callback);
+                        return;
+                    }
+
+                    StreamResult stream = readStream(response, responseBody, deadlines, callback);
+                    eventListener.onRequestCompleted(response.code(), elapsedMs(startNanos), stream.text.length());
+                    String result = stream.text.toString().trim();
+                    ApiError error = null;
+                    if (stream.truncated) {
+                        // 不把截断的半句话当作结果写入
+                        eventListener.onRequestFailed(ERROR_TRUNCATED, response.code(), null);
+                        error = truncatedError(response.code());
+                    } else if (result.isEmpty()) {
+                        eventListener.onRequestFailed(ERROR_PARSE, response.code(), null);
+                    }
+                    deliverResult(error == null && !result.isEmpty() ? result : null, error, callback);
+                } catch (Exception e) {
+                    if (call.isCanceled()) {
+                        releaseTrial(endpointKey);
+                        return;
+                    }
+                    eventListener.onRequestFailed(ERROR_NETWORK, response.code(), e);
+                    ApiError error = new ApiError(ERROR_NETWORK, response.code(), -1,
+                            e instanceof SocketTimeoutException
+                                    ? "响应超时：长时间没有收到新内容"
+                                    : "处理响应时出错: " + e.getMessage());
+                    callbackExecutor.execute(() -> callback.onFailure(error));
+                }
+            }
+        }));
+        return call;
+    }
+
+    /**
+     * 逐行读取SSE，累积增量内容并合并投递进度，记下 finish_reason 是否为 length；
+     * 启用自适应超时时，收到第一段内容前按首字节超时读取，
+     * 之后换成流式空闲超时，并记录首字节耗时和相邻两段内容的最大间隔，超时也记为样本
+     */
+    private StreamResult readStream(Response response, ResponseBody responseBody,
+                                    AdaptiveTimeouts.Deadlines deadlines, StreamCallback callback)
+            throws IOException {
+        StreamResult stream = new StreamResult();
+        StringBuilder accumulated = stream.text;
+        AtomicReference<String> pendingProgress = new AtomicReference<>();
+        Runnable deliverProgress = () -> {
+            String latest = pendingProgress.getAndSet(null);
+            if (latest != null) {
+                callback.onProgress(latest);
+            }
+        };
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(responseBody.byteStream(), StandardCharsets.UTF_8));
+        long lastDeltaNanos = 0;
+        long maxGapNanos = 0;
+        if (deadlines != null) {
+            responseBody.source().timeout().timeout(deadlines.firstByteMs, TimeUnit.MILLISECONDS);
+        }
+        String line;
+        while ((line = readLine(reader, response, deadlines, lastDeltaNanos)) != null) {
+            String data = ChatResponseParser.sseData(line);
+            if (data == null) {
+                continue;
+            }
+            if (ChatResponseParser.SSE_DONE.equals(data)) {
+                break;
+            }
+            if (!stream.truncated && isStreamTruncated(data)) {
+                stream.truncated = true;
+            }
+            String delta = parseStreamDelta(data);
+            if (delta != null && !delta.isEmpty()) {
+                long now = System.nanoTime();
+                if (lastDeltaNanos == 0 && deadlines != null) {
+                    timeouts.recordFirstByte(deadlines, System.currentTimeMillis() - response.sentRequestAtMillis());
+                    responseBody.source().timeout().timeout(deadlines.idleMs, TimeUnit.MILLISECONDS);
+                } else if (lastDeltaNanos != 0) {
+                    maxGapNanos = Math.max(maxGapNanos, now - lastDeltaNanos);
+                }
+                lastDeltaNanos = now;
+                accumulated.append(delta);
+                // 已有未投递的进度时只替换内容，不再重复投递
+                if (pendingProgress.getAndSet(accumulated.toString()) == null) {
+                    callbackExecutor.execute(deliverProgress);
+                }
+            }
+        }
+        if (deadlines != null && maxGapNanos > 0) {
+            timeouts.recordIdleGap(deadlines, TimeUnit.NANOSECONDS.toMillis(maxGapNanos));
+        }
+        return stream;
+    }
+
+    /**
+     * 读取超时时把已等待的时间记为首字节或空闲间隔样本后再抛出
+     */
+    private String readLine(BufferedReader reader, Response response, AdaptiveTimeouts.Deadlines deadlines,
+                            long lastDeltaNanos) throws IOException {
+        try {
+            return reader.readLine();
+        } catch (SocketTimeoutException e) {
+            if (deadlines != null) {
+                if (lastDeltaNanos == 0) {
+                    timeouts.recordFirstByte(deadlines, System.currentTimeMillis() - response.sentRequestAtMillis());
+                } else {
+                    timeouts.recordIdleGap(deadlines, elapsedMs(lastDeltaNanos));
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static int inputChars(String systemPrompt, String userPrompt) {
+        return (systemPrompt != null ? systemPrompt.length() : 0) + (userPrompt != null ? userPrompt.length() : 0);
+    }
+
+    private String parseContent(String responseString, int httpCode) {
+        try {
+            String content = ChatResponseParser.parseContent(responseString);
+            if (content == null) {
+                eventListener.onRequestFailed(isTruncated(responseString) ? ERROR_TRUNCATED : ERROR_PARSE,
+                        httpCode, null);
+            }
+            return content;
+        } catch (Exception e) {
+            eventListener.onRequestFailed(ERROR_PARSE, httpCode, e);
+            return null;
+        }
+    }
+
+    private List<String> parseCandidates(String responseString, int httpCode) {
+        try {
+            List<String> candidates = ChatResponseParser.parseAllContents(responseString);
+            if (candidates == null) {
+                eventListener.onRequestFailed(isTruncated(responseString) ? ERROR_TRUNCATED : ERROR_PARSE,
+                        httpCode, null);
+            }
+            return candidates;
+        } catch (Exception e) {
+            eventListener.onRequestFailed(ERROR_PARSE, httpCode, e);
+            return null;
+        }
+    }
+
+    private String parseStreamDelta(String data) {
+        try {
+            return ChatResponseParser.parseStreamDelta(data);
+        } catch (Exception e) {
+            eventListener.onMalformedChunk(e);
+            return null;
+        }
+    }
+
+    private boolean isStreamTruncated(String data) {
+        try {
+            return ChatResponseParser.isStreamTruncated(data);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isTruncated(String responseString) {
+        try {
+            return ChatResponseParser.isTruncated(responseString);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 没有解析出结果时的错误：被 max_tokens 截断的回答单独报告，其余按解析失败处理
+     */
+    private static ApiError resultError(String responseString, int httpCode) {
+        return isTruncated(responseString) ? truncatedError(httpCode)
+                : new ApiError(ERROR_PARSE, httpCode, -1, "解析响应失败");
+    }
+
+    private static ApiError truncatedError(int httpCode) {
+        return new ApiError(ERROR_TRUNCATED, httpCode, -1,
+                "回答超出长度上限被截断，未写入；可在动作的高级设置中调大最大输出token数或选择输出长度");
+    }
+
+    /**
+     * @param error result 为 null 时的错误，为 null 时按解析失败处理
+     */
+    private void deliverResult(String result, ApiError error, Callback callback) {
+        if (result != null) {
+            callbackExecutor.execute(() -> callback.onSuccess(result));
+        } else {
+            ApiError failure = error != null ? error : new ApiError(ERROR_PARSE, 0, -1, "解析响应失败");
+            callbackExecutor.execute(() -> callback.onFailure(failure));
+        }
+    }
+
+    /**
+     * @return 端点熔断中时返回立即失败的错误，否则为null
+     */
+    private ApiError checkCircuit(String endpointKey) {
+        if (circuitBreaker == null || circuitBreaker.allowRequest(endpointKey)) {
+            return null;
+        }
+        eventListener.onRequestFailed(ERROR_CIRCUIT_OPEN, 0, null);
+        long remainingMs = circuitBreaker.remainingOpenMs(endpointKey);
+        return new ApiError(ERROR_CIRCUIT_OPEN, 0, remainingMs > 0 ? remainingMs : -1, remainingMs > 0
+                ? "服务暂时不可用，" + ((remainingMs + 999) / 1000) + " 秒后自动重试连接"
+                : "服务暂时不可用，正在重试连接");
+    }
+
+    /**
+     * 把请求结果计入熔断器
+     * @param httpCode 网络错误时为0
+     */
+    private void recordOutcome(String endpointKey, String baseUrl, String apiKey, int httpCode) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (isEndpointFailure(httpCode)) {
+            circuitBreaker.onFailure(endpointKey, () -> probe(endpointKey, baseUrl, apiKey));
+        } else {
+            circuitBreaker.onSuccess(endpointKey);
+        }
+    }
+
+    /**
+     * 请求被取消，不计入熔断器；如果它正在充当半开状态的探测，让出探测机会
+     */
+    private void releaseTrial(String endpointKey) {
+        if (circuitBreaker != null) {
+            circuitBreaker.onCanceled(endpointKey);
+        }
+    }
+
+    private static boolean isEndpointFailure(int httpCode) {
+        return httpCode == 0 || httpCode == 500 || httpCode == 502 || httpCode == 503 || httpCode == 504;
+    }
+
+    /**
+     * 熔断打开时长结束后的探测：GET /models，不经过限速排队
+     */
+    private void probe(String endpointKey, String baseUrl, String apiKey) {
+        Call call = httpClient.newBuilder()
+                .callTimeout(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build()
+                .newCall(ChatRequestFactory.buildProbeRequest(baseUrl, apiKey));
+        call.enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                recordOutcome(endpointKey, baseUrl, apiKey, 0);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                recordOutcome(endpointKey, baseUrl, apiKey, response.code());
+            }
+        });
+    }
+
+    /**
+     * 有调度器时排队等待令牌，否则直接发出；排队期间取消的Call发出后立即失败，不会产生网络请求
+     */
+    private void dispatch(String limitKey, Runnable send) {
+        if (scheduler != null) {
+            scheduler.submit(limitKey, priority, send);
+        } else {
+            send.run();
+        }
+    }
+
+    private static ApiError httpError(Response response) {
+        return new ApiError(ERROR_HTTP, response.code(),
+                ApiError.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()),
+                "API请求失败: HTTP " + response.code());
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 请求回调
+     */
+    public interface Callback {
+        void onSuccess(String result);
+        void onError(String error);
+
+        /**
+         * 请求失败时由 {@link ChatClient} 调用，默认只传递错误信息；需要区分错误类型（如决定是否重试）时覆盖
+         */
+        default void onFailure(ApiError error) {
+            onError(error.message);
+        }
+    }
+
+    /**
+     * 多候选请求回调
+     */
+    public interface CandidatesCallback {
+        /**
+         * @param candidates 至少包含一个候选，按服务端顺序排列
+         */
+        void onCandidates(List<String> candidates);
+        void onError(String error);
+
+        /**
+         * @see Callback#onFailure(ApiError)
+         */
+        default void onFailure(ApiError error) {
+            onError(error.message);
+        }
+    }
+
+    /**
+     * 一次流式请求累积的内容
+     */
+    private static final class StreamResult {
+        final StringBuilder text = new StringBuilder();
+        boolean truncated;
+    }
+
+    /**
+     * 解析完整响应，失败时返回 null（并自行上报解析错误）
+     */
+    private interface ResultParser<T> {
+        T parse(String responseString, int httpCode);
+    }
+
+    private interface ResultCallback<T> {
+        void onResult(T result);
+        void onError(ApiError error);
+    }
+
+    /**
+     * 流式请求回调
+     */
+    public interface StreamCallback extends Callback {
+        /**
+         * @param partialResult 目前为止累积的文本
+         */
+        void onProgress(String partialResult);
+    }
+
+    /**
+     * 请求过程中的事件，在OkHttp线程或调用线程上同步回调，实现必须足够轻量
+     */
+    public interface EventListener {
+        EventListener NONE = new EventListener() {
+        };
+
+        /**
+         * @return 传给 {@link #onStageEnd} 的标记，如开始时间
+         */
+        default long onStageStart(int stage) {
+            return 0;
+        }
+
+        default void onStageEnd(int stage, long token) {
+        }
+
+        /**
+         * 响应读取完毕（HTTP成功）
+         * @param responseChars 响应体或流式累积内容的字符数
+         */
+        default void onRequestCompleted(int httpCode, long elapsedMs, int responseChars) {
+        }
+
+        /**
+         * @param httpCode 没有响应时为0
+         * @param cause 可能为 null
+         */
+        default void onRequestFailed(int error, int httpCode, Throwable cause) {
+        }
+
+        /**
+         * 流式响应中出现无法解析的数据块，该数据块被跳过
+         */
+        default void onMalformedChunk(Throwable cause) {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.inputassistant.universal.core.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * OpenAI兼容的 /chat/completions 请求构建
+ */
+public final class ChatRequestFactory {
+    public static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    public static final int DEFAULT_MAX_TOKENS = 1000;
+    public static final double DEFAULT_TEMPERATURE = 0.7;
+
+    private ChatRequestFactory() {
+    }
+
+    /**
+     * 拼接 chat/completions 端点地址，兼容带或不带结尾斜杠的基础URL
+     */
+    public static String chatCompletionsUrl(String baseUrl) {
+        return baseUrl.endsWith("/") ? baseUrl + "chat/completions" : baseUrl + "/chat/completions";
+    }
+
+    /**
+     * 拼接 models 端点地址
+     */
+    public static String modelsUrl(String baseUrl) {
+        return baseUrl.endsWith("/") ? baseUrl + "models" : baseUrl + "/models";
+    }
+
+    /**
+     * 构建OpenAI格式的请求体，使用默认的 max_tokens
+     */
+    public static JsonObject buildBody(String modelName, String systemPrompt, String userPrompt, boolean stream) {
+        return buildBody(modelName, systemPrompt, userPrompt, stream, GenerationParams.DEFAULT);
+    }
+
+    /**
+     * 构建OpenAI格式的请求体
+     * @param params 生成参数，max_tokens 通常由 {@link com.inputassistant.universal.core.token.TokenBudget} 计算
+     */
+    public static JsonObject buildBody(String modelName, String systemPrompt, String userPrompt, boolean stream,
+                                       GenerationParams params) {
+        JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("model", modelName);
+        requestBody.addProperty("max_tokens", params.getMaxTokens());
+        requestBody.addProperty("temperature", params.getTemperature());
+        if (!params.getStopSequences().isEmpty()) {
+            JsonArray stop = new JsonArray();
+            for (String sequence : params.getStopSequences()) {
+                stop.add(sequence);
+            }
+            requestBody.add("stop", stop);
+        }
+        if (params.getCandidateCount() > 1) {
+            requestBody.addProperty("n", params.getCandidateCount());
+        }
+        if (stream) {
+            requestBody.addProperty("stream", true);
+        }
+
+        // 构建messages数组
+        JsonArray messages = new JsonArray();
+
+        // 系统消息
+        JsonObject systemMessage = new JsonObject();
+        systemMessage.addProperty("role", "system");
+        systemMessage.addProperty("content", systemPrompt);
+        messages.add(systemMessage);
+
+        // 用户消息
+        JsonObject userMessage = new JsonObject();
+        userMessage.addProperty("role", "user");
+        userMessage.addProperty("content", userPrompt);
+        messages.add(userMessage);
+
+        requestBody.add("messages", messages);
+        return requestBody;
+    }
+
+    /**
+     * 构建HTTP请求
+     * @param stream 是否请求SSE流式响应
+     */
+    public static Request buildRequest(String baseUrl, String apiKey, JsonObject requestBody, boolean stream) {
+        Request.Builder builder = new Request.Builder()
+                .url(chatCompletionsUrl(baseUrl))
+                .post(RequestBody.create(requestBody.toString(), JSON))
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Content-Type", "application/json");
+        if (stream) {
+            builder.addHeader("Accept", "text/event-stream");
+        }
+        return builder.build();
+    }
+
+    /**
+     * 构建探测端点是否可达的轻量请求（GET /models，不消耗token）
+     */
+    public static Request buildProbeRequest(String baseUrl, String apiKey) {
+        return new Request.Builder()
+                .url(modelsUrl(baseUrl))
+                .get()
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .build();
+    }
+}
@@ -0,0 +1,163 @@
+package com.inputassistant.universal.core.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OpenAI兼容响应的解析
+ * JSON本身不合法时抛出 {@link com.google.gson.JsonParseException}；
+ * JSON合法但缺少所需字段时返回 null
+ */
+public final class ChatResponseParser {
+    /** SSE数据行前缀 */
+    public static final String SSE_DATA_PREFIX = "data:";
+    /** SSE流结束标记 */
+    public static final String SSE_DONE = "[DONE]";
+    /** finish_reason：达到 max_tokens 被截断 */
+    public static final String FINISH_LENGTH = "length";
+
+    private ChatResponseParser() {
+    }
+
+    /**
+     * 解析完整响应中的 choices[0].message.content（去除首尾空白）
+     * @return 回答因 max_tokens 被截断时也返回 null，可用 {@link #isTruncated} 区分
+     */
+    public static String parseContent(String responseString) {
+        JsonObject firstChoice = firstChoice(JsonParser.parseString(responseString));
+        if (firstChoice != null && !isLengthFinish(firstChoice)
+                && firstChoice.has("message") && firstChoice.get("message").isJsonObject()) {
+            JsonObject message = firstChoice.getAsJsonObject("message");
+            if (message.has("content") && !message.get("content").isJsonNull()) {
+                return message.get("content").getAsString().trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析完整响应中所有 choices 的 message.content（请求 n > 1 时）
+     * 按 index 顺序返回，去除首尾空白，跳过空内容、重复内容和被截断的候选
+     * @return 没有可用内容时返回 null
+     */
+    public static List<String> parseAllContents(String responseString) {
+        JsonElement root = JsonParser.parseString(responseString);
+        if (root == null || !root.isJsonObject()) {
+            return null;
+        }
+        JsonObject responseJson = root.getAsJsonObject();
+        if (!responseJson.has("choices") || !responseJson.get("choices").isJsonArray()) {
+            return null;
+        }
+        JsonArray choices = responseJson.getAsJsonArray("choices");
+        String[] byIndex = new String[choices.size()];
+        List<String> unindexed = new ArrayList<>();
+        for (JsonElement element : choices) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject choice = element.getAsJsonObject();
+            if (isLengthFinish(choice) || !choice.has("message") || !choice.get("message").isJsonObject()) {
+                continue;
+            }
+            JsonObject message = choice.getAsJsonObject("message");
+            if (!message.has("content") || message.get("content").isJsonNull()) {
+                continue;
+            }
+            String content = message.get("content").getAsString().trim();
+            // 多数实现按 index 顺序返回，但规范并不保证
+            int index = choice.has("index") && choice.get("index").isJsonPrimitive()
+                    ? choice.get("index").getAsInt() : -1;
+            if (index >= 0 && index < byIndex.length && byIndex[index] == null) {
+                byIndex[index] = content;
+            } else {
+                unindexed.add(content);
+            }
+        }
+
+        List<String> contents = new ArrayList<>(byIndex.length);
+        for (String content : byIndex) {
+            addDistinct(contents, content);
+        }
+        for (String content : unindexed) {
+            addDistinct(contents, content);
+        }
+        return contents.isEmpty() ? null : contents;
+    }
+
+    private static void addDistinct(List<String> contents, String content) {
+        if (content != null && !content.isEmpty() && !contents.contains(content)) {
+            contents.add(content);
+        }
+    }
+
+    /**
+     * 解析SSE数据块中的增量内容 choices[0].delta.content
+     * @param data 去掉 "data:" 前缀后的内容
+     */
+    public static String parseStreamDelta(String data) {
+        JsonObject firstChoice = firstChoice(JsonParser.parseString(data));
+        if (firstChoice != null && firstChoice.has("delta") && firstChoice.get("delta").isJsonObject()) {
+            JsonObject delta = firstChoice.getAsJsonObject("delta");
+            if (delta.has("content") && !delta.get("content").isJsonNull()) {
+                return delta.get("content").getAsString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 完整响应的 choices[0] 是否因 max_tokens 被截断
+     */
+    public static boolean isTruncated(String responseString) {
+        JsonObject firstChoice = firstChoice(JsonParser.parseString(responseString));
+        return firstChoice != null && isLengthFinish(firstChoice);
+    }
+
+    /**
+     * SSE数据块的 choices[0].finish_reason 是否为 length；不含该值的数据块不解析
+     * @param data 去掉 "data:" 前缀后的内容
+     */
+    public static boolean isStreamTruncated(String data) {
+        if (!data.contains(FINISH_LENGTH)) {
+            return false;
+        }
+        JsonObject firstChoice = firstChoice(JsonParser.parseString(data));
+        return firstChoice != null && isLengthFinish(firstChoice);
+    }
+
+    private static boolean isLengthFinish(JsonObject choice) {
+        JsonElement finishReason = choice.get("finish_reason");
+        return finishReason != null && finishReason.isJsonPrimitive()
+                && FINISH_LENGTH.equals(finishReason.getAsString());
+    }
+
+    /**
+     * 提取SSE行中的数据部分，非数据行返回 null
+     */
+    public static String sseData(String line) {
+        if (!line.startsWith(SSE_DATA_PREFIX)) {
+            return null;
+        }
+        return line.substring(SSE_DATA_PREFIX.length()).trim();
+    }
+
+    private static JsonObject firstChoice(JsonElement root) {
+        if (root == null || !root.isJsonObject()) {
+            return null;
+        }
+        JsonObject responseJson = root.getAsJsonObject();
+        if (responseJson.has("choices") && responseJson.get("choices").isJsonArray()) {
+            JsonArray choices = responseJson.getAsJsonArray("choices");
+            if (choices.size() > 0 && choices.get(0).isJsonObject()) {
+                return choices.get(0).getAsJsonObject();
+            }
+        }
+        return null;
+    }
+}
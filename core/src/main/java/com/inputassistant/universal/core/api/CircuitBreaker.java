@@ -0,0 +1,202 @@
+package com.inputassistant.universal.core.api;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 按端点（地址 + 密钥，见 {@link RequestScheduler#key}）的熔断器
+ *
+ * - 关闭：正常发出请求；连续 {@link #FAILURE_THRESHOLD} 次网络错误或服务端故障后打开
+ * - 打开：请求立即失败，不再等待连接/读取超时；打开时长从5秒起每次翻倍，最长2分钟
+ * - 半开：打开时长结束后在后台发一个轻量探测请求，成功则关闭，失败则再次打开；
+ *   连续探测 {@link #MAX_PROBES} 次仍失败后停止主动探测，由下一个用户请求充当探测；
+ *   充当探测的请求被取消时调用 {@link #onCanceled}，回到打开状态，由下一个请求重新充当探测
+ * 任何HTTP响应（包括4xx和429）都说明端点可达，视为成功；只有网络错误和 500/502/503/504 计为失败
+ * 线程安全
+ */
+public final class CircuitBreaker {
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    public static final int FAILURE_THRESHOLD = 3;
+    public static final int MAX_PROBES = 5;
+    private static final long BASE_OPEN_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long MAX_OPEN_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    /**
+     * 状态变化通知，在触发变化的线程上调用
+     */
+    public interface Listener {
+        void onStateChanged(String key, int state);
+    }
+
+    private static final class Endpoint {
+        int state = STATE_CLOSED;
+        int consecutiveFailures;
+        int opens;
+        long openUntilNanos;
+        ScheduledFuture<?> probeTask;
+        // allowRequest 放行的用户请求正在充当探测
+        boolean trialInFlight;
+    }
+
+    private final LongSupplier clock;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CircuitBreaker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CircuitBreaker() {
+        this(System::nanoTime);
+    }
+
+    public CircuitBreaker(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 请求发出前调用
+     * @return false 表示熔断中，应立即失败
+     */
+    public boolean allowRequest(String key) {
+        synchronized (this) {
+            Endpoint endpoint = endpoints.get(key);
+            if (endpoint == null || endpoint.state == STATE_CLOSED) {
+                return true;
+            }
+            // 已停止主动探测：打开时长结束后放行一个请求作为探测
+            if (endpoint.state != STATE_OPEN || endpoint.probeTask != null
+                    || clock.getAsLong() < endpoint.openUntilNanos) {
+                return false;
+            }
+            endpoint.state = STATE_HALF_OPEN;
+            endpoint.trialInFlight = true;
+        }
+        notifyListeners(key, STATE_HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * 请求在得到结果前被取消：如果它正在充当探测，回到打开状态并立即允许下一个请求充当探测，
+     * 否则端点会一直停在半开状态
+     */
+    public void onCanceled(String key) {
+        synchronized (this) {
+            Endpoint endpoint = endpoints.get(key);
+            if (endpoint == null || endpoint.state != STATE_HALF_OPEN || !endpoint.trialInFlight) {
+                return;
+            }
+            endpoint.trialInFlight = false;
+            endpoint.state = STATE_OPEN;
+            endpoint.openUntilNanos = clock.getAsLong();
+        }
+        notifyListeners(key, STATE_OPEN);
+    }
+
+    /**
+     * @return 熔断打开时距离下一次探测的毫秒数，其他状态为0
+     */
+    public synchronized long remainingOpenMs(String key) {
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null || endpoint.state != STATE_OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(endpoint.openUntilNanos - clock.getAsLong()));
+    }
+
+    public synchronized int state(String key) {
+        Endpoint endpoint = endpoints.get(key);
+        return endpoint != null ? endpoint.state : STATE_CLOSED;
+    }
+
+    /**
+     * 端点有响应
+     */
+    public void onSuccess(String key) {
+        synchronized (this) {
+            Endpoint endpoint = endpoints.get(key);
+            if (endpoint == null) {
+                return;
+            }
+            endpoint.consecutiveFailures = 0;
+            endpoint.opens = 0;
+            endpoint.trialInFlight = false;
+            if (endpoint.state == STATE_CLOSED) {
+                return;
+            }
+            endpoint.state = STATE_CLOSED;
+            if (endpoint.probeTask != null) {
+                endpoint.probeTask.cancel(false);
+                endpoint.probeTask = null;
+            }
+        }
+        notifyListeners(key, STATE_CLOSED);
+    }
+
+    /**
+     * 网络错误或服务端故障
+     * @param probe 打开时长结束后执行的探测，需自行回调 onSuccess / onFailure；为空时不主动探测
+     */
+    public void onFailure(String key, Runnable probe) {
+        synchronized (this) {
+            Endpoint endpoint = endpoints.get(key);
+            if (endpoint == null) {
+                endpoint = new Endpoint();
+                endpoints.put(key, endpoint);
+            }
+            endpoint.consecutiveFailures++;
+            endpoint.trialInFlight = false;
+            boolean trip = endpoint.state == STATE_HALF_OPEN
+                    || (endpoint.state == STATE_CLOSED && endpoint.consecutiveFailures >= FAILURE_THRESHOLD);
+            if (!trip) {
+                return;
+            }
+            long openNanos = Math.min(MAX_OPEN_NANOS, BASE_OPEN_NANOS << Math.min(endpoint.opens, 10));
+            endpoint.opens++;
+            endpoint.state = STATE_OPEN;
+            endpoint.openUntilNanos = clock.getAsLong() + openNanos;
+            endpoint.probeTask = probe != null && endpoint.opens <= MAX_PROBES
+                    ? timer.schedule(() -> runProbe(key, probe), openNanos, TimeUnit.NANOSECONDS)
+                    : null;
+        }
+        notifyListeners(key, STATE_OPEN);
+    }
+
+    private void runProbe(String key, Runnable probe) {
+        synchronized (this) {
+            Endpoint endpoint = endpoints.get(key);
+            if (endpoint == null || endpoint.state != STATE_OPEN) {
+                return;
+            }
+            endpoint.state = STATE_HALF_OPEN;
+            endpoint.probeTask = null;
+        }
+        notifyListeners(key, STATE_HALF_OPEN);
+        probe.run();
+    }
+
+    private void notifyListeners(String key, int state) {
+        for (Listener listener : listeners) {
+            listener.onStateChanged(key, state);
+        }
+    }
+}
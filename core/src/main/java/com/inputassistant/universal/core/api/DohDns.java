@@ -0,0 +1,145 @@
+package com.inputassistant.universal.core.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * DNS over HTTPS 解析，使用 JSON 格式（application/dns-json，Cloudflare 与 Google 等公共解析服务均支持）
+ * A 与 AAAA 两个查询并发发出；解析服务不可用或没有结果时交给备用解析器
+ */
+public final class DohDns implements Dns {
+    private static final int TYPE_A = 1;
+    private static final int TYPE_AAAA = 28;
+    private static final long QUERY_TIMEOUT_SECONDS = 5;
+    // IP字面量不需要解析
+    private static final Pattern IP_LITERAL = Pattern.compile("^[0-9.]+$|^[0-9a-fA-F:.\\[\\]]*:[0-9a-fA-F:.\\[\\]]*$");
+
+    private final OkHttpClient client;
+    private final HttpUrl url;
+    private final Dns fallback;
+
+    /**
+     * @param client 查询解析服务用的客户端，它自身必须使用其他解析器（通常是系统解析），否则会递归
+     * @param url 解析服务地址，如 https://cloudflare-dns.com/dns-query
+     * @param fallback 解析服务失败时使用，为空时直接报错
+     */
+    public DohDns(OkHttpClient client, String url, Dns fallback) {
+        HttpUrl parsed = HttpUrl.parse(url);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Invalid DoH url: " + url);
+        }
+        this.client = client.newBuilder().callTimeout(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS).build();
+        this.url = parsed;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        if (IP_LITERAL.matcher(hostname).matches()) {
+            return Dns.SYSTEM.lookup(hostname);
+        }
+        List<InetAddress> ipv6 = new ArrayList<>();
+        List<InetAddress> ipv4 = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        query(hostname, TYPE_AAAA, ipv6, done);
+        query(hostname, TYPE_A, ipv4, done);
+        try {
+            done.await(QUERY_TIMEOUT_SECONDS + 1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<InetAddress> addresses = new ArrayList<>();
+        synchronized (ipv6) {
+            addresses.addAll(ipv6);
+        }
+        synchronized (ipv4) {
+            addresses.addAll(ipv4);
+        }
+        if (!addresses.isEmpty()) {
+            return addresses;
+        }
+        if (fallback != null) {
+            return fallback.lookup(hostname);
+        }
+        throw new UnknownHostException("DoH returned no addresses for " + hostname);
+    }
+
+    private void query(String hostname, int type, List<InetAddress> results, CountDownLatch done) {
+        Request request = new Request.Builder()
+                .url(url.newBuilder()
+                        .addQueryParameter("name", hostname)
+                        .addQueryParameter("type", type == TYPE_A ? "A" : "AAAA")
+                        .build())
+                .header("Accept", "application/dns-json")
+                .get()
+                .build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.isSuccessful() && body != null) {
+                        List<InetAddress> parsed = parseAnswers(body.string(), type);
+                        synchronized (results) {
+                            results.addAll(parsed);
+                        }
+                    }
+                } catch (Exception e) {
+                    // 格式不对时当作没有结果
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * 解析 JSON 应答中指定类型的记录；CNAME 等其他记录忽略
+     */
+    static List<InetAddress> parseAnswers(String json, int type) throws UnknownHostException {
+        List<InetAddress> addresses = new ArrayList<>();
+        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+        if (root.has("Status") && root.get("Status").getAsInt() != 0) {
+            return addresses;
+        }
+        JsonArray answers = root.has("Answer") ? root.getAsJsonArray("Answer") : null;
+        if (answers == null) {
+            return addresses;
+        }
+        for (JsonElement element : answers) {
+            JsonObject answer = element.getAsJsonObject();
+            if (answer.get("type").getAsInt() != type) {
+                continue;
+            }
+            String data = answer.get("data").getAsString();
+            // 只接受IP字面量，避免触发系统解析
+            if (IP_LITERAL.matcher(data).matches()) {
+                addresses.add(InetAddress.getByName(data));
+            }
+        }
+        return addresses;
+    }
+}
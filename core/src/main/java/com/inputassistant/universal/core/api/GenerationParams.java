@@ -0,0 +1,87 @@
+package com.inputassistant.universal.core.api;
+
+import com.inputassistant.universal.model.Action;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单次请求的生成参数（max_tokens、temperature、stop、n）
+ * 模型名与端点地址作为请求参数单独传递
+ */
+public final class GenerationParams {
+    /** OpenAI 接口最多接受4个停止序列 */
+    public static final int MAX_STOP_SEQUENCES = 4;
+    /** 单次请求的候选数上限，更多的候选在输入法的候选栏里也放不下 */
+    public static final int MAX_CANDIDATES = 5;
+
+    public static final GenerationParams DEFAULT = new GenerationParams(
+            ChatRequestFactory.DEFAULT_MAX_TOKENS, ChatRequestFactory.DEFAULT_TEMPERATURE,
+            Collections.<String>emptyList(), 1);
+
+    private final int maxTokens;
+    private final double temperature;
+    private final List<String> stopSequences;
+    private final int candidateCount;
+
+    public GenerationParams(int maxTokens, double temperature, List<String> stopSequences) {
+        this(maxTokens, temperature, stopSequences, 1);
+    }
+
+    /**
+     * @param candidateCount 请求的候选数（OpenAI 的 n 参数），1 表示只要一个回答
+     */
+    public GenerationParams(int maxTokens, double temperature, List<String> stopSequences, int candidateCount) {
+        this.maxTokens = maxTokens;
+        this.temperature = temperature;
+        this.stopSequences = stopSequences != null
+                ? Collections.unmodifiableList(new ArrayList<>(stopSequences))
+                : Collections.<String>emptyList();
+        this.candidateCount = Math.max(1, Math.min(MAX_CANDIDATES, candidateCount));
+    }
+
+    /**
+     * 动作的生成参数；max_tokens 使用发送前预算出的值（已考虑动作自己的上限），未设置的项使用默认值
+     * @param budgetMaxTokens {@link com.inputassistant.universal.core.token.TokenBudget} 计算的 max_tokens
+     */
+    public static GenerationParams forAction(Action action, int budgetMaxTokens) {
+        Double temperature = action.getTemperature();
+        Integer candidateCount = action.getCandidateCount();
+        return new GenerationParams(
+                budgetMaxTokens,
+                temperature != null ? temperature : ChatRequestFactory.DEFAULT_TEMPERATURE,
+                action.getStopSequences(),
+                candidateCount != null ? candidateCount : 1);
+    }
+
+    public GenerationParams withMaxTokens(int maxTokens) {
+        return new GenerationParams(maxTokens, temperature, stopSequences, candidateCount);
+    }
+
+    /**
+     * @return 候选数为1的副本，用于只需要一个回答的请求（如草稿、分段处理）
+     */
+    public GenerationParams singleCandidate() {
+        return candidateCount == 1 ? this : new GenerationParams(maxTokens, temperature, stopSequences, 1);
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * @return 不可修改的列表，可能为空
+     */
+    public List<String> getStopSequences() {
+        return stopSequences;
+    }
+}
@@ -0,0 +1,75 @@
+package com.inputassistant.universal.core.api;
+
+import java.util.Arrays;
+
+/**
+ * 滚动的耗时直方图：对数分桶（每翻倍4个桶，1ms到约4分钟），保留最近两个窗口的样本
+ * 当前窗口满 {@code window} 个样本后成为上一个窗口，更早的样本丢弃，分位数随网络和模型的变化而更新
+ * 非线程安全
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int BUCKETS = 18 * BUCKETS_PER_DOUBLING + 1;
+
+    private final int window;
+    private int[] current = new int[BUCKETS];
+    private int[] previous = new int[BUCKETS];
+    private int currentCount;
+    private int previousCount;
+
+    /**
+     * @param window 每个窗口的样本数
+     */
+    public LatencyHistogram(int window) {
+        this.window = window;
+    }
+
+    public void record(long ms) {
+        if (currentCount == window) {
+            int[] recycled = previous;
+            Arrays.fill(recycled, 0);
+            previous = current;
+            previousCount = currentCount;
+            current = recycled;
+            currentCount = 0;
+        }
+        current[bucket(ms)]++;
+        currentCount++;
+    }
+
+    public int count() {
+        return currentCount + previousCount;
+    }
+
+    /**
+     * @param percentile 0到100
+     * @return 所在桶的上界（毫秒），没有样本时为0
+     */
+    public long percentile(double percentile) {
+        int total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += current[i] + previous[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static int bucket(long ms) {
+        if (ms <= 1) {
+            return 0;
+        }
+        int index = (int) Math.ceil(Math.log(ms) / Math.log(2) * BUCKETS_PER_DOUBLING);
+        return Math.min(BUCKETS - 1, index);
+    }
+
+    static long upperBound(int bucket) {
+        return (long) Math.ceil(Math.pow(2, (double) bucket / BUCKETS_PER_DOUBLING));
+    }
+}
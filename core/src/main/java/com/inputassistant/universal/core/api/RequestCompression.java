@@ -0,0 +1,223 @@
+package com.inputassistant.universal.core.api;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按服务端能力压缩请求体（gzip）
+ *
+ * 服务端是否接受压缩的请求体由响应中的 Accept-Encoding 头判断（RFC 7694），按服务地址（scheme://host:port）记住：
+ * - 未知时请求照常发出，从响应头学习；响应中没有该头时在后台发一次 OPTIONS 探测，仍没有则认为不支持
+ * - 支持时较长的请求体（{@link #MIN_BODY_BYTES} 以上）压缩后发出
+ * - 压缩的请求被拒绝（415，或在此之前从未成功过的 400）时改为不支持，并立即以原始请求重发一次
+ * 只在进程内记住，重启后重新学习
+ * 线程安全
+ */
+public final class RequestCompression {
+    public static final int STATE_UNKNOWN = 0;
+    public static final int STATE_SUPPORTED = 1;
+    public static final int STATE_UNSUPPORTED = 2;
+
+    // 更短的请求体压缩后省不了几个字节，不值得花CPU
+    static final int MIN_BODY_BYTES = 1024;
+    private static final String GZIP = "gzip";
+    // 探测请求的总超时
+    private static final long PROBE_TIMEOUT_SECONDS = 5;
+
+    /**
+     * 一个服务地址的状态
+     */
+    private static final class Capability {
+        int state = STATE_UNKNOWN;
+        // 已有压缩的请求成功过，之后的400是请求本身的问题
+        boolean confirmed;
+        boolean probing;
+    }
+
+    private final Map<String, Capability> capabilities = new HashMap<>();
+
+    /**
+     * @return STATE_* 常量
+     */
+    public synchronized int state(HttpUrl url) {
+        Capability capability = capabilities.get(origin(url));
+        return capability != null ? capability.state : STATE_UNKNOWN;
+    }
+
+    /**
+     * 应用拦截器（addInterceptor），压缩请求体并从响应学习服务端能力
+     * @param probeClient 发送 OPTIONS 探测使用的客户端
+     */
+    public Interceptor interceptor(OkHttpClient probeClient) {
+        return chain -> {
+            Request request = chain.request();
+            RequestBody body = request.body();
+            if (body == null || request.header("Content-Encoding") != null
+                    || body.contentLength() < MIN_BODY_BYTES) {
+                return chain.proceed(request);
+            }
+            String origin = origin(request.url());
+            if (state(request.url()) != STATE_SUPPORTED) {
+                Response response = chain.proceed(request);
+                if (learn(origin, response) && startProbe(origin)) {
+                    probe(probeClient, origin, request.url());
+                }
+                return response;
+            }
+
+            Request compressed = request.newBuilder()
+                    .header("Content-Encoding", GZIP)
+                    .method(request.method(), gzip(body))
+                    .build();
+            Response response = chain.proceed(compressed);
+            if (onCompressedResponse(origin, response.code())) {
+                return response;
+            }
+            response.close();
+            return chain.proceed(request);
+        };
+    }
+
+    /**
+     * 读取响应中的 Accept-Encoding
+     * @return 仍然未知，需要探测
+     */
+    private synchronized boolean learn(String origin, Response response) {
+        Capability capability = capability(origin);
+        if (capability.state != STATE_UNKNOWN) {
+            return false;
+        }
+        String accepted = response.header("Accept-Encoding");
+        if (accepted != null) {
+            capability.state = acceptsGzip(accepted) ? STATE_SUPPORTED : STATE_UNSUPPORTED;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return 响应是否可以交给调用方；false 表示服务端不接受压缩，需要以原始请求重发
+     */
+    private synchronized boolean onCompressedResponse(String origin, int code) {
+        Capability capability = capability(origin);
+        if (code == 415 || (code == 400 && !capability.confirmed)) {
+            capability.state = STATE_UNSUPPORTED;
+            return false;
+        }
+        if (code >= 200 && code < 300) {
+            capability.confirmed = true;
+        }
+        return true;
+    }
+
+    private synchronized boolean startProbe(String origin) {
+        Capability capability = capability(origin);
+        if (capability.probing) {
+            return false;
+        }
+        capability.probing = true;
+        return true;
+    }
+
+    /**
+     * 对请求地址发 OPTIONS，不带认证信息，不消耗额度
+     */
+    private void probe(OkHttpClient client, String origin, HttpUrl url) {
+        Call call = client.newBuilder()
+                .callTimeout(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build()
+                .newCall(new Request.Builder().url(url).method("OPTIONS", null).build());
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                // 网络不通时下一次请求再探测
+                synchronized (RequestCompression.this) {
+                    capability(origin).probing = false;
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                synchronized (RequestCompression.this) {
+                    Capability capability = capability(origin);
+                    capability.probing = false;
+                    if (capability.state == STATE_UNKNOWN) {
+                        String accepted = response.header("Accept-Encoding");
+                        capability.state = accepted != null && acceptsGzip(accepted)
+                                ? STATE_SUPPORTED : STATE_UNSUPPORTED;
+                    }
+                }
+            }
+        });
+    }
+
+    private Capability capability(String origin) {
+        Capability capability = capabilities.get(origin);
+        if (capability == null) {
+            capability = new Capability();
+            capabilities.put(origin, capability);
+        }
+        return capability;
+    }
+
+    /**
+     * 压缩后的请求体，长度已知，可以重复写出
+     */
+    public static RequestBody gzip(RequestBody body) throws IOException {
+        Buffer compressed = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+            body.writeTo(sink);
+        }
+        MediaType contentType = body.contentType();
+        return RequestBody.create(compressed.readByteString(), contentType);
+    }
+
+    /**
+     * 按 RFC 7231 解析 Accept-Encoding，q=0 表示不接受
+     */
+    static boolean acceptsGzip(String header) {
+        for (String part : header.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase(Locale.US);
+            if (!GZIP.equals(coding) && !"*".equals(coding)) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().toLowerCase(Locale.US);
+                if (param.startsWith("q=")) {
+                    try {
+                        if (Double.parseDouble(param.substring(2)) <= 0) {
+                            return false;
+                        }
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static String origin(HttpUrl url) {
+        return url.scheme() + "://" + url.host() + ":" + url.port();
+    }
+}
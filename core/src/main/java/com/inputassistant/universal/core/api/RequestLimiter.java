@@ -0,0 +1,54 @@
+package com.inputassistant.universal.core.api;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 异步请求的并发上限
+ * 任务在取得许可后立即在提交线程（或释放许可的线程）上启动，不阻塞任何线程；
+ * 任务对应的请求结束时（成功、失败或取消）必须调用一次 {@link #release()}
+ */
+public final class RequestLimiter {
+    private final Semaphore permits;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    public RequestLimiter(int maxConcurrent) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * 有空闲许可时立即启动任务，否则排队等待
+     */
+    public void submit(Runnable task) {
+        pending.add(task);
+        drain();
+    }
+
+    /**
+     * 归还许可并启动下一个排队的任务
+     */
+    public void release() {
+        permits.release();
+        drain();
+    }
+
+    /**
+     * @return 排队中尚未启动的任务数
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private void drain() {
+        while (!pending.isEmpty() && permits.tryAcquire()) {
+            Runnable task = pending.poll();
+            if (task == null) {
+                // 其他线程抢先取走了任务
+                permits.release();
+                return;
+            }
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.inputassistant.universal.core.api;
+
+import okhttp3.Headers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 按端点限速、按优先级排队的请求调度
+ *
+ * 每个端点（地址 + 密钥）一个 {@link TokenBucket}；排队的请求按优先级、再按提交顺序取令牌，
+ * 同一端点上有更高优先级的请求在等待时，低优先级的请求不会抢先；
+ * 后台请求只有在令牌桶剩余超过 {@link #BACKGROUND_RESERVE} 时才发出，给用户点击留出余量
+ *
+ * 任务只负责发起异步请求（如 {@code call.enqueue}），在提交线程或内部计时线程上执行，不得阻塞
+ * 线程安全
+ */
+public final class RequestScheduler {
+    /** 用户点击触发、正在等待结果的请求 */
+    public static final int PRIORITY_INTERACTIVE = 0;
+    /** 已有可用结果，只是进一步改进（草稿后的正式结果、相似输入的刷新） */
+    public static final int PRIORITY_REFINEMENT = 1;
+    /** 用户不在等待的请求（离线队列重试、预取） */
+    public static final int PRIORITY_BACKGROUND = 2;
+    /** 后台请求发出后令牌桶至少保留的比例 */
+    public static final double BACKGROUND_RESERVE = 0.25;
+
+    private static final class Task {
+        final String key;
+        final int priority;
+        final long sequence;
+        final Runnable runnable;
+
+        Task(String key, int priority, long sequence, Runnable runnable) {
+            this.key = key;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+    }
+
+    private final int capacity;
+    private final double refillPerSecond;
+    private final LongSupplier clock;
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    // 按 (优先级, 提交顺序) 排序，排队的请求通常只有几个
+    private final List<Task> queue = new ArrayList<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RequestScheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAtNanos;
+    private long sequence;
+
+    public RequestScheduler() {
+        this(TokenBucket.DEFAULT_CAPACITY, TokenBucket.DEFAULT_REFILL_PER_SECOND, System::nanoTime);
+    }
+
+    /**
+     * @param capacity 新端点的初始突发请求数
+     * @param refillPerSecond 新端点的初始每秒请求数，之后按响应头调整
+     * @param clock 纳秒时钟
+     */
+    public RequestScheduler(int capacity, double refillPerSecond, LongSupplier clock) {
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+        this.clock = clock;
+    }
+
+    /**
+     * 端点的标识；密钥只取哈希，不同密钥的额度分开计算
+     */
+    public static String key(String baseUrl, String apiKey) {
+        return baseUrl + "#" + Integer.toHexString(apiKey != null ? apiKey.hashCode() : 0);
+    }
+
+    /**
+     * 排队，取得令牌后执行
+     */
+    public void submit(String key, int priority, Runnable task) {
+        synchronized (this) {
+            Task entry = new Task(key, priority, sequence++, task);
+            int index = queue.size();
+            while (index > 0 && compare(queue.get(index - 1), entry) > 0) {
+                index--;
+            }
+            queue.add(index, entry);
+        }
+        drain();
+    }
+
+    /**
+     * 请求得到响应（包括错误状态码）后调用，学习服务端的限流参数
+     */
+    public void onResponse(String key, int httpCode, Headers headers) {
+        synchronized (this) {
+            bucket(key).onResponse(httpCode, headers, clock.getAsLong());
+        }
+        drain();
+    }
+
+    public synchronized int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return 端点当前的每秒请求数，没有记录时为初始值
+     */
+    public synchronized double refillPerSecond(String key) {
+        TokenBucket bucket = buckets.get(key);
+        return bucket != null ? bucket.getRefillPerSecond() : refillPerSecond;
+    }
+
+    private void drain() {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.getAsLong();
+            long minWait = Long.MAX_VALUE;
+            Set<String> waitingKeys = new HashSet<>();
+            for (int i = 0; i < queue.size(); i++) {
+                Task task = queue.get(i);
+                if (waitingKeys.contains(task.key)) {
+                    continue;
+                }
+                double reserve = task.priority >= PRIORITY_BACKGROUND ? BACKGROUND_RESERVE : 0;
+                long wait = bucket(task.key).tryAcquire(now, reserve);
+                if (wait == 0) {
+                    queue.remove(i--);
+                    ready.add(task.runnable);
+                } else {
+                    // 同一端点后面的请求优先级不更高，都要等
+                    waitingKeys.add(task.key);
+                    minWait = Math.min(minWait, wait);
+                }
+            }
+            if (minWait != Long.MAX_VALUE) {
+                scheduleWakeup(now, minWait);
+            }
+        }
+        for (Runnable runnable : ready) {
+            runnable.run();
+        }
+    }
+
+    private void scheduleWakeup(long now, long delayNanos) {
+        long at = now + delayNanos;
+        if (wakeup != null && !wakeup.isDone() && wakeupAtNanos <= at) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupAtNanos = at;
+        wakeup = timer.schedule(this::onWakeup, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void onWakeup() {
+        synchronized (this) {
+            // 正在执行的唤醒任务尚未完成，清空后 drain 才能安排下一次
+            wakeup = null;
+        }
+        drain();
+    }
+
+    private TokenBucket bucket(String key) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new TokenBucket(capacity, refillPerSecond, clock.getAsLong());
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private static int compare(Task a, Task b) {
+        if (a.priority != b.priority) {
+            return Integer.compare(a.priority, b.priority);
+        }
+        return Long.compare(a.sequence, b.sequence);
+    }
+}
@@ -0,0 +1,227 @@
+package com.inputassistant.universal.core.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.inputassistant.universal.core.queue.JournalCipher;
+import okio.ByteString;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持久化的TLS会话存储：按 host:port 保存 TLS 库导出的会话数据（含会话票据），
+ * 进程重启后第一次连接即可恢复会话，TLS 1.2 的握手少一次往返，也省去证书传输与校验。
+ * TLS 1.3 的票据只能使用一次，Conscrypt 不会交给持久化缓存
+ *
+ * 会话数据中含有会话密钥，整个文件作为一行经 {@link JournalCipher} 加密后写入；
+ * 调用 {@link #load} 之前只在内存中保存。写入在后台线程合并进行，不阻塞握手
+ * 线程安全
+ */
+public final class TlsSessionStore {
+    // 输入法通常只连少数几个服务
+    static final int MAX_ENTRIES = 16;
+    // 服务端的票据有效期通常不超过一天，更旧的会话恢复不了，不再保存
+    static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * 文件中的一个会话
+     */
+    private static final class Entry {
+        String host;
+        int port;
+        long savedAtMs;
+        // Base64
+        String data;
+    }
+
+    private final File file;
+    private final Gson gson = new Gson();
+    // 按访问顺序排列，超出上限时淘汰最久未用的
+    private final Map<String, Entry> entries = new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true);
+    private final ExecutorService writer;
+    // 后台写入与 flush/clear 不能同时操作文件
+    private final Object fileLock = new Object();
+    private JournalCipher cipher;
+    private boolean flushScheduled;
+
+    public TlsSessionStore(File file) {
+        this.file = file;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TlsSessionStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 读取文件中的会话，并开始持久化之后保存的会话；无法解密或解析时丢弃旧文件
+     */
+    public void load(JournalCipher cipher) {
+        List<Entry> loaded = new ArrayList<>();
+        if (file.exists()) {
+            try {
+                loaded = read(cipher);
+            } catch (IOException | JsonParseException e) {
+                // 密钥失效或文件损坏：会话只是缓存，直接丢弃
+                file.delete();
+            }
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            // 加载前保存的会话还没有写入文件
+            boolean unsaved = !entries.isEmpty();
+            for (Entry entry : loaded) {
+                String key = key(entry.host, entry.port);
+                // 内存中已有的是本进程刚握手得到的，比文件中的新
+                if (entry.host != null && entry.data != null && now - entry.savedAtMs < MAX_AGE_MS
+                        && !entries.containsKey(key)) {
+                    entries.put(key, entry);
+                }
+            }
+            trim();
+            this.cipher = cipher;
+            if (unsaved) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * @return 会话数据，没有或已过期时返回null
+     */
+    public synchronized byte[] get(String host, int port) {
+        Entry entry = entries.get(key(host, port));
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.savedAtMs >= MAX_AGE_MS) {
+            entries.remove(key(host, port));
+            return null;
+        }
+        ByteString data = ByteString.decodeBase64(entry.data);
+        return data != null ? data.toByteArray() : null;
+    }
+
+    public synchronized void put(String host, int port, byte[] data) {
+        if (host == null || data == null || data.length == 0) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.host = host;
+        entry.port = port;
+        entry.savedAtMs = System.currentTimeMillis();
+        entry.data = ByteString.of(data).base64();
+        entries.put(key(host, port), entry);
+        trim();
+        scheduleFlush();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 立即把内存中的会话写入文件
+     */
+    public void flush() throws IOException {
+        JournalCipher current;
+        List<Entry> snapshot;
+        synchronized (this) {
+            flushScheduled = false;
+            current = cipher;
+            snapshot = new ArrayList<>(entries.values());
+        }
+        if (current == null) {
+            return;
+        }
+        synchronized (fileLock) {
+            write(current, snapshot);
+        }
+    }
+
+    /**
+     * 删除全部会话
+     */
+    public synchronized void clear() {
+        entries.clear();
+        synchronized (fileLock) {
+            file.delete();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (cipher == null || flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        writer.execute(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                // 下次保存会话时再写
+            }
+        });
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > MAX_ENTRIES && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private List<Entry> read(JournalCipher cipher) throws IOException {
+        byte[] bytes;
+        try (FileInputStream in = new FileInputStream(file)) {
+            bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) > 0) {
+                offset += read;
+            }
+        }
+        String line = new String(bytes, StandardCharsets.UTF_8).trim();
+        Entry[] parsed = gson.fromJson(cipher.open(line), Entry[].class);
+        List<Entry> result = new ArrayList<>();
+        if (parsed != null) {
+            for (Entry entry : parsed) {
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写入临时文件后替换，写入中途进程被杀时旧文件仍然完整
+     */
+    private void write(JournalCipher cipher, List<Entry> snapshot) throws IOException {
+        String line = cipher.seal(gson.toJson(snapshot)) + "\n";
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace TLS session store " + file);
+        }
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,162 @@
+package com.inputassistant.universal.core.api;
+
+import okhttp3.Headers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 单个端点（地址 + 密钥）的令牌桶，从响应中学习服务端的限流参数
+ *
+ * - x-ratelimit-limit-requests：每分钟请求数上限，换算为补充速率
+ * - x-ratelimit-remaining-requests / -tokens：剩余额度，用完时按对应的 reset 暂停到重置时刻
+ * - 429：按 Retry-After 暂停；没有 Retry-After 时补充速率减半，之后每次成功逐步恢复
+ * 非线程安全，由 {@link RequestScheduler} 加锁访问
+ */
+public final class TokenBucket {
+    public static final int DEFAULT_CAPACITY = 8;
+    public static final double DEFAULT_REFILL_PER_SECOND = 2.0;
+    // 补充速率的下限，避免多次 429 后几乎停止
+    private static final double MIN_REFILL_PER_SECOND = 0.05;
+    // 每次成功恢复最大速率的比例
+    private static final double RECOVERY_STEP = 0.05;
+    // 429 且没有 Retry-After 时的暂停时间
+    private static final long DEFAULT_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h)");
+
+    private double capacity;
+    private double maxRefillPerSecond;
+    private double refillPerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+    private long blockedUntilNanos;
+
+    public TokenBucket(int capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.maxRefillPerSecond = refillPerSecond;
+        this.refillPerSecond = refillPerSecond;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * 尝试取一个令牌
+     * @param reserve 取走后至少要剩下的令牌比例（0到1），用于给更高优先级的请求留出余量
+     * @return 0 表示已取得；否则为预计需要等待的纳秒数
+     */
+    public long tryAcquire(long nowNanos, double reserve) {
+        refill(nowNanos);
+        if (nowNanos < blockedUntilNanos) {
+            return blockedUntilNanos - nowNanos;
+        }
+        double needed = 1 + reserve * capacity;
+        if (tokens >= needed) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) ((needed - tokens) / refillPerSecond * 1e9));
+    }
+
+    /**
+     * 根据响应状态码和限流相关的响应头调整
+     */
+    public void onResponse(int httpCode, Headers headers, long nowNanos) {
+        refill(nowNanos);
+        long limit = parseLong(headers.get("x-ratelimit-limit-requests"));
+        if (limit > 0) {
+            maxRefillPerSecond = limit / 60.0;
+            capacity = Math.max(1, Math.min(capacity, limit));
+            refillPerSecond = Math.min(refillPerSecond, maxRefillPerSecond);
+        }
+        pauseIfExhausted(headers.get("x-ratelimit-remaining-requests"), headers.get("x-ratelimit-reset-requests"),
+                nowNanos);
+        pauseIfExhausted(headers.get("x-ratelimit-remaining-tokens"), headers.get("x-ratelimit-reset-tokens"),
+                nowNanos);
+
+        if (httpCode == 429 || httpCode == 503) {
+            tokens = 0;
+            long retryAfterMs = ApiError.parseRetryAfter(headers.get("Retry-After"), System.currentTimeMillis());
+            if (retryAfterMs >= 0) {
+                blockedUntilNanos = Math.max(blockedUntilNanos, nowNanos + TimeUnit.MILLISECONDS.toNanos(retryAfterMs));
+            } else if (httpCode == 429) {
+                refillPerSecond = Math.max(MIN_REFILL_PER_SECOND, refillPerSecond / 2);
+                blockedUntilNanos = Math.max(blockedUntilNanos, nowNanos + DEFAULT_PAUSE_NANOS);
+            }
+        } else if (httpCode >= 200 && httpCode < 300) {
+            refillPerSecond = Math.min(maxRefillPerSecond, refillPerSecond + maxRefillPerSecond * RECOVERY_STEP);
+        }
+    }
+
+    public double getRefillPerSecond() {
+        return refillPerSecond;
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    private void pauseIfExhausted(String remaining, String reset, long nowNanos) {
+        long left = parseLong(remaining);
+        if (left < 0) {
+            return;
+        }
+        tokens = Math.min(tokens, left);
+        long resetNanos = parseDurationNanos(reset);
+        if (left == 0 && resetNanos > 0) {
+            blockedUntilNanos = Math.max(blockedUntilNanos, nowNanos + resetNanos);
+        }
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed / 1e9 * refillPerSecond);
+            lastRefillNanos = nowNanos;
+        }
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析 OpenAI 风格的时长（如 "1s"、"6m0s"、"20ms"、"1h2m3.5s"），纯数字按秒处理
+     * @return 纳秒数，无法解析时返回 -1
+     */
+    static long parseDurationNanos(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        String text = value.trim();
+        try {
+            return (long) (Double.parseDouble(text) * 1e9);
+        } catch (NumberFormatException e) {
+            // 带单位的时长
+        }
+        Matcher matcher = DURATION_PART.matcher(text);
+        double nanos = 0;
+        int end = 0;
+        while (matcher.find()) {
+            if (matcher.start() != end) {
+                return -1;
+            }
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "ms": nanos += amount * 1e6; break;
+                case "s": nanos += amount * 1e9; break;
+                case "m": nanos += amount * 60e9; break;
+                default: nanos += amount * 3600e9; break;
+            }
+            end = matcher.end();
+        }
+        return end == text.length() && end > 0 ? (long) nanos : -1;
+    }
+}
@@ -0,0 +1,296 @@
+package com.inputassistant.universal.core.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 近似重复输入的索引：对最近处理过的 (动作, 输入) 计算64位SimHash，按局部敏感分桶查找相似输入的结果
+ *
+ * - 指纹只取文字和数字（ASCII转小写）的字符三元组，标点和空白的改动不影响指纹
+ * - 64位指纹切成 {@link #BANDS} 段，每段与动作一起作为桶键；海明距离不超过 BANDS-1 的两个指纹
+ *   至少有一段完全相同（抽屉原理），因此只需检查同桶的条目
+ * - 条目数和结果总字符数都有上限，超出时按最近最少使用淘汰
+ * 非线程安全，由调用方在单一线程上使用
+ */
+public final class NearDuplicateIndex {
+    /** 指纹分段数，决定可支持的最大海明距离 */
+    public static final int BANDS = 8;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final long BAND_MASK = (1L << BAND_BITS) - 1;
+    /** 可设置的最低相似度，对应海明距离 BANDS-1 */
+    public static final double MIN_THRESHOLD = 1.0 - (BANDS - 1) / 64.0;
+    private static final int SHINGLE = 3;
+    // 两次输入的长度差超过较长者的该比例时不视为相似，避免短文本的偶然碰撞
+    private static final double MAX_LENGTH_DIFFERENCE = 0.2;
+
+    /**
+     * 查找结果
+     */
+    public static final class Match {
+        public final String result;
+        /** 海明距离，0 表示归一化后的输入相同 */
+        public final int distance;
+
+        Match(String result, int distance) {
+            this.result = result;
+            this.distance = distance;
+        }
+
+        /**
+         * @return 指纹相似度，0到1
+         */
+        public double similarity() {
+            return 1.0 - distance / 64.0;
+        }
+    }
+
+    private static final class Entry {
+        final long id;
+        final String actionKey;
+        final long fingerprint;
+        final int inputLength;
+        final String result;
+
+        Entry(long id, String actionKey, long fingerprint, int inputLength, String result) {
+            this.id = id;
+            this.actionKey = actionKey;
+            this.fingerprint = fingerprint;
+            this.inputLength = inputLength;
+            this.result = result;
+        }
+    }
+
+    private final int maxEntries;
+    private final int maxChars;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<Long, List<Entry>> buckets = new HashMap<>();
+    private long nextId;
+    private int totalChars;
+
+    /**
+     * @param maxEntries 最多保存的条目数
+     * @param maxChars 所有结果的总字符数上限
+     */
+    public NearDuplicateIndex(int maxEntries, int maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 相似度阈值对应的最大海明距离，阈值低于 {@link #MIN_THRESHOLD} 时按最低值处理
+     */
+    public static int maxDistance(double threshold) {
+        double clamped = Math.max(MIN_THRESHOLD, Math.min(1.0, threshold));
+        return (int) Math.floor((1.0 - clamped) * 64 + 1e-9);
+    }
+
+    /**
+     * 查找同一动作下与 input 相似度不低于 threshold 的最相似条目
+     * @param actionKey 动作配置的标识，配置（指令、模型等）不同的结果不会互相命中
+     * @return 没有相似条目时返回 null
+     */
+    public Match find(String actionKey, CharSequence input, double threshold) {
+        long fingerprint = simHash(input);
+        if (fingerprint == 0) {
+            return null;
+        }
+        int limit = maxDistance(threshold);
+        long actionHash = hash64(actionKey);
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> bucket = buckets.get(bucketKey(actionHash, band, fingerprint));
+            if (bucket == null) {
+                continue;
+            }
+            for (int i = 0; i < bucket.size(); i++) {
+                Entry entry = bucket.get(i);
+                int distance = Long.bitCount(entry.fingerprint ^ fingerprint);
+                if (distance <= limit && distance < bestDistance
+                        && similarLength(entry.inputLength, input.length())
+                        && entry.actionKey.equals(actionKey)) {
+                    best = entry;
+                    bestDistance = distance;
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        // 刷新访问顺序
+        entries.get(best.id);
+        return new Match(best.result, bestDistance);
+    }
+
+    /**
+     * 记录一次处理结果；同一动作下归一化后相同的输入只保留最新的结果
+     */
+    public void put(String actionKey, CharSequence input, String result) {
+        long fingerprint = simHash(input);
+        if (fingerprint == 0 || result.length() > maxChars) {
+            return;
+        }
+        long actionHash = hash64(actionKey);
+        List<Entry> bucket = buckets.get(bucketKey(actionHash, 0, fingerprint));
+        if (bucket != null) {
+            for (int i = 0; i < bucket.size(); i++) {
+                Entry entry = bucket.get(i);
+                if (entry.fingerprint == fingerprint && entry.inputLength == input.length()
+                        && entry.actionKey.equals(actionKey)) {
+                    remove(entry);
+                    break;
+                }
+            }
+        }
+
+        Entry entry = new Entry(nextId++, actionKey, fingerprint, input.length(), result);
+        entries.put(entry.id, entry);
+        totalChars += result.length();
+        for (int band = 0; band < BANDS; band++) {
+            long key = bucketKey(actionHash, band, fingerprint);
+            List<Entry> list = buckets.get(key);
+            if (list == null) {
+                list = new ArrayList<>(2);
+                buckets.put(key, list);
+            }
+            list.add(entry);
+        }
+
+        Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalChars > maxChars) && eldest.hasNext()) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            unlink(evicted);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        buckets.clear();
+        totalChars = 0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.id);
+        unlink(entry);
+    }
+
+    /**
+     * 从各个桶中移除并扣减字符数，调用方负责从 entries 中移除
+     */
+    private void unlink(Entry entry) {
+        totalChars -= entry.result.length();
+        long actionHash = hash64(entry.actionKey);
+        for (int band = 0; band < BANDS; band++) {
+            long key = bucketKey(actionHash, band, entry.fingerprint);
+            List<Entry> list = buckets.get(key);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == entry) {
+                    // 顺序无关，与末尾交换后删除
+                    int last = list.size() - 1;
+                    list.set(i, list.get(last));
+                    list.remove(last);
+                    break;
+                }
+            }
+            if (list.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    private static boolean similarLength(int a, int b) {
+        return Math.abs(a - b) <= Math.max(a, b) * MAX_LENGTH_DIFFERENCE;
+    }
+
+    private static long bucketKey(long actionHash, int band, long fingerprint) {
+        long bandValue = (fingerprint >>> (band * BAND_BITS)) & BAND_MASK;
+        return mix(actionHash + ((long) band << BAND_BITS | bandValue) * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * 文本的64位SimHash
+     * @return 没有可用于计算的字符（全为标点或空白）时返回 0
+     */
+    public static long simHash(CharSequence text) {
+        int[] weights = new int[64];
+        // 最近 SHINGLE 个有效字符的滑动窗口
+        char[] window = new char[SHINGLE];
+        int seen = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            window[seen % SHINGLE] = c;
+            seen++;
+            if (seen >= SHINGLE) {
+                long shingle = 0;
+                for (int k = 0; k < SHINGLE; k++) {
+                    shingle = (shingle << 16) | window[(seen + k) % SHINGLE];
+                }
+                addFeature(weights, mix(shingle));
+            }
+        }
+        if (seen == 0) {
+            return 0;
+        }
+        if (seen < SHINGLE) {
+            // 过短的文本以全部字符作为唯一特征
+            long shingle = 0;
+            for (int k = 0; k < seen; k++) {
+                shingle = (shingle << 16) | window[k];
+            }
+            addFeature(weights, mix(shingle + seen));
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        // 0 用作“无指纹”，极少数情况下的真实 0 改为 1
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    private static void addFeature(int[] weights, long featureHash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += (int) ((featureHash >>> bit) & 1L) * 2 - 1;
+        }
+    }
+
+    /**
+     * 64位FNV-1a
+     */
+    private static long hash64(String text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 的末端混合，使相邻的输入得到独立分布的哈希
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,50 @@
+package com.inputassistant.universal.core.history;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 历史记录的JSON Lines格式：每行一个 {@link HistoryEntry}，按时间先后排列
+ */
+public final class HistoryCodec {
+    private final Gson gson = new Gson();
+
+    public void encodeAll(List<HistoryEntry> entries, Writer writer) throws IOException {
+        for (HistoryEntry entry : entries) {
+            writer.write(gson.toJson(entry));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * 读取全部记录，跳过空行和无法解析的行
+     */
+    public List<HistoryEntry> decodeAll(Reader reader) throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                HistoryEntry entry = gson.fromJson(line, HistoryEntry.class);
+                if (entry != null && entry.input != null && entry.output != null) {
+                    entries.add(entry);
+                }
+            } catch (JsonParseException e) {
+                // 跳过损坏的行
+            }
+        }
+        return entries;
+    }
+}
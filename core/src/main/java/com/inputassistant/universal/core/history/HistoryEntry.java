@@ -0,0 +1,27 @@
+package com.inputassistant.universal.core.history;
+
+/**
+ * 一次成功处理的结果，供历史面板检索与重新插入
+ */
+public class HistoryEntry {
+    /** 加入历史时分配，递增；持久化后重新加载时重新分配 */
+    public transient int id;
+    public String actionName;
+    public String input;
+    public String output;
+    /** 完成时刻（System.currentTimeMillis） */
+    public long timestampMs;
+    /** 点击 → 结果写入的耗时 */
+    public long latencyMs;
+
+    public HistoryEntry() {
+    }
+
+    public HistoryEntry(String actionName, String input, String output, long timestampMs, long latencyMs) {
+        this.actionName = actionName;
+        this.input = input;
+        this.output = output;
+        this.timestampMs = timestampMs;
+        this.latencyMs = latencyMs;
+    }
+}
@@ -0,0 +1,304 @@
+package com.inputassistant.universal.core.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 有上限的结果历史，带字符二元组倒排索引
+ *
+ * - 输入和输出的每个相邻字符对（转小写）作为索引键，中文按字、英文按字母都能检索，无需分词
+ * - 倒排表按条目id升序追加；条目按先进先出淘汰，被淘汰的id总是各倒排表的前缀，
+ *   查询时二分跳过，累计过多时整体压缩
+ * - 查询取最短的倒排表从新到旧遍历，在其余表中二分确认，最后对候选做子串校验
+ * 非线程安全，由调用方在单一线程上使用
+ */
+public final class HistoryIndex {
+    // 失效的倒排项超过有效项的该倍数时压缩
+    private static final int COMPACT_RATIO = 2;
+    private static final int COMPACT_MIN_POSTINGS = 1 << 14;
+
+    private final int maxEntries;
+    private final int maxChars;
+    private final HistoryEntry[] ring;
+    private final int[] postingCounts;
+    private final HashMap<Integer, IntList> postings = new HashMap<>();
+    /** 最旧的有效条目id，小于它的id都已淘汰 */
+    private int firstLiveId;
+    private int nextId;
+    private long totalChars;
+    private long totalPostings;
+    private long livePostings;
+
+    /**
+     * @param maxEntries 最多保存的条目数
+     * @param maxChars 所有条目输入与输出的总字符数上限
+     */
+    public HistoryIndex(int maxEntries, int maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        ring = new HistoryEntry[maxEntries];
+        postingCounts = new int[maxEntries];
+    }
+
+    /**
+     * 加入一条记录并分配id，超出上限时淘汰最旧的记录
+     * @return 单条就超过字符上限时不加入，返回 false
+     */
+    public boolean add(HistoryEntry entry) {
+        long chars = length(entry);
+        if (chars > maxChars) {
+            return false;
+        }
+        while (size() > 0 && (size() >= maxEntries || totalChars + chars > maxChars)) {
+            evictOldest();
+        }
+        entry.id = nextId++;
+        int slot = entry.id % maxEntries;
+        ring[slot] = entry;
+        totalChars += chars;
+        int count = index(entry.id, entry.input) + index(entry.id, entry.output);
+        postingCounts[slot] = count;
+        totalPostings += count;
+        livePostings += count;
+        return true;
+    }
+
+    /**
+     * 查找输入或输出中包含 query 的记录（不区分大小写）
+     * @return 从新到旧，最多 limit 条；query 为空时返回最近的记录
+     */
+    public List<HistoryEntry> search(String query, int limit) {
+        if (query == null || query.isEmpty()) {
+            return recent(limit);
+        }
+        List<HistoryEntry> results = new ArrayList<>();
+        if (query.length() == 1) {
+            // 单个字符没有二元组可用，直接扫描
+            for (int id = nextId - 1; id >= firstLiveId && results.size() < limit; id--) {
+                HistoryEntry entry = ring[id % maxEntries];
+                if (matches(entry, query)) {
+                    results.add(entry);
+                }
+            }
+            return results;
+        }
+
+        IntList[] lists = new IntList[query.length() - 1];
+        int[] starts = new int[lists.length];
+        int count = 0;
+        for (int i = 0; i + 1 < query.length(); i++) {
+            IntList list = postings.get(key(query.charAt(i), query.charAt(i + 1)));
+            if (list == null) {
+                return results;
+            }
+            if (!contains(lists, count, list)) {
+                lists[count++] = list;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            starts[i] = lists[i].lowerBound(firstLiveId);
+        }
+        sortByLiveSize(lists, starts, count);
+
+        IntList shortest = lists[0];
+        for (int p = shortest.size - 1; p >= starts[0] && results.size() < limit; p--) {
+            int id = shortest.values[p];
+            boolean all = true;
+            for (int k = 1; k < count && all; k++) {
+                all = lists[k].indexOf(id, starts[k]) >= 0;
+            }
+            if (!all) {
+                continue;
+            }
+            // 二元组都出现不代表它们相邻，用子串确认
+            HistoryEntry entry = ring[id % maxEntries];
+            if (matches(entry, query)) {
+                results.add(entry);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return 最近的记录，从新到旧
+     */
+    public List<HistoryEntry> recent(int limit) {
+        List<HistoryEntry> results = new ArrayList<>();
+        for (int id = nextId - 1; id >= firstLiveId && results.size() < limit; id--) {
+            results.add(ring[id % maxEntries]);
+        }
+        return results;
+    }
+
+    /**
+     * @return 全部记录，从旧到新，用于持久化
+     */
+    public List<HistoryEntry> entries() {
+        List<HistoryEntry> results = new ArrayList<>(size());
+        for (int id = firstLiveId; id < nextId; id++) {
+            results.add(ring[id % maxEntries]);
+        }
+        return results;
+    }
+
+    public int size() {
+        return nextId - firstLiveId;
+    }
+
+    public void clear() {
+        Arrays.fill(ring, null);
+        postings.clear();
+        firstLiveId = nextId;
+        totalChars = 0;
+        totalPostings = 0;
+        livePostings = 0;
+    }
+
+    private void evictOldest() {
+        int slot = firstLiveId % maxEntries;
+        totalChars -= length(ring[slot]);
+        livePostings -= postingCounts[slot];
+        ring[slot] = null;
+        firstLiveId++;
+        if (totalPostings > COMPACT_MIN_POSTINGS && totalPostings > livePostings * COMPACT_RATIO) {
+            compact();
+        }
+    }
+
+    /**
+     * 去掉各倒排表中已淘汰的前缀
+     */
+    private void compact() {
+        Iterator<Map.Entry<Integer, IntList>> iterator = postings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            IntList list = iterator.next().getValue();
+            list.removePrefix(list.lowerBound(firstLiveId));
+            if (list.size == 0) {
+                iterator.remove();
+            }
+        }
+        totalPostings = livePostings;
+    }
+
+    /**
+     * @return 新增的倒排项数
+     */
+    private int index(int id, String text) {
+        int added = 0;
+        for (int i = 0; i + 1 < text.length(); i++) {
+            int key = key(text.charAt(i), text.charAt(i + 1));
+            IntList list = postings.get(key);
+            if (list == null) {
+                list = new IntList();
+                postings.put(key, list);
+            }
+            // 同一条目中重复的二元组只记一次，id 递增所以只需看末尾
+            if (list.size == 0 || list.values[list.size - 1] != id) {
+                list.add(id);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static boolean contains(IntList[] lists, int count, IntList list) {
+        for (int i = 0; i < count; i++) {
+            if (lists[i] == list) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按有效长度升序插入排序，查询中的二元组数量很少
+     */
+    private static void sortByLiveSize(IntList[] lists, int[] starts, int count) {
+        for (int i = 1; i < count; i++) {
+            IntList list = lists[i];
+            int start = starts[i];
+            int j = i - 1;
+            while (j >= 0 && lists[j].size - starts[j] > list.size - start) {
+                lists[j + 1] = lists[j];
+                starts[j + 1] = starts[j];
+                j--;
+            }
+            lists[j + 1] = list;
+            starts[j + 1] = start;
+        }
+    }
+
+    private static boolean matches(HistoryEntry entry, String query) {
+        return containsIgnoreCase(entry.input, query) || containsIgnoreCase(entry.output, query);
+    }
+
+    static boolean containsIgnoreCase(String text, String query) {
+        int last = text.length() - query.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int key(char first, char second) {
+        return (Character.toLowerCase(first) << 16) | Character.toLowerCase(second);
+    }
+
+    private static long length(HistoryEntry entry) {
+        return (long) entry.input.length() + entry.output.length();
+    }
+
+    /**
+     * 升序的 int 列表，避免装箱
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * @return 第一个不小于 value 的位置
+         */
+        int lowerBound(int value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int indexOf(int value, int from) {
+            int index = Arrays.binarySearch(values, from, size, value);
+            return index >= 0 ? index : -1;
+        }
+
+        void removePrefix(int count) {
+            if (count == 0) {
+                return;
+            }
+            System.arraycopy(values, count, values, 0, size - count);
+            size -= count;
+            if (values.length > 16 && size < values.length / 4) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+        }
+    }
+}
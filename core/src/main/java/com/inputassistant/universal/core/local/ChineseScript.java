@@ -0,0 +1,92 @@
+package com.inputassistant.universal.core.local;
+
+/**
+ * 简繁转换（逐字，一对一）
+ * 只收录常用字，按字查表替换，不做词组级转换：一简对多繁的字（如“发”对应“發/髮”）转为繁体时取最常用的写法，
+ * “干、里、台、面、只”等歧义过大的字不转换。需要按词组精确转换时请使用模型动作
+ */
+public final class ChineseScript {
+    // 查表覆盖 CJK 统一汉字基本区，表外的字符原样保留
+    private static final char FIRST = '\u4E00';
+    private static final char LAST = '\u9FFF';
+
+    // 简体在前、繁体在后的成对字符，两个方向都使用
+    private static final String PAIRS =
+            "万萬与與丑醜专專业業丛叢东東丝絲丢丟两兩严嚴丧喪个個丰豐临臨为為丽麗举舉么麼义義乌烏乐樂乔喬习習乡鄉书書买買乱亂争爭于於" +
+            "亏虧云雲亚亞产產亩畝亲親亿億仅僅从從仑侖仓倉仪儀们們价價众眾优優伙夥会會伞傘伟偉传傳伤傷伦倫伪偽体體侠俠侣侶侥僥侦偵侧側" +
+            "侨僑侬儂俭儉债債倾傾偿償储儲儿兒兑兌党黨兰蘭关關兴興养養兽獸内內冈岡册冊写寫军軍农農冯馮冲衝决決况況冻凍净淨准準凉涼减減" +
+            "凑湊凤鳳凭憑凯凱击擊凿鑿刘劉则則刚剛创創删刪别別刹剎剂劑剑劍剧劇劝勸办辦务務动動励勵劲勁劳勞势勢勋勳匀勻区區医醫华華协協" +
+            "单單卖賣卢盧卫衛却卻厂廠厅廳历歷压壓厌厭厕廁厢廂厦廈厨廚县縣参參双雙发發变變叙敘叶葉号號叹嘆吓嚇吕呂吗嗎启啟吴吳员員呜嗚" +
+            "咏詠响響哑啞哗嘩唤喚啸嘯喷噴嘱囑团團园園围圍国國图圖圆圓圣聖场場坏壞块塊坚堅坛壇坝壩坟墳坠墜垄壟垒壘垫墊堕墮墙牆壮壯声聲" +
+            "壳殼壶壺处處备備复復够夠头頭夸誇夹夾夺奪奋奮奖獎妆妝妇婦妈媽娄婁娱娛婴嬰婶嬸孙孫学學宁寧宝寶实實宠寵审審宪憲宫宮宽寬宾賓" +
+            "对對寻尋导導寿壽将將尔爾尘塵尝嘗尽盡层層属屬屡屢岁歲岂豈岖嶇岗崗岛島岭嶺峡峽崭嶄巩鞏币幣帅帥师師帐帳帘簾带帶帮幫并並广廣" +
+            "庄莊庆慶库庫应應庙廟庞龐废廢开開异異弃棄张張弥彌弯彎弹彈强強归歸当當录錄彦彥彻徹径徑忆憶忧憂怀懷态態怜憐总總恋戀恳懇恶惡" +
+            "恼惱悦悅悬懸惊驚惧懼惨慘惩懲惯慣愤憤愿願懒懶戏戲战戰户戶扑撲执執扩擴扫掃扬揚扰擾抚撫抛拋抢搶护護报報担擔拟擬拢攏拣揀拥擁" +
+            "拦攔拨撥择擇挂掛挚摯挠撓挡擋挣掙挤擠挥揮捞撈损損换換据據掳擄掷擲揽攬搀攙搁擱搂摟携攜摄攝摆擺摇搖摊攤撑撐撵攆敌敵数數斋齋" +
+            "断斷无無旧舊时時旷曠昙曇昼晝显顯晋晉晒曬晓曉晕暈暂暫术術机機杀殺杂雜权權条條来來杨楊极極构構枪槍柜櫃栋棟栏欄树樹样樣档檔" +
+            "桥橋梦夢检檢楼樓横橫欢歡欧歐歼殲残殘毁毀毕畢毙斃气氣汇匯汉漢汤湯沟溝没沒沪滬泪淚泼潑泽澤洁潔浅淺浆漿浇澆测測济濟浏瀏浑渾" +
+            "浓濃润潤涨漲渊淵渐漸渔漁温溫湾灣湿濕滚滾滞滯满滿滤濾滥濫滩灘潜潛灭滅灯燈灵靈灾災灿燦炉爐点點炼煉烂爛烛燭烟煙烦煩烧燒热熱" +
+            "焕煥爱愛爷爺牵牽犹猶独獨狭狹狮獅狱獄猎獵猪豬猫貓献獻玛瑪环環现現玺璽琐瑣电電画畫畅暢疗療疯瘋痒癢瘾癮盏盞盐鹽监監盖蓋盘盤" +
+            "睁睜矫矯矿礦码碼砖磚础礎确確碍礙礼禮祷禱祸禍离離种種积積称稱稳穩穷窮窃竊窍竅竞競笔筆笼籠筑築签簽简簡粮糧紧緊纠糾红紅纤纖" +
+            "约約级級纪紀纯純纲綱纳納纵縱纷紛纸紙纹紋纺紡线線练練组組细細织織终終绍紹经經绑綁结結绕繞绘繪给給络絡绝絕统統继繼绩績绪緒" +
+            "续續维維绵綿综綜绿綠缓緩编編缘緣缩縮网網罗羅罚罰罢罷职職联聯聪聰肃肅肠腸肤膚肾腎肿腫胀脹胁脅胜勝脉脈脑腦脚腳脸臉腊臘舰艦" +
+            "艺藝节節芦蘆苏蘇苹蘋荐薦荣榮药藥莱萊获獲营營萧蕭蓝藍虏虜虑慮虚虛虫蟲虽雖蚀蝕蚁蟻蛮蠻补補衬襯袄襖装裝见見观觀规規视視览覽" +
+            "觉覺触觸誉譽计計订訂认認讨討让讓训訓议議讯訊记記讲講许許论論设設访訪证證评評识識诉訴诊診词詞译譯试試诗詩诚誠话話询詢该該" +
+            "详詳语語误誤说說请請诸諸读讀课課谁誰调調谈談谊誼谋謀谓謂谢謝谣謠谦謙谨謹谱譜贝貝负負贡貢财財责責贤賢败敗账賬货貨质質贩販" +
+            "贪貪贫貧购購贯貫贴貼贵貴贷貸费費贺賀资資赋賦赌賭赏賞赔賠赖賴赚賺赛賽赞贊赠贈赵趙赶趕趋趨跃躍践踐踪蹤轨軌转轉轮輪软軟轻輕" +
+            "载載较較辅輔辆輛辈輩辉輝辑輯输輸边邊达達迁遷过過运運还還这這进進远遠违違连連迟遲适適选選逊遜递遞遗遺邓鄧邮郵邻鄰郑鄭酱醬" +
+            "释釋针針钓釣钟鐘钢鋼钥鑰钱錢铁鐵铃鈴铅鉛银銀铺鋪链鏈销銷锁鎖锅鍋错錯锡錫锦錦键鍵镇鎮镜鏡长長门門闪閃闭閉问問闯闖闲閒间間" +
+            "闹鬧闻聞阀閥阁閣阅閱队隊阳陽阴陰阵陣阶階际際陆陸陈陳险險随隨隐隱难難雾霧顶頂项項顺順须須顾顧顿頓预預领領频頻颗顆题題颜顏" +
+            "额額风風飞飛饥飢饭飯饮飲饰飾饱飽饺餃饼餅馆館马馬驱驅驶駛驻駐驾駕骂罵骄驕验驗骑騎骗騙鱼魚鲜鮮鸟鳥鸡雞鸣鳴鸭鴨鹅鵝麦麥齐齊" +
+            "齿齒龙龍龟龜";
+
+    // 仅用于繁体转简体的多对一映射，繁体在前
+    private static final String TRADITIONAL_ONLY =
+            "乾干佈布係系僕仆剋克噁恶嚮向幹干幾几彙汇後后徵征捲卷曆历朮术檯台沖冲淩凌濛蒙獃呆矇蒙穀谷繫系纔才臺台衊蔑裏里裡里製制複复" +
+            "託托遊游醃腌鍾钟隻只颱台颳刮餘余髮发鬆松鬥斗鹹咸麵面";
+
+    private static final char[] TO_SIMPLIFIED = new char[LAST - FIRST + 1];
+    private static final char[] TO_TRADITIONAL = new char[LAST - FIRST + 1];
+
+    static {
+        for (int i = 0; i < PAIRS.length(); i += 2) {
+            char simplified = PAIRS.charAt(i);
+            char traditional = PAIRS.charAt(i + 1);
+            TO_TRADITIONAL[simplified - FIRST] = traditional;
+            TO_SIMPLIFIED[traditional - FIRST] = simplified;
+        }
+        for (int i = 0; i < TRADITIONAL_ONLY.length(); i += 2) {
+            TO_SIMPLIFIED[TRADITIONAL_ONLY.charAt(i) - FIRST] = TRADITIONAL_ONLY.charAt(i + 1);
+        }
+    }
+
+    private ChineseScript() {
+    }
+
+    public static String toSimplified(String text) {
+        return convert(text, TO_SIMPLIFIED);
+    }
+
+    public static String toTraditional(String text) {
+        return convert(text, TO_TRADITIONAL);
+    }
+
+    private static String convert(String text, char[] table) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < FIRST || c > LAST) {
+                continue;
+            }
+            char mapped = table[c - FIRST];
+            if (mapped != 0) {
+                // 第一次需要替换时才复制，没有可转换字符的文本原样返回
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = mapped;
+            }
+        }
+        return chars != null ? new String(chars) : text;
+    }
+}
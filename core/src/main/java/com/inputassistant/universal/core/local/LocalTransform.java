@@ -0,0 +1,14 @@
+package com.inputassistant.universal.core.local;
+
+/**
+ * 本地文本转换：在调用线程上同步执行，不经过网络
+ * 实现应当无状态（或只读），同一个实例可以被重复、并发调用
+ */
+public interface LocalTransform {
+
+    /**
+     * @return 转换后的文本；没有需要改动的内容时可以直接返回 input
+     * @throws IllegalArgumentException 参数在运行时才发现无效（如正则替换文本引用了不存在的分组）
+     */
+    String apply(String input);
+}
@@ -0,0 +1,255 @@
+package com.inputassistant.universal.core.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地转换的注册表
+ * 动作中只保存转换的id和参数，执行时由这里创建 {@link LocalTransform}；新的转换通过 {@link #register} 加入
+ */
+public final class LocalTransforms {
+    public static final String TRIM = "trim";
+    public static final String COLLAPSE_WHITESPACE = "collapse_whitespace";
+    public static final String UPPER_CASE = "upper_case";
+    public static final String LOWER_CASE = "lower_case";
+    public static final String TO_HALF_WIDTH = "to_half_width";
+    public static final String TO_FULL_WIDTH = "to_full_width";
+    public static final String TO_SIMPLIFIED = "to_simplified";
+    public static final String TO_TRADITIONAL = "to_traditional";
+    /** 参数：正则表达式、替换文本（可用 $1 引用分组） */
+    public static final String REGEX_REPLACE = "regex_replace";
+
+    // 全角 ASCII 区（！到～）与半角的偏移
+    private static final int FULL_WIDTH_OFFSET = 0xFEE0;
+    private static final char IDEOGRAPHIC_SPACE = '\u3000';
+
+    /**
+     * 根据动作保存的参数创建转换
+     */
+    public interface Factory {
+        /**
+         * @param args 动作保存的参数，不会为 null
+         * @throws IllegalArgumentException 参数无效
+         */
+        LocalTransform create(List<String> args);
+    }
+
+    private static final class Registration {
+        final String label;
+        final Factory factory;
+
+        Registration(String label, Factory factory) {
+            this.label = label;
+            this.factory = factory;
+        }
+    }
+
+    private static final Map<String, Registration> REGISTRY = new LinkedHashMap<>();
+
+    static {
+        register(TRIM, "去除首尾与行尾空白", args -> LocalTransforms::trim);
+        register(COLLAPSE_WHITESPACE, "合并多余空白与空行", args -> LocalTransforms::collapseWhitespace);
+        register(UPPER_CASE, "转为大写", args -> input -> input.toUpperCase(Locale.ROOT));
+        register(LOWER_CASE, "转为小写", args -> input -> input.toLowerCase(Locale.ROOT));
+        register(TO_HALF_WIDTH, "全角转半角", args -> LocalTransforms::toHalfWidth);
+        register(TO_FULL_WIDTH, "半角转全角", args -> LocalTransforms::toFullWidth);
+        register(TO_SIMPLIFIED, "繁体转简体", args -> ChineseScript::toSimplified);
+        register(TO_TRADITIONAL, "简体转繁体", args -> ChineseScript::toTraditional);
+        register(REGEX_REPLACE, "正则替换", RegexReplace::new);
+    }
+
+    private LocalTransforms() {
+    }
+
+    /**
+     * 注册转换，id 已存在时覆盖
+     * @param label 在动作编辑界面中显示的名称
+     */
+    public static synchronized void register(String id, String label, Factory factory) {
+        REGISTRY.put(id, new Registration(label, factory));
+    }
+
+    /**
+     * @return 已注册的转换id，按注册顺序
+     */
+    public static synchronized List<String> ids() {
+        return Collections.unmodifiableList(new ArrayList<>(REGISTRY.keySet()));
+    }
+
+    /**
+     * @return 转换的显示名称，未注册时返回 null
+     */
+    public static synchronized String label(String id) {
+        Registration registration = REGISTRY.get(id);
+        return registration != null ? registration.label : null;
+    }
+
+    /**
+     * @param args 参数，可以为 null
+     * @throws IllegalArgumentException 转换未注册或参数无效
+     */
+    public static LocalTransform create(String id, List<String> args) {
+        Registration registration;
+        synchronized (LocalTransforms.class) {
+            registration = REGISTRY.get(id);
+        }
+        if (registration == null) {
+            throw new IllegalArgumentException("未知的本地转换: " + id);
+        }
+        return registration.factory.create(args != null ? args : Collections.<String>emptyList());
+    }
+
+    /**
+     * 去除每行行尾的空白以及整段文本首尾的空白（含空行）
+     */
+    static String trim(String input) {
+        int start = 0;
+        int end = input.length();
+        while (start < end && isWhitespace(input.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(input.charAt(end - 1))) {
+            end--;
+        }
+        StringBuilder out = new StringBuilder(end - start);
+        int lineStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || input.charAt(i) == '\n') {
+                int lineEnd = i;
+                while (lineEnd > lineStart && isHorizontalWhitespace(input.charAt(lineEnd - 1))) {
+                    lineEnd--;
+                }
+                out.append(input, lineStart, lineEnd);
+                if (i < end) {
+                    out.append('\n');
+                }
+                lineStart = i + 1;
+            }
+        }
+        // 只会删除字符，长度不变说明没有改动
+        return out.length() == input.length() ? input : out.toString();
+    }
+
+    /**
+     * 行内连续空白合并为一个空格，连续的空行合并为一个，并去除行首尾与整段首尾的空白
+     */
+    static String collapseWhitespace(String input) {
+        char[] chars = input.toCharArray();
+        // 原地写回：输出不会长于已读过的输入
+        int length = 0;
+        // 等待写出的空格与换行：遇到下一个可见字符时才写，这样行尾和文本末尾的空白自然被丢弃
+        boolean pendingSpace = false;
+        int pendingNewlines = 0;
+        for (char c : chars) {
+            if (c == '\n') {
+                pendingNewlines++;
+                pendingSpace = false;
+            } else if (isHorizontalWhitespace(c)) {
+                pendingSpace = true;
+            } else {
+                if (length > 0) {
+                    if (pendingNewlines > 0) {
+                        chars[length++] = '\n';
+                        if (pendingNewlines > 1) {
+                            chars[length++] = '\n';
+                        }
+                    } else if (pendingSpace) {
+                        chars[length++] = ' ';
+                    }
+                }
+                pendingSpace = false;
+                pendingNewlines = 0;
+                chars[length++] = c;
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    static String toHalfWidth(String input) {
+        char[] chars = null;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            char mapped;
+            if (c >= '！' && c <= '～') {
+                mapped = (char) (c - FULL_WIDTH_OFFSET);
+            } else if (c == IDEOGRAPHIC_SPACE) {
+                mapped = ' ';
+            } else {
+                continue;
+            }
+            if (chars == null) {
+                chars = input.toCharArray();
+            }
+            chars[i] = mapped;
+        }
+        return chars != null ? new String(chars) : input;
+    }
+
+    static String toFullWidth(String input) {
+        char[] chars = null;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            char mapped;
+            if (c >= '!' && c <= '~') {
+                mapped = (char) (c + FULL_WIDTH_OFFSET);
+            } else if (c == ' ') {
+                mapped = IDEOGRAPHIC_SPACE;
+            } else {
+                continue;
+            }
+            if (chars == null) {
+                chars = input.toCharArray();
+            }
+            chars[i] = mapped;
+        }
+        return chars != null ? new String(chars) : input;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == '\n' || isHorizontalWhitespace(c);
+    }
+
+    /**
+     * 空格、制表符、回车、不换行空格和全角空格
+     */
+    private static boolean isHorizontalWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\u00A0' || c == IDEOGRAPHIC_SPACE;
+    }
+
+    /**
+     * 正则替换，编译后的 Pattern 可被多个线程共享
+     */
+    private static final class RegexReplace implements LocalTransform {
+        private final Pattern pattern;
+        private final String replacement;
+
+        RegexReplace(List<String> args) {
+            if (args.isEmpty() || args.get(0) == null || args.get(0).isEmpty()) {
+                throw new IllegalArgumentException("正则替换缺少正则表达式");
+            }
+            // PatternSyntaxException 本身是 IllegalArgumentException
+            pattern = Pattern.compile(args.get(0), Pattern.MULTILINE);
+            replacement = args.size() > 1 && args.get(1) != null ? args.get(1) : "";
+        }
+
+        @Override
+        public String apply(String input) {
+            Matcher matcher = pattern.matcher(input);
+            if (!matcher.find()) {
+                return input;
+            }
+            try {
+                matcher.reset();
+                return matcher.replaceAll(replacement);
+            } catch (IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("替换文本引用了不存在的分组: " + replacement, e);
+            }
+        }
+    }
+}
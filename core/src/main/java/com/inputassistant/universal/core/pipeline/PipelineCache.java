@@ -0,0 +1,151 @@
+package com.inputassistant.universal.core.pipeline;
+
+import com.inputassistant.universal.core.api.GenerationParams;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 流水线中间结果的内存缓存（LRU）
+ * 键为步骤配置与该步输入的SHA-256摘要：修改第k步只会改变第k步及之后的键，前面的步骤直接命中缓存。
+ * 每个结果同时记下得到它的请求耗时，命中时即为省下的时间。
+ * 只保存在内存中，不写入磁盘；非线程安全，由调用方在单一线程上使用
+ */
+public final class PipelineCache {
+    private static final class Entry {
+        final String value;
+        final long costMs;
+
+        Entry(String value, long costMs) {
+            this.value = value;
+            this.costMs = costMs;
+        }
+    }
+
+    private final int maxEntries;
+    private final int maxChars;
+    private int totalChars;
+    private int hits;
+    private int misses;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries || totalChars > maxChars) {
+                totalChars -= eldest.getValue().value.length();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * @param maxEntries 最多缓存的结果数
+     * @param maxChars 所有结果的总字符数上限
+     */
+    public PipelineCache(int maxEntries, int maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 一个步骤的缓存键；结果只取决于端点、模型、指令、生成参数和输入
+     */
+    public static String key(String baseUrl, String modelName, String systemPrompt,
+                             GenerationParams params, String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, baseUrl);
+            update(digest, modelName);
+            update(digest, systemPrompt);
+            update(digest, String.valueOf(params.getMaxTokens()));
+            update(digest, String.valueOf(params.getTemperature()));
+            for (String stop : params.getStopSequences()) {
+                update(digest, stop);
+            }
+            update(digest, input);
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return 缓存的结果，未命中时返回 null
+     */
+    public String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * @return 得到该结果的请求耗时ms，未缓存时返回 0；不计入命中统计
+     */
+    public long costMs(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.costMs : 0;
+    }
+
+    /**
+     * @param costMs 得到该结果的请求耗时
+     */
+    public void put(String key, String value, long costMs) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalChars -= previous.value.length();
+        }
+        if (value.length() > maxChars) {
+            return;
+        }
+        totalChars += value.length();
+        entries.put(key, new Entry(value, costMs));
+        // removeEldestEntry 每次只淘汰一条，总字符数仍超限时继续淘汰
+        while (totalChars > maxChars && !entries.isEmpty()) {
+            String eldestKey = entries.keySet().iterator().next();
+            totalChars -= entries.remove(eldestKey).value.length();
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        totalChars = 0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        // 写入长度作为分隔，避免 "ab"+"c" 与 "a"+"bc" 冲突
+        int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            hex[i * 2] = Character.forDigit(b >>> 4, 16);
+            hex[i * 2 + 1] = Character.forDigit(b & 0x0F, 16);
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,27 @@
+package com.inputassistant.universal.core.queue;
+
+import java.util.Random;
+
+/**
+ * 指数退避与全抖动：第 n 次重试的等待时间在 [0, min(上限, 基数 × 2^n)] 内均匀分布，
+ * 多个客户端（或同一客户端的多个请求）同时失败时不会在同一时刻一起重试
+ */
+public final class Backoff {
+    public static final long BASE_MS = 2000;
+    public static final long MAX_MS = 5 * 60 * 1000;
+
+    private Backoff() {
+    }
+
+    /**
+     * @param attempt 已失败的次数，从1开始
+     * @param retryAfterMs 服务端要求的最短等待时间，没有时为 -1
+     */
+    public static long delayMs(int attempt, long retryAfterMs, Random random) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 20);
+        long ceiling = Math.min(MAX_MS, BASE_MS << shift);
+        // 抖动下限取上限的一小部分，避免连续几次都几乎立即重试
+        long delay = ceiling / 10 + (long) (random.nextDouble() * (ceiling - ceiling / 10));
+        return Math.max(delay, retryAfterMs);
+    }
+}
@@ -0,0 +1,31 @@
+package com.inputassistant.universal.core.queue;
+
+import java.io.IOException;
+
+/**
+ * 日志逐行加密：每一行独立加解密，追加写入时不需要重写文件
+ */
+public interface JournalCipher {
+    /** 不加密，用于测试与JVM工具 */
+    JournalCipher NONE = new JournalCipher() {
+        @Override
+        public String seal(String line) {
+            return line;
+        }
+
+        @Override
+        public String open(String sealed) {
+            return sealed;
+        }
+    };
+
+    /**
+     * @return 不含换行符的密文
+     */
+    String seal(String line) throws IOException;
+
+    /**
+     * @throws IOException 密文损坏或密钥已失效
+     */
+    String open(String sealed) throws IOException;
+}
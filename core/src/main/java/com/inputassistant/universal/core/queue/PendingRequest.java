@@ -0,0 +1,38 @@
+package com.inputassistant.universal.core.queue;
+
+import com.inputassistant.universal.core.api.GenerationParams;
+
+import java.util.List;
+
+/**
+ * 等待重试的请求：重放所需的全部参数，以及结果送回时用于找到原输入框的信息
+ * API密钥不保存，重放时从设置中读取
+ */
+public class PendingRequest {
+    public String id;
+    public String actionName;
+    public String baseUrl;
+    public String modelName;
+    public String systemPrompt;
+    public String input;
+    public int maxTokens;
+    public double temperature;
+    public List<String> stopSequences;
+    /** 发起请求的输入框标识（应用包名、输入框id等），结果到达时据此判断是否回到了同一个输入框 */
+    public String fieldKey;
+    /** 发起请求时输入框的文本，拼接模式下保留 */
+    public String originalText;
+    public boolean replaceMode;
+    /** 加入队列的时刻（System.currentTimeMillis） */
+    public long createdMs;
+    public int attempts;
+    /** 下一次尝试的时刻（System.currentTimeMillis） */
+    public long nextAttemptMs;
+    public String lastError;
+    /** 最近一次失败的HTTP状态码，网络错误为0 */
+    public int lastHttpCode;
+
+    public GenerationParams params() {
+        return new GenerationParams(maxTokens, temperature, stopSequences);
+    }
+}
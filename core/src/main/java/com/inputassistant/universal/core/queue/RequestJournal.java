@@ -0,0 +1,204 @@
+package com.inputassistant.universal.core.queue;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 等待重试请求的只追加日志
+ * 每次变更（加入、尝试失败、完成）追加一行并同步到磁盘，进程被杀后重新加载即可恢复；
+ * 已完成的记录累积过多时重写为只含未完成请求的新文件
+ * 线程安全
+ */
+public final class RequestJournal {
+    private static final String OP_ADD = "add";
+    private static final String OP_ATTEMPT = "attempt";
+    private static final String OP_DONE = "done";
+    // 日志行数超过未完成请求数的该倍数时重写
+    private static final int COMPACT_RATIO = 4;
+    private static final int COMPACT_MIN_LINES = 32;
+
+    /**
+     * 日志中的一行
+     */
+    private static final class Record {
+        String op;
+        String id;
+        PendingRequest request;
+        int attempts;
+        long nextAttemptMs;
+        String error;
+        int httpCode;
+    }
+
+    private final File file;
+    private final JournalCipher cipher;
+    private final Gson gson = new Gson();
+    private final Map<String, PendingRequest> pending = new LinkedHashMap<>();
+    private int lines;
+
+    public RequestJournal(File file, JournalCipher cipher) {
+        this.file = file;
+        this.cipher = cipher;
+    }
+
+    /**
+     * 重放日志，得到所有未完成的请求；无法解析或解密的行被跳过
+     * @return 按加入顺序排列
+     */
+    public synchronized List<PendingRequest> load() throws IOException {
+        pending.clear();
+        lines = 0;
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    lines++;
+                    Record record;
+                    try {
+                        record = gson.fromJson(cipher.open(line), Record.class);
+                    } catch (IOException | JsonParseException e) {
+                        // 进程在写入中途被杀时最后一行可能不完整
+                        continue;
+                    }
+                    if (record != null) {
+                        apply(record);
+                    }
+                }
+            }
+        }
+        compactIfNeeded();
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized void add(PendingRequest request) throws IOException {
+        Record record = new Record();
+        record.op = OP_ADD;
+        record.id = request.id;
+        record.request = request;
+        append(record);
+        pending.put(request.id, request);
+    }
+
+    /**
+     * 记录一次失败的尝试和下一次尝试的时刻
+     */
+    public synchronized void markAttempt(PendingRequest request) throws IOException {
+        Record record = new Record();
+        record.op = OP_ATTEMPT;
+        record.id = request.id;
+        record.attempts = request.attempts;
+        record.nextAttemptMs = request.nextAttemptMs;
+        record.error = request.lastError;
+        record.httpCode = request.lastHttpCode;
+        append(record);
+    }
+
+    /**
+     * 请求已完成（成功或放弃），不再重放
+     */
+    public synchronized void remove(String id) throws IOException {
+        if (pending.remove(id) == null) {
+            return;
+        }
+        Record record = new Record();
+        record.op = OP_DONE;
+        record.id = id;
+        append(record);
+        compactIfNeeded();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * 删除全部记录
+     */
+    public synchronized void clear() {
+        pending.clear();
+        lines = 0;
+        file.delete();
+    }
+
+    private void apply(Record record) {
+        if (record.id == null) {
+            return;
+        }
+        switch (record.op != null ? record.op : "") {
+            case OP_ADD:
+                if (record.request != null) {
+                    pending.put(record.id, record.request);
+                }
+                break;
+            case OP_ATTEMPT:
+                PendingRequest request = pending.get(record.id);
+                if (request != null) {
+                    request.attempts = record.attempts;
+                    request.nextAttemptMs = record.nextAttemptMs;
+                    request.lastError = record.error;
+                    request.lastHttpCode = record.httpCode;
+                }
+                break;
+            case OP_DONE:
+                pending.remove(record.id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void append(Record record) throws IOException {
+        String line = cipher.seal(gson.toJson(record)) + "\n";
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        lines++;
+    }
+
+    /**
+     * 把未完成的请求写入临时文件后替换原日志
+     */
+    private void compactIfNeeded() throws IOException {
+        if (lines < COMPACT_MIN_LINES || lines <= pending.size() * COMPACT_RATIO) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (PendingRequest request : pending.values()) {
+                Record record = new Record();
+                record.op = OP_ADD;
+                record.id = request.id;
+                record.request = request;
+                writer.write(cipher.seal(gson.toJson(record)));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace journal " + file);
+        }
+        lines = pending.size();
+    }
+}
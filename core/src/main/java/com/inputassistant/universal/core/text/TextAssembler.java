@@ -0,0 +1,36 @@
+package com.inputassistant.universal.core.text;
+
+/**
+ * 输入框文本的拼装
+ */
+public final class TextAssembler {
+    /** 拼接模式下原文与AI回答之间的分隔符 */
+    public static final String APPEND_SEPARATOR = "\n======\n";
+
+    private TextAssembler() {
+    }
+
+    /**
+     * 将光标前后的文本合并为完整文本，任意一侧可为 null
+     */
+    public static String joinAroundCursor(CharSequence textBefore, CharSequence textAfter) {
+        int length = (textBefore != null ? textBefore.length() : 0) + (textAfter != null ? textAfter.length() : 0);
+        StringBuilder fullText = new StringBuilder(length);
+        if (textBefore != null) fullText.append(textBefore);
+        if (textAfter != null) fullText.append(textAfter);
+        return fullText.toString();
+    }
+
+    /**
+     * 根据处理模式生成最终写回输入框的文本
+     * @param replaceMode true：仅保留AI回答；false：原文 + 分隔符 + AI回答
+     */
+    public static String assemble(String originalText, String processedText, boolean replaceMode) {
+        if (replaceMode) {
+            return processedText;
+        }
+        StringBuilder finalText = new StringBuilder(
+                originalText.length() + APPEND_SEPARATOR.length() + processedText.length());
+        return finalText.append(originalText).append(APPEND_SEPARATOR).append(processedText).toString();
+    }
+}
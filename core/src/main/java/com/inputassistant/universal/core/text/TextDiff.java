@@ -0,0 +1,57 @@
+package com.inputassistant.universal.core.text;
+
+/**
+ * 两段文本之间的最小替换：去掉公共前缀与公共后缀后剩下的一段
+ * 用于把已写入输入框的草稿原地改成优化结果，只改动不同的部分，光标和未改动的文字保持不动
+ */
+public final class TextDiff {
+
+    /**
+     * 把旧文本 [start, end) 替换为 replacement 即得到新文本
+     */
+    public static final class Edit {
+        public final int start;
+        public final int end;
+        public final String replacement;
+
+        Edit(int start, int end, String replacement) {
+            this.start = start;
+            this.end = end;
+            this.replacement = replacement;
+        }
+
+        public boolean isEmpty() {
+            return start == end && replacement.isEmpty();
+        }
+    }
+
+    private TextDiff() {
+    }
+
+    public static Edit between(String oldText, String newText) {
+        int oldLength = oldText.length();
+        int newLength = newText.length();
+        int limit = Math.min(oldLength, newLength);
+
+        int prefix = 0;
+        while (prefix < limit && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        // 不在代理对中间切开
+        if (prefix > 0 && Character.isHighSurrogate(oldText.charAt(prefix - 1))) {
+            prefix--;
+        }
+
+        int suffix = 0;
+        int maxSuffix = limit - prefix;
+        while (suffix < maxSuffix
+                && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(oldText.charAt(oldLength - suffix))) {
+            suffix--;
+        }
+
+        return new Edit(prefix, oldLength - suffix, newText.substring(prefix, newLength - suffix));
+    }
+}
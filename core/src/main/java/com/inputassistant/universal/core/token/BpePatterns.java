@@ -0,0 +1,27 @@
+package com.inputassistant.universal.core.token;
+
+/**
+ * 各词表使用的预分词正则（与tiktoken一致，写入词表文件头部）
+ */
+public final class BpePatterns {
+    public static final String CL100K =
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+                    + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+
+    public static final String O200K =
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+"
+                    + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+                    + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*"
+                    + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+                    + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+
+    private BpePatterns() {
+    }
+
+    /**
+     * @return 词表对应的正则，未知词表使用 cl100k 的规则
+     */
+    public static String forVocabulary(String vocabulary) {
+        return ModelLimits.VOCAB_O200K.equals(vocabulary) ? O200K : CL100K;
+    }
+}
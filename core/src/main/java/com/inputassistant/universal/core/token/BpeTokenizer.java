@@ -0,0 +1,204 @@
+package com.inputassistant.universal.core.token;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 字节级BPE分词（与tiktoken算法一致）
+ * 先按词表中的正则预分词，再对每段的UTF-8字节反复合并优先级最高（rank最小）的相邻对
+ * 线程安全：词表只读，临时缓冲区按调用分配
+ */
+public final class BpeTokenizer implements TokenCounter {
+    private static final int NO_RANK = Integer.MAX_VALUE;
+
+    private final BpeVocabulary vocabulary;
+    private final Pattern pattern;
+
+    public BpeTokenizer(BpeVocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+        this.pattern = Pattern.compile(vocabulary.getPattern());
+    }
+
+    @Override
+    public int count(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        return tokenize(text, null);
+    }
+
+    /**
+     * @return token id 序列
+     */
+    public int[] encode(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return new int[0];
+        }
+        IntList ids = new IntList(text.length());
+        tokenize(text, ids);
+        return ids.toArray();
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    private int tokenize(CharSequence text, IntList out) {
+        Scratch scratch = new Scratch();
+        int total = 0;
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            int length = scratch.encode(text, matcher.start(), matcher.end());
+            total += mergePiece(scratch, length, out);
+        }
+        return total;
+    }
+
+    /**
+     * 合并单个预分词片段
+     * @return 片段的token数
+     */
+    private int mergePiece(Scratch scratch, int length, IntList out) {
+        byte[] bytes = scratch.bytes;
+        if (length == 0) {
+            return 0;
+        }
+        int whole = vocabulary.rank(bytes, 0, length);
+        if (whole >= 0) {
+            if (out != null) out.add(whole);
+            return 1;
+        }
+
+        // boundaries[i] 为第i个片段的起点，pairRanks[i] 为片段i与i+1合并后的rank
+        int[] boundaries = scratch.boundaries(length + 1);
+        int[] pairRanks = scratch.pairRanks(length + 1);
+        int parts = length + 1;
+        for (int i = 0; i < parts; i++) {
+            boundaries[i] = i;
+        }
+        for (int i = 0; i < parts - 2; i++) {
+            pairRanks[i] = rankOrNone(bytes, boundaries[i], boundaries[i + 2]);
+        }
+
+        while (parts > 2) {
+            int minRank = NO_RANK;
+            int minIndex = -1;
+            for (int i = 0; i < parts - 2; i++) {
+                if (pairRanks[i] < minRank) {
+                    minRank = pairRanks[i];
+                    minIndex = i;
+                }
+            }
+            if (minIndex < 0) {
+                break;
+            }
+            // 删除边界 minIndex+1，即合并片段 minIndex 与 minIndex+1
+            System.arraycopy(boundaries, minIndex + 2, boundaries, minIndex + 1, parts - minIndex - 2);
+            System.arraycopy(pairRanks, minIndex + 2, pairRanks, minIndex + 1, Math.max(0, parts - minIndex - 4));
+            parts--;
+            if (minIndex + 2 < parts) {
+                pairRanks[minIndex] = rankOrNone(bytes, boundaries[minIndex], boundaries[minIndex + 2]);
+            } else {
+                pairRanks[minIndex] = NO_RANK;
+            }
+            if (minIndex > 0) {
+                pairRanks[minIndex - 1] = rankOrNone(bytes, boundaries[minIndex - 1], boundaries[minIndex + 1]);
+            }
+        }
+
+        int tokens = parts - 1;
+        if (out != null) {
+            for (int i = 0; i < tokens; i++) {
+                int rank = vocabulary.rank(bytes, boundaries[i], boundaries[i + 1]);
+                // 词表缺少单字节token时无法编码，用-1占位，计数仍然有效
+                out.add(rank);
+            }
+        }
+        return tokens;
+    }
+
+    private int rankOrNone(byte[] bytes, int start, int end) {
+        int rank = vocabulary.rank(bytes, start, end);
+        return rank >= 0 ? rank : NO_RANK;
+    }
+
+    /**
+     * 单次分词调用内复用的缓冲区
+     */
+    private static final class Scratch {
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        byte[] bytes = new byte[64];
+        private int[] boundaries = new int[65];
+        private int[] pairRanks = new int[65];
+
+        /**
+         * 把 text[start, end) 编码为UTF-8写入 bytes
+         * @return 字节数
+         */
+        int encode(CharSequence text, int start, int end) {
+            int maxBytes = (end - start) * 3;
+            if (bytes.length < maxBytes) {
+                bytes = new byte[maxBytes];
+            }
+            ByteBuffer out = ByteBuffer.wrap(bytes);
+            encoder.reset();
+            // 不成对的代理字符按替换字符处理
+            CoderResult result = encoder.encode(CharBuffer.wrap(text, start, end), out, true);
+            if (result.isError()) {
+                return encodeLenient(text.subSequence(start, end).toString());
+            }
+            encoder.flush(out);
+            return out.position();
+        }
+
+        private int encodeLenient(String piece) {
+            byte[] encoded = piece.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length < encoded.length) {
+                bytes = new byte[encoded.length];
+            }
+            System.arraycopy(encoded, 0, bytes, 0, encoded.length);
+            return encoded.length;
+        }
+
+        int[] boundaries(int size) {
+            if (boundaries.length < size) {
+                boundaries = new int[size];
+            }
+            return boundaries;
+        }
+
+        int[] pairRanks(int size) {
+            if (pairRanks.length < size) {
+                pairRanks = new int[size];
+            }
+            return pairRanks;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values;
+        private int size;
+
+        IntList(int capacity) {
+            values = new int[Math.max(8, capacity)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
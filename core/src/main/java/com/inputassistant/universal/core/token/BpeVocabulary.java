@@ -0,0 +1,187 @@
+package com.inputassistant.universal.core.token;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 紧凑的二进制BPE词表，可直接内存映射使用，加载时不解析、不分配逐token对象
+ *
+ * 文件格式（大端序）：
+ * - 头部 32 字节：magic(int) version(int) token数n(int) 哈希表槽数m(int，2的幂) 字节区长度(int) 预分词正则长度(int) 保留(long)
+ * - 预分词正则（UTF-8）
+ * - offsets int[n+1]：第i个token的字节位于字节区 [offsets[i], offsets[i+1])
+ * - ranks int[n]：第i个token的合并优先级（越小越先合并，即tiktoken中的token id）
+ * - table int[m]：按token字节的FNV-1a哈希开放寻址，值为 token下标+1，0表示空槽
+ * - 字节区
+ */
+public final class BpeVocabulary {
+    private static final int MAGIC = 0x49425045; // "IBPE"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final ByteBuffer buffer;
+    private final String pattern;
+    private final int tokenCount;
+    private final int tableMask;
+    private final int offsetsBase;
+    private final int ranksBase;
+    private final int tableBase;
+    private final int blobBase;
+
+    private BpeVocabulary(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a BPE vocabulary file");
+        }
+        tokenCount = this.buffer.getInt(8);
+        int tableSize = this.buffer.getInt(12);
+        int patternLength = this.buffer.getInt(20);
+        if (tokenCount <= 0 || Integer.bitCount(tableSize) != 1 || tableSize < tokenCount) {
+            throw new IOException("Corrupted BPE vocabulary header");
+        }
+        tableMask = tableSize - 1;
+
+        byte[] patternBytes = new byte[patternLength];
+        for (int i = 0; i < patternLength; i++) {
+            patternBytes[i] = this.buffer.get(HEADER_SIZE + i);
+        }
+        pattern = new String(patternBytes, StandardCharsets.UTF_8);
+
+        offsetsBase = HEADER_SIZE + patternLength;
+        ranksBase = offsetsBase + (tokenCount + 1) * 4;
+        tableBase = ranksBase + tokenCount * 4;
+        blobBase = tableBase + tableSize * 4;
+        if (blobBase + this.buffer.getInt(16) > this.buffer.limit()) {
+            throw new IOException("Truncated BPE vocabulary");
+        }
+    }
+
+    /**
+     * 从已映射或已读入内存的缓冲区创建
+     */
+    public static BpeVocabulary fromBuffer(ByteBuffer buffer) throws IOException {
+        return new BpeVocabulary(buffer);
+    }
+
+    /**
+     * 内存映射词表文件
+     */
+    public static BpeVocabulary map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return new BpeVocabulary(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        }
+    }
+
+    /**
+     * 预分词正则
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    public int size() {
+        return tokenCount;
+    }
+
+    /**
+     * 查询字节序列对应的合并优先级
+     * @return 不在词表中时返回 -1
+     */
+    public int rank(byte[] bytes, int start, int end) {
+        int slot = hash(bytes, start, end) & tableMask;
+        while (true) {
+            int entry = buffer.getInt(tableBase + slot * 4);
+            if (entry == 0) {
+                return -1;
+            }
+            int index = entry - 1;
+            if (matches(index, bytes, start, end)) {
+                return buffer.getInt(ranksBase + index * 4);
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    private boolean matches(int index, byte[] bytes, int start, int end) {
+        int tokenStart = buffer.getInt(offsetsBase + index * 4);
+        int tokenEnd = buffer.getInt(offsetsBase + (index + 1) * 4);
+        if (tokenEnd - tokenStart != end - start) {
+            return false;
+        }
+        int position = blobBase + tokenStart;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(position++) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int hash = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * 写出词表文件
+     * @param tokens 各token的字节序列
+     * @param ranks 与tokens一一对应的合并优先级
+     */
+    public static void write(OutputStream out, String pattern, List<byte[]> tokens, int[] ranks) throws IOException {
+        int n = tokens.size();
+        if (ranks.length != n) {
+            throw new IllegalArgumentException("tokens and ranks differ in length");
+        }
+        // 装载因子不超过0.5
+        int tableSize = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + tokens.get(i).length;
+        }
+        int[] table = new int[tableSize];
+        for (int i = 0; i < n; i++) {
+            byte[] token = tokens.get(i);
+            int slot = hash(token, 0, token.length) & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = i + 1;
+        }
+
+        byte[] patternBytes = pattern.getBytes(StandardCharsets.UTF_8);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(n);
+        data.writeInt(tableSize);
+        data.writeInt(offsets[n]);
+        data.writeInt(patternBytes.length);
+        data.writeLong(0);
+        data.write(patternBytes);
+        for (int offset : offsets) {
+            data.writeInt(offset);
+        }
+        for (int rank : ranks) {
+            data.writeInt(rank);
+        }
+        for (int entry : table) {
+            data.writeInt(entry);
+        }
+        for (byte[] token : tokens) {
+            data.write(token);
+        }
+        data.flush();
+    }
+}
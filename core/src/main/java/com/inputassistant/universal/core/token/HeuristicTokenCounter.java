@@ -0,0 +1,48 @@
+package com.inputassistant.universal.core.token;
+
+/**
+ * 没有可用词表时的token估算
+ * CJK字符在主流BPE词表中通常为1~2个token，其余文本平均约3.5~4个字符一个token；
+ * 估算略偏多，用于上下文窗口检查时更安全
+ */
+public final class HeuristicTokenCounter implements TokenCounter {
+    public static final HeuristicTokenCounter INSTANCE = new HeuristicTokenCounter();
+
+    private static final double TOKENS_PER_CJK_CHAR = 1.3;
+    private static final double CHARS_PER_OTHER_TOKEN = 3.5;
+
+    private HeuristicTokenCounter() {
+    }
+
+    @Override
+    public int count(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                cjk++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return (int) Math.ceil(cjk * TOKENS_PER_CJK_CHAR + other / CHARS_PER_OTHER_TOKEN);
+    }
+
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF)     // CJK统一汉字
+                || (c >= 0x3400 && c <= 0x4DBF) // 扩展A
+                || (c >= 0x3040 && c <= 0x30FF) // 平假名、片假名
+                || (c >= 0xAC00 && c <= 0xD7AF) // 韩文音节
+                || (c >= 0x3000 && c <= 0x303F) // CJK标点
+                || (c >= 0xFF00 && c <= 0xFFEF); // 全角字符
+    }
+}
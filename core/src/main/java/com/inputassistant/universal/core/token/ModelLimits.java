@@ -0,0 +1,140 @@
+package com.inputassistant.universal.core.token;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 常见模型系列的上下文窗口与词表
+ * 上下文窗口按模型名前缀匹配，未知模型使用保守的默认值；
+ * 词表只对名称与已知 OpenAI 模型完全一致（可带日期后缀）的模型使用，
+ * 其他模型（含 "gpt-4o-mini-compatible" 这类代理别名）的分词方式未知，为 null，按字符估算
+ * 推理模型（o 系列、DeepSeek-R1 等）的思考过程计入输出 token，预算时需要额外预留
+ */
+public final class ModelLimits {
+    /** OpenAI gpt-4o / o1 / o3 系列 */
+    public static final String VOCAB_O200K = "o200k_base";
+    /** OpenAI gpt-4 / gpt-3.5 系列 */
+    public static final String VOCAB_CL100K = "cl100k_base";
+
+    private static final ModelLimits DEFAULT = new ModelLimits(8192, 4096, null);
+
+    // 前缀越具体越靠前
+    private static final Object[][] KNOWN_MODELS = {
+            {"gpt-4o", 128_000, 16_384},
+            {"gpt-4.1", 1_000_000, 32_768},
+            {"o1", 200_000, 100_000},
+            {"o3", 200_000, 100_000},
+            {"o4", 200_000, 100_000},
+            {"gpt-4-turbo", 128_000, 4096},
+            {"gpt-4-32k", 32_768, 4096},
+            {"gpt-4", 8192, 4096},
+            {"gpt-3.5-turbo", 16_385, 4096},
+            {"deepseek", 64_000, 8192},
+            {"qwen", 32_768, 8192},
+            {"glm", 128_000, 4096},
+            {"moonshot", 128_000, 8192},
+            {"claude", 200_000, 8192},
+            {"gemini", 1_000_000, 8192},
+            {"llama", 8192, 4096},
+            {"mistral", 32_768, 4096},
+    };
+
+    // 推理模型：名称以前者开头，或包含后者
+    private static final String[] REASONING_PREFIXES = {"o1", "o3", "o4", "qwq"};
+    private static final String[] REASONING_MARKERS = {"reasoner", "-r1", "thinking"};
+
+    // 使用 tiktoken 词表的 OpenAI 模型，名称须完全一致
+    private static final Map<String, String> VOCABULARIES = new HashMap<>();
+    static {
+        for (String model : new String[]{"gpt-4o", "gpt-4o-mini", "chatgpt-4o-latest",
+                "gpt-4.1", "gpt-4.1-mini", "gpt-4.1-nano", "o1", "o1-mini", "o1-preview", "o1-pro",
+                "o3", "o3-mini", "o3-pro", "o4-mini"}) {
+            VOCABULARIES.put(model, VOCAB_O200K);
+        }
+        for (String model : new String[]{"gpt-4", "gpt-4-32k", "gpt-4-turbo", "gpt-4-turbo-preview",
+                "gpt-3.5-turbo", "gpt-3.5-turbo-16k"}) {
+            VOCABULARIES.put(model, VOCAB_CL100K);
+        }
+    }
+    // 版本快照后缀，如 -2024-08-06、-0613、-1106-preview
+    private static final Pattern SNAPSHOT_SUFFIX = Pattern.compile("-(\\d{4}-\\d{2}-\\d{2}|\\d{4})(-preview)?$");
+
+    private final int contextWindow;
+    private final int maxOutputTokens;
+    private final String vocabulary;
+    private final boolean reasoning;
+
+    private ModelLimits(int contextWindow, int maxOutputTokens, String vocabulary) {
+        this(contextWindow, maxOutputTokens, vocabulary, false);
+    }
+
+    private ModelLimits(int contextWindow, int maxOutputTokens, String vocabulary, boolean reasoning) {
+        this.contextWindow = contextWindow;
+        this.maxOutputTokens = maxOutputTokens;
+        this.vocabulary = vocabulary;
+        this.reasoning = reasoning;
+    }
+
+    public static ModelLimits forModel(String modelName) {
+        if (modelName == null) {
+            return DEFAULT;
+        }
+        // 兼容 "openai/gpt-4o" 这类带供应商前缀的名称
+        String name = modelName.toLowerCase(Locale.US);
+        int slash = name.lastIndexOf('/');
+        if (slash >= 0) {
+            name = name.substring(slash + 1);
+        }
+        String vocabulary = VOCABULARIES.get(SNAPSHOT_SUFFIX.matcher(name).replaceFirst(""));
+        boolean reasoning = isReasoningName(name);
+        for (Object[] model : KNOWN_MODELS) {
+            if (name.startsWith((String) model[0])) {
+                return new ModelLimits((Integer) model[1], (Integer) model[2], vocabulary, reasoning);
+            }
+        }
+        return reasoning ? new ModelLimits(DEFAULT.contextWindow, DEFAULT.maxOutputTokens, null, true) : DEFAULT;
+    }
+
+    private static boolean isReasoningName(String name) {
+        for (String prefix : REASONING_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String marker : REASONING_MARKERS) {
+            if (name.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 单次回答上限不超过 cap 的副本，用于动作自行指定 max_tokens 的情况
+     */
+    public ModelLimits withMaxOutputTokens(int cap) {
+        return cap > 0 && cap < maxOutputTokens ? new ModelLimits(contextWindow, cap, vocabulary, reasoning) : this;
+    }
+
+    /** 输入与输出共享的总token数 */
+    public int getContextWindow() {
+        return contextWindow;
+    }
+
+    /** 单次回答的token上限 */
+    public int getMaxOutputTokens() {
+        return maxOutputTokens;
+    }
+
+    /** 是否为推理模型，思考过程占用 max_tokens */
+    public boolean isReasoning() {
+        return reasoning;
+    }
+
+    /** 模型使用的词表名称，分词方式未知时为 null */
+    public String getVocabulary() {
+        return vocabulary;
+    }
+}
@@ -0,0 +1,296 @@
+package com.inputassistant.universal.core.token;
+
+import com.inputassistant.universal.core.api.ChatRequestFactory;
+import com.inputassistant.universal.model.Action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 请求发出前的token预算
+ * 根据输入长度与动作类型确定 max_tokens，并在超出模型上下文窗口时截断或分段输入
+ */
+public final class TokenBudget {
+    /**
+     * 动作的输出特征
+     */
+    public enum OutputProfile {
+        /** 改写类（翻译、润色、纠错）：输出长度与输入相当 */
+        TRANSFORM,
+        /** 生成类（扩写、回答问题）：输出长度与输入无关 */
+        GENERATE
+    }
+
+    // OpenAI 聊天格式中每条消息约有4个token的框架开销，回答前另有3个
+    private static final int MESSAGE_OVERHEAD = 4;
+    private static final int REPLY_PRIMING = 3;
+    private static final int MIN_OUTPUT_TOKENS = 64;
+    // 改写类输出相对输入的倍数（中译英等场景token数会膨胀）与额外余量
+    private static final double TRANSFORM_RATIO = 2.0;
+    private static final int TRANSFORM_HEADROOM = 64;
+    // 改写类的下限：短输入按倍数算出的上限太小，模型多说一句说明就会被截断
+    private static final int TRANSFORM_MIN_TOKENS = ChatRequestFactory.DEFAULT_MAX_TOKENS;
+    // 推理模型的思考过程也计入 max_tokens，额外预留
+    private static final int REASONING_HEADROOM = 4096;
+
+    // 中文按子串匹配，只收录不会出现在解释、问答类指令中的动词（不含“语法”“转换”这类词）
+    private static final String[] TRANSFORM_KEYWORDS_ZH = {
+            "翻译", "译成", "译为", "润色", "纠错", "改写", "改正", "校对", "修正", "错别字", "简化",
+            "转换为", "转换成", "转为", "转成"
+    };
+    // 英文按整词匹配，避免 "fix" 命中 prefix、"correct" 命中 correctly
+    private static final Set<String> TRANSFORM_WORDS = new HashSet<>(Arrays.asList(
+            "translate", "translation", "proofread", "rewrite", "rephrase", "paraphrase", "polish", "fix", "correct"));
+
+    private TokenBudget() {
+    }
+
+    /**
+     * 预算结果
+     */
+    public static final class Plan {
+        /** 每个请求的 max_tokens */
+        public final int maxTokens;
+        /** 需要依次发送的输入片段，通常只有一个 */
+        public final List<String> chunks;
+        /** 输入是否被截断（生成类动作超出上下文窗口时） */
+        public final boolean trimmed;
+        /** 指令本身已超出上下文窗口，无法发送 */
+        public final boolean promptTooLong;
+        /** 计数是否基于真实词表 */
+        public final boolean exact;
+
+        Plan(int maxTokens, List<String> chunks, boolean trimmed, boolean promptTooLong, boolean exact) {
+            this.maxTokens = maxTokens;
+            this.chunks = chunks;
+            this.trimmed = trimmed;
+            this.promptTooLong = promptTooLong;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * 动作声明了输出类型时按声明，否则根据指令内容推断
+     */
+    public static OutputProfile profileFor(Action action) {
+        String outputType = action.getOutputType();
+        if (Action.OUTPUT_TRANSFORM.equals(outputType)) {
+            return OutputProfile.TRANSFORM;
+        }
+        if (Action.OUTPUT_GENERATE.equals(outputType)) {
+            return OutputProfile.GENERATE;
+        }
+        return inferProfile(action.getSystemPrompt());
+    }
+
+    /**
+     * 根据指令内容推断动作类型，无法判断时视为生成类
+     */
+    public static OutputProfile inferProfile(String systemPrompt) {
+        if (systemPrompt == null) {
+            return OutputProfile.GENERATE;
+        }
+        for (String keyword : TRANSFORM_KEYWORDS_ZH) {
+            if (systemPrompt.contains(keyword)) {
+                return OutputProfile.TRANSFORM;
+            }
+        }
+        String prompt = systemPrompt.toLowerCase(Locale.US);
+        int start = -1;
+        for (int i = 0; i <= prompt.length(); i++) {
+            boolean letter = i < prompt.length() && prompt.charAt(i) >= 'a' && prompt.charAt(i) <= 'z';
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                if (TRANSFORM_WORDS.contains(prompt.substring(start, i))) {
+                    return OutputProfile.TRANSFORM;
+                }
+                start = -1;
+            }
+        }
+        return OutputProfile.GENERATE;
+    }
+
+    public static Plan plan(TokenCounter counter, ModelLimits limits,
+                            String systemPrompt, String input, OutputProfile profile) {
+        return plan(counter, limits, systemPrompt, input, profile, 0);
+    }
+
+    /**
+     * @param requestedMaxTokens 动作指定的 max_tokens，作为回答上限和生成类动作的预留值；0 表示未指定
+     */
+    public static Plan plan(TokenCounter counter, ModelLimits limits,
+                            String systemPrompt, String input, OutputProfile profile, int requestedMaxTokens) {
+        if (requestedMaxTokens > 0) {
+            limits = limits.withMaxOutputTokens(requestedMaxTokens);
+        }
+        int fixedTokens = counter.count(systemPrompt) + MESSAGE_OVERHEAD * 2 + REPLY_PRIMING;
+        int inputTokens = counter.count(input);
+        int available = limits.getContextWindow() - fixedTokens;
+        if (available < MIN_OUTPUT_TOKENS * 2) {
+            return new Plan(MIN_OUTPUT_TOKENS, Collections.<String>emptyList(), false, true, counter.isExact());
+        }
+
+        int desired = desiredOutput(limits, inputTokens, profile, requestedMaxTokens);
+        if (inputTokens + desired <= available) {
+            return new Plan(desired, Collections.singletonList(input), false, false, counter.isExact());
+        }
+
+        if (profile == OutputProfile.TRANSFORM) {
+            // 放不下的只是下限或推理预留时，压缩到剩余空间，不必分段
+            int needed = transformOutput(inputTokens);
+            if (needed <= limits.getMaxOutputTokens() && inputTokens + needed <= available) {
+                return new Plan(available - inputTokens, Collections.singletonList(input), false, false,
+                        counter.isExact());
+            }
+            // 改写类按片段依次处理，每段的输入与输出都要放得进上下文窗口和输出上限
+            int reserve = TRANSFORM_HEADROOM + (limits.isReasoning() ? REASONING_HEADROOM : 0);
+            int chunkBudget = (int) Math.min(
+                    (available - reserve) / (1 + TRANSFORM_RATIO),
+                    (limits.getMaxOutputTokens() - reserve) / TRANSFORM_RATIO);
+            chunkBudget = Math.max(MIN_OUTPUT_TOKENS, chunkBudget);
+            List<String> chunks = split(counter, input, chunkBudget);
+            int largest = 0;
+            for (String chunk : chunks) {
+                largest = Math.max(largest, counter.count(chunk));
+            }
+            int maxTokens = Math.min(desiredOutput(limits, largest, profile, requestedMaxTokens), available - largest);
+            return new Plan(Math.max(MIN_OUTPUT_TOKENS, maxTokens), chunks, false, false, counter.isExact());
+        }
+
+        // 生成类先压缩输出预留；仍放不下时截断输入
+        if (available - inputTokens >= MIN_OUTPUT_TOKENS) {
+            return new Plan(available - inputTokens, Collections.singletonList(input), false, false,
+                    counter.isExact());
+        }
+        String trimmedInput = trimToTokens(counter, input, available - MIN_OUTPUT_TOKENS);
+        int maxTokens = Math.min(limits.getMaxOutputTokens(), available - counter.count(trimmedInput));
+        return new Plan(maxTokens, Collections.singletonList(trimmedInput), true, false, counter.isExact());
+    }
+
+    /**
+     * 合并分段处理的结果；片段以换行结尾时保留换行
+     */
+    public static String joinChunkResults(List<String> chunks, List<String> results) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < results.size(); i++) {
+            joined.append(results.get(i));
+            if (i < results.size() - 1 && chunks.get(i).endsWith("\n")) {
+                joined.append('\n');
+            }
+        }
+        return joined.toString();
+    }
+
+    private static int desiredOutput(ModelLimits limits, int inputTokens, OutputProfile profile,
+                                     int requestedMaxTokens) {
+        int desired;
+        if (profile == OutputProfile.TRANSFORM) {
+            desired = Math.max(TRANSFORM_MIN_TOKENS, transformOutput(inputTokens));
+        } else {
+            desired = requestedMaxTokens > 0 ? requestedMaxTokens : ChatRequestFactory.DEFAULT_MAX_TOKENS;
+        }
+        if (limits.isReasoning()) {
+            desired += REASONING_HEADROOM;
+        }
+        return Math.max(MIN_OUTPUT_TOKENS, Math.min(desired, limits.getMaxOutputTokens()));
+    }
+
+    /**
+     * 改写类完整输出所需的token数，不含下限
+     */
+    private static int transformOutput(int inputTokens) {
+        return (int) Math.ceil(inputTokens * TRANSFORM_RATIO) + TRANSFORM_HEADROOM;
+    }
+
+    /**
+     * 按段落、句子边界把文本切成每段不超过 budget 个token的片段
+     */
+    static List<String> split(TokenCounter counter, String text, int budget) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (String sentence : sentences(text)) {
+            int tokens = counter.count(sentence);
+            if (currentTokens + tokens > budget && current.length() > 0) {
+                chunks.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            if (tokens > budget) {
+                // 单句超长时按token数硬切
+                String rest = sentence;
+                while (counter.count(rest) > budget) {
+                    String head = trimToTokens(counter, rest, budget);
+                    if (head.isEmpty()) {
+                        head = rest.substring(0, 1);
+                    }
+                    chunks.add(head);
+                    rest = rest.substring(head.length());
+                }
+                current.append(rest);
+                currentTokens = counter.count(rest);
+            } else {
+                current.append(sentence);
+                currentTokens += tokens;
+            }
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * 以句末标点或换行为界切分，分隔符保留在前一句末尾
+     */
+    private static List<String> sentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean end = c == '\n' || c == '。' || c == '！' || c == '？' || c == '；'
+                    || ((c == '.' || c == '!' || c == '?') && (i + 1 == text.length() || text.charAt(i + 1) == ' '));
+            if (end) {
+                int stop = i + 1;
+                // 把紧随的空白一并归入本句
+                while (stop < text.length() && text.charAt(stop) == ' ') {
+                    stop++;
+                }
+                sentences.add(text.substring(start, stop));
+                start = stop;
+                i = stop - 1;
+            }
+        }
+        if (start < text.length()) {
+            sentences.add(text.substring(start));
+        }
+        return sentences;
+    }
+
+    /**
+     * 保留开头不超过 budget 个token的最长前缀（二分查找）
+     */
+    static String trimToTokens(TokenCounter counter, String text, int budget) {
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (counter.count(text.substring(0, mid)) <= budget) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // 不在代理对中间截断
+        if (low > 0 && low < text.length() && Character.isHighSurrogate(text.charAt(low - 1))) {
+            low--;
+        }
+        return text.substring(0, low);
+    }
+}
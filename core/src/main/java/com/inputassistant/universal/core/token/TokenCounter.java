@@ -0,0 +1,13 @@
+package com.inputassistant.universal.core.token;
+
+/**
+ * 文本的token计数
+ */
+public interface TokenCounter {
+    int count(CharSequence text);
+
+    /**
+     * 计数结果是否精确（使用了模型的真实词表）
+     */
+    boolean isExact();
+}
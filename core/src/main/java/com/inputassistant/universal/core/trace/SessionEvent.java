@@ -0,0 +1,26 @@
+package com.inputassistant.universal.core.trace;
+
+/**
+ * 一次动作执行的匿名化记录
+ * 只包含长度、耗时和结果，不包含任何文本内容、API地址或密钥
+ */
+public class SessionEvent {
+    /** 距上一次点击动作的间隔，第一次为0 */
+    public long gapMs;
+    /** 动作的匿名标识（动作ID的哈希），用于区分同一会话中不同动作的使用频率 */
+    public int actionKey;
+    public int systemPromptChars;
+    public int inputChars;
+    public boolean replaceMode;
+    /** 点击 → 收到结果（成功或失败）的耗时 */
+    public long latencyMs;
+    public int responseChars;
+    public boolean success;
+
+    /**
+     * 由动作ID生成匿名标识
+     */
+    public static int anonymizeActionId(String actionId) {
+        return actionId != null ? (actionId.hashCode() & 0xFFFF) : 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.inputassistant.universal.core.trace;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话轨迹的JSON Lines格式：每行一个 {@link SessionEvent}
+ * 应用内记录与JVM回放工具共用该格式
+ */
+public final class SessionTraceCodec {
+    private final Gson gson = new Gson();
+
+    /**
+     * @return 不含换行的单行JSON
+     */
+    public String encode(SessionEvent event) {
+        return gson.toJson(event);
+    }
+
+    /**
+     * 读取全部事件，跳过空行和无法解析的行（如进程被杀时写了一半的最后一行）
+     */
+    public List<SessionEvent> decodeAll(Reader reader) throws IOException {
+        List<SessionEvent> events = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                SessionEvent event = gson.fromJson(line, SessionEvent.class);
+                if (event != null) {
+                    events.add(event);
+                }
+            } catch (JsonParseException e) {
+                // 跳过损坏的行
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,226 @@
+package com.inputassistant.universal.model;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 动作数据模型
+ * 每个Action代表一个自定义的LLM处理功能
+ */
+public class Action {
+    /** 输出长度与输入相当（翻译、润色、纠错） */
+    public static final String OUTPUT_TRANSFORM = "transform";
+    /** 输出长度与输入无关（回答、扩写、解释） */
+    public static final String OUTPUT_GENERATE = "generate";
+
+    private String id;
+    private String name;
+    private String systemPrompt;
+
+    // 可选的生成参数，为空时使用全局设置；短小的改写类动作可以指定更快、更便宜的模型
+    private String modelName;
+    private String baseUrl;
+    private Integer maxTokens;
+    private Double temperature;
+    private List<String> stopSequences;
+    // 草稿模型：设置后同时请求草稿模型与正式模型，先显示草稿，正式结果到达后再替换
+    private String draftModelName;
+    // 一次请求返回的候选数（n），大于1时在输入法候选栏中展示
+    private Integer candidateCount;
+    // 输出类型（OUTPUT_*），决定 max_tokens 的预算方式；为空时根据系统指令推断
+    private String outputType;
+    // 流水线动作：按顺序执行的其他动作的id，前一步的结果作为下一步的输入；非空时忽略本动作的系统指令
+    private List<String> pipelineStepIds;
+    // 本地动作：设置后在输入法中直接执行该转换（见 LocalTransforms），不请求模型，忽略系统指令与生成参数
+    private String localTransformId;
+    private List<String> localTransformArgs;
+
+    // 默认构造函数（用于JSON反序列化）
+    public Action() {
+        this.id = UUID.randomUUID().toString();
+    }
+
+    // 带参数构造函数
+    public Action(String name, String systemPrompt) {
+        this.id = UUID.randomUUID().toString();
+        this.name = name;
+        this.systemPrompt = systemPrompt;
+    }
+
+    // 完整构造函数（用于编辑现有Action）
+    public Action(String id, String name, String systemPrompt) {
+        this.id = id;
+        this.name = name;
+        this.systemPrompt = systemPrompt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+
+    public void setSystemPrompt(String systemPrompt) {
+        this.systemPrompt = systemPrompt;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public void setModelName(String modelName) {
+        this.modelName = modelName;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public Integer getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(Integer maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public Double getTemperature() {
+        return temperature;
+    }
+
+    public void setTemperature(Double temperature) {
+        this.temperature = temperature;
+    }
+
+    public List<String> getStopSequences() {
+        return stopSequences;
+    }
+
+    public void setStopSequences(List<String> stopSequences) {
+        this.stopSequences = stopSequences;
+    }
+
+    public String getDraftModelName() {
+        return draftModelName;
+    }
+
+    public void setDraftModelName(String draftModelName) {
+        this.draftModelName = draftModelName;
+    }
+
+    public Integer getCandidateCount() {
+        return candidateCount;
+    }
+
+    public void setCandidateCount(Integer candidateCount) {
+        this.candidateCount = candidateCount;
+    }
+
+    public String getOutputType() {
+        return outputType;
+    }
+
+    public void setOutputType(String outputType) {
+        this.outputType = outputType;
+    }
+
+    public List<String> getPipelineStepIds() {
+        return pipelineStepIds;
+    }
+
+    public void setPipelineStepIds(List<String> pipelineStepIds) {
+        this.pipelineStepIds = pipelineStepIds;
+    }
+
+    public String getLocalTransformId() {
+        return localTransformId;
+    }
+
+    public void setLocalTransformId(String localTransformId) {
+        this.localTransformId = localTransformId;
+    }
+
+    public List<String> getLocalTransformArgs() {
+        return localTransformArgs;
+    }
+
+    public void setLocalTransformArgs(List<String> localTransformArgs) {
+        this.localTransformArgs = localTransformArgs;
+    }
+
+    /**
+     * @return 是否为在本地执行、不请求模型的动作
+     */
+    public boolean isLocal() {
+        return localTransformId != null && !localTransformId.isEmpty();
+    }
+
+    /**
+     * @return 是否为由多个步骤组成的流水线动作
+     */
+    public boolean isPipeline() {
+        return pipelineStepIds != null && !pipelineStepIds.isEmpty();
+    }
+
+    /**
+     * @return 是否启用“先草稿后优化”模式
+     */
+    public boolean hasDraftModel() {
+        return draftModelName != null && !draftModelName.trim().isEmpty();
+    }
+
+    /**
+     * @return 动作指定的模型，未指定时返回全局模型
+     */
+    public String resolveModelName(String defaultModelName) {
+        return modelName != null && !modelName.trim().isEmpty() ? modelName.trim() : defaultModelName;
+    }
+
+    /**
+     * @return 动作指定的API地址，未指定时返回全局地址
+     */
+    public String resolveBaseUrl(String defaultBaseUrl) {
+        return baseUrl != null && !baseUrl.trim().isEmpty() ? baseUrl.trim() : defaultBaseUrl;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Action action = (Action) obj;
+        return id != null && id.equals(action.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id != null ? id.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Action{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", systemPrompt='" + systemPrompt + '\'' +
+                '}';
+    }
+}